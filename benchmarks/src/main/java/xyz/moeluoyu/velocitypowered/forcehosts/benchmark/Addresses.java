@@ -0,0 +1,86 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.SplittableRandom;
+
+/**
+ * 生成来源地址序列
+ */
+final class Addresses {
+    // Zipf 分布的指数，越大越集中于少数地址
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    enum Distribution {
+        // 所有地址出现概率相同，模拟分散的扫描
+        UNIFORM,
+        // 少数地址占大部分请求，模拟集中的压测
+        ZIPFIAN
+    }
+
+    private Addresses() {
+    }
+
+    /**
+     * @param population 不同地址的数量，其中约10%为 IPv6 地址
+     * @param size 序列长度，必须是2的幂
+     */
+    static InetSocketAddress[] sample(Distribution distribution, int population, int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        InetSocketAddress[] addresses = new InetSocketAddress[population];
+        for (int i = 0; i < population; i++) {
+            addresses[i] = new InetSocketAddress(randomAddress(random, i % 10 == 0), 1024 + random.nextInt(60000));
+        }
+
+        double[] cumulative = distribution == Distribution.ZIPFIAN ? zipfCumulative(population) : null;
+        InetSocketAddress[] sequence = new InetSocketAddress[size];
+        for (int i = 0; i < size; i++) {
+            int index = cumulative == null ? random.nextInt(population) : zipfIndex(cumulative, random.nextDouble());
+            sequence[i] = addresses[index];
+        }
+        return sequence;
+    }
+
+    private static InetAddress randomAddress(SplittableRandom random, boolean ipv6) {
+        byte[] raw = new byte[ipv6 ? 16 : 4];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte) random.nextInt(256);
+        }
+        if (ipv6) {
+            raw[0] = 0x20; // 全球单播地址 2000::/3
+        }
+        try {
+            return InetAddress.getByAddress(raw);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double[] zipfCumulative(int population) {
+        double[] cumulative = new double[population];
+        double sum = 0;
+        for (int i = 0; i < population; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < population; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int zipfIndex(double[] cumulative, double value) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,88 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+import xyz.moeluoyu.velocitypowered.forcehosts.rules.RuleEngine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 防频繁刷新检查，地址按均匀分布或 Zipf 分布出现
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AntiSpamBenchmark {
+    @Param({"UNIFORM", "ZIPFIAN"})
+    public Addresses.Distribution distribution;
+
+    @Param({"65536"})
+    public int population;
+
+    @Param({"false", "true"})
+    public boolean subnets;
+
+    @Param({"exact", "sketch"})
+    public String mode;
+
+    private PluginFixture fixture;
+    private long[] highs;
+    private long[] lows;
+    private RuleEngine.Decision decision;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = PluginFixture.create(List.of("play.example.com"), antiSpamConfig(subnets, mode));
+        InetSocketAddress[] sequence = Addresses.sample(distribution, population, Cursor.SIZE, 42);
+        highs = new long[sequence.length];
+        lows = new long[sequence.length];
+        for (int i = 0; i < sequence.length; i++) {
+            highs[i] = IpAddresses.high(sequence[i]);
+            lows[i] = IpAddresses.low(sequence[i]);
+        }
+        // 没有配置网段和策略，所有地址的判断结果相同
+        decision = fixture.configManager.getSettings().getRules().evaluate(highs[0], lows[0], "play.example.com");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public boolean checkAndHandlePingSpam(Cursor cursor) {
+        int index = cursor.next();
+        ForceHostsSettings settings = fixture.configManager.getSettings();
+        return fixture.antiSpamManager.checkAndHandlePingSpam(settings, decision, highs[index], lows[index]);
+    }
+
+    static String antiSpamConfig(boolean subnets, String mode) {
+        return String.join("\n",
+                "antiSpamRefresh:",
+                "  enabled: true",
+                "  mode: " + mode,
+                "  timeWindow: 10",
+                "  maxPings: 10",
+                "  blockDuration: 30",
+                "  subnets:",
+                "    enabled: " + subnets,
+                "    ipv4:",
+                "      - {prefix: 24, maxPings: 100, escalateAfter: 4, blockDuration: 300}",
+                "      - {prefix: 16, maxPings: 1000, escalateAfter: 16, blockDuration: 600}",
+                "    ipv6:",
+                "      - {prefix: 64, maxPings: 100, escalateAfter: 4, blockDuration: 300}",
+                "      - {prefix: 48, maxPings: 1000, escalateAfter: 16, blockDuration: 600}",
+                "antiSpamLogin:",
+                "  enabled: true",
+                "  timeWindow: 10",
+                "  maxLogins: 5",
+                "  blockDuration: 60");
+    }
+}
@@ -0,0 +1,38 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import com.velocitypowered.api.proxy.InboundConnection;
+
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.Optional;
+
+/**
+ * 用动态代理模拟 Velocity 的入站连接，只实现插件用到的方法
+ */
+final class Connections {
+    private Connections() {
+    }
+
+    static InboundConnection inbound(InetSocketAddress remoteAddress, String virtualHost) {
+        Optional<InetSocketAddress> host = Optional.of(InetSocketAddress.createUnresolved(virtualHost, 25565));
+        return (InboundConnection) Proxy.newProxyInstance(Connections.class.getClassLoader(),
+                new Class<?>[]{InboundConnection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRemoteAddress":
+                            return remoteAddress;
+                        case "getVirtualHost":
+                            return host;
+                        case "isActive":
+                            return true;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "InboundConnection[" + remoteAddress + " -> " + virtualHost + "]";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,27 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * 每个线程在预先生成的序列中的位置，不同线程从不同位置开始
+ */
+@State(Scope.Thread)
+public class Cursor {
+    // 预先生成的序列长度
+    static final int SIZE = 1 << 16;
+    private static final int MASK = SIZE - 1;
+
+    private int position;
+
+    @Setup
+    public void setUp(ThreadParams params) {
+        position = params.getThreadIndex() * 7919;
+    }
+
+    int next() {
+        return position++ & MASK;
+    }
+}
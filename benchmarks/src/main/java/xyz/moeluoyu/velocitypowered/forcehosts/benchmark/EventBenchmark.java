@@ -0,0 +1,76 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import com.velocitypowered.api.event.connection.PreLoginEvent;
+import com.velocitypowered.api.event.proxy.ProxyPingEvent;
+import com.velocitypowered.api.proxy.InboundConnection;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import net.kyori.adventure.text.Component;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的 ping 和登录前事件处理，包括地址编码、防频繁刷新和主机名检查
+ * 事件对象预先创建并循环使用，测量结果不包含 Velocity 创建事件的开销
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventBenchmark {
+    @Param({"UNIFORM", "ZIPFIAN"})
+    public Addresses.Distribution distribution;
+
+    @Param({"2", "10000"})
+    public int hostCount;
+
+    @Param({"65536"})
+    public int population;
+
+    private PluginFixture fixture;
+    private ProxyPingEvent[] pings;
+    private PreLoginEvent[] logins;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = PluginFixture.create(Hosts.rules(hostCount), AntiSpamBenchmark.antiSpamConfig(false, "exact"));
+        InetSocketAddress[] addresses = Addresses.sample(distribution, population, Cursor.SIZE, 42);
+        String[] hosts = Hosts.queries(hostCount, Cursor.SIZE, 43);
+        ServerPing ping = ServerPing.builder()
+                .version(new ServerPing.Version(767, "1.21.1"))
+                .maximumPlayers(100)
+                .description(Component.text("ForceHosts"))
+                .build();
+
+        pings = new ProxyPingEvent[Cursor.SIZE];
+        logins = new PreLoginEvent[Cursor.SIZE];
+        for (int i = 0; i < Cursor.SIZE; i++) {
+            InboundConnection connection = Connections.inbound(addresses[i], hosts[i]);
+            pings[i] = new ProxyPingEvent(connection, ping);
+            logins[i] = new PreLoginEvent(connection, "player" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public ProxyPingEvent onProxyPing(Cursor cursor) {
+        ProxyPingEvent event = pings[cursor.next()];
+        fixture.eventManager.onProxyPing(event);
+        return event;
+    }
+
+    @Benchmark
+    public PreLoginEvent onPreLogin(Cursor cursor) {
+        PreLoginEvent event = logins[cursor.next()];
+        fixture.eventManager.onPreLogin(event);
+        return event;
+    }
+}
@@ -0,0 +1,34 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.moeluoyu.velocitypowered.forcehosts.host.HostMatcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主机名匹配，规则数量从2到10000
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HostMatcherBenchmark {
+    @Param({"2", "100", "1000", "10000"})
+    public int hostCount;
+
+    private HostMatcher matcher;
+    private String[] queries;
+
+    @Setup
+    public void setUp() {
+        matcher = HostMatcher.compile(Hosts.rules(hostCount));
+        queries = Hosts.queries(hostCount, Cursor.SIZE, 42);
+    }
+
+    @Benchmark
+    public boolean matches(Cursor cursor) {
+        return matcher.matches(queries[cursor.next()]);
+    }
+}
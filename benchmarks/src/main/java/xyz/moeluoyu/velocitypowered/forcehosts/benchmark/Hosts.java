@@ -0,0 +1,51 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 生成主机名规则和查询用的主机名
+ */
+final class Hosts {
+    private Hosts() {
+    }
+
+    /**
+     * 生成 count 条规则，每10条中有1条通配符规则，其余为精确主机名
+     */
+    static List<String> rules(int count) {
+        List<String> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rules.add(i % 10 == 9 ? "*.zone" + i + ".example.org" : "play" + i + ".example" + (i % 97) + ".net");
+        }
+        return rules;
+    }
+
+    /**
+     * 生成查询序列：约60%命中精确规则，20%命中通配符规则，20%不匹配
+     * 部分查询使用大写字母，覆盖大小写折叠的路径
+     * @param size 序列长度，必须是2的幂
+     */
+    static String[] queries(int ruleCount, int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] queries = new String[size];
+        for (int i = 0; i < size; i++) {
+            int roll = random.nextInt(10);
+            int rule = random.nextInt(ruleCount);
+            String query;
+            if (roll < 6) {
+                // 精确规则的下标不是10的倍数减1
+                rule = rule % 10 == 9 ? rule - 1 : rule;
+                query = "play" + rule + ".example" + (rule % 97) + ".net";
+            } else if (roll < 8) {
+                int wildcard = rule - rule % 10 + 9;
+                query = wildcard < ruleCount ? "mc.zone" + wildcard + ".example.org" : "play0.example0.net";
+            } else {
+                query = "scan" + random.nextInt(1 << 20) + ".attacker.com";
+            }
+            queries[i] = random.nextInt(4) == 0 ? query.toUpperCase() : query;
+        }
+        return queries;
+    }
+}
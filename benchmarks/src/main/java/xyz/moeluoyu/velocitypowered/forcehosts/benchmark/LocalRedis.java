@@ -0,0 +1,260 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本机的 Redis 替身，只实现阻止列表同步用到的 AUTH、PING、SUBSCRIBE 和 PUBLISH
+ * <p>
+ * 只监听回环地址，每个连接一个线程。没有 Redis 的环境下 {@link SyncHarness} 用它代替真实的 Redis。
+ */
+final class LocalRedis implements AutoCloseable {
+    private static final int MAX_ARGUMENT = 1024 * 1024;
+
+    private final ServerSocket server;
+    private final String password;
+    private final Map<String, Set<Client>> channels = new ConcurrentHashMap<>();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder published = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param port 监听端口，0为自动选择
+     * @param password 密码，null为不认证
+     */
+    LocalRedis(int port, String password) throws IOException {
+        this.server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.password = password;
+        Thread acceptor = new Thread(this::accept, "LocalRedis-Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /**
+     * @return 订阅了频道的连接数
+     */
+    int getSubscribers(String channel) {
+        Set<Client> clients = channels.get(channel);
+        return clients == null ? 0 : clients.size();
+    }
+
+    long getPublished() {
+        return published.sum();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                connections.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "LocalRedis-Client");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!running) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Client client = null;
+        try {
+            client = new Client(new BufferedOutputStream(socket.getOutputStream()));
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            boolean authenticated = password == null;
+            while (running) {
+                List<byte[]> command = readCommand(in);
+                if (command.isEmpty()) {
+                    continue;
+                }
+                String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+                if (name.equals("AUTH")) {
+                    if (password == null) {
+                        client.error("ERR AUTH <password> called without any password configured for the default user");
+                    } else if (command.size() == 2 && password.equals(new String(command.get(1), StandardCharsets.UTF_8))) {
+                        authenticated = true;
+                        client.simple("OK");
+                    } else {
+                        client.error("WRONGPASS invalid username-password pair or user is disabled.");
+                    }
+                } else if (!authenticated) {
+                    client.error("NOAUTH Authentication required.");
+                } else if (name.equals("PING")) {
+                    client.simple("PONG");
+                } else if (name.equals("SUBSCRIBE") && command.size() > 1) {
+                    for (int i = 1; i < command.size(); i++) {
+                        String channel = new String(command.get(i), StandardCharsets.UTF_8);
+                        channels.computeIfAbsent(channel, key -> ConcurrentHashMap.newKeySet()).add(client);
+                        client.subscribed(command.get(i), client.subscriptions.incrementAndGet());
+                    }
+                } else if (name.equals("PUBLISH") && command.size() == 3) {
+                    Set<Client> subscribers = channels.get(new String(command.get(1), StandardCharsets.UTF_8));
+                    int delivered = 0;
+                    if (subscribers != null) {
+                        for (Client subscriber : subscribers) {
+                            if (subscriber.message(command.get(1), command.get(2))) {
+                                delivered++;
+                            }
+                        }
+                    }
+                    published.increment();
+                    client.integer(delivered);
+                } else {
+                    client.error("ERR unknown command '" + name + "'");
+                }
+            }
+        } catch (IOException e) {
+            // 客户端断开
+        } finally {
+            if (client != null) {
+                for (Set<Client> subscribers : channels.values()) {
+                    subscribers.remove(client);
+                }
+            }
+            connections.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 读取一个以 RESP 数组发送的命令
+     */
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            throw new EOFException();
+        }
+        if (type != '*') {
+            throw new IOException("只支持 RESP 数组格式的命令");
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<byte[]> args = new ArrayList<>(Math.max(0, count));
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("命令参数必须是批量字符串");
+            }
+            int length = Integer.parseInt(readLine(in));
+            if (length < 0 || length > MAX_ARGUMENT) {
+                throw new IOException("参数长度无效: " + length);
+            }
+            byte[] data = in.readNBytes(length);
+            if (data.length != length || in.read() != '\r' || in.read() != '\n') {
+                throw new EOFException();
+            }
+            args.add(data);
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c < 0) {
+                throw new EOFException();
+            }
+            line.append((char) c);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("RESP 格式错误");
+        }
+        return line.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+
+    /**
+     * 一个客户端连接，发布的消息可能来自其他连接的线程，写入时加锁
+     */
+    private static final class Client {
+        final OutputStream out;
+        final AtomicInteger subscriptions = new AtomicInteger();
+
+        Client(OutputStream out) {
+            this.out = out;
+        }
+
+        synchronized void simple(String text) throws IOException {
+            write("+" + text + "\r\n");
+            out.flush();
+        }
+
+        synchronized void error(String text) throws IOException {
+            write("-" + text + "\r\n");
+            out.flush();
+        }
+
+        synchronized void integer(long value) throws IOException {
+            write(":" + value + "\r\n");
+            out.flush();
+        }
+
+        synchronized void subscribed(byte[] channel, int count) throws IOException {
+            write("*3\r\n");
+            bulk("subscribe".getBytes(StandardCharsets.US_ASCII));
+            bulk(channel);
+            write(":" + count + "\r\n");
+            out.flush();
+        }
+
+        /**
+         * @return 是否成功发送，连接已断开时返回false
+         */
+        synchronized boolean message(byte[] channel, byte[] payload) {
+            try {
+                write("*3\r\n");
+                bulk("message".getBytes(StandardCharsets.US_ASCII));
+                bulk(channel);
+                bulk(payload);
+                out.flush();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private void bulk(byte[] data) throws IOException {
+            write("$" + data.length + "\r\n");
+            out.write(data);
+            write("\r\n");
+        }
+
+        private void write(String text) throws IOException {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.TimeSource;
+import xyz.moeluoyu.velocitypowered.forcehosts.log.AuditLog;
+import xyz.moeluoyu.velocitypowered.forcehosts.log.SecurityLogger;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.AntiSpamManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.ConfigManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.EventManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.LoginQuotaManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.MessageManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.OffenderTracker;
+import xyz.moeluoyu.velocitypowered.forcehosts.ping.PingResponseCache;
+import xyz.moeluoyu.velocitypowered.forcehosts.sync.BlocklistSyncService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 按插件启动时的顺序创建各个管理器，配置文件写入临时目录
+ * 日志输出到 NOP Logger，只测量插件本身的开销
+ */
+final class PluginFixture implements AutoCloseable {
+    final Path dataDirectory;
+    final ConfigManager configManager;
+    final MessageManager messageManager;
+    final SecurityLogger securityLogger;
+    final ForceHostsMetrics metrics;
+    final BlocklistSyncService syncService;
+    final AntiSpamManager antiSpamManager;
+    final EventManager eventManager;
+
+    private PluginFixture(Path dataDirectory, TimeSource clock) {
+        Logger logger = NOPLogger.NOP_LOGGER;
+        this.dataDirectory = dataDirectory;
+        this.configManager = new ConfigManager(logger, dataDirectory);
+        this.messageManager = new MessageManager(logger, dataDirectory);
+        this.securityLogger = new SecurityLogger(logger, configManager, messageManager,
+                new OffenderTracker(configManager, clock), new AuditLog(logger, dataDirectory), clock);
+        this.metrics = new ForceHostsMetrics();
+        // 默认不启动同步，阻止记录只保存在本机；SyncHarness 按需启动
+        this.syncService = new BlocklistSyncService(logger, configManager, metrics);
+        this.antiSpamManager = new AntiSpamManager(logger, configManager, dataDirectory, securityLogger, metrics,
+                syncService, clock);
+        this.eventManager = new EventManager(configManager, messageManager, antiSpamManager,
+                new LoginQuotaManager(configManager, metrics, clock), securityLogger, metrics,
+                new PingResponseCache(logger, configManager, messageManager, dataDirectory));
+    }
+
+    /**
+     * @param hosts 允许的主机名规则
+     * @param extraConfig 追加到 config.yml 的其他配置（YAML 文本）
+     */
+    static PluginFixture create(List<String> hosts, String extraConfig) throws IOException {
+        Path directory = Files.createTempDirectory("forcehosts-bench");
+        List<String> lines = new ArrayList<>();
+        lines.add("hosts:");
+        for (String host : hosts) {
+            lines.add("  - '" + host + "'");
+        }
+        lines.add(extraConfig);
+        Files.write(directory.resolve("config.yml"), lines);
+        return start(directory, TimeSource.SYSTEM);
+    }
+
+    /**
+     * @param config 使用的配置文件，null为插件自带的默认配置
+     * @param clock 限流和阻止判断使用的时间
+     */
+    static PluginFixture load(Path config, TimeSource clock) throws IOException {
+        Path directory = Files.createTempDirectory("forcehosts-replay");
+        if (config != null) {
+            Files.copy(config, directory.resolve("config.yml"));
+        }
+        return start(directory, clock);
+    }
+
+    private static PluginFixture start(Path directory, TimeSource clock) {
+        PluginFixture fixture = new PluginFixture(directory, clock);
+        fixture.messageManager.loadMessages();
+        fixture.configManager.loadConfig();
+        fixture.securityLogger.start();
+        return fixture;
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncService.stop();
+        securityLogger.stop();
+        try (Stream<Path> files = Files.walk(dataDirectory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
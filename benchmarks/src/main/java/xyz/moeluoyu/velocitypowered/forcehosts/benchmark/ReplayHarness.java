@@ -0,0 +1,437 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import com.velocitypowered.api.event.connection.PreLoginEvent;
+import com.velocitypowered.api.event.proxy.ProxyPingEvent;
+import com.velocitypowered.api.proxy.InboundConnection;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import net.kyori.adventure.text.Component;
+import xyz.moeluoyu.velocitypowered.forcehosts.host.HostMatcher;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 离线回放流量，在 Velocity 之外运行 EventManager 和 AntiSpamManager，检查防护的判断是否正确
+ * <p>
+ * 流量来自合成的场景或记录文件，按记录的时间戳以虚拟时间加速回放：限流、阻止和定时任务都使用虚拟时间，
+ * 十分钟的流量几秒内即可回放完，结果与实际运行时一致。同一来源地址的记录总是由同一个线程按顺序处理，
+ * 不同来源在多个线程上并发处理。结束后输出按标签统计的判断结果（误阻止和漏放）、吞吐量和堆内存增长。
+ */
+public final class ReplayHarness {
+    private static final String USAGE = String.join("\n",
+            "用法: java -cp benchmarks.jar " + ReplayHarness.class.getName() + " [选项]",
+            "  --scenario <名称>   合成场景：steady、flood、subnet-flood、scan、mixed（默认 mixed）",
+            "  --trace <文件>      回放记录文件（CSV 或二进制），指定后忽略场景参数",
+            "  --write <文件>      保存生成或读取的记录，扩展名为 .csv 时保存为 CSV，否则为二进制",
+            "  --config <文件>     使用的 config.yml（默认使用插件自带的配置）",
+            "  --duration <秒>     场景时长（默认 600）",
+            "  --players <数量>    平时流量的玩家数量（默认 5000）",
+            "  --rate <次/秒>      每种攻击的请求速率（默认 200）",
+            "  --seed <数值>       随机种子（默认 1）",
+            "  --threads <数量>    回放线程数（默认为 CPU 核心数）",
+            "  --slice <毫秒>      时间片长度，同一时间片内的记录使用相同的时间（默认 10）",
+            "  --speed <倍数>      相对实际时间的回放速度，0 为尽可能快（默认 0）",
+            "  --max-false-block <百分比>  合法请求被拒绝的比例超过此值时以状态 1 退出（默认不检查）");
+
+    // 记录较少的时间片直接在回放线程中处理，避免线程切换的开销超过处理本身
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private final Trace trace;
+    private final PluginFixture fixture;
+    private final VirtualClock clock;
+    private final int threads;
+    private final ExecutorService pool;
+    private final ServerPing ping = ServerPing.builder()
+            .version(new ServerPing.Version(767, "1.21.1"))
+            .maximumPlayers(100)
+            .description(Component.text("ForceHosts"))
+            .build();
+    // 主机名是否在允许列表中，按主机名编号
+    private final boolean[] hostAllowed;
+
+    // [标签][类型][是否通过]
+    private final LongAdder[][][] outcomes = new LongAdder[3][2][2];
+    // 每个来源地址是否被拒绝过、是否通过过
+    private final AtomicIntegerArray sourceRejected;
+    private final AtomicIntegerArray sourcePassed;
+    private final AtomicLong firstAttackRejected = new AtomicLong(Long.MAX_VALUE);
+
+    private ReplayHarness(Trace trace, PluginFixture fixture, VirtualClock clock, int threads) {
+        this.trace = trace;
+        this.fixture = fixture;
+        this.clock = clock;
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads);
+        HostMatcher matcher = fixture.configManager.getSettings().getHostMatcher();
+        String[] hosts = trace.hostPool();
+        this.hostAllowed = new boolean[hosts.length];
+        for (int i = 0; i < hosts.length; i++) {
+            hostAllowed[i] = matcher.match(hosts[i]) != null;
+        }
+        for (LongAdder[][] byType : outcomes) {
+            for (LongAdder[] byOutcome : byType) {
+                byOutcome[0] = new LongAdder();
+                byOutcome[1] = new LongAdder();
+            }
+        }
+        this.sourceRejected = new AtomicIntegerArray(trace.sourceCount());
+        this.sourcePassed = new AtomicIntegerArray(trace.sourceCount());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        // 安全日志的统计周期和来源统计从创建插件时开始计时，虚拟时间需要从第一条记录开始，不能再往回调
+        Trace recorded = null;
+        if (options.trace != null) {
+            recorded = Trace.read(options.trace);
+            System.out.printf("已读取 %s：%d 条记录%n", options.trace, recorded.size());
+        }
+        VirtualClock clock = new VirtualClock(
+                recorded != null && recorded.size() > 0 ? recorded.time(0) : Scenarios.START);
+        double falseBlocked = 0;
+        // 先加载配置，场景中合法玩家使用的主机名取自允许列表
+        try (PluginFixture fixture = PluginFixture.load(options.config, clock)) {
+            Trace trace = recorded;
+            if (trace == null) {
+                String host = legitHost(fixture.configManager.getSettings().getAllowedHosts());
+                trace = Scenarios.generate(options.scenario, options.duration, options.players, options.rate, host,
+                        options.seed);
+                System.out.printf("已生成场景 %s：%d 条记录，合法玩家使用主机名 %s%n",
+                        options.scenario.displayName(), trace.size(), host);
+            }
+            if (options.write != null) {
+                trace.write(options.write);
+                System.out.printf("已保存到 %s%n", options.write);
+            }
+            if (trace.size() == 0) {
+                return;
+            }
+            clock.advanceTo(trace.time(0));
+
+            VirtualScheduler scheduler = new VirtualScheduler(clock);
+            fixture.antiSpamManager.startCleanupTask(fixture, scheduler.scheduler());
+            ReplayHarness harness = new ReplayHarness(trace, fixture, clock, options.threads);
+            try {
+                falseBlocked = harness.run(scheduler, options.slice, options.speed);
+            } finally {
+                fixture.antiSpamManager.stopCleanupTask();
+                harness.pool.shutdownNow();
+            }
+        }
+        if (falseBlocked > options.maxFalseBlock) {
+            System.out.printf("合法请求误阻止 %.3f%%，超过 --max-false-block %.3f%%%n", falseBlocked, options.maxFalseBlock);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return 允许列表中第一个不是正则表达式的规则
+     */
+    private static String legitHost(List<String> hosts) {
+        for (String host : hosts) {
+            if (!host.startsWith(HostMatcher.REGEX_PREFIX)) {
+                return host.startsWith("*.") ? "play" + host.substring(1) : host;
+            }
+        }
+        throw new IllegalArgumentException("允许列表中没有可以直接使用的主机名");
+    }
+
+    /**
+     * @return 合法请求被拒绝的比例（百分比）
+     */
+    private double run(VirtualScheduler scheduler, long sliceMillis, double speed) throws Exception {
+        long heapBefore = usedHeapAfterGc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+
+        long traceStart = trace.time(0);
+        long wallStart = System.nanoTime();
+        int size = trace.size();
+        int from = 0;
+        while (from < size) {
+            long sliceStart = trace.time(from);
+            scheduler.runDue(sliceStart);
+            int to = from;
+            while (to < size && trace.time(to) < sliceStart + sliceMillis) {
+                to++;
+            }
+            // 同一时间片内的记录使用相同的时间，误差不超过时间片长度
+            clock.advanceTo(trace.time(to - 1));
+            if (speed > 0) {
+                long target = wallStart + (long) ((sliceStart - traceStart) * 1_000_000L / speed);
+                long wait = target - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            replay(from, to);
+            from = to;
+        }
+        scheduler.runDue(trace.time(size - 1));
+        long wallNanos = System.nanoTime() - wallStart;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return report(wallNanos, heapBefore, usedHeapAfterGc(), peak);
+    }
+
+    private void replay(int from, int to) throws Exception {
+        if (threads == 1 || to - from < PARALLEL_THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                handle(i);
+            }
+            return;
+        }
+        List<Callable<Void>> jobs = new ArrayList<>(threads);
+        for (int worker = 0; worker < threads; worker++) {
+            int assigned = worker;
+            jobs.add(() -> {
+                for (int i = from; i < to; i++) {
+                    if (trace.sourceIndex(i) % threads == assigned) {
+                        handle(i);
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> job : pool.invokeAll(jobs)) {
+            job.get();
+        }
+    }
+
+    private void handle(int index) {
+        InboundConnection connection = Connections.inbound(trace.source(index), trace.host(index));
+        byte type = trace.type(index);
+        boolean allowed;
+        if (type == Trace.PING) {
+            ProxyPingEvent event = new ProxyPingEvent(connection, ping);
+            fixture.eventManager.onProxyPing(event);
+            allowed = event.getResult().isAllowed();
+        } else {
+            PreLoginEvent event = new PreLoginEvent(connection, "player");
+            fixture.eventManager.onPreLogin(event);
+            allowed = event.getResult().isAllowed();
+        }
+        // 主机名无效的ping可能收到诱饵响应，不算作通过
+        boolean passed = allowed && hostAllowed[trace.hostIndex(index)];
+        byte label = trace.label(index);
+        outcomes[label][type][passed ? 1 : 0].increment();
+        (passed ? sourcePassed : sourceRejected).lazySet(trace.sourceIndex(index), 1);
+        if (!passed && label == Trace.ATTACK && hostAllowed[trace.hostIndex(index)]) {
+            firstAttackRejected.accumulateAndGet(trace.time(index), Math::min);
+        }
+    }
+
+    /**
+     * @return 合法请求被拒绝的比例（百分比），没有合法请求时为0
+     */
+    private double report(long wallNanos, long heapBefore, long heapAfter, long heapPeak) {
+        int size = trace.size();
+        double seconds = wallNanos / 1e9;
+        System.out.println();
+        System.out.printf("回放 %d 条记录，虚拟时长 %.1f 秒，%d 个线程%n", size, trace.duration() / 1000.0, threads);
+        System.out.printf("耗时 %.2f 秒，吞吐量 %.0f 条/秒，相当于 %.0f 倍速%n", seconds, size / seconds,
+                trace.duration() / 1000.0 / seconds);
+
+        System.out.println();
+        System.out.printf("%-8s %-6s %10s %10s%n", "标签", "类型", "通过", "拒绝");
+        for (byte label = 0; label < 3; label++) {
+            for (byte type = 0; type < 2; type++) {
+                long passed = outcomes[label][type][1].sum();
+                long rejected = outcomes[label][type][0].sum();
+                if (passed + rejected > 0) {
+                    System.out.printf("%-8s %-6s %10d %10d%n", Trace.labelName(label), Trace.typeName(type), passed, rejected);
+                }
+            }
+        }
+
+        // 按来源统计：合法地址中被拒绝过的，攻击地址中通过过的
+        int legitSources = 0;
+        int legitRejected = 0;
+        int attackSources = 0;
+        int attackPassed = 0;
+        int[] sourceLabel = new int[trace.sourceCount()];
+        long attackStart = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            sourceLabel[trace.sourceIndex(i)] |= 1 << trace.label(i);
+            if (trace.label(i) == Trace.ATTACK && hostAllowed[trace.hostIndex(i)]) {
+                attackStart = Math.min(attackStart, trace.time(i));
+            }
+        }
+        for (int source = 0; source < sourceLabel.length; source++) {
+            if ((sourceLabel[source] & 1 << Trace.LEGIT) != 0) {
+                legitSources++;
+                legitRejected += sourceRejected.get(source);
+            }
+            if ((sourceLabel[source] & 1 << Trace.ATTACK) != 0) {
+                attackSources++;
+                attackPassed += sourcePassed.get(source);
+            }
+        }
+
+        long legit = total(Trace.LEGIT);
+        long attack = total(Trace.ATTACK);
+        double falseBlocked = 0;
+        System.out.println();
+        if (legit > 0) {
+            long rejected = outcomes[Trace.LEGIT][Trace.PING][0].sum() + outcomes[Trace.LEGIT][Trace.LOGIN][0].sum();
+            falseBlocked = rejected * 100.0 / legit;
+            System.out.printf("误阻止：合法请求被拒绝 %d 次（%.3f%%），涉及 %d / %d 个来源地址%n",
+                    rejected, falseBlocked, legitRejected, legitSources);
+        }
+        if (attack > 0) {
+            long passed = outcomes[Trace.ATTACK][Trace.PING][1].sum() + outcomes[Trace.ATTACK][Trace.LOGIN][1].sum();
+            System.out.printf("漏放：攻击请求通过 %d 次（%.3f%%），涉及 %d / %d 个来源地址%n",
+                    passed, passed * 100.0 / attack, attackPassed, attackSources);
+            long firstRejected = firstAttackRejected.get();
+            if (attackStart != Long.MAX_VALUE) {
+                if (firstRejected != Long.MAX_VALUE) {
+                    System.out.printf("使用有效主机名的攻击开始后 %.1f 秒首次被拦截%n", (firstRejected - attackStart) / 1000.0);
+                } else {
+                    System.out.println("使用有效主机名的攻击始终未被拦截");
+                }
+            }
+        }
+
+        ForceHostsMetrics metrics = fixture.metrics;
+        System.out.println();
+        System.out.printf("插件计数：ping 允许 %d / 主机名无效 %d / 频繁 %d / 网段 %d，登录 允许 %d / 主机名无效 %d / 频繁 %d / 网段 %d / 配额 %d%n",
+                metrics.get(ForceHostsMetrics.Counter.PINGS_ALLOWED), metrics.get(ForceHostsMetrics.Counter.PINGS_DENIED_HOST),
+                metrics.get(ForceHostsMetrics.Counter.PINGS_DENIED_SPAM), metrics.get(ForceHostsMetrics.Counter.PINGS_DENIED_NETWORK),
+                metrics.get(ForceHostsMetrics.Counter.LOGINS_ALLOWED), metrics.get(ForceHostsMetrics.Counter.LOGINS_DENIED_HOST),
+                metrics.get(ForceHostsMetrics.Counter.LOGINS_DENIED_SPAM), metrics.get(ForceHostsMetrics.Counter.LOGINS_DENIED_NETWORK),
+                metrics.get(ForceHostsMetrics.Counter.LOGINS_DENIED_QUOTA));
+        System.out.printf("阻止IP %d 次，阻止网段 %d 次，结束时跟踪 %d 条记录，淘汰 %d 条%n",
+                metrics.get(ForceHostsMetrics.Counter.BLOCKS_ISSUED), metrics.get(ForceHostsMetrics.Counter.SUBNET_BLOCKS_ISSUED),
+                fixture.antiSpamManager.getTrackedEntryCount(), fixture.antiSpamManager.getEvictionCount());
+        System.out.printf("堆内存（GC 后）：回放前 %.1f MB，回放后 %.1f MB，增长 %.1f MB；回放期间峰值 %.1f MB%n",
+                heapBefore / 1048576.0, heapAfter / 1048576.0, (heapAfter - heapBefore) / 1048576.0, heapPeak / 1048576.0);
+        return falseBlocked;
+    }
+
+    private long total(byte label) {
+        long total = 0;
+        for (LongAdder[] byOutcome : outcomes[label]) {
+            total += byOutcome[0].sum() + byOutcome[1].sum();
+        }
+        return total;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class Options {
+        Scenarios.Scenario scenario = Scenarios.Scenario.MIXED;
+        Path trace;
+        Path write;
+        Path config;
+        int duration = 600;
+        int players = 5000;
+        int rate = 200;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long slice = 10;
+        double speed;
+        double maxFalseBlock = Double.POSITIVE_INFINITY;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if (name.equals("--help") || name.equals("-h")) {
+                    throw new IllegalArgumentException("");
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("缺少 " + name + " 的值");
+                }
+                String value = args[++i];
+                try {
+                    switch (name) {
+                        case "--scenario":
+                            options.scenario = Scenarios.Scenario.parse(value);
+                            break;
+                        case "--trace":
+                            options.trace = Paths.get(value);
+                            break;
+                        case "--write":
+                            options.write = Paths.get(value);
+                            break;
+                        case "--config":
+                            options.config = Paths.get(value);
+                            break;
+                        case "--duration":
+                            options.duration = positive(name, Integer.parseInt(value));
+                            break;
+                        case "--players":
+                            options.players = Integer.parseInt(value);
+                            break;
+                        case "--rate":
+                            options.rate = Integer.parseInt(value);
+                            break;
+                        case "--seed":
+                            options.seed = Long.parseLong(value);
+                            break;
+                        case "--threads":
+                            options.threads = positive(name, Integer.parseInt(value));
+                            break;
+                        case "--slice":
+                            options.slice = positive(name, Integer.parseInt(value));
+                            break;
+                        case "--speed":
+                            options.speed = Double.parseDouble(value);
+                            break;
+                        case "--max-false-block":
+                            options.maxFalseBlock = Double.parseDouble(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("未知的选项 " + name);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(name + " 的值无效: " + value);
+                }
+            }
+            return options;
+        }
+
+        private static int positive(String name, int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(name + " 必须大于0");
+            }
+            return value;
+        }
+    }
+}
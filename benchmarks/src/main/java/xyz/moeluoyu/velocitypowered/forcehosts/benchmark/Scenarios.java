@@ -0,0 +1,190 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合成的流量场景，每条记录都带有真实标签（合法或攻击），用于统计误阻止和漏放
+ * <p>
+ * 所有场景都包含平时的玩家流量：玩家每隔一段时间（平均两分钟）打开一次服务器列表，
+ * 有时连续刷新几次，少数会随后登录；约一成玩家通过 NAT 出口共用地址，每个出口 20 人。
+ * 攻击流量集中在记录时长的中间一半。
+ */
+final class Scenarios {
+    // 固定的起始时间，相同参数生成的记录完全相同
+    static final long START = 1_700_000_000_000L;
+
+    private static final long SESSION_INTERVAL = TimeUnit.MINUTES.toMillis(2);
+    private static final int PLAYERS_PER_NAT = 20;
+
+    enum Scenario {
+        /** 只有平时的玩家流量 */
+        STEADY,
+        /** 单个IP以固定速率刷新 */
+        FLOOD,
+        /** 轮换同一个 /24 内的地址刷新，每个地址只发少量请求 */
+        SUBNET_FLOOD,
+        /** 大量不同的地址使用无效的主机名探测 */
+        SCAN,
+        /** 以上三种攻击同时进行 */
+        MIXED;
+
+        static Scenario parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("未知的场景 " + name);
+            }
+        }
+
+        String displayName() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private Scenarios() {
+    }
+
+    /**
+     * @param durationSeconds 记录时长（秒）
+     * @param players 平时流量的玩家数量
+     * @param attackRate 每种攻击的请求速率（次/秒）
+     * @param host 合法玩家使用的主机名
+     */
+    static Trace generate(Scenario scenario, int durationSeconds, int players, int attackRate, String host, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Trace.Builder builder = new Trace.Builder();
+        long end = START + TimeUnit.SECONDS.toMillis(durationSeconds);
+        steadyTraffic(builder, random, end, players, host);
+
+        long attackStart = START + (end - START) / 4;
+        long attackEnd = START + (end - START) * 3 / 4;
+        if (scenario == Scenario.FLOOD || scenario == Scenario.MIXED) {
+            InetAddress attacker = ipv4(198, 51, 100, 1 + random.nextInt(254));
+            for (long time : schedule(random, attackStart, attackEnd, attackRate)) {
+                // 一成是登录请求
+                builder.add(time, attacker, host, random.nextInt(10) == 0 ? Trace.LOGIN : Trace.PING, Trace.ATTACK);
+            }
+        }
+        if (scenario == Scenario.SUBNET_FLOOD || scenario == Scenario.MIXED) {
+            int a = 11 + random.nextInt(100);
+            int b = random.nextInt(256);
+            int c = random.nextInt(256);
+            for (long time : schedule(random, attackStart, attackEnd, attackRate)) {
+                builder.add(time, ipv4(a, b, c, 1 + random.nextInt(254)), host, Trace.PING, Trace.ATTACK);
+            }
+        }
+        if (scenario == Scenario.SCAN || scenario == Scenario.MIXED) {
+            for (long time : schedule(random, attackStart, attackEnd, attackRate)) {
+                builder.add(time, randomAddress(random), bogusHost(random), random.nextInt(5) == 0 ? Trace.LOGIN : Trace.PING,
+                        Trace.ATTACK);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void steadyTraffic(Trace.Builder builder, SplittableRandom random, long end, int players, String host) {
+        InetAddress[] nats = new InetAddress[Math.max(1, players / (PLAYERS_PER_NAT * 10))];
+        for (int i = 0; i < nats.length; i++) {
+            nats[i] = randomAddress(random);
+        }
+        int natPlayers = Math.min(players, nats.length * PLAYERS_PER_NAT);
+        for (int player = 0; player < players; player++) {
+            InetAddress address = player < natPlayers ? nats[player % nats.length] : randomAddress(random);
+            long time = START + (long) (random.nextDouble() * SESSION_INTERVAL);
+            while (time < end) {
+                session(builder, random, time, end, address, host);
+                time += (long) (-Math.log(1 - random.nextDouble()) * SESSION_INTERVAL);
+            }
+        }
+    }
+
+    /**
+     * 打开一次服务器列表：一次ping，有时再刷新一两次或连续点击刷新，少数随后登录
+     */
+    private static void session(Trace.Builder builder, SplittableRandom random, long time, long end,
+                                InetAddress address, String host) {
+        add(builder, time, end, address, host, Trace.PING);
+        int roll = random.nextInt(100);
+        if (roll < 30) {
+            add(builder, time + 1000 + random.nextInt(2000), end, address, host, Trace.PING);
+        } else if (roll < 40) {
+            for (int i = 0; i < 3; i++) {
+                add(builder, time + 200 + random.nextInt(1800), end, address, host, Trace.PING);
+            }
+        }
+        if (random.nextInt(100) < 5) {
+            add(builder, time + 2000 + random.nextInt(8000), end, address, host, Trace.LOGIN);
+        }
+    }
+
+    private static void add(Trace.Builder builder, long time, long end, InetAddress address, String host, byte type) {
+        if (time < end) {
+            builder.add(time, address, host, type, Trace.LEGIT);
+        }
+    }
+
+    /**
+     * @return [start, end) 内以指定速率均匀分布、带少量抖动的时间点
+     */
+    private static long[] schedule(SplittableRandom random, long start, long end, int rate) {
+        if (rate <= 0) {
+            return new long[0];
+        }
+        int count = (int) Math.min(Integer.MAX_VALUE - 8, (end - start) * rate / 1000);
+        long[] times = new long[count];
+        double interval = 1000.0 / rate;
+        for (int i = 0; i < count; i++) {
+            times[i] = Math.min(end - 1, start + (long) ((i + random.nextDouble()) * interval));
+        }
+        return times;
+    }
+
+    /**
+     * @return 随机的公网地址，约两成为 IPv6
+     */
+    private static InetAddress randomAddress(SplittableRandom random) {
+        if (random.nextInt(5) == 0) {
+            byte[] raw = new byte[16];
+            raw[0] = 0x24;
+            raw[1] = 0x08;
+            for (int i = 2; i < 16; i++) {
+                raw[i] = (byte) random.nextInt(256);
+            }
+            return address(raw);
+        }
+        int a;
+        do {
+            a = 1 + random.nextInt(223);
+        } while (a == 10 || a == 127 || a == 100 || a == 169 || a == 172 || a == 192 || a == 198 || a == 203);
+        return ipv4(a, random.nextInt(256), random.nextInt(256), 1 + random.nextInt(254));
+    }
+
+    private static String bogusHost(SplittableRandom random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return "";
+            case 1:
+                return "203.0.113." + (1 + random.nextInt(254));
+            case 2:
+                return "mc" + random.nextInt(10000) + ".example.net";
+            default:
+                return Integer.toHexString(random.nextInt()) + ".invalid";
+        }
+    }
+
+    private static InetAddress ipv4(int a, int b, int c, int d) {
+        return address(new byte[]{(byte) a, (byte) b, (byte) c, (byte) d});
+    }
+
+    private static InetAddress address(byte[] raw) {
+        try {
+            return InetAddress.getByAddress(raw);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
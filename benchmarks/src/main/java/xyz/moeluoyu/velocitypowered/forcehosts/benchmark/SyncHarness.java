@@ -0,0 +1,328 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.BlocklistSnapshot;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+import xyz.moeluoyu.velocitypowered.forcehosts.rules.RuleEngine;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 启动多个插件实例，通过 Redis 或 UDP 同步阻止列表，检查同步的行为是否正确
+ * <p>
+ * 使用 Redis 时默认连接 {@link LocalRedis}，不需要安装 Redis；也可以用 --redis 指定真实的 Redis。检查项：
+ * <ul>
+ *     <li>一个实例阻止和解除阻止的IP在另一个实例上生效</li>
+ *     <li>密钥不同（Redis）或来源不在 peers 中（UDP）的消息被拒绝</li>
+ *     <li>前缀短于本机网段聚合的记录被忽略，阻止时间超过本机配置的记录被截断</li>
+ * </ul>
+ * 任一检查失败时以非零状态退出。
+ */
+public final class SyncHarness {
+    private static final String USAGE = String.join("\n",
+            "用法: java -cp benchmarks.jar " + SyncHarness.class.getName() + " [选项]",
+            "  --backend <方式>          redis 或 udp（默认 redis）",
+            "  --redis <主机:端口>       使用已有的 Redis，不指定时启动本机的 Redis 替身",
+            "  --redis-password <密码>   Redis 密码（默认不认证）",
+            "  --timeout <毫秒>          等待每条记录同步到另一个实例的最长时间（默认 5000）");
+
+    private static final String SECRET = "sync-harness-secret";
+    private static final String CHANNEL = "forcehosts:sync-harness";
+    private static final int BATCH_INTERVAL = 50;
+    // 与下面配置中最长的阻止时间（网段阻止时间）一致
+    private static final long MAX_BLOCK_MILLIS = TimeUnit.SECONDS.toMillis(300);
+    private static final String ANTI_SPAM = String.join("\n",
+            "antiSpamRefresh:",
+            "  enabled: true",
+            "  timeWindow: 10",
+            "  maxPings: 3",
+            "  blockDuration: 30",
+            "  snapshotInterval: 60",
+            "  subnets:",
+            "    enabled: true",
+            "    ipv4:",
+            "      - prefix: 24",
+            "        maxPings: 0",
+            "        escalateAfter: 4",
+            "        blockDuration: 300",
+            "    ipv6: []",
+            "  attackMode:",
+            "    enabled: false",
+            "antiSpamLogin:",
+            "  enabled: false");
+
+    private final long timeout;
+    private int failures;
+
+    private SyncHarness(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        SyncHarness harness = new SyncHarness(options.timeout);
+        if (options.backend.equals("udp")) {
+            harness.runUdp();
+        } else if (options.redis != null) {
+            System.out.printf("使用 Redis %s%n", options.redis);
+            harness.runRedis(options.redis.getHostString(), options.redis.getPort(), options.redisPassword, null);
+        } else {
+            try (LocalRedis redis = new LocalRedis(0, options.redisPassword)) {
+                System.out.printf("已启动 Redis 替身 %s%n", redis.getAddress());
+                harness.runRedis(redis.getAddress().getHostString(), redis.getAddress().getPort(),
+                        options.redisPassword, redis);
+            }
+        }
+
+        if (harness.failures > 0) {
+            System.out.printf("%d 项检查失败%n", harness.failures);
+            System.exit(1);
+        }
+        System.out.println("全部检查通过");
+    }
+
+    private void runRedis(String host, int port, String password, LocalRedis stand) throws Exception {
+        String redis = String.join("\n",
+                "  type: redis",
+                "  redis:",
+                "    host: " + host,
+                "    port: " + port,
+                "    password: '" + (password == null ? "" : password) + "'",
+                "    channel: " + CHANNEL);
+        try (Node a = new Node(redis, SECRET);
+             Node b = new Node(redis, SECRET);
+             Node forged = new Node(redis, "not-" + SECRET)) {
+            // 订阅在后台线程中进行，替身可以直接确认，真实的 Redis 只能等待
+            if (stand != null) {
+                await(() -> stand.getSubscribers(CHANNEL) == 3);
+            } else {
+                Thread.sleep(1000);
+            }
+            runChecks(a, b, forged, "密钥不同");
+        }
+    }
+
+    private void runUdp() throws Exception {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        // 与 a、b 在同一台机器上但来源地址不同，Linux 的回环网卡默认接受整个 127.0.0.0/8
+        InetAddress other = InetAddress.getByName("127.0.0.2");
+        int portA = freePort(loopback);
+        int portB = freePort(loopback);
+        int portForged = freePort(other);
+        try (Node a = new Node(udp(loopback, portA, loopback, portB), SECRET);
+             Node b = new Node(udp(loopback, portB, loopback, portA), SECRET);
+             Node forged = new Node(udp(other, portForged, loopback, portB), SECRET)) {
+            runChecks(a, b, forged, "来源不在 peers 中");
+        }
+    }
+
+    private static String udp(InetAddress bind, int port, InetAddress peer, int peerPort) {
+        return String.join("\n",
+                "  type: udp",
+                "  udp:",
+                "    bind: " + bind.getHostAddress(),
+                "    port: " + port,
+                "    peers:",
+                "      - " + peer.getHostAddress() + ":" + peerPort);
+    }
+
+    private static int freePort(InetAddress address) throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0, address)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void runChecks(Node a, Node b, Node forged, String forgedReason) throws Exception {
+        long[] ip = parse("198.51.100.7");
+        ForceHostsSettings settings = a.fixture.configManager.getSettings();
+        RuleEngine.Decision decision = settings.getRules().evaluate(ip[0], ip[1], "play.example.com");
+        for (int i = 0; i <= settings.getMaxPings(); i++) {
+            a.fixture.antiSpamManager.checkAndHandlePingSpam(settings, decision, ip[0], ip[1]);
+        }
+        check("实例 A 阻止了频繁 ping 的IP", a.isBlocked(ip));
+        a.flush();
+        check("阻止记录同步到实例 B", await(() -> b.isBlocked(ip)));
+
+        a.fixture.antiSpamManager.unblock(Cidr.parse("198.51.100.7"));
+        a.flush();
+        check("解除阻止同步到实例 B", await(() -> !b.isBlocked(ip)));
+
+        long[] forgedIp = parse("198.51.100.8");
+        long rejected = b.counter("forcehosts_sync_rejected_total");
+        forged.fixture.syncService.publishBlock(forgedIp[0], forgedIp[1], 128, System.currentTimeMillis() + 60_000);
+        forged.flush();
+        check(forgedReason + "的消息被拒绝", await(() -> b.counter("forcehosts_sync_rejected_total") > rejected)
+                && !b.isBlocked(forgedIp));
+
+        // ::/0 和 10.0.0.0/8 都短于本机的网段聚合（只有 IPv4 /24）
+        long ignored = b.counter("forcehosts_sync_ignored_total");
+        long[] network = parse("10.0.0.0");
+        a.fixture.syncService.publishBlock(0, 0, 0, System.currentTimeMillis() + 60_000);
+        a.fixture.syncService.publishBlock(network[0], network[1], IpAddresses.IPV4_PREFIX_OFFSET + 8,
+                System.currentTimeMillis() + 60_000);
+        a.flush();
+        check("过短的前缀被忽略", await(() -> b.counter("forcehosts_sync_ignored_total") >= ignored + 2)
+                && !b.isBlocked(parse("10.1.2.3")) && !b.isBlocked(parse("2001:db8::1")));
+
+        long[] longIp = parse("198.51.100.9");
+        long published = System.currentTimeMillis();
+        a.fixture.syncService.publishBlock(longIp[0], longIp[1], 128, published + TimeUnit.DAYS.toMillis(365));
+        a.flush();
+        boolean arrived = await(() -> b.isBlocked(longIp));
+        long unblockTime = b.unblockTime(longIp);
+        check("过长的阻止时间被截断到 " + TimeUnit.MILLISECONDS.toSeconds(MAX_BLOCK_MILLIS) + " 秒",
+                arrived && unblockTime > 0 && unblockTime <= System.currentTimeMillis() + MAX_BLOCK_MILLIS);
+    }
+
+    private void check(String name, boolean passed) {
+        System.out.printf("%s %s%n", passed ? "[通过]" : "[失败]", name);
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    private boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static long[] parse(String ip) {
+        byte[] raw = IpAddresses.parse(ip);
+        return new long[]{IpAddresses.high(raw), IpAddresses.low(raw)};
+    }
+
+    /**
+     * 一个启用了同步的插件实例，批量发送的定时任务由 {@link #flush()} 手动触发
+     */
+    private static final class Node implements AutoCloseable {
+        final PluginFixture fixture;
+        final VirtualClock clock = new VirtualClock(System.currentTimeMillis());
+        final VirtualScheduler scheduler = new VirtualScheduler(clock);
+
+        Node(String backend, String secret) throws IOException {
+            String sync = String.join("\n",
+                    "sync:",
+                    "  batchInterval: " + BATCH_INTERVAL,
+                    "  secret: " + secret,
+                    backend);
+            this.fixture = PluginFixture.create(List.of("play.example.com"), ANTI_SPAM + "\n" + sync);
+            fixture.syncService.start(fixture, scheduler.scheduler(), fixture.antiSpamManager::mergeRemote);
+        }
+
+        void flush() {
+            clock.advanceTo(clock.currentTimeMillis() + BATCH_INTERVAL);
+            scheduler.runDue(clock.currentTimeMillis());
+        }
+
+        boolean isBlocked(long[] ip) {
+            return fixture.antiSpamManager.isIPBlocked(fixture.configManager.getSettings(), ip[0], ip[1]);
+        }
+
+        /**
+         * 从阻止列表快照中读取单个地址的解除阻止时间，不存在时返回0
+         */
+        long unblockTime(long[] ip) throws IOException {
+            fixture.antiSpamManager.saveSnapshot();
+            long[] found = new long[1];
+            BlocklistSnapshot.read(fixture.dataDirectory.resolve("blocklist.dat"), System.currentTimeMillis(),
+                    (high, low, prefixLength, unblockTime) -> {
+                        if (high == ip[0] && low == ip[1] && prefixLength == 128) {
+                            found[0] = unblockTime;
+                        }
+                    });
+            return found[0];
+        }
+
+        long counter(String name) {
+            for (ForceHostsMetrics.External counter : fixture.metrics.getExternalCounters()) {
+                if (counter.getName().equals(name)) {
+                    return counter.getValue();
+                }
+            }
+            throw new IllegalStateException("没有计数 " + name);
+        }
+
+        @Override
+        public void close() throws IOException {
+            fixture.close();
+        }
+    }
+
+    private static final class Options {
+        String backend = "redis";
+        InetSocketAddress redis;
+        String redisPassword;
+        long timeout = 5000;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            List<String> rest = new ArrayList<>(List.of(args));
+            while (!rest.isEmpty()) {
+                String name = rest.remove(0);
+                if (rest.isEmpty()) {
+                    throw new IllegalArgumentException("缺少参数值: " + name);
+                }
+                String value = rest.remove(0);
+                switch (name) {
+                    case "--backend":
+                        options.backend = value.toLowerCase(Locale.ROOT);
+                        if (!options.backend.equals("redis") && !options.backend.equals("udp")) {
+                            throw new IllegalArgumentException("未知的同步方式: " + value);
+                        }
+                        break;
+                    case "--redis": {
+                        int colon = value.lastIndexOf(':');
+                        if (colon <= 0) {
+                            throw new IllegalArgumentException("Redis 地址格式应为 主机:端口: " + value);
+                        }
+                        options.redis = InetSocketAddress.createUnresolved(value.substring(0, colon),
+                                parseInt(name, value.substring(colon + 1)));
+                        break;
+                    }
+                    case "--redis-password":
+                        options.redisPassword = value.isEmpty() ? null : value;
+                        break;
+                    case "--timeout":
+                        options.timeout = parseInt(name, value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知的选项: " + name);
+                }
+            }
+            return options;
+        }
+
+        private static int parseInt(String name, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(name + " 不是有效的数字: " + value);
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按时间排序的连接记录：时间戳、来源地址、客户端发送的主机名、事件类型，以及合成流量的真实标签
+ * <p>
+ * 地址和主机名各自去重后按编号引用，几百万条记录也只占用几十 MB。
+ * 文件格式有两种：便于手工编辑和从其他日志转换的 CSV，以及紧凑的二进制格式，读取时按文件头自动识别。
+ */
+final class Trace {
+    static final byte PING = 0;
+    static final byte LOGIN = 1;
+
+    static final byte UNKNOWN = 0;
+    static final byte LEGIT = 1;
+    static final byte ATTACK = 2;
+
+    private static final int MAGIC = 0x46485452; // "FHTR"
+    private static final int VERSION = 1;
+
+    private final long[] times;
+    private final int[] sources;
+    private final int[] hosts;
+    // 低位为事件类型，其余为标签
+    private final byte[] flags;
+    private final InetSocketAddress[] sourcePool;
+    private final String[] hostPool;
+
+    private Trace(long[] times, int[] sources, int[] hosts, byte[] flags, InetSocketAddress[] sourcePool,
+                  String[] hostPool) {
+        this.times = times;
+        this.sources = sources;
+        this.hosts = hosts;
+        this.flags = flags;
+        this.sourcePool = sourcePool;
+        this.hostPool = hostPool;
+    }
+
+    int size() {
+        return times.length;
+    }
+
+    long time(int index) {
+        return times[index];
+    }
+
+    int sourceIndex(int index) {
+        return sources[index];
+    }
+
+    InetSocketAddress source(int index) {
+        return sourcePool[sources[index]];
+    }
+
+    int hostIndex(int index) {
+        return hosts[index];
+    }
+
+    String host(int index) {
+        return hostPool[hosts[index]];
+    }
+
+    byte type(int index) {
+        return (byte) (flags[index] & 1);
+    }
+
+    byte label(int index) {
+        return (byte) (flags[index] >> 1);
+    }
+
+    int sourceCount() {
+        return sourcePool.length;
+    }
+
+    String[] hostPool() {
+        return hostPool.clone();
+    }
+
+    /**
+     * @return 第一条到最后一条记录的时间跨度（毫秒）
+     */
+    long duration() {
+        return times.length == 0 ? 0 : times[times.length - 1] - times[0];
+    }
+
+    static String typeName(byte type) {
+        return type == LOGIN ? "login" : "ping";
+    }
+
+    static String labelName(byte label) {
+        switch (label) {
+            case LEGIT:
+                return "legit";
+            case ATTACK:
+                return "attack";
+            default:
+                return "unknown";
+        }
+    }
+
+    /**
+     * 按文件头识别格式并读取
+     */
+    static Trace read(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            in.mark(4);
+            byte[] header = in.readNBytes(4);
+            in.reset();
+            if (header.length == 4 && ((header[0] & 0xff) << 24 | (header[1] & 0xff) << 16
+                    | (header[2] & 0xff) << 8 | header[3] & 0xff) == MAGIC) {
+                return readBinary(in);
+            }
+            return readCsv(in);
+        }
+    }
+
+    /**
+     * 按扩展名选择格式写入，.csv 为 CSV，其他为二进制
+     */
+    void write(Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            if (path.getFileName().toString().endsWith(".csv")) {
+                writeCsv(out);
+            } else {
+                writeBinary(out);
+            }
+        }
+    }
+
+    /**
+     * 每行一条记录：{@code 时间戳（毫秒）,IP,主机名,ping|login[,legit|attack]}，以 # 开头的行为注释。
+     * 主机名中的逗号、百分号和控制字符写为 %XX
+     */
+    private static Trace readCsv(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Builder builder = new Builder();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length != 4 && fields.length != 5) {
+                throw new IOException("第 " + lineNumber + " 行的字段数应为 4 或 5: " + line);
+            }
+            try {
+                byte type = parseType(fields[3].trim());
+                byte label = fields.length == 5 ? parseLabel(fields[4].trim()) : UNKNOWN;
+                builder.add(Long.parseLong(fields[0].trim()), InetAddress.getByAddress(IpAddresses.parse(fields[1])),
+                        unescape(fields[2]), type, label);
+            } catch (IllegalArgumentException | IOException e) {
+                throw new IOException("第 " + lineNumber + " 行无效: " + e.getMessage(), e);
+            }
+        }
+        return builder.build();
+    }
+
+    private void writeCsv(OutputStream out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("# time,ip,host,type,label");
+        writer.newLine();
+        for (int i = 0; i < times.length; i++) {
+            writer.write(Long.toString(times[i]));
+            writer.write(',');
+            writer.write(source(i).getAddress().getHostAddress());
+            writer.write(',');
+            writer.write(escape(host(i)));
+            writer.write(',');
+            writer.write(typeName(type(i)));
+            writer.write(',');
+            writer.write(labelName(label(i)));
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    private static byte parseType(String text) {
+        switch (text) {
+            case "ping":
+                return PING;
+            case "login":
+                return LOGIN;
+            default:
+                throw new IllegalArgumentException("未知的事件类型 " + text);
+        }
+    }
+
+    private static byte parseLabel(String text) {
+        switch (text) {
+            case "legit":
+                return LEGIT;
+            case "attack":
+                return ATTACK;
+            case "":
+            case "unknown":
+                return UNKNOWN;
+            default:
+                throw new IllegalArgumentException("未知的标签 " + text);
+        }
+    }
+
+    private static String escape(String host) {
+        StringBuilder result = null;
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            boolean special = c < 0x20 || c == 0x7f || c == ',' || c == '%';
+            if (special && result == null) {
+                result = new StringBuilder(host.length() + 8).append(host, 0, i);
+            }
+            if (special) {
+                result.append('%').append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+            } else if (result != null) {
+                result.append(c);
+            }
+        }
+        return result != null ? result.toString() : host;
+    }
+
+    private static String unescape(String text) {
+        int percent = text.indexOf('%');
+        if (percent < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length()).append(text, 0, percent);
+        for (int i = percent; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' && i + 2 < text.length()) {
+                result.append((char) Integer.parseInt(text.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * 二进制格式：文件头为魔数和版本，之后每条记录依次为
+     * 与上一条的时间差（变长整数，zigzag 编码）、类型和标签（1 字节）、来源地址编号、主机名编号。
+     * 编号等于当前已出现的数量时表示新的地址或主机名，紧跟其内容：地址为长度（1 字节）和原始字节，
+     * 主机名为 UTF-8 长度（变长整数）和内容。
+     */
+    private static Trace readBinary(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("不是流量记录文件");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("不支持的流量记录版本 " + version);
+        }
+        Builder builder = new Builder();
+        List<InetAddress> addresses = new ArrayList<>();
+        List<String> hostNames = new ArrayList<>();
+        long time = 0;
+        while (true) {
+            int first = data.read();
+            if (first < 0) {
+                break;
+            }
+            long delta = readVarLong(data, first);
+            time += (delta >>> 1) ^ -(delta & 1);
+            int flag = data.readUnsignedByte();
+
+            int source = (int) readVarLong(data, data.readUnsignedByte());
+            if (source == addresses.size()) {
+                byte[] raw = new byte[data.readUnsignedByte()];
+                data.readFully(raw);
+                addresses.add(InetAddress.getByAddress(raw));
+            } else if (source > addresses.size()) {
+                throw new IOException("地址编号无效: " + source);
+            }
+            int host = (int) readVarLong(data, data.readUnsignedByte());
+            if (host == hostNames.size()) {
+                byte[] raw = new byte[(int) readVarLong(data, data.readUnsignedByte())];
+                data.readFully(raw);
+                hostNames.add(new String(raw, StandardCharsets.UTF_8));
+            } else if (host > hostNames.size()) {
+                throw new IOException("主机名编号无效: " + host);
+            }
+            builder.add(time, addresses.get(source), hostNames.get(host), (byte) (flag & 1), (byte) (flag >> 1));
+        }
+        return builder.build();
+    }
+
+    private void writeBinary(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        int nextSource = 0;
+        int nextHost = 0;
+        // 写入顺序的编号与内存中的编号不同，文件中的编号按首次出现的顺序分配
+        int[] sourceIds = new int[sourcePool.length];
+        int[] hostIds = new int[hostPool.length];
+        Arrays.fill(sourceIds, -1);
+        Arrays.fill(hostIds, -1);
+        long previous = 0;
+        for (int i = 0; i < times.length; i++) {
+            long delta = times[i] - previous;
+            previous = times[i];
+            writeVarLong(data, (delta << 1) ^ (delta >> 63));
+            data.writeByte(flags[i]);
+
+            int source = sources[i];
+            if (sourceIds[source] < 0) {
+                sourceIds[source] = nextSource++;
+                writeVarLong(data, sourceIds[source]);
+                byte[] raw = sourcePool[source].getAddress().getAddress();
+                data.writeByte(raw.length);
+                data.write(raw);
+            } else {
+                writeVarLong(data, sourceIds[source]);
+            }
+            int host = hosts[i];
+            if (hostIds[host] < 0) {
+                hostIds[host] = nextHost++;
+                writeVarLong(data, hostIds[host]);
+                byte[] raw = hostPool[host].getBytes(StandardCharsets.UTF_8);
+                writeVarLong(data, raw.length);
+                data.write(raw);
+            } else {
+                writeVarLong(data, hostIds[host]);
+            }
+        }
+        data.flush();
+    }
+
+    private static long readVarLong(DataInputStream in, int first) throws IOException {
+        long value = first & 0x7f;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            if (shift > 63) {
+                throw new IOException("变长整数过长");
+            }
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * 逐条添加记录，顺序不限，构建时按时间排序（时间相同的保持添加顺序）
+     */
+    static final class Builder {
+        private final Map<InetAddress, Integer> sourceIds = new HashMap<>();
+        private final List<InetSocketAddress> sourcePool = new ArrayList<>();
+        private final Map<String, Integer> hostIds = new HashMap<>();
+        private final List<String> hostPool = new ArrayList<>();
+        private long[] times = new long[1024];
+        private int[] sources = new int[1024];
+        private int[] hosts = new int[1024];
+        private byte[] flags = new byte[1024];
+        private int size;
+        private boolean sorted = true;
+
+        Builder add(long time, InetAddress source, String host, byte type, byte label) {
+            if (size == times.length) {
+                int capacity = size * 2;
+                times = Arrays.copyOf(times, capacity);
+                sources = Arrays.copyOf(sources, capacity);
+                hosts = Arrays.copyOf(hosts, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+            }
+            if (size > 0 && time < times[size - 1]) {
+                sorted = false;
+            }
+            times[size] = time;
+            sources[size] = sourceIds.computeIfAbsent(source, address -> {
+                sourcePool.add(new InetSocketAddress(address, 0));
+                return sourcePool.size() - 1;
+            });
+            hosts[size] = hostIds.computeIfAbsent(host, name -> {
+                hostPool.add(name);
+                return hostPool.size() - 1;
+            });
+            flags[size] = (byte) (type | label << 1);
+            size++;
+            return this;
+        }
+
+        Trace build() {
+            long[] t = Arrays.copyOf(times, size);
+            int[] s = Arrays.copyOf(sources, size);
+            int[] h = Arrays.copyOf(hosts, size);
+            byte[] f = Arrays.copyOf(flags, size);
+            if (!sorted) {
+                // 高位为相对时间、低位为原序号，一次基本类型排序即可得到稳定的顺序
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (long time : t) {
+                    min = Math.min(min, time);
+                    max = Math.max(max, time);
+                }
+                if (max - min >= 1L << 31) {
+                    throw new IllegalStateException("记录的时间跨度过大");
+                }
+                long[] keys = new long[size];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = (t[i] - min) << 32 | i;
+                }
+                Arrays.sort(keys);
+                for (int i = 0; i < size; i++) {
+                    int from = (int) keys[i];
+                    t[i] = times[from];
+                    s[i] = sources[from];
+                    h[i] = hosts[from];
+                    f[i] = flags[from];
+                }
+            }
+            return new Trace(t, s, h, f, sourcePool.toArray(new InetSocketAddress[0]), hostPool.toArray(new String[0]));
+        }
+    }
+}
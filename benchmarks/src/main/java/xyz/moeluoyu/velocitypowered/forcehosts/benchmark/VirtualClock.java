@@ -0,0 +1,28 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.TimeSource;
+
+/**
+ * 回放流量时使用的虚拟时间，由回放线程按记录的时间戳推进，只会向前
+ */
+final class VirtualClock implements TimeSource {
+    private volatile long now;
+
+    VirtualClock(long start) {
+        this.now = start;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * 推进到指定时间，早于当前时间时不变
+     */
+    void advanceTo(long time) {
+        if (time > now) {
+            now = time;
+        }
+    }
+}
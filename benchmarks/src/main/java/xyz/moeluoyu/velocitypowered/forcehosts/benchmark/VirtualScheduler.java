@@ -0,0 +1,147 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.benchmark;
+
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 用动态代理模拟 Velocity 的调度器，定时任务不在后台线程执行，而是由回放线程按虚拟时间调用 {@link #runDue(long)}
+ * 插件的定时清理、快照和攻击模式检测因此与回放的流量使用同一个时间
+ */
+final class VirtualScheduler {
+    private final VirtualClock clock;
+    private final List<Task> tasks = new ArrayList<>();
+
+    VirtualScheduler(VirtualClock clock) {
+        this.clock = clock;
+    }
+
+    Scheduler scheduler() {
+        return (Scheduler) Proxy.newProxyInstance(VirtualScheduler.class.getClassLoader(),
+                new Class<?>[]{Scheduler.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "buildTask":
+                            return builder(args[0], args[1]);
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "VirtualScheduler";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * 按时间顺序执行到指定时间为止到期的任务，执行期间虚拟时间为任务的计划时间
+     */
+    void runDue(long now) {
+        while (true) {
+            Task next = null;
+            long due;
+            synchronized (tasks) {
+                for (Task task : tasks) {
+                    if (!task.cancelled && task.nextRun <= now && (next == null || task.nextRun < next.nextRun)) {
+                        next = task;
+                    }
+                }
+                if (next == null) {
+                    return;
+                }
+                due = next.nextRun;
+                if (next.period > 0) {
+                    next.nextRun += next.period;
+                } else {
+                    next.cancelled = true;
+                }
+            }
+            clock.advanceTo(due);
+            next.body.accept(next.handle);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Scheduler.TaskBuilder builder(Object plugin, Object body) {
+        Consumer<ScheduledTask> consumer = body instanceof Runnable
+                ? task -> ((Runnable) body).run() : (Consumer<ScheduledTask>) body;
+        long[] delay = new long[1];
+        long[] period = new long[1];
+        return (Scheduler.TaskBuilder) Proxy.newProxyInstance(VirtualScheduler.class.getClassLoader(),
+                new Class<?>[]{Scheduler.TaskBuilder.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "delay":
+                            delay[0] = toMillis(args);
+                            return proxy;
+                        case "repeat":
+                            period[0] = toMillis(args);
+                            return proxy;
+                        case "clearDelay":
+                            delay[0] = 0;
+                            return proxy;
+                        case "clearRepeat":
+                            period[0] = 0;
+                            return proxy;
+                        case "schedule":
+                            return schedule(plugin, consumer, delay[0], period[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static long toMillis(Object[] args) {
+        if (args.length == 1) {
+            return ((Duration) args[0]).toMillis();
+        }
+        return ((TimeUnit) args[1]).toMillis((Long) args[0]);
+    }
+
+    private ScheduledTask schedule(Object plugin, Consumer<ScheduledTask> body, long delay, long period) {
+        Task task = new Task(body, clock.currentTimeMillis() + delay, period);
+        task.handle = (ScheduledTask) Proxy.newProxyInstance(VirtualScheduler.class.getClassLoader(),
+                new Class<?>[]{ScheduledTask.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "plugin":
+                            return plugin;
+                        case "cancel":
+                            synchronized (tasks) {
+                                task.cancelled = true;
+                                tasks.remove(task);
+                            }
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        synchronized (tasks) {
+            tasks.add(task);
+        }
+        return task.handle;
+    }
+
+    private static final class Task {
+        final Consumer<ScheduledTask> body;
+        final long period;
+        long nextRun;
+        boolean cancelled;
+        ScheduledTask handle;
+
+        Task(Consumer<ScheduledTask> body, long nextRun, long period) {
+            this.body = body;
+            this.nextRun = nextRun;
+            this.period = period;
+        }
+    }
+}
@@ -7,7 +7,16 @@ import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.ProxyServer;
 import org.slf4j.Logger;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ConfigWatcher;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.TimeSource;
+import xyz.moeluoyu.velocitypowered.forcehosts.log.AuditLog;
+import xyz.moeluoyu.velocitypowered.forcehosts.log.SecurityLogger;
 import xyz.moeluoyu.velocitypowered.forcehosts.manager.*;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.MetricsExporter;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.OffenderTracker;
+import xyz.moeluoyu.velocitypowered.forcehosts.ping.PingResponseCache;
+import xyz.moeluoyu.velocitypowered.forcehosts.sync.BlocklistSyncService;
 
 import javax.inject.Inject;
 import java.nio.file.Path;
@@ -26,6 +35,16 @@ public class ForceHosts {
     private final MessageManager messageManager;
     private final EventManager eventManager;
     private final AntiSpamManager antiSpamManager;
+    private final LoginQuotaManager loginQuotaManager;
+    private final SecurityLogger securityLogger;
+    private final AuditLog auditLog;
+    private final ForceHostsMetrics metrics;
+    private final MetricsExporter metricsExporter;
+    private final OffenderTracker offenderTracker;
+    private final ConfigWatcher configWatcher;
+    private final BlocklistSyncService syncService;
+    // 所有限流、阻止、日志和统计使用的时间
+    private final TimeSource clock = TimeSource.SYSTEM;
 
     @Inject
     public ForceHosts(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
@@ -33,16 +52,33 @@ public class ForceHosts {
         this.logger = logger;
         this.configManager = new ConfigManager(logger, dataDirectory);
         this.messageManager = new MessageManager(logger, dataDirectory);
-        this.antiSpamManager = new AntiSpamManager(logger, messageManager, configManager);
-        this.eventManager = new EventManager(logger, configManager, messageManager, antiSpamManager);
+        this.offenderTracker = new OffenderTracker(configManager, clock);
+        this.auditLog = new AuditLog(logger, dataDirectory);
+        this.securityLogger = new SecurityLogger(logger, configManager, messageManager, offenderTracker, auditLog, clock);
+        this.metrics = new ForceHostsMetrics();
+        this.syncService = new BlocklistSyncService(logger, configManager, metrics);
+        this.antiSpamManager = new AntiSpamManager(logger, configManager, dataDirectory, securityLogger, metrics, syncService,
+                clock);
+        this.loginQuotaManager = new LoginQuotaManager(configManager, metrics, clock);
+        PingResponseCache pingResponses = new PingResponseCache(logger, configManager, messageManager, dataDirectory);
+        this.eventManager = new EventManager(configManager, messageManager, antiSpamManager, loginQuotaManager,
+                securityLogger, metrics, pingResponses);
+        this.metricsExporter = new MetricsExporter(logger, configManager, metrics, dataDirectory);
+        this.configWatcher = new ConfigWatcher(logger, configManager, messageManager, dataDirectory);
     }
 
     @Subscribe
     public void onProxyInitialization(ProxyInitializeEvent event) {
         messageManager.loadMessages(); // 加载消息文件
         configManager.loadConfig(); // 加载配置文件
+        securityLogger.start(); // 启动安全日志线程
+        antiSpamManager.loadSnapshot(); // 恢复重启前的阻止记录
+        syncService.start(this, server.getScheduler(), antiSpamManager::mergeRemote); // 按配置与其他代理同步阻止列表
+        antiSpamManager.startCleanupTask(this, server.getScheduler()); // 启动定时清理任务
+        metricsExporter.start(this, server.getScheduler()); // 按配置启动指标导出
         server.getEventManager().register(this, eventManager); // 注册事件处理器
         registerCommand(); // 注册命令
+        configWatcher.start(); // 监听配置文件变化并自动重载
         logger.info(messageManager.parseColor(messageManager.getMessageOrDefault("plugin-initialized", "&aForceHosts插件已初始化！")));
     }
 
@@ -52,13 +88,20 @@ public class ForceHosts {
                         .aliases("fh")
                         .plugin(this)
                         .build(),
-                new CommandManager(configManager, messageManager, logger)
+                new CommandManager(configManager, messageManager, metrics, antiSpamManager, loginQuotaManager, offenderTracker,
+                        auditLog, logger, clock)
         );
     }
     
     @Subscribe
     public void onProxyShutdown(ProxyShutdownEvent event) {
+        configWatcher.stop(); // 停止监听配置文件
+        antiSpamManager.stopCleanupTask(); // 停止定时清理任务
+        syncService.stop(); // 发送剩余的阻止记录并断开同步
+        metricsExporter.stop(); // 停止指标导出
         antiSpamManager.cleanupExpiredBlocks(); // 清理过期的阻止IP
+        antiSpamManager.saveSnapshot(); // 保存阻止列表，重启后恢复
+        securityLogger.stop(); // 输出剩余日志并停止安全日志线程
         logger.info(messageManager.parseColor(messageManager.getMessageOrDefault("plugin-shutdown", "&aForceHosts插件已关闭！")));
     }
 }
\ No newline at end of file
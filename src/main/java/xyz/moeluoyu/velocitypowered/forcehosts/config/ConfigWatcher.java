@@ -0,0 +1,156 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.config;
+
+import org.slf4j.Logger;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.ConfigManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.MessageManager;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监听配置文件变化并自动重载
+ * <p>
+ * 后台线程通过 {@link WatchService} 监听数据目录，文件最后一次修改后等待 autoReload.delay 毫秒再重载，
+ * 编辑器分多次写入只会触发一次重载。解析和校验都在后台线程进行，文件内容未变化时跳过，
+ * 格式错误时保留原有配置；新配置解析完成后整体替换，事件线程不会被阻塞，也不会看到一半的配置。
+ */
+public class ConfigWatcher {
+    private static final String CONFIG_FILE = "config.yml";
+    private static final String MESSAGES_FILE = "messages.yml";
+
+    private final Logger logger;
+    private final ConfigManager configManager;
+    private final MessageManager messageManager;
+    private final Path dataDirectory;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    public ConfigWatcher(Logger logger, ConfigManager configManager, MessageManager messageManager, Path dataDirectory) {
+        this.logger = logger;
+        this.configManager = configManager;
+        this.messageManager = messageManager;
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * 启动监听线程
+     */
+    public synchronized void start() {
+        if (watcher != null) {
+            return;
+        }
+        try {
+            watchService = dataDirectory.getFileSystem().newWatchService();
+            dataDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("无法监听配置文件变化，自动重载不可用: {}", e.getMessage());
+            closeWatchService();
+            return;
+        }
+        watcher = new Thread(this::run, "ForceHosts-ConfigWatcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * 停止监听线程
+     */
+    public synchronized void stop() {
+        if (watcher == null) {
+            return;
+        }
+        closeWatchService();
+        watcher.interrupt();
+        try {
+            watcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        watcher = null;
+    }
+
+    private void closeWatchService() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("关闭配置文件监听失败: {}", e.getMessage());
+        }
+        watchService = null;
+    }
+
+    private void run() {
+        WatchService service = watchService;
+        boolean configChanged = false;
+        boolean messagesChanged = false;
+        long deadline = 0;
+        try {
+            while (true) {
+                WatchKey key;
+                if (configChanged || messagesChanged) {
+                    long remaining = deadline - System.nanoTime();
+                    key = remaining > 0 ? service.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (key == null) {
+                        // 等待期内没有新的修改
+                        reload(configChanged, messagesChanged);
+                        configChanged = false;
+                        messagesChanged = false;
+                        continue;
+                    }
+                } else {
+                    key = service.take();
+                }
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        configChanged = true;
+                        messagesChanged = true;
+                    } else {
+                        String fileName = event.context().toString();
+                        if (CONFIG_FILE.equals(fileName)) {
+                            configChanged = true;
+                        } else if (MESSAGES_FILE.equals(fileName)) {
+                            messagesChanged = true;
+                        } else {
+                            continue;
+                        }
+                    }
+                    deadline = System.nanoTime()
+                            + TimeUnit.MILLISECONDS.toNanos(configManager.getSettings().getAutoReloadDelay());
+                }
+                if (!key.reset()) {
+                    logger.warn("插件数据目录已不可访问，停止监听配置文件变化");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 插件关闭
+        }
+    }
+
+    private void reload(boolean configChanged, boolean messagesChanged) {
+        if (!configManager.getSettings().isAutoReload()) {
+            return;
+        }
+        try {
+            // 与重载命令一致，先加载消息文件再加载配置文件
+            if (messagesChanged && messageManager.reloadIfChanged()) {
+                logger.info("检测到 {} 已修改，已自动重载", MESSAGES_FILE);
+            }
+            if (configChanged && configManager.reloadIfChanged()) {
+                logger.info("检测到 {} 已修改，已自动重载", CONFIG_FILE);
+            }
+        } catch (RuntimeException e) {
+            logger.error("自动重载配置失败", e);
+        }
+    }
+}
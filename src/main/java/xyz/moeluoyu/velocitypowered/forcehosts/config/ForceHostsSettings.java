@@ -0,0 +1,945 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.config;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import xyz.moeluoyu.velocitypowered.forcehosts.host.HostMatcher;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+import xyz.moeluoyu.velocitypowered.forcehosts.rules.RuleEngine;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次完整加载得到的不可变配置快照
+ * 重载时先构建新的快照，再一次性替换旧快照，事件线程不会看到只应用了一半的配置
+ */
+public final class ForceHostsSettings {
+    private static final ForceHostsSettings DEFAULTS = builder().build();
+
+    private final List<String> allowedHosts;
+    private final HostMatcher hostMatcher;
+    private final List<Cidr> trustedNetworks;
+    private final List<Cidr> deniedNetworks;
+    private final Map<String, HostPolicy> hostPolicies;
+    private final RuleEngine rules;
+    private final boolean logPing;
+    private final boolean logConnection;
+
+    // 防频繁刷新配置
+    private final boolean antiSpamEnabled;
+    private final int timeWindow;
+    private final int maxPings;
+    private final int blockDuration;
+    private final boolean logBlock;
+    private final int maxEntries;
+    private final int cleanupInterval;
+    private final int snapshotInterval;
+    private final boolean sketchMode;
+    private final int sketchWidth;
+    private final int sketchDepth;
+    private final boolean subnetsEnabled;
+    private final int subnetEscalationWindow;
+    private final List<SubnetTier> subnetTiers;
+    private final boolean attackModeEnabled;
+    private final int attackEnterRate;
+    private final int attackExitRate;
+    private final int attackExitDelay;
+    private final int attackTimeWindow;
+    private final int attackMaxPings;
+    private final int attackBlockDuration;
+    private final boolean attackSubnets;
+
+    // 登录频率限制配置
+    private final boolean loginLimitEnabled;
+    private final int loginTimeWindow;
+    private final int maxLogins;
+    private final int loginBlockDuration;
+    private final boolean logLoginBlock;
+
+    // 安全日志配置
+    private final int logQueueSize;
+    private final int logSummaryInterval;
+    private final int logDetailLimit;
+
+    // 攻击来源统计配置
+    private final int offenderCapacity;
+    private final int offenderHalfLife;
+
+    // 审计日志配置
+    private final boolean auditEnabled;
+    private final int auditMaxFileSize;
+    private final int auditRotateInterval;
+    private final int auditMaxFiles;
+
+    // 指标配置
+    private final boolean metricsLatency;
+    private final boolean prometheusEnabled;
+    private final String prometheusBind;
+    private final int prometheusPort;
+    private final boolean metricsFileEnabled;
+    private final String metricsFilePath;
+    private final int metricsFileInterval;
+    private final boolean autoReload;
+    private final int autoReloadDelay;
+    private final Map<String, PingResponse> pingResponses;
+    private final PingResponse decoyResponse;
+    private final String syncType;
+    private final int syncBatchInterval;
+    private final String syncSecret;
+    private final String syncUdpBind;
+    private final int syncUdpPort;
+    private final List<String> syncUdpPeers;
+    private final String syncUdpGroup;
+    private final String syncUdpInterface;
+    private final String syncRedisHost;
+    private final int syncRedisPort;
+    private final String syncRedisPassword;
+    private final String syncRedisChannel;
+
+    private ForceHostsSettings(Builder builder) {
+        this.allowedHosts = ImmutableList.copyOf(builder.allowedHosts);
+        this.hostMatcher = builder.hostMatcher;
+        this.trustedNetworks = ImmutableList.copyOf(builder.trustedNetworks);
+        this.deniedNetworks = ImmutableList.copyOf(builder.deniedNetworks);
+        this.hostPolicies = ImmutableMap.copyOf(builder.hostPolicies);
+        this.rules = builder.rules != null ? builder.rules
+                : RuleEngine.compile(hostMatcher, allowedHosts, trustedNetworks, deniedNetworks, hostPolicies);
+        this.logPing = builder.logPing;
+        this.logConnection = builder.logConnection;
+        this.antiSpamEnabled = builder.antiSpamEnabled;
+        this.timeWindow = builder.timeWindow;
+        this.maxPings = builder.maxPings;
+        this.blockDuration = builder.blockDuration;
+        this.logBlock = builder.logBlock;
+        this.maxEntries = builder.maxEntries;
+        this.cleanupInterval = builder.cleanupInterval;
+        this.snapshotInterval = builder.snapshotInterval;
+        this.sketchMode = builder.sketchMode;
+        this.sketchWidth = builder.sketchWidth;
+        this.sketchDepth = builder.sketchDepth;
+        this.subnetsEnabled = builder.subnetsEnabled;
+        this.subnetEscalationWindow = builder.subnetEscalationWindow;
+        this.subnetTiers = ImmutableList.copyOf(builder.subnetTiers);
+        this.attackModeEnabled = builder.attackModeEnabled;
+        this.attackEnterRate = builder.attackEnterRate;
+        this.attackExitRate = builder.attackExitRate;
+        this.attackExitDelay = builder.attackExitDelay;
+        this.attackTimeWindow = builder.attackTimeWindow;
+        this.attackMaxPings = builder.attackMaxPings;
+        this.attackBlockDuration = builder.attackBlockDuration;
+        this.attackSubnets = builder.attackSubnets;
+        this.loginLimitEnabled = builder.loginLimitEnabled;
+        this.loginTimeWindow = builder.loginTimeWindow;
+        this.maxLogins = builder.maxLogins;
+        this.loginBlockDuration = builder.loginBlockDuration;
+        this.logLoginBlock = builder.logLoginBlock;
+        this.logQueueSize = builder.logQueueSize;
+        this.logSummaryInterval = builder.logSummaryInterval;
+        this.logDetailLimit = builder.logDetailLimit;
+        this.offenderCapacity = builder.offenderCapacity;
+        this.offenderHalfLife = builder.offenderHalfLife;
+        this.auditEnabled = builder.auditEnabled;
+        this.auditMaxFileSize = builder.auditMaxFileSize;
+        this.auditRotateInterval = builder.auditRotateInterval;
+        this.auditMaxFiles = builder.auditMaxFiles;
+        this.metricsLatency = builder.metricsLatency;
+        this.prometheusEnabled = builder.prometheusEnabled;
+        this.prometheusBind = builder.prometheusBind;
+        this.prometheusPort = builder.prometheusPort;
+        this.metricsFileEnabled = builder.metricsFileEnabled;
+        this.metricsFilePath = builder.metricsFilePath;
+        this.metricsFileInterval = builder.metricsFileInterval;
+        this.autoReload = builder.autoReload;
+        this.autoReloadDelay = builder.autoReloadDelay;
+        this.pingResponses = ImmutableMap.copyOf(builder.pingResponses);
+        this.decoyResponse = builder.decoyResponse;
+        this.syncType = builder.syncType;
+        this.syncBatchInterval = builder.syncBatchInterval;
+        this.syncSecret = builder.syncSecret;
+        this.syncUdpBind = builder.syncUdpBind;
+        this.syncUdpPort = builder.syncUdpPort;
+        this.syncUdpPeers = ImmutableList.copyOf(builder.syncUdpPeers);
+        this.syncUdpGroup = builder.syncUdpGroup;
+        this.syncUdpInterface = builder.syncUdpInterface;
+        this.syncRedisHost = builder.syncRedisHost;
+        this.syncRedisPort = builder.syncRedisPort;
+        this.syncRedisPassword = builder.syncRedisPassword;
+        this.syncRedisChannel = builder.syncRedisChannel;
+    }
+
+    /**
+     * @return 全部使用默认值的配置
+     */
+    public static ForceHostsSettings defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<String> getAllowedHosts() {
+        return allowedHosts;
+    }
+
+    public HostMatcher getHostMatcher() {
+        return hostMatcher;
+    }
+
+    public List<Cidr> getTrustedNetworks() {
+        return trustedNetworks;
+    }
+
+    public List<Cidr> getDeniedNetworks() {
+        return deniedNetworks;
+    }
+
+    /**
+     * @return 主机名规则的策略，键为规范化后的规则
+     */
+    public Map<String, HostPolicy> getHostPolicies() {
+        return hostPolicies;
+    }
+
+    /**
+     * @return 由主机名、网段和策略编译的访问规则
+     */
+    public RuleEngine getRules() {
+        return rules;
+    }
+
+    public boolean isLogPing() {
+        return logPing;
+    }
+
+    public boolean isLogConnection() {
+        return logConnection;
+    }
+
+    public boolean isAntiSpamEnabled() {
+        return antiSpamEnabled;
+    }
+
+    public int getTimeWindow() {
+        return timeWindow;
+    }
+
+    public int getMaxPings() {
+        return maxPings;
+    }
+
+    public int getBlockDuration() {
+        return blockDuration;
+    }
+
+    public boolean isLogBlock() {
+        return logBlock;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public int getCleanupInterval() {
+        return cleanupInterval;
+    }
+
+    /**
+     * @return 保存阻止列表快照的间隔（秒），0为不保存
+     */
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * @return ping次数是否使用 Count-Min Sketch 估算（mode: sketch），否则按IP精确计数
+     */
+    public boolean isSketchMode() {
+        return sketchMode;
+    }
+
+    /**
+     * @return sketch 模式每行的计数器数量
+     */
+    public int getSketchWidth() {
+        return sketchWidth;
+    }
+
+    /**
+     * @return sketch 模式的行数
+     */
+    public int getSketchDepth() {
+        return sketchDepth;
+    }
+
+    public boolean isSubnetsEnabled() {
+        return subnetsEnabled;
+    }
+
+    public int getSubnetEscalationWindow() {
+        return subnetEscalationWindow;
+    }
+
+    /**
+     * @return IPv4 和 IPv6 的网段聚合配置
+     */
+    public List<SubnetTier> getSubnetTiers() {
+        return subnetTiers;
+    }
+
+    public boolean isAttackModeEnabled() {
+        return attackModeEnabled;
+    }
+
+    /**
+     * @return 进入攻击模式的全局ping速率（次/秒）
+     */
+    public int getAttackEnterRate() {
+        return attackEnterRate;
+    }
+
+    /**
+     * @return 退出攻击模式的全局ping速率（次/秒）
+     */
+    public int getAttackExitRate() {
+        return attackExitRate;
+    }
+
+    /**
+     * @return 速率需要持续低于退出阈值的时间（秒）
+     */
+    public int getAttackExitDelay() {
+        return attackExitDelay;
+    }
+
+    public int getAttackTimeWindow() {
+        return attackTimeWindow;
+    }
+
+    public int getAttackMaxPings() {
+        return attackMaxPings;
+    }
+
+    public int getAttackBlockDuration() {
+        return attackBlockDuration;
+    }
+
+    /**
+     * @return 攻击模式下是否按网段聚合，即使平时未启用
+     */
+    public boolean isAttackSubnets() {
+        return attackSubnets;
+    }
+
+    public boolean isLoginLimitEnabled() {
+        return loginLimitEnabled;
+    }
+
+    public int getLoginTimeWindow() {
+        return loginTimeWindow;
+    }
+
+    public int getMaxLogins() {
+        return maxLogins;
+    }
+
+    public int getLoginBlockDuration() {
+        return loginBlockDuration;
+    }
+
+    public boolean isLogLoginBlock() {
+        return logLoginBlock;
+    }
+
+    public int getLogQueueSize() {
+        return logQueueSize;
+    }
+
+    public int getLogSummaryInterval() {
+        return logSummaryInterval;
+    }
+
+    public int getLogDetailLimit() {
+        return logDetailLimit;
+    }
+
+    public int getOffenderCapacity() {
+        return offenderCapacity;
+    }
+
+    public int getOffenderHalfLife() {
+        return offenderHalfLife;
+    }
+
+    public boolean isAuditEnabled() {
+        return auditEnabled;
+    }
+
+    /**
+     * @return 单个审计日志文件的大小上限（MB）
+     */
+    public int getAuditMaxFileSize() {
+        return auditMaxFileSize;
+    }
+
+    /**
+     * @return 审计日志文件的轮换间隔（秒）
+     */
+    public int getAuditRotateInterval() {
+        return auditRotateInterval;
+    }
+
+    public int getAuditMaxFiles() {
+        return auditMaxFiles;
+    }
+
+    public boolean isMetricsLatency() {
+        return metricsLatency;
+    }
+
+    public boolean isPrometheusEnabled() {
+        return prometheusEnabled;
+    }
+
+    public String getPrometheusBind() {
+        return prometheusBind;
+    }
+
+    public int getPrometheusPort() {
+        return prometheusPort;
+    }
+
+    public boolean isMetricsFileEnabled() {
+        return metricsFileEnabled;
+    }
+
+    /**
+     * @return 指标文件路径，相对于插件数据目录
+     */
+    public String getMetricsFilePath() {
+        return metricsFilePath;
+    }
+
+    public int getMetricsFileInterval() {
+        return metricsFileInterval;
+    }
+
+    public boolean isAutoReload() {
+        return autoReload;
+    }
+
+    /**
+     * @return 配置文件最后一次修改后等待多久再重载（毫秒）
+     */
+    public int getAutoReloadDelay() {
+        return autoReloadDelay;
+    }
+
+    /**
+     * @return 按主机名规则配置的ping响应，键为规范化后的规则
+     */
+    public Map<String, PingResponse> getPingResponses() {
+        return pingResponses;
+    }
+
+    /**
+     * @return 对无效主机名返回的诱饵响应，未启用时为null
+     */
+    public PingResponse getDecoyResponse() {
+        return decoyResponse;
+    }
+
+    /**
+     * @return 同步方式：none、udp 或 redis
+     */
+    public String getSyncType() {
+        return syncType;
+    }
+
+    /**
+     * @return 批量发送的间隔（毫秒）
+     */
+    public int getSyncBatchInterval() {
+        return syncBatchInterval;
+    }
+
+    /**
+     * @return 校验同步消息的共享密钥，为空时不校验
+     */
+    public String getSyncSecret() {
+        return syncSecret;
+    }
+
+    public String getSyncUdpBind() {
+        return syncUdpBind;
+    }
+
+    public int getSyncUdpPort() {
+        return syncUdpPort;
+    }
+
+    /**
+     * @return 其他代理的地址（host:port）
+     */
+    public List<String> getSyncUdpPeers() {
+        return syncUdpPeers;
+    }
+
+    /**
+     * @return 组播地址，为空时不使用组播
+     */
+    public String getSyncUdpGroup() {
+        return syncUdpGroup;
+    }
+
+    /**
+     * @return 加入组播使用的网卡名称，为空时自动选择
+     */
+    public String getSyncUdpInterface() {
+        return syncUdpInterface;
+    }
+
+    public String getSyncRedisHost() {
+        return syncRedisHost;
+    }
+
+    public int getSyncRedisPort() {
+        return syncRedisPort;
+    }
+
+    public String getSyncRedisPassword() {
+        return syncRedisPassword;
+    }
+
+    public String getSyncRedisChannel() {
+        return syncRedisChannel;
+    }
+
+    public static final class Builder {
+        private List<String> allowedHosts = ImmutableList.of();
+        private HostMatcher hostMatcher = HostMatcher.empty();
+        private List<Cidr> trustedNetworks = ImmutableList.of();
+        private List<Cidr> deniedNetworks = ImmutableList.of();
+        private Map<String, HostPolicy> hostPolicies = ImmutableMap.of();
+        // 为null时由主机名、网段和策略编译
+        private RuleEngine rules = null;
+        private boolean logPing = true; // 默认记录ping日志
+        private boolean logConnection = true; // 默认记录连接日志
+        private boolean antiSpamEnabled = true;
+        private int timeWindow = 10; // 时间窗口（秒）
+        private int maxPings = 5; // 最大ping次数
+        private int blockDuration = 60; // 阻止时间（秒）
+        private boolean logBlock = true; // 默认记录防频繁刷新日志
+        private int maxEntries = 100000; // 每类记录最多跟踪的IP数量
+        private int cleanupInterval = 30; // 定时清理间隔（秒）
+        private int snapshotInterval = 60; // 默认60秒保存一次阻止列表
+        private boolean sketchMode = false; // 默认按IP精确计数
+        private int sketchWidth = 65536; // sketch 每行的计数器数量
+        private int sketchDepth = 4; // sketch 的行数
+        private boolean subnetsEnabled = false; // 默认不按网段聚合
+        private int subnetEscalationWindow = 60; // 统计网段内被阻止IP数量的时间窗口（秒）
+        private boolean attackModeEnabled = false;
+        private int attackEnterRate = 500; // 每秒500次ping进入攻击模式
+        private int attackExitRate = 250; // 每秒低于250次ping时开始计时退出
+        private int attackExitDelay = 60;
+        private int attackTimeWindow = 30;
+        private int attackMaxPings = 3;
+        private int attackBlockDuration = 600;
+        private boolean attackSubnets = true;
+        private List<SubnetTier> subnetTiers = ImmutableList.of();
+        private boolean loginLimitEnabled = false; // 默认不启用登录频率限制，由自带的配置文件开启
+        private int loginTimeWindow = 10; // 默认10秒
+        private int maxLogins = 5; // 默认5次
+        private int loginBlockDuration = 60; // 默认60秒
+        private boolean logLoginBlock = true;
+        private int logQueueSize = 8192; // 日志队列容量
+        private int logSummaryInterval = 5; // 日志统计周期（秒）
+        private int logDetailLimit = 5; // 每个周期内每类日志逐条输出的条数
+        private int offenderCapacity = 1000; // 每类最多统计的来源数量
+        private int offenderHalfLife = 300; // 计数的半衰期（秒）
+        private boolean auditEnabled = true;
+        private int auditMaxFileSize = 16; // 单个文件最大16MB
+        private int auditRotateInterval = 3600; // 每小时轮换一次
+        private int auditMaxFiles = 168; // 保留最近168个文件
+        private boolean metricsLatency = true; // 默认统计事件处理耗时
+        private boolean prometheusEnabled = false;
+        private String prometheusBind = "127.0.0.1"; // 默认只允许本机访问
+        private int prometheusPort = 9225;
+        private boolean metricsFileEnabled = false;
+        private String metricsFilePath = "metrics.prom";
+        private int metricsFileInterval = 15; // 默认15秒写入一次
+        private boolean autoReload = true; // 默认自动重载
+        private int autoReloadDelay = 500; // 默认等待500毫秒
+        private Map<String, PingResponse> pingResponses = ImmutableMap.of();
+        private PingResponse decoyResponse = null; // 默认直接拒绝
+        private String syncType = "none"; // 默认不同步
+        private int syncBatchInterval = 200; // 默认每200毫秒发送一批
+        private String syncSecret = "";
+        private String syncUdpBind = "0.0.0.0";
+        private int syncUdpPort = 9226;
+        private List<String> syncUdpPeers = ImmutableList.of();
+        private String syncUdpGroup = "";
+        private String syncUdpInterface = "";
+        private String syncRedisHost = "127.0.0.1";
+        private int syncRedisPort = 6379;
+        private String syncRedisPassword = "";
+        private String syncRedisChannel = "forcehosts:blocklist";
+
+        private Builder() {
+        }
+
+        /**
+         * 设置允许的主机名并编译匹配器
+         * @param allowedHosts 主机名规则
+         * @throws java.util.regex.PatternSyntaxException 正则规则无效时抛出
+         */
+        public Builder allowedHosts(List<String> allowedHosts) {
+            this.hostMatcher = HostMatcher.compile(allowedHosts);
+            this.allowedHosts = allowedHosts;
+            return this;
+        }
+
+        /**
+         * 设置允许的主机名，沿用已编译的匹配器
+         * @param allowedHosts 主机名规则
+         * @param hostMatcher 由相同规则编译的匹配器
+         */
+        public Builder allowedHosts(List<String> allowedHosts, HostMatcher hostMatcher) {
+            this.hostMatcher = hostMatcher;
+            this.allowedHosts = allowedHosts;
+            return this;
+        }
+
+        public Builder trustedNetworks(List<Cidr> trustedNetworks) {
+            this.trustedNetworks = trustedNetworks;
+            return this;
+        }
+
+        public Builder deniedNetworks(List<Cidr> deniedNetworks) {
+            this.deniedNetworks = deniedNetworks;
+            return this;
+        }
+
+        public Builder hostPolicies(Map<String, HostPolicy> hostPolicies) {
+            this.hostPolicies = hostPolicies;
+            return this;
+        }
+
+        /**
+         * 沿用已编译的访问规则，必须由相同的主机名、网段和策略编译
+         */
+        public Builder rules(RuleEngine rules) {
+            this.rules = rules;
+            return this;
+        }
+
+        public Builder logPing(boolean logPing) {
+            this.logPing = logPing;
+            return this;
+        }
+
+        public Builder logConnection(boolean logConnection) {
+            this.logConnection = logConnection;
+            return this;
+        }
+
+        public Builder antiSpamEnabled(boolean antiSpamEnabled) {
+            this.antiSpamEnabled = antiSpamEnabled;
+            return this;
+        }
+
+        public Builder timeWindow(int timeWindow) {
+            this.timeWindow = timeWindow;
+            return this;
+        }
+
+        public Builder maxPings(int maxPings) {
+            this.maxPings = maxPings;
+            return this;
+        }
+
+        public Builder blockDuration(int blockDuration) {
+            this.blockDuration = blockDuration;
+            return this;
+        }
+
+        public Builder logBlock(boolean logBlock) {
+            this.logBlock = logBlock;
+            return this;
+        }
+
+        public Builder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public Builder cleanupInterval(int cleanupInterval) {
+            this.cleanupInterval = cleanupInterval;
+            return this;
+        }
+
+        public Builder snapshotInterval(int snapshotInterval) {
+            this.snapshotInterval = snapshotInterval;
+            return this;
+        }
+
+        public Builder sketchMode(boolean sketchMode) {
+            this.sketchMode = sketchMode;
+            return this;
+        }
+
+        public Builder sketchWidth(int sketchWidth) {
+            this.sketchWidth = sketchWidth;
+            return this;
+        }
+
+        public Builder sketchDepth(int sketchDepth) {
+            this.sketchDepth = sketchDepth;
+            return this;
+        }
+
+        public Builder subnetsEnabled(boolean subnetsEnabled) {
+            this.subnetsEnabled = subnetsEnabled;
+            return this;
+        }
+
+        public Builder subnetEscalationWindow(int subnetEscalationWindow) {
+            this.subnetEscalationWindow = subnetEscalationWindow;
+            return this;
+        }
+
+        public Builder subnetTiers(List<SubnetTier> subnetTiers) {
+            this.subnetTiers = subnetTiers;
+            return this;
+        }
+
+        public Builder attackModeEnabled(boolean attackModeEnabled) {
+            this.attackModeEnabled = attackModeEnabled;
+            return this;
+        }
+
+        public Builder attackEnterRate(int attackEnterRate) {
+            this.attackEnterRate = attackEnterRate;
+            return this;
+        }
+
+        public Builder attackExitRate(int attackExitRate) {
+            this.attackExitRate = attackExitRate;
+            return this;
+        }
+
+        public Builder attackExitDelay(int attackExitDelay) {
+            this.attackExitDelay = attackExitDelay;
+            return this;
+        }
+
+        public Builder attackTimeWindow(int attackTimeWindow) {
+            this.attackTimeWindow = attackTimeWindow;
+            return this;
+        }
+
+        public Builder attackMaxPings(int attackMaxPings) {
+            this.attackMaxPings = attackMaxPings;
+            return this;
+        }
+
+        public Builder attackBlockDuration(int attackBlockDuration) {
+            this.attackBlockDuration = attackBlockDuration;
+            return this;
+        }
+
+        public Builder attackSubnets(boolean attackSubnets) {
+            this.attackSubnets = attackSubnets;
+            return this;
+        }
+
+        public Builder loginLimitEnabled(boolean loginLimitEnabled) {
+            this.loginLimitEnabled = loginLimitEnabled;
+            return this;
+        }
+
+        public Builder loginTimeWindow(int loginTimeWindow) {
+            this.loginTimeWindow = loginTimeWindow;
+            return this;
+        }
+
+        public Builder maxLogins(int maxLogins) {
+            this.maxLogins = maxLogins;
+            return this;
+        }
+
+        public Builder loginBlockDuration(int loginBlockDuration) {
+            this.loginBlockDuration = loginBlockDuration;
+            return this;
+        }
+
+        public Builder logLoginBlock(boolean logLoginBlock) {
+            this.logLoginBlock = logLoginBlock;
+            return this;
+        }
+
+        public Builder logQueueSize(int logQueueSize) {
+            this.logQueueSize = logQueueSize;
+            return this;
+        }
+
+        public Builder logSummaryInterval(int logSummaryInterval) {
+            this.logSummaryInterval = logSummaryInterval;
+            return this;
+        }
+
+        public Builder logDetailLimit(int logDetailLimit) {
+            this.logDetailLimit = logDetailLimit;
+            return this;
+        }
+
+        public Builder offenderCapacity(int offenderCapacity) {
+            this.offenderCapacity = offenderCapacity;
+            return this;
+        }
+
+        public Builder offenderHalfLife(int offenderHalfLife) {
+            this.offenderHalfLife = offenderHalfLife;
+            return this;
+        }
+
+        public Builder auditEnabled(boolean auditEnabled) {
+            this.auditEnabled = auditEnabled;
+            return this;
+        }
+
+        public Builder auditMaxFileSize(int auditMaxFileSize) {
+            this.auditMaxFileSize = auditMaxFileSize;
+            return this;
+        }
+
+        public Builder auditRotateInterval(int auditRotateInterval) {
+            this.auditRotateInterval = auditRotateInterval;
+            return this;
+        }
+
+        public Builder auditMaxFiles(int auditMaxFiles) {
+            this.auditMaxFiles = auditMaxFiles;
+            return this;
+        }
+
+        public Builder metricsLatency(boolean metricsLatency) {
+            this.metricsLatency = metricsLatency;
+            return this;
+        }
+
+        public Builder prometheusEnabled(boolean prometheusEnabled) {
+            this.prometheusEnabled = prometheusEnabled;
+            return this;
+        }
+
+        public Builder prometheusBind(String prometheusBind) {
+            this.prometheusBind = prometheusBind;
+            return this;
+        }
+
+        public Builder prometheusPort(int prometheusPort) {
+            this.prometheusPort = prometheusPort;
+            return this;
+        }
+
+        public Builder metricsFileEnabled(boolean metricsFileEnabled) {
+            this.metricsFileEnabled = metricsFileEnabled;
+            return this;
+        }
+
+        public Builder metricsFilePath(String metricsFilePath) {
+            this.metricsFilePath = metricsFilePath;
+            return this;
+        }
+
+        public Builder metricsFileInterval(int metricsFileInterval) {
+            this.metricsFileInterval = metricsFileInterval;
+            return this;
+        }
+
+        public Builder autoReload(boolean autoReload) {
+            this.autoReload = autoReload;
+            return this;
+        }
+
+        public Builder autoReloadDelay(int autoReloadDelay) {
+            this.autoReloadDelay = autoReloadDelay;
+            return this;
+        }
+
+        public Builder pingResponses(Map<String, PingResponse> pingResponses) {
+            this.pingResponses = pingResponses;
+            return this;
+        }
+
+        public Builder decoyResponse(PingResponse decoyResponse) {
+            this.decoyResponse = decoyResponse;
+            return this;
+        }
+
+        public Builder syncType(String syncType) {
+            this.syncType = syncType;
+            return this;
+        }
+
+        public Builder syncBatchInterval(int syncBatchInterval) {
+            this.syncBatchInterval = syncBatchInterval;
+            return this;
+        }
+
+        public Builder syncSecret(String syncSecret) {
+            this.syncSecret = syncSecret;
+            return this;
+        }
+
+        public Builder syncUdpBind(String syncUdpBind) {
+            this.syncUdpBind = syncUdpBind;
+            return this;
+        }
+
+        public Builder syncUdpPort(int syncUdpPort) {
+            this.syncUdpPort = syncUdpPort;
+            return this;
+        }
+
+        public Builder syncUdpPeers(List<String> syncUdpPeers) {
+            this.syncUdpPeers = syncUdpPeers;
+            return this;
+        }
+
+        public Builder syncUdpGroup(String syncUdpGroup) {
+            this.syncUdpGroup = syncUdpGroup;
+            return this;
+        }
+
+        public Builder syncUdpInterface(String syncUdpInterface) {
+            this.syncUdpInterface = syncUdpInterface;
+            return this;
+        }
+
+        public Builder syncRedisHost(String syncRedisHost) {
+            this.syncRedisHost = syncRedisHost;
+            return this;
+        }
+
+        public Builder syncRedisPort(int syncRedisPort) {
+            this.syncRedisPort = syncRedisPort;
+            return this;
+        }
+
+        public Builder syncRedisPassword(String syncRedisPassword) {
+            this.syncRedisPassword = syncRedisPassword;
+            return this;
+        }
+
+        public Builder syncRedisChannel(String syncRedisChannel) {
+            this.syncRedisChannel = syncRedisChannel;
+            return this;
+        }
+
+        public ForceHostsSettings build() {
+            return new ForceHostsSettings(this);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.config;
+
+import java.util.Objects;
+
+/**
+ * 单个主机名规则的策略，未配置的项沿用全局配置
+ */
+public final class HostPolicy {
+    /**
+     * 数值项未配置时的取值
+     */
+    public static final int INHERIT = -1;
+
+    private final int maxPings;
+    private final int maxLogins;
+    private final int maxConcurrentLogins;
+    private final int maxLoginRate;
+
+    /**
+     * @param maxPings 时间窗口内每个IP通过该主机名最多允许的ping次数，{@link #INHERIT} 为沿用 antiSpamRefresh.maxPings
+     * @param maxLogins 时间窗口内每个IP通过该主机名最多允许的登录次数，{@link #INHERIT} 为沿用 antiSpamLogin.maxLogins
+     * @param maxConcurrentLogins 所有IP通过该主机名同时正在登录的最大人数，0为不限制
+     * @param maxLoginRate 所有IP通过该主机名每秒最多登录次数，0为不限制
+     */
+    public HostPolicy(int maxPings, int maxLogins, int maxConcurrentLogins, int maxLoginRate) {
+        this.maxPings = maxPings;
+        this.maxLogins = maxLogins;
+        this.maxConcurrentLogins = maxConcurrentLogins;
+        this.maxLoginRate = maxLoginRate;
+    }
+
+    public int getMaxPings() {
+        return maxPings;
+    }
+
+    public int getMaxLogins() {
+        return maxLogins;
+    }
+
+    public int getMaxConcurrentLogins() {
+        return maxConcurrentLogins;
+    }
+
+    public int getMaxLoginRate() {
+        return maxLoginRate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HostPolicy)) return false;
+        HostPolicy that = (HostPolicy) o;
+        return maxPings == that.maxPings && maxLogins == that.maxLogins
+                && maxConcurrentLogins == that.maxConcurrentLogins && maxLoginRate == that.maxLoginRate;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxPings, maxLogins, maxConcurrentLogins, maxLoginRate);
+    }
+}
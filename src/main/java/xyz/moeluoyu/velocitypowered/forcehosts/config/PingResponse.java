@@ -0,0 +1,76 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.config;
+
+import java.util.Objects;
+
+/**
+ * 自定义ping响应的配置，未配置的项保持代理原有的响应
+ */
+public final class PingResponse {
+    /**
+     * 数值项未配置时的取值
+     */
+    public static final int KEEP = -1;
+
+    private final String motd;
+    private final String version;
+    private final int protocol;
+    private final int maxPlayers;
+    private final int onlinePlayers;
+    private final String favicon;
+
+    /**
+     * @param motd 服务器描述，支持 &amp; 颜色代码，null为不修改
+     * @param version 版本文字，null为不修改
+     * @param protocol 协议版本号，{@link #KEEP} 为不修改
+     * @param maxPlayers 显示的最大人数，{@link #KEEP} 为不修改
+     * @param onlinePlayers 显示的在线人数，{@link #KEEP} 为不修改
+     * @param favicon 服务器图标路径（相对于插件数据目录），null为不修改
+     */
+    public PingResponse(String motd, String version, int protocol, int maxPlayers, int onlinePlayers, String favicon) {
+        this.motd = motd;
+        this.version = version;
+        this.protocol = protocol;
+        this.maxPlayers = maxPlayers;
+        this.onlinePlayers = onlinePlayers;
+        this.favicon = favicon;
+    }
+
+    public String getMotd() {
+        return motd;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int getProtocol() {
+        return protocol;
+    }
+
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    public int getOnlinePlayers() {
+        return onlinePlayers;
+    }
+
+    public String getFavicon() {
+        return favicon;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PingResponse)) return false;
+        PingResponse that = (PingResponse) o;
+        return protocol == that.protocol && maxPlayers == that.maxPlayers && onlinePlayers == that.onlinePlayers
+                && Objects.equals(motd, that.motd) && Objects.equals(version, that.version)
+                && Objects.equals(favicon, that.favicon);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(motd, version, protocol, maxPlayers, onlinePlayers, favicon);
+    }
+}
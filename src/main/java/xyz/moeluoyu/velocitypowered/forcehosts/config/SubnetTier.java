@@ -0,0 +1,72 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.config;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+
+import java.util.Objects;
+
+/**
+ * 一级网段聚合配置，例如 IPv4 /24 或 IPv6 /64
+ */
+public final class SubnetTier {
+    private final boolean ipv6;
+    private final int prefix;
+    private final int maxPings;
+    private final int escalateAfter;
+    private final int blockDuration;
+
+    /**
+     * @param ipv6 是否为 IPv6 网段
+     * @param prefix 网段前缀长度（IPv4 为 0-32，IPv6 为 0-128）
+     * @param maxPings 时间窗口内整个网段允许的最大ping次数，0为不限制
+     * @param escalateAfter 网段内被阻止的IP达到此数量时阻止整个网段，0为不升级
+     * @param blockDuration 网段阻止时间（秒）
+     */
+    public SubnetTier(boolean ipv6, int prefix, int maxPings, int escalateAfter, int blockDuration) {
+        this.ipv6 = ipv6;
+        this.prefix = prefix;
+        this.maxPings = maxPings;
+        this.escalateAfter = escalateAfter;
+        this.blockDuration = blockDuration;
+    }
+
+    public boolean isIpv6() {
+        return ipv6;
+    }
+
+    public int getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return 在 {@link IpAddresses} 的128位编码中的前缀长度
+     */
+    public int getEncodedPrefix() {
+        return ipv6 ? prefix : IpAddresses.IPV4_PREFIX_OFFSET + prefix;
+    }
+
+    public int getMaxPings() {
+        return maxPings;
+    }
+
+    public int getEscalateAfter() {
+        return escalateAfter;
+    }
+
+    public int getBlockDuration() {
+        return blockDuration;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SubnetTier)) return false;
+        SubnetTier that = (SubnetTier) o;
+        return ipv6 == that.ipv6 && prefix == that.prefix && maxPings == that.maxPings
+                && escalateAfter == that.escalateAfter && blockDuration == that.blockDuration;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ipv6, prefix, maxPings, escalateAfter, blockDuration);
+    }
+}
@@ -0,0 +1,236 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.host;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的允许主机名匹配器，构建后不可变，可被多个线程同时使用
+ * <p>
+ * 支持的规则：
+ * <ul>
+ *     <li>{@code play.example.com} 精确匹配</li>
+ *     <li>{@code *.example.com} 匹配 example.com 的任意子域名，不包括 example.com 本身</li>
+ *     <li>{@code .example.com} 匹配 example.com 及其任意子域名</li>
+ *     <li>{@code regex:^mc[0-9]+\.example\.com$} 正则匹配（忽略大小写）</li>
+ * </ul>
+ * 精确规则和通配/后缀规则的匹配均忽略大小写且不分配对象；正则规则仅在前两者都未命中时才逐条尝试。
+ * 主机名先按 {@link HostNormalizer} 去掉末尾的点和 \0 之后的标记，国际化域名统一按 punycode 匹配。
+ */
+public final class HostMatcher {
+    public static final String REGEX_PREFIX = "regex:";
+
+    private static final HostMatcher EMPTY = compile(Collections.emptyList());
+
+    private final HostTable<String> exact;
+    private final Node root;
+    private final Pattern[] regexes;
+    private final String[] regexRules;
+    private final int ruleCount;
+
+    private HostMatcher(HostTable<String> exact, Node root, List<Pattern> regexes, List<String> regexRules, int ruleCount) {
+        this.exact = exact;
+        this.root = root;
+        this.regexes = regexes.toArray(new Pattern[0]);
+        this.regexRules = regexRules.toArray(new String[0]);
+        this.ruleCount = ruleCount;
+    }
+
+    public static HostMatcher empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 编译主机名规则
+     * @param rules 规则列表
+     * @return 匹配器
+     * @throws java.util.regex.PatternSyntaxException 正则规则无效时抛出
+     */
+    public static HostMatcher compile(Collection<String> rules) {
+        List<String> exactRules = new ArrayList<>();
+        List<String> labelRules = new ArrayList<>();
+        List<Pattern> regexes = new ArrayList<>();
+        List<String> regexRules = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        for (String raw : rules) {
+            String rule = normalizeRule(raw);
+            if (isRegexRule(rule)) {
+                if (seen.add(rule)) {
+                    regexes.add(Pattern.compile(rule.substring(REGEX_PREFIX.length()), Pattern.CASE_INSENSITIVE));
+                    regexRules.add(rule);
+                }
+                continue;
+            }
+            if (rule.isEmpty() || !seen.add(rule)) {
+                continue;
+            }
+            if (rule.startsWith("*.") || rule.startsWith(".")) {
+                labelRules.add(rule);
+            } else {
+                exactRules.add(rule);
+            }
+        }
+
+        HostTable<String> exact = new HostTable<>(exactRules.size());
+        for (String rule : exactRules) {
+            exact.putIfAbsent(rule, rule);
+        }
+
+        Node root = new Node();
+        for (String rule : labelRules) {
+            boolean wildcard = rule.startsWith("*.");
+            String domain = rule.substring(wildcard ? 2 : 1);
+            Node node = root;
+            int end = domain.length();
+            while (end > 0) {
+                int dot = domain.lastIndexOf('.', end - 1);
+                node = node.child(domain.substring(dot + 1, end));
+                end = dot < 0 ? 0 : dot;
+            }
+            if (wildcard) {
+                node.wildcardRule = rule;
+            } else {
+                node.suffixRule = rule;
+            }
+        }
+        root.freeze();
+
+        return new HostMatcher(exact, root, regexes, regexRules, seen.size());
+    }
+
+    /**
+     * 将规则转换为匹配器内部使用的形式：去除首尾空白，除正则规则外统一转为小写，国际化域名转换为 punycode
+     * {@link #match(CharSequence)} 返回的就是这种形式的规则
+     * @param rule 配置中的规则
+     * @return 规范化后的规则
+     */
+    public static String normalizeRule(String rule) {
+        String trimmed = rule.trim();
+        if (isRegexRule(trimmed)) {
+            return trimmed;
+        }
+        String lower = trimmed.toLowerCase(Locale.ROOT);
+        if (HostNormalizer.hasNonAscii(lower, lower.length())) {
+            String ascii = HostNormalizer.toAscii(lower, lower.length());
+            if (ascii != null) {
+                return ascii;
+            }
+        }
+        return lower;
+    }
+
+    private static boolean isRegexRule(String rule) {
+        return rule.regionMatches(true, 0, REGEX_PREFIX, 0, REGEX_PREFIX.length());
+    }
+
+    /**
+     * 判断主机名是否被允许
+     * @param host 主机名
+     * @return 允许返回true
+     */
+    public boolean matches(CharSequence host) {
+        return match(host) != null;
+    }
+
+    /**
+     * 查找与主机名匹配的规则，主机名末尾的点和 \0 之后的标记不参与匹配
+     * @param host 客户端发送的主机名
+     * @return 命中的规则（精确匹配时即为配置中的主机名），未命中返回null
+     */
+    public String match(CharSequence host) {
+        int end = HostNormalizer.end(host);
+        String rule = match(host, 0, end);
+        if (rule == null && HostNormalizer.hasNonAscii(host, end)) {
+            // 国际化域名转换为 punycode 后再匹配一次
+            String ascii = HostNormalizer.toAscii(host, end);
+            if (ascii != null) {
+                rule = match(ascii, 0, ascii.length());
+            }
+        }
+        return rule;
+    }
+
+    /**
+     * 查找与主机名的一个区间匹配的规则
+     * @param host 包含主机名的字符序列
+     * @param from 起始位置（包含）
+     * @param to 结束位置（不包含）
+     * @return 命中的规则，未命中返回null
+     */
+    public String match(CharSequence host, int from, int to) {
+        String rule = exact.get(host, from, to);
+        if (rule != null) {
+            return rule;
+        }
+
+        // 从最后一个标签开始沿树向下，记录最深的命中规则
+        Node node = root;
+        int end = to;
+        while (end > from && node != null) {
+            int dot = end - 1;
+            while (dot >= from && host.charAt(dot) != '.') {
+                dot--;
+            }
+            node = node.children == null ? null : node.children.get(host, dot + 1, end);
+            if (node == null) {
+                break;
+            }
+            if (node.suffixRule != null) {
+                rule = node.suffixRule;
+            }
+            if (node.wildcardRule != null && dot > from) {
+                rule = node.wildcardRule;
+            }
+            end = dot;
+        }
+        if (rule != null) {
+            return rule;
+        }
+
+        if (regexes.length > 0) {
+            CharSequence value = from == 0 && to == host.length() ? host : host.subSequence(from, to);
+            for (int i = 0; i < regexes.length; i++) {
+                if (regexes[i].matcher(value).matches()) {
+                    return regexRules[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 去重后的规则数量
+     */
+    public int size() {
+        return ruleCount;
+    }
+
+    /**
+     * 反向标签树的节点，例如 *.mc.example.com 对应 com -> example -> mc
+     */
+    private static final class Node {
+        private Map<String, Node> building;
+        private HostTable<Node> children;
+        private String wildcardRule;
+        private String suffixRule;
+
+        Node child(String label) {
+            if (building == null) {
+                building = new HashMap<>();
+            }
+            return building.computeIfAbsent(label, k -> new Node());
+        }
+
+        void freeze() {
+            if (building == null) {
+                return;
+            }
+            children = new HostTable<>(building.size());
+            building.forEach((label, node) -> {
+                node.freeze();
+                children.putIfAbsent(label, node);
+            });
+            building = null;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.host;
+
+import java.net.IDN;
+
+/**
+ * 客户端发送的主机名的规范化
+ * <p>
+ * 合法的客户端也会发送一些变体：末尾带点的完全限定域名（play.example.com.）、Forge 在主机名后附加的
+ * {@code \0FML\0} 等标记、大小写混合或未转换为 punycode 的国际化域名。
+ * {@link #end(CharSequence)} 只计算有效部分的结束位置，配合 {@link HostMatcher#match(CharSequence, int, int)}
+ * 在原字符串上匹配，不产生中间字符串；只有含非 ASCII 字符且未命中时才需要转换为 punycode 再匹配一次。
+ */
+public final class HostNormalizer {
+    /**
+     * 规范化后主机名的最大长度，与 DNS 域名的长度上限相同，更长的部分会被截断
+     */
+    public static final int MAX_LENGTH = 253;
+
+    private HostNormalizer() {
+    }
+
+    /**
+     * 一次遍历计算主机名有效部分的结束位置：去掉第一个 \0 及之后的内容，再去掉末尾的点
+     * @return 有效部分为 [0, end)
+     */
+    public static int end(CharSequence host) {
+        int length = host.length();
+        int end = 0;
+        for (int i = 0; i < length; i++) {
+            char c = host.charAt(i);
+            if (c == '\0') {
+                break;
+            }
+            if (c != '.') {
+                end = i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return [0, end) 中是否含有非 ASCII 字符
+     */
+    public static boolean hasNonAscii(CharSequence host, int end) {
+        for (int i = 0; i < end; i++) {
+            if (host.charAt(i) >= 128) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把含非 ASCII 字符的标签转换为 punycode，其余标签保持不变，用于国际化域名的匹配
+     * @return 转换后的主机名，无法转换时返回null
+     */
+    public static String toAscii(CharSequence host, int end) {
+        StringBuilder result = new StringBuilder(end + 16);
+        int start = 0;
+        while (start <= end) {
+            int dot = start;
+            while (dot < end && host.charAt(dot) != '.') {
+                dot++;
+            }
+            CharSequence label = host.subSequence(start, dot);
+            if (hasNonAscii(label, label.length())) {
+                try {
+                    result.append(IDN.toASCII(label.toString(), IDN.ALLOW_UNASSIGNED));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            } else {
+                result.append(label);
+            }
+            if (dot < end) {
+                result.append('.');
+            }
+            start = dot + 1;
+        }
+        return result.toString();
+    }
+
+    /**
+     * 转换为用于日志和统计的规范形式：去掉 \0 之后的内容和末尾的点，转为小写的 punycode，
+     * 控制字符替换为 ?，长度不超过 {@link #MAX_LENGTH}
+     * @return 主机名已是规范形式时返回同一个实例
+     */
+    public static String canonical(String host) {
+        int end = end(host);
+        if (end == host.length() && end <= MAX_LENGTH && isCanonical(host, end)) {
+            return host;
+        }
+        String source = host;
+        if (hasNonAscii(host, end)) {
+            String ascii = toAscii(host, end);
+            if (ascii != null) {
+                source = ascii;
+                end = ascii.length();
+            }
+        }
+        int length = Math.min(end, MAX_LENGTH);
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(i);
+            result.append(c < 0x20 || c == 0x7f ? '?' : Character.toLowerCase(c));
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return 是否只含有小写字母、数字等可打印的 ASCII 字符
+     */
+    private static boolean isCanonical(String host, int end) {
+        for (int i = 0; i < end; i++) {
+            char c = host.charAt(i);
+            if (c < 0x20 || c >= 0x7f || (c >= 'A' && c <= 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,93 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.host;
+
+/**
+ * 以主机名（或主机名中的一段标签）为键的只读开放寻址哈希表
+ * 查询时直接比较 CharSequence 的一个区间并忽略大小写，不产生任何中间字符串
+ * @param <V> 值类型
+ */
+final class HostTable<V> {
+    private final String[] keys;
+    private final int[] hashes;
+    private final Object[] values;
+    private final int mask;
+    private int size;
+
+    HostTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 忽略大小写的字符折叠，与 String.regionMatches(true, ...) 的比较规则一致
+     */
+    static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    static int hash(CharSequence s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + fold(s.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equalsIgnoreCase(String key, CharSequence s, int from, int to) {
+        if (key.length() != to - from) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char a = key.charAt(i);
+            char b = s.charAt(from + i);
+            if (a != b && fold(a) != fold(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 放入键值，仅在构建阶段调用
+     * @return 已存在的值，不存在时返回null
+     */
+    @SuppressWarnings("unchecked")
+    V putIfAbsent(String key, V value) {
+        int h = hash(key, 0, key.length());
+        int i = h & mask;
+        while (keys[i] != null) {
+            if (hashes[i] == h && equalsIgnoreCase(keys[i], key, 0, key.length())) {
+                return (V) values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        hashes[i] = h;
+        values[i] = value;
+        size++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(CharSequence s, int from, int to) {
+        int h = hash(s, from, to);
+        int i = h & mask;
+        String key;
+        while ((key = keys[i]) != null) {
+            if (hashes[i] == h && equalsIgnoreCase(key, s, from, to)) {
+                return (V) values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+}
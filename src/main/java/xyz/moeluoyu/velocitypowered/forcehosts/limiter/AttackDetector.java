@@ -0,0 +1,114 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.limiter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 全局请求速率检测
+ * <p>
+ * 事件线程只对分段计数器加一，由定时任务每秒取出计数换算为速率。速率达到进入阈值时立即进入攻击模式，
+ * 连续一段时间低于退出阈值后才退出；退出阈值低于进入阈值，速率在阈值附近波动时不会频繁切换。
+ */
+public final class AttackDetector {
+    private final LongAdder events = new LongAdder();
+    private volatile boolean active;
+    private volatile long rate;
+    private volatile long activeSince;
+    private volatile long peakRate;
+
+    // 以下字段只在 update 中访问
+    private long lastUpdate;
+    private long calmSince;
+    private boolean calm;
+
+    public AttackDetector(long now) {
+        this.lastUpdate = now;
+    }
+
+    /**
+     * 记录一次请求
+     */
+    public void record() {
+        events.increment();
+    }
+
+    /**
+     * 计算上次调用以来的速率并更新状态，应由定时任务约每秒调用一次
+     * @param now 当前时间（毫秒）
+     * @param enterRate 进入攻击模式的速率（次/秒）
+     * @param exitRate 退出攻击模式的速率（次/秒）
+     * @param exitDelayMillis 速率需要持续低于退出阈值的时间（毫秒）
+     * @return 状态是否发生变化
+     */
+    public synchronized boolean update(long now, long enterRate, long exitRate, long exitDelayMillis) {
+        long count = events.sumThenReset();
+        long elapsed = now - lastUpdate;
+        lastUpdate = now;
+        long current = elapsed > 0 ? count * 1000 / elapsed : count;
+        rate = current;
+
+        if (!active) {
+            if (current >= enterRate) {
+                active = true;
+                activeSince = now;
+                peakRate = current;
+                calm = false;
+                return true;
+            }
+            return false;
+        }
+
+        if (current > peakRate) {
+            peakRate = current;
+        }
+        if (current >= exitRate) {
+            calm = false;
+            return false;
+        }
+        if (!calm) {
+            calm = true;
+            calmSince = now;
+        }
+        if (now - calmSince >= exitDelayMillis) {
+            active = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 立即退出攻击模式，用于关闭该功能时
+     * @return 之前是否处于攻击模式
+     */
+    public synchronized boolean reset() {
+        events.reset();
+        boolean wasActive = active;
+        active = false;
+        calm = false;
+        return wasActive;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @return 最近一次计算的速率（次/秒）
+     */
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * @return 最近一次进入攻击模式的时间（毫秒）
+     */
+    public long getActiveSince() {
+        return activeSince;
+    }
+
+    /**
+     * @return 最近一次攻击模式期间的最高速率（次/秒）
+     */
+    public long getPeakRate() {
+        return peakRate;
+    }
+}
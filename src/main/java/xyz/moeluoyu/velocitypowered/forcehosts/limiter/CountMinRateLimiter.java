@@ -0,0 +1,175 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.limiter;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 基于滑动窗口 Count-Min Sketch 的限流器，内存占用固定，不随出现过的地址数量增长
+ * <p>
+ * 时间窗口分为 {@value #SLICES} 个时间片，另有一片正在计数，共 {@value #SLICES} + 1 组计数器，每组 depth 行、
+ * 每行 width 个计数器。请求在当前时间片的每一行中按不同的哈希各加一，估计值为每行在最近几个时间片中的计数之和的最小值。
+ * 每行的位置取地址的 64 位哈希乘以该行的奇数常量后的高位，两个地址在一行冲突时在其他行仍相互独立。
+ * 轮到某一组计数器时先清零，因此统计的时间范围在 timeWindow 到 timeWindow × (1 + 1/{@value #SLICES}) 之间。
+ * <p>
+ * 估计值只会偏大：哈希冲突使其他地址的请求计入同一个计数器。设统计范围内共有 N 次请求，每行的冲突计数平均不超过
+ * N / width，由 Markov 不等式，某一行多计至少 k 次的概率不超过 N / (width × k)。各行的哈希相互独立，
+ * 因此实际请求 c 次（c ≤ maxEvents）的地址被误判为超限的概率不超过 (N / (width × (maxEvents + 1 − c)))^depth。
+ * 例如 width 为 65536、depth 为 4、maxEvents 为 10、窗口内有 10 万次请求时，只请求一次的地址被误判的概率
+ * 不超过 0.0005，请求 5 次的不超过 0.004。实际超限的地址一定会被判定超限，只有时间片轮换的瞬间并发写入的少数请求可能丢失。
+ * <p>
+ * 计数器无法按地址清除，{@link #reset} 不做任何操作：被阻止的地址在阻止期间不再计数，过了统计范围后计数自然失效。
+ */
+public class CountMinRateLimiter implements RateLimiter {
+    private static final int SLICES = 4;
+    private static final int GROUPS = SLICES + 1;
+    private static final int MAX_WIDTH = 1 << 24;
+    private static final int MAX_DEPTH = 16;
+    // 每行的乘数，奇数
+    private static final long[] ROW_MULTIPLIERS = new long[MAX_DEPTH];
+
+    static {
+        for (int row = 0; row < MAX_DEPTH; row++) {
+            ROW_MULTIPLIERS[row] = mix(0x9e3779b97f4a7c15L * (row + 1)) | 1;
+        }
+    }
+
+    private final long windowMillis;
+    private final long sliceMillis;
+    private final int maxEvents;
+    private final int width;
+    // 每行实际的计数器数量，为2的幂
+    private final int rowSize;
+    private final int requestedDepth;
+    private final int depth;
+    private final int mask;
+    // 行内位置取乘积的高 log2(rowSize) 位
+    private final int shift;
+    // 按 [组][行][列] 排列
+    private final AtomicIntegerArray counters;
+    // 每组计数器所属的时间片编号
+    private final AtomicLongArray slices = new AtomicLongArray(GROUPS);
+
+    /**
+     * @param windowMillis 时间窗口（毫秒）
+     * @param maxEvents 时间窗口内允许的最大请求次数
+     * @param width 每行的计数器数量，向上取整为2的幂
+     * @param depth 行数
+     */
+    public CountMinRateLimiter(long windowMillis, int maxEvents, int width, int depth) {
+        this.windowMillis = windowMillis;
+        this.sliceMillis = Math.max(1, (windowMillis + SLICES - 1) / SLICES);
+        this.maxEvents = maxEvents;
+        this.width = width;
+        this.rowSize = width <= 1 ? 1 : Math.min(MAX_WIDTH, Integer.highestOneBit(width - 1) << 1);
+        this.requestedDepth = depth;
+        this.depth = Math.max(1, Math.min(MAX_DEPTH, depth));
+        this.mask = rowSize - 1;
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(rowSize);
+        this.counters = new AtomicIntegerArray(GROUPS * this.depth * rowSize);
+        for (int i = 0; i < GROUPS; i++) {
+            slices.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(long high, long low, long now) {
+        if (maxEvents <= 0) {
+            return true;
+        }
+
+        long slice = Math.floorDiv(now, sliceMillis);
+        int current = (int) Math.floorMod(slice, (long) GROUPS);
+        rotate(current, slice);
+
+        long hash = mix(high * 0x9e3779b97f4a7c15L ^ low);
+        int groupSize = depth * rowSize;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            // rowSize 为1时移位64位等于不移位，由 mask 取0
+            int offset = row * rowSize + ((int) ((hash * ROW_MULTIPLIERS[row]) >>> shift) & mask);
+            long sum = counters.incrementAndGet(current * groupSize + offset);
+            for (int group = 0; group < GROUPS; group++) {
+                if (group != current && isLive(group, slice)) {
+                    sum += counters.get(group * groupSize + offset);
+                }
+            }
+            estimate = Math.min(estimate, sum);
+        }
+        return estimate > maxEvents;
+    }
+
+    /**
+     * 计数器组第一次用于新的时间片时清零，只有成功更新编号的线程执行清零
+     */
+    private void rotate(int group, long slice) {
+        long previous = slices.get(group);
+        if (previous < slice && slices.compareAndSet(group, previous, slice)) {
+            int groupSize = depth * rowSize;
+            for (int i = group * groupSize, end = i + groupSize; i < end; i++) {
+                counters.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * @return 该组计数器是否属于当前时间片之前的 {@value #SLICES} 个时间片
+     */
+    private boolean isLive(int group, long slice) {
+        long groupSlice = slices.get(group);
+        return groupSlice <= slice && slice - groupSlice <= SLICES;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public void reset(long high, long low) {
+    }
+
+    /**
+     * @return 始终为0，计数器不跟踪单个地址
+     */
+    @Override
+    public int size() {
+        return 0;
+    }
+
+    @Override
+    public void cleanUp(long now) {
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getMaxEvents() {
+        return maxEvents;
+    }
+
+    /**
+     * @return 配置的每行计数器数量（取整前）
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return 配置的行数（限制范围前）
+     */
+    public int getDepth() {
+        return requestedDepth;
+    }
+
+    /**
+     * @return 计数器占用的内存（字节）
+     */
+    public long getMemoryBytes() {
+        return (long) counters.length() * Integer.BYTES;
+    }
+}
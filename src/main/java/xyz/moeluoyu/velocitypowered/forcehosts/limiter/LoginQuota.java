@@ -0,0 +1,154 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.limiter;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个主机名的登录配额：同时正在登录的人数和每秒登录次数，所有IP共用
+ * <p>
+ * 正在登录的人数分散在多个计数器上，每个线程固定使用其中一个，登录高峰时多个事件线程不会竞争同一个计数器；
+ * 判断时对所有计数器求和，同时检查的线程可能一起通过，最多超出配额的数量为同时处理登录的线程数。
+ * 每秒登录次数按当前一秒和上一秒的计数加权估算，近似一秒的滑动窗口。
+ */
+public final class LoginQuota {
+    /**
+     * 检查结果
+     */
+    public enum Result {
+        ALLOWED,
+        /** 正在登录的人数已满 */
+        CONCURRENT,
+        /** 每秒登录次数已满 */
+        RATE
+    }
+
+    private static final int STRIPES = tableSizeFor(Runtime.getRuntime().availableProcessors() * 2);
+    // 每个计数器独占一个缓存行，避免伪共享
+    private static final int PADDING = 16;
+
+    private final AtomicIntegerArray inFlight = new AtomicIntegerArray(STRIPES * PADDING);
+    // 上一秒（高32位）和当前一秒（低32位）的登录次数，打包在一个 long 中原子更新
+    private final AtomicLong rateState = new AtomicLong();
+    // 当前一秒的编号
+    private volatile long rateSecond = Long.MIN_VALUE;
+    private final LongAdder deniedConcurrent = new LongAdder();
+    private final LongAdder deniedRate = new LongAdder();
+
+    private static int tableSizeFor(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * 检查配额，通过时计入一次正在进行的登录，登录结束后必须调用 {@link #release()}
+     * @param maxConcurrent 同时正在登录的最大人数，0为不限制
+     * @param maxRate 每秒最多登录次数，0为不限制
+     * @param now 当前时间（毫秒）
+     */
+    public Result tryAcquire(int maxConcurrent, int maxRate, long now) {
+        if (maxConcurrent > 0 && getInFlight() >= maxConcurrent) {
+            deniedConcurrent.increment();
+            return Result.CONCURRENT;
+        }
+        if (maxRate > 0 && !tryRecordLogin(maxRate, now)) {
+            deniedRate.increment();
+            return Result.RATE;
+        }
+        inFlight.incrementAndGet(stripe());
+        return Result.ALLOWED;
+    }
+
+    /**
+     * 一次登录结束（完成、断开或超时）
+     */
+    public void release() {
+        // 各个计数器单独可能为负数，只有总和有意义
+        inFlight.decrementAndGet(stripe());
+    }
+
+    private static int stripe() {
+        return (int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+
+    private boolean tryRecordLogin(int maxRate, long now) {
+        long second = Math.floorDiv(now, 1000);
+        double elapsed = Math.floorMod(now, 1000) / 1000.0;
+        while (true) {
+            long state = rotate(second);
+            int current = (int) state;
+            int previous = (int) (state >>> 32);
+            if (previous * (1 - elapsed) + current >= maxRate) {
+                return false;
+            }
+            if (rateState.compareAndSet(state, state + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 进入新的一秒时把当前计数移到上一秒，间隔超过一秒时两者都清零
+     * @return 更新后的状态，高32位为上一秒的次数，低32位为当前一秒的次数
+     */
+    private long rotate(long second) {
+        long known = rateSecond;
+        if (known >= second) {
+            return rateState.get();
+        }
+        synchronized (this) {
+            if (rateSecond < second) {
+                boolean adjacent = rateSecond == second - 1;
+                long state;
+                // 与计数的线程竞争，使用 CAS 保证此前计入的次数不会丢失
+                do {
+                    state = rateState.get();
+                } while (!rateState.compareAndSet(state, adjacent ? (state & 0xffffffffL) << 32 : 0));
+                rateSecond = second;
+            }
+        }
+        return rateState.get();
+    }
+
+    /**
+     * @return 正在登录的人数
+     */
+    public int getInFlight() {
+        int sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += inFlight.get(i * PADDING);
+        }
+        return Math.max(0, sum);
+    }
+
+    /**
+     * @return 按最近一秒估算的每秒登录次数
+     */
+    public int getRate(long now) {
+        long second = Math.floorDiv(now, 1000);
+        long known = rateSecond;
+        long state = rateState.get();
+        if (known < second - 1) {
+            return 0;
+        }
+        double elapsed = Math.floorMod(now, 1000) / 1000.0;
+        if (known == second - 1) {
+            // 这一秒还没有登录，当前计数已成为上一秒
+            return (int) Math.round((int) state * (1 - elapsed));
+        }
+        return (int) Math.round((int) (state >>> 32) * (1 - elapsed) + (int) state);
+    }
+
+    /**
+     * @return 因正在登录的人数已满而拒绝的次数
+     */
+    public long getDeniedConcurrent() {
+        return deniedConcurrent.sum();
+    }
+
+    /**
+     * @return 因每秒登录次数已满而拒绝的次数
+     */
+    public long getDeniedRate() {
+        return deniedRate.sum();
+    }
+}
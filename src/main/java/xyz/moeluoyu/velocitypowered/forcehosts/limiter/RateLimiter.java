@@ -0,0 +1,35 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.limiter;
+
+/**
+ * 按IP地址计数的限流器，地址使用 {@link xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses} 的编码
+ * 实现必须是线程安全的，并且不能在热路径上使用全局锁
+ */
+public interface RateLimiter {
+
+    /**
+     * 记录一次请求并判断是否超过限制
+     * @param high 地址高64位
+     * @param low 地址低64位
+     * @param now 当前时间（毫秒）
+     * @return 如果本次请求超过限制返回true，否则返回false
+     */
+    boolean tryAcquire(long high, long low, long now);
+
+    /**
+     * 清除某个地址的计数状态
+     * @param high 地址高64位
+     * @param low 地址低64位
+     */
+    void reset(long high, long low);
+
+    /**
+     * @return 当前跟踪的键数量
+     */
+    int size();
+
+    /**
+     * 清理已过期的键
+     * @param now 当前时间（毫秒）
+     */
+    void cleanUp(long now);
+}
@@ -0,0 +1,102 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.limiter;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpTable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于固定大小环形缓冲区的滑动窗口限流器
+ * <p>
+ * 每个键保存最近 maxEvents 次请求的时间戳。写入新时间戳时被覆盖的就是第 maxEvents+1 新的请求，
+ * 如果它仍在时间窗口内，说明窗口内的请求数已经超过 maxEvents，与原先按列表统计的判定结果一致。
+ * 已存在的键只做原子操作，不加锁也不分配对象；新出现的键会分配一个 maxEvents 个 long 的环。
+ * <p>
+ * 因此每个键约占 8 × maxEvents + 150 字节（环、计数器和哈希表槽位），内存上限约为
+ * maxEntries × (8 × maxEvents + 150) 字节，随 maxEvents 线性增长。需要跟踪大量地址时应使用
+ * 内存固定的 {@link CountMinRateLimiter}。
+ * <p>
+ * 每个键在最后一次请求后经过一个时间窗口即过期（此后它的时间戳都已失效），
+ * 键数量达到上限时按最近最少使用淘汰。
+ */
+public class SlidingWindowRateLimiter implements RateLimiter {
+    private final long windowMillis;
+    private final int maxEvents;
+    private final long maxEntries;
+    private final IpTable<Window> windows;
+
+    /**
+     * @param windowMillis 时间窗口（毫秒）
+     * @param maxEvents 时间窗口内允许的最大请求次数
+     * @param maxEntries 最多跟踪的键数量
+     * @param evictions 被过期或容量淘汰的键计数
+     */
+    public SlidingWindowRateLimiter(long windowMillis, int maxEvents, long maxEntries, LongAdder evictions) {
+        this.windowMillis = windowMillis;
+        this.maxEvents = maxEvents;
+        this.maxEntries = maxEntries;
+        this.windows = new IpTable<>(maxEntries, () -> new Window(maxEvents), evictions);
+    }
+
+    @Override
+    public boolean tryAcquire(long high, long low, long now) {
+        if (maxEvents <= 0) {
+            return true;
+        }
+
+        Window window = windows.getOrCreate(high, low, now, Math.max(windowMillis, 1));
+        return window.record(now) >= now - windowMillis;
+    }
+
+    @Override
+    public void reset(long high, long low) {
+        windows.remove(high, low);
+    }
+
+    @Override
+    public int size() {
+        return windows.size();
+    }
+
+    @Override
+    public void cleanUp(long now) {
+        windows.sweep(now);
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getMaxEvents() {
+        return maxEvents;
+    }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * 单个键的时间戳环
+     */
+    private static final class Window {
+        private final AtomicLongArray stamps;
+        private final AtomicLong cursor = new AtomicLong();
+
+        Window(int capacity) {
+            this.stamps = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                stamps.set(i, Long.MIN_VALUE);
+            }
+        }
+
+        /**
+         * 写入时间戳
+         * @return 被覆盖的旧时间戳，即往前数第 capacity 次请求的时间
+         */
+        long record(long now) {
+            int slot = (int) Long.remainderUnsigned(cursor.getAndIncrement(), stamps.length());
+            return stamps.getAndSet(slot, now);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.limiter;
+
+/**
+ * 限流和阻止判断使用的时间来源
+ * <p>
+ * 插件运行时使用系统时间；离线回放流量时可以换成虚拟时间，按记录的时间戳加速重放，判断结果与实际运行时一致。
+ */
+@FunctionalInterface
+public interface TimeSource {
+    TimeSource SYSTEM = System::currentTimeMillis;
+
+    /**
+     * @return 当前时间（毫秒）
+     */
+    long currentTimeMillis();
+}
@@ -0,0 +1,262 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.log;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 审计日志文件的地址索引，记录每个地址（或网段）的记录在文件中所在的区间
+ * <p>
+ * 文件格式（大端序）：
+ * <pre>
+ * int   魔数 "FHAI"
+ * short 版本
+ * short 保留
+ * long  3 个 long 组成的位图，标记出现过的前缀长度（0 到 128）
+ * int   条目数 n
+ * n 条记录：long 地址高64位, long 地址低64位, byte 前缀长度, long 第一条记录的偏移, long 最后一条记录的结束偏移
+ * </pre>
+ * 条目按地址（无符号）和前缀长度排序。同一地址的记录不一定连续，查询时只读取区间内的内容并逐行过滤。
+ */
+final class AuditIndex {
+    private static final int MAGIC = 0x46484149; // "FHAI"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 2 + 3 * 8 + 4;
+    private static final int ENTRY_SIZE = 8 + 8 + 1 + 8 + 8;
+
+    private final long[] highs;
+    private final long[] lows;
+    // 前缀长度以字节保存，128 会存为负数，读取时按无符号处理
+    private final byte[] prefixes;
+    private final long[] firsts;
+    private final long[] ends;
+    private final long[] prefixBits;
+
+    private AuditIndex(long[] highs, long[] lows, byte[] prefixes, long[] firsts, long[] ends, long[] prefixBits) {
+        this.highs = highs;
+        this.lows = lows;
+        this.prefixes = prefixes;
+        this.firsts = firsts;
+        this.ends = ends;
+        this.prefixBits = prefixBits;
+    }
+
+    int size() {
+        return highs.length;
+    }
+
+    /**
+     * 查找与目标网段有关的记录所在的区间：地址在目标网段内的，以及包含目标网段的更大网段
+     * @return 按偏移排序并合并后的区间，每项为 {开始, 结束}
+     */
+    List<long[]> ranges(Cidr target) {
+        List<long[]> ranges = new ArrayList<>();
+        int prefixLength = target.getPrefixLength();
+        long lastHigh = prefixLength >= 64 ? target.getHigh() : target.getHigh() | -1L >>> prefixLength;
+        long lastLow = prefixLength >= 128 ? target.getLow()
+                : prefixLength <= 64 ? -1L : target.getLow() | -1L >>> (prefixLength - 64);
+        for (int i = lowerBound(target.getHigh(), target.getLow(), 0); i < highs.length
+                && compare(highs[i], lows[i], lastHigh, lastLow) <= 0; i++) {
+            if ((prefixes[i] & 0xff) >= prefixLength) {
+                ranges.add(new long[]{firsts[i], ends[i]});
+            }
+        }
+        for (int prefix = 0; prefix < prefixLength; prefix++) {
+            if ((prefixBits[prefix >>> 6] & 1L << prefix) == 0) {
+                continue;
+            }
+            long high = IpAddresses.maskHigh(target.getHigh(), prefix);
+            long low = IpAddresses.maskLow(target.getLow(), prefix);
+            int i = lowerBound(high, low, prefix);
+            if (i < highs.length && highs[i] == high && lows[i] == low && (prefixes[i] & 0xff) == prefix) {
+                ranges.add(new long[]{firsts[i], ends[i]});
+            }
+        }
+        return merge(ranges);
+    }
+
+    private static List<long[]> merge(List<long[]> ranges) {
+        if (ranges.size() <= 1) {
+            return ranges;
+        }
+        ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> merged = new ArrayList<>();
+        long[] current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            if (range[0] <= current[1]) {
+                current[1] = Math.max(current[1], range[1]);
+            } else {
+                merged.add(current);
+                current = range;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * @return 第一个不小于 (high, low, prefix) 的条目位置
+     */
+    private int lowerBound(long high, long low, int prefix) {
+        int from = 0;
+        int to = highs.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            int c = compare(highs[middle], lows[middle], high, low);
+            if (c < 0 || (c == 0 && (prefixes[middle] & 0xff) < prefix)) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    private static int compare(long high1, long low1, long high2, long low2) {
+        int c = Long.compareUnsigned(high1, high2);
+        return c != 0 ? c : Long.compareUnsigned(low1, low2);
+    }
+
+    /**
+     * 先写入临时文件再原子替换，崩溃时不会留下写了一半的索引
+     */
+    void write(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + highs.length * ENTRY_SIZE);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+        for (long bits : prefixBits) {
+            buffer.putLong(bits);
+        }
+        buffer.putInt(highs.length);
+        for (int i = 0; i < highs.length; i++) {
+            buffer.putLong(highs[i]).putLong(lows[i]).put(prefixes[i]).putLong(firsts[i]).putLong(ends[i]);
+        }
+        buffer.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static AuditIndex read(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("不是审计日志索引文件");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("不支持的索引版本 " + version);
+        }
+        buffer.getShort();
+        long[] prefixBits = {buffer.getLong(), buffer.getLong(), buffer.getLong()};
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() != (long) count * ENTRY_SIZE) {
+            throw new IOException("索引文件长度不正确");
+        }
+        long[] highs = new long[count];
+        long[] lows = new long[count];
+        byte[] prefixes = new byte[count];
+        long[] firsts = new long[count];
+        long[] ends = new long[count];
+        for (int i = 0; i < count; i++) {
+            highs[i] = buffer.getLong();
+            lows[i] = buffer.getLong();
+            prefixes[i] = buffer.get();
+            firsts[i] = buffer.getLong();
+            ends[i] = buffer.getLong();
+        }
+        return new AuditIndex(highs, lows, prefixes, firsts, ends, prefixBits);
+    }
+
+    /**
+     * 写入审计日志时逐条记录地址和偏移，文件关闭时排序生成索引
+     */
+    static final class Builder {
+        private final Map<Key, long[]> entries = new HashMap<>();
+
+        /**
+         * @param offset 记录在文件中的偏移
+         * @param end 记录的结束偏移
+         */
+        void add(long high, long low, int prefixLength, long offset, long end) {
+            long[] range = entries.computeIfAbsent(new Key(high, low, prefixLength), key -> new long[]{offset, end});
+            range[1] = end;
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        void clear() {
+            entries.clear();
+        }
+
+        AuditIndex build() {
+            Key[] keys = entries.keySet().toArray(new Key[0]);
+            Arrays.sort(keys, (a, b) -> {
+                int c = compare(a.high, a.low, b.high, b.low);
+                return c != 0 ? c : Integer.compare(a.prefixLength, b.prefixLength);
+            });
+            long[] highs = new long[keys.length];
+            long[] lows = new long[keys.length];
+            byte[] prefixes = new byte[keys.length];
+            long[] firsts = new long[keys.length];
+            long[] ends = new long[keys.length];
+            long[] prefixBits = new long[3];
+            for (int i = 0; i < keys.length; i++) {
+                Key key = keys[i];
+                long[] range = entries.get(key);
+                highs[i] = key.high;
+                lows[i] = key.low;
+                prefixes[i] = (byte) key.prefixLength;
+                firsts[i] = range[0];
+                ends[i] = range[1];
+                prefixBits[key.prefixLength >>> 6] |= 1L << key.prefixLength;
+            }
+            return new AuditIndex(highs, lows, prefixes, firsts, ends, prefixBits);
+        }
+    }
+
+    private static final class Key {
+        final long high;
+        final long low;
+        final int prefixLength;
+
+        Key(long high, long low, int prefixLength) {
+            this.high = high;
+            this.low = low;
+            this.prefixLength = prefixLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return high == that.high && low == that.low && prefixLength == that.prefixLength;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high) * 31 * 31 + Long.hashCode(low) * 31 + prefixLength;
+        }
+    }
+}
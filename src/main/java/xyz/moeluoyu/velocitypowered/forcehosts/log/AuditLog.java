@@ -0,0 +1,646 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.log;
+
+import org.slf4j.Logger;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 审计日志：每次阻止和拒绝写为一行 JSON，保存在数据目录的 audit 目录下，用于处理滥用投诉
+ * <p>
+ * 只由安全日志线程写入，事件线程不会进行任何文件操作。记录先编码到缓冲区，缓冲区写满或每秒一次通过
+ * FileChannel 批量写入。文件达到大小上限、轮换间隔或索引条目上限时换新文件，关闭的文件旁边写入按地址排序的索引，
+ * 查询时二分查找各个文件的索引，只读取包含该地址记录的区间。每行的格式为：
+ * <pre>
+ * {"time":1700000000000,"ip":"203.0.113.7","host":"play.example.com","event":"ping","reason":"spam","expires":1700000060000}
+ * </pre>
+ * ip 为网段时写为 CIDR，host 和 expires 没有时为 null。文件名中的时间为 UTC 时间。
+ */
+public class AuditLog {
+    private static final String DIRECTORY = "audit";
+    private static final String PREFIX = "audit-";
+    private static final String DATA_SUFFIX = ".jsonl";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+            .withZone(ZoneOffset.UTC);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long FLUSH_INTERVAL = 1000;
+    // 单个文件最多索引的地址数，超过后换新文件，索引文件不超过约 2 MB
+    private static final int MAX_INDEX_ENTRIES = 65536;
+
+    private final Logger logger;
+    private final Path directory;
+
+    // 以下字段由对象锁保护，写入只发生在安全日志线程，查询时短暂持有锁以写出缓冲区
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder(256);
+    private final AuditIndex.Builder index = new AuditIndex.Builder();
+    private FileChannel channel;
+    private Path segment;
+    private long segmentStart;
+    // 当前文件的长度，包括尚在缓冲区中的部分
+    private long position;
+    private long lastFlush;
+    // 写入失败时只记录一次日志，恢复后再记录
+    private boolean failing;
+
+    public AuditLog(Logger logger, Path dataDirectory) {
+        this.logger = logger;
+        this.directory = dataDirectory.resolve(DIRECTORY);
+    }
+
+    /**
+     * 追加一条记录，只由安全日志线程调用
+     * @param address 事件的地址或网段
+     * @param virtualHost 规范化后的主机名，没有时为null
+     */
+    synchronized void append(ForceHostsSettings settings, SecurityEvent event, String address, String virtualHost) {
+        if (!settings.isAuditEnabled()) {
+            closeSegment();
+            return;
+        }
+        try {
+            if (channel == null) {
+                openSegment(settings, event.time);
+            }
+            byte[] record = encode(event, address, virtualHost);
+            if (record.length > buffer.remaining()) {
+                writeBuffer();
+            }
+            buffer.put(record);
+            index.add(event.addressHigh, event.addressLow, event.prefixLength, position, position + record.length);
+            position += record.length;
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        if (position >= (long) settings.getAuditMaxFileSize() * 1024 * 1024 || index.size() >= MAX_INDEX_ENTRIES) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * 按间隔把缓冲区写入文件，并按时间轮换文件，由安全日志线程定期调用
+     */
+    synchronized void flush(ForceHostsSettings settings, long now) {
+        if (channel == null) {
+            return;
+        }
+        if (!settings.isAuditEnabled() || now - segmentStart >= TimeUnit.SECONDS.toMillis(settings.getAuditRotateInterval())) {
+            closeSegment();
+            return;
+        }
+        if (now - lastFlush >= FLUSH_INTERVAL) {
+            lastFlush = now;
+            try {
+                writeBuffer();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * 写入剩余的记录并关闭当前文件
+     */
+    synchronized void close() {
+        closeSegment();
+    }
+
+    private void openSegment(ForceHostsSettings settings, long now) throws IOException {
+        Files.createDirectories(directory);
+        deleteOldSegments(settings.getAuditMaxFiles() - 1);
+        long time = now;
+        Path path;
+        do {
+            path = directory.resolve(PREFIX + FILE_TIME.format(Instant.ofEpochMilli(time++)) + DATA_SUFFIX);
+        } while (Files.exists(path));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment = path;
+        segmentStart = now;
+        lastFlush = now;
+        position = 0;
+    }
+
+    private void closeSegment() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            writeBuffer();
+            channel.force(false);
+            channel.close();
+            index.build().write(indexPath(segment));
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+        if (failing) {
+            failing = false;
+            logger.info("审计日志已恢复写入");
+        }
+    }
+
+    /**
+     * 放弃当前文件，下一条记录写入新的文件，已写入的部分在查询时重建索引
+     */
+    private void fail(IOException e) {
+        if (!failing) {
+            failing = true;
+            logger.warn("写入审计日志失败: {}", e.getMessage());
+        }
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        channel = null;
+        buffer.clear();
+        index.clear();
+    }
+
+    private void deleteOldSegments(int keep) throws IOException {
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size() - Math.max(0, keep); i++) {
+            Files.deleteIfExists(segments.get(i));
+            Files.deleteIfExists(indexPath(segments.get(i)));
+        }
+    }
+
+    /**
+     * @return 所有审计日志文件，从旧到新排列
+     */
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(DATA_SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static Path indexPath(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    private byte[] encode(SecurityEvent event, String address, String virtualHost) {
+        line.setLength(0);
+        line.append("{\"time\":").append(event.time).append(",\"ip\":\"").append(address).append("\",\"host\":");
+        if (virtualHost != null) {
+            appendString(virtualHost);
+        } else {
+            line.append("null");
+        }
+        line.append(",\"event\":\"").append(eventName(event.type))
+                .append("\",\"reason\":\"").append(reason(event.type)).append("\",\"expires\":");
+        if (event.unblockTime > 0) {
+            line.append(event.unblockTime);
+        } else {
+            line.append("null");
+        }
+        line.append("}\n");
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendString(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static String eventName(SecurityEvent.Type type) {
+        switch (type) {
+            case CONNECTION_BLOCKED:
+            case LOGIN_SPAM_BLOCKED:
+            case LOGIN_DENIED_NETWORK:
+            case LOGIN_QUOTA_DENIED:
+                return "login";
+            case SUBNET_BLOCKED:
+                return "subnet";
+            default:
+                return "ping";
+        }
+    }
+
+    private static String reason(SecurityEvent.Type type) {
+        switch (type) {
+            case PING_BLOCKED:
+            case CONNECTION_BLOCKED:
+                return "invalid_host";
+            case PING_DENIED_NETWORK:
+            case LOGIN_DENIED_NETWORK:
+                return "denied_network";
+            case LOGIN_QUOTA_DENIED:
+                return "login_quota";
+            default:
+                return "spam";
+        }
+    }
+
+    /**
+     * 查询与IP或网段有关的记录：地址在该网段内的，以及阻止了包含它的更大网段的
+     * @param limit 最多返回的记录数
+     * @return 按时间从新到旧排列的记录
+     */
+    public List<Record> lookup(Cidr target, int limit) throws IOException {
+        Path active;
+        List<long[]> activeRanges = List.of();
+        synchronized (this) {
+            active = channel != null ? segment : null;
+            if (active != null) {
+                writeBuffer();
+                activeRanges = index.build().ranges(target);
+            }
+        }
+
+        List<Record> result = new ArrayList<>();
+        if (active != null) {
+            collect(active, activeRanges, target, limit, result);
+        }
+        List<Path> segments = listSegments();
+        for (int i = segments.size() - 1; i >= 0 && result.size() < limit; i--) {
+            Path path = segments.get(i);
+            if (path.equals(active)) {
+                continue;
+            }
+            try {
+                collect(path, loadIndex(path).ranges(target), target, limit, result);
+            } catch (NoSuchFileException e) {
+                // 查询期间被删除的旧文件
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 读取索引，没有索引（写入时出错或进程异常退出）时扫描文件重建
+     */
+    private AuditIndex loadIndex(Path segment) throws IOException {
+        Path indexPath = indexPath(segment);
+        if (Files.exists(indexPath)) {
+            try {
+                return AuditIndex.read(indexPath);
+            } catch (IOException e) {
+                logger.warn("审计日志索引 {} 无效，将重建: {}", indexPath.getFileName(), e.getMessage());
+            }
+        }
+        AuditIndex.Builder builder = new AuditIndex.Builder();
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+            readLines(file, 0, file.size(), (offset, text) -> {
+                Record record = Record.parse(text);
+                Cidr cidr = record != null ? record.toCidr() : null;
+                if (cidr != null) {
+                    builder.add(cidr.getHigh(), cidr.getLow(), cidr.getPrefixLength(), offset,
+                            offset + text.getBytes(StandardCharsets.UTF_8).length + 1);
+                }
+            });
+        }
+        AuditIndex rebuilt = builder.build();
+        try {
+            rebuilt.write(indexPath);
+        } catch (IOException e) {
+            logger.warn("保存审计日志索引 {} 失败: {}", indexPath.getFileName(), e.getMessage());
+        }
+        return rebuilt;
+    }
+
+    private static void collect(Path segment, List<long[]> ranges, Cidr target, int limit, List<Record> result)
+            throws IOException {
+        if (ranges.isEmpty()) {
+            return;
+        }
+        List<Record> matched = new ArrayList<>();
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+            for (long[] range : ranges) {
+                readLines(file, range[0], Math.min(range[1], file.size()), (offset, text) -> {
+                    Record record = Record.parse(text);
+                    if (record != null && record.matches(target)) {
+                        matched.add(record);
+                    }
+                });
+            }
+        }
+        // 文件内的记录按时间顺序排列
+        for (int i = matched.size() - 1; i >= 0 && result.size() < limit; i--) {
+            result.add(matched.get(i));
+        }
+    }
+
+    /**
+     * 分块读取 [start, end) 中的完整行，不完整的最后一行（写入中断）会被忽略
+     */
+    private static void readLines(FileChannel file, long start, long end, LineConsumer consumer) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteArrayOutputStream pending = new ByteArrayOutputStream(256);
+        long lineStart = start;
+        long position = start;
+        while (position < end) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunk.capacity(), end - position));
+            int read = file.read(chunk, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = chunk.get(i);
+                if (b == '\n') {
+                    consumer.accept(lineStart, pending.toString(StandardCharsets.UTF_8));
+                    pending.reset();
+                    lineStart = position + i + 1;
+                } else {
+                    pending.write(b);
+                }
+            }
+            position += read;
+        }
+    }
+
+    @FunctionalInterface
+    private interface LineConsumer {
+        void accept(long offset, String line);
+    }
+
+    /**
+     * 一条审计记录
+     */
+    public static final class Record {
+        private final long time;
+        private final String address;
+        private final String virtualHost;
+        private final String event;
+        private final String reason;
+        private final long expires;
+
+        private Record(long time, String address, String virtualHost, String event, String reason, long expires) {
+            this.time = time;
+            this.address = address;
+            this.virtualHost = virtualHost;
+            this.event = event;
+            this.reason = reason;
+            this.expires = expires;
+        }
+
+        /**
+         * 解析本类写入的一行，格式不正确时返回null
+         * <p>
+         * 从左到右逐个读取字段，字符串值整体跳过。主机名由客户端发送，其中转义后的引号和字段名
+         * 只会作为主机名的一部分，不会被当作后面的字段。重复的字段视为格式不正确。
+         */
+        static Record parse(String text) {
+            Reader reader = new Reader(text);
+            long time = 0;
+            String address = null;
+            String virtualHost = null;
+            String event = null;
+            String reason = null;
+            long expires = 0;
+            int seen = 0;
+            try {
+                reader.expect('{');
+                do {
+                    String name = reader.string();
+                    reader.expect(':');
+                    int field;
+                    switch (name) {
+                        case "time":
+                            field = 1;
+                            time = reader.number();
+                            break;
+                        case "ip":
+                            field = 1 << 1;
+                            address = reader.string();
+                            break;
+                        case "host":
+                            field = 1 << 2;
+                            virtualHost = reader.nullOrString();
+                            break;
+                        case "event":
+                            field = 1 << 3;
+                            event = reader.string();
+                            break;
+                        case "reason":
+                            field = 1 << 4;
+                            reason = reader.string();
+                            break;
+                        case "expires":
+                            field = 1 << 5;
+                            expires = reader.nullOrNumber();
+                            break;
+                        default:
+                            return null;
+                    }
+                    if ((seen & field) != 0) {
+                        return null;
+                    }
+                    seen |= field;
+                } while (reader.skip(','));
+                reader.expect('}');
+                reader.expectEnd();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (address == null || event == null || reason == null) {
+                return null;
+            }
+            return new Record(time, address, virtualHost, event, reason, expires);
+        }
+
+        private Cidr toCidr() {
+            try {
+                return Cidr.parse(address);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private boolean matches(Cidr target) {
+            Cidr cidr = toCidr();
+            if (cidr == null) {
+                return false;
+            }
+            if (cidr.getPrefixLength() >= target.getPrefixLength()) {
+                return target.contains(cidr.getHigh(), cidr.getLow());
+            }
+            return cidr.contains(target.getHigh(), target.getLow());
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return IP地址或 CIDR 格式的网段
+         */
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * @return 客户端发送的主机名（规范形式），没有时为null
+         */
+        public String getVirtualHost() {
+            return virtualHost;
+        }
+
+        /**
+         * @return ping、login 或 subnet
+         */
+        public String getEvent() {
+            return event;
+        }
+
+        /**
+         * @return invalid_host、spam 或 denied_network
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * @return 解除阻止的时间（毫秒），没有时为0
+         */
+        public long getExpires() {
+            return expires;
+        }
+
+        /**
+         * 按顺序读取 {@link AuditLog#encode} 写入的 JSON，只支持字符串、整数和 null，格式不正确时抛出
+         * {@link IllegalArgumentException}
+         */
+        private static final class Reader {
+            private final String text;
+            private int position;
+
+            Reader(String text) {
+                this.text = text;
+            }
+
+            void expect(char c) {
+                if (!skip(c)) {
+                    throw new IllegalArgumentException("第 " + position + " 个字符应为 " + c);
+                }
+            }
+
+            boolean skip(char c) {
+                if (position < text.length() && text.charAt(position) == c) {
+                    position++;
+                    return true;
+                }
+                return false;
+            }
+
+            void expectEnd() {
+                if (position != text.length()) {
+                    throw new IllegalArgumentException("记录末尾有多余的内容");
+                }
+            }
+
+            String string() {
+                expect('"');
+                StringBuilder value = new StringBuilder();
+                while (position < text.length()) {
+                    char c = text.charAt(position++);
+                    if (c == '"') {
+                        return value.toString();
+                    }
+                    if (c != '\\') {
+                        value.append(c);
+                        continue;
+                    }
+                    if (position >= text.length()) {
+                        break;
+                    }
+                    char escaped = text.charAt(position++);
+                    if (escaped == 'u') {
+                        if (position + 4 > text.length()) {
+                            break;
+                        }
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    } else {
+                        value.append(escaped);
+                    }
+                }
+                throw new IllegalArgumentException("字符串没有结束");
+            }
+
+            long number() {
+                int start = position;
+                if (position < text.length() && text.charAt(position) == '-') {
+                    position++;
+                }
+                while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    position++;
+                }
+                return Long.parseLong(text.substring(start, position));
+            }
+
+            String nullOrString() {
+                return skipNull() ? null : string();
+            }
+
+            /**
+             * @return null 时返回0
+             */
+            long nullOrNumber() {
+                return skipNull() ? 0 : number();
+            }
+
+            private boolean skipNull() {
+                if (text.startsWith("null", position)) {
+                    position += 4;
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+}
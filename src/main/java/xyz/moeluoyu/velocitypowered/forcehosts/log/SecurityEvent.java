@@ -0,0 +1,87 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.log;
+
+/**
+ * 一条安全日志事件
+ * 对象在队列中预先分配并被反复复用，生产者只写入字段，不会为每个事件创建新对象
+ */
+public final class SecurityEvent {
+    /**
+     * 事件类型
+     */
+    public enum Type {
+        PING_BLOCKED,
+        CONNECTION_BLOCKED,
+        PING_SPAM_BLOCKED,
+        SUBNET_BLOCKED,
+        LOGIN_SPAM_BLOCKED,
+        PING_DENIED_NETWORK,
+        LOGIN_DENIED_NETWORK,
+        LOGIN_QUOTA_DENIED
+    }
+
+    Type type;
+    long addressHigh;
+    long addressLow;
+    String virtualHost;
+    long time;
+    long unblockTime;
+    int prefixLength;
+
+    void set(Type type, long addressHigh, long addressLow, int prefixLength, String virtualHost, long time, long unblockTime) {
+        this.type = type;
+        this.addressHigh = addressHigh;
+        this.addressLow = addressLow;
+        this.prefixLength = prefixLength;
+        this.virtualHost = virtualHost;
+        this.time = time;
+        this.unblockTime = unblockTime;
+    }
+
+    void copyFrom(SecurityEvent other) {
+        set(other.type, other.addressHigh, other.addressLow, other.prefixLength, other.virtualHost, other.time, other.unblockTime);
+    }
+
+    void clear() {
+        virtualHost = null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return 地址高64位，编码方式见 {@link xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses}
+     */
+    public long getAddressHigh() {
+        return addressHigh;
+    }
+
+    /**
+     * @return 地址低64位
+     */
+    public long getAddressLow() {
+        return addressLow;
+    }
+
+    /**
+     * @return 128位空间中的前缀长度，单个地址为128
+     */
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    public String getVirtualHost() {
+        return virtualHost;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return 解除阻止的时间（毫秒），没有阻止时间的事件为0
+     */
+    public long getUnblockTime() {
+        return unblockTime;
+    }
+}
@@ -0,0 +1,79 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界的多生产者单消费者环形队列
+ * <p>
+ * 每个槽位带一个序号：序号等于写入位置时槽位可写，等于写入位置+1时槽位可读。
+ * 生产者只通过CAS争抢写入位置，队列满时直接返回失败而不会阻塞事件线程。
+ * 槽位中的事件对象预先分配，入队出队都不产生新对象。
+ */
+final class SecurityEventQueue {
+    private final SecurityEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // 只有消费者线程读写
+    private long head;
+    // 重新加载时替换此队列的新队列，消费者读完此队列后转到新队列
+    volatile SecurityEventQueue successor;
+
+    SecurityEventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new SecurityEvent[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new SecurityEvent();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * 入队
+     * @return 队列已满返回false
+     */
+    boolean offer(SecurityEvent.Type type, long addressHigh, long addressLow, int prefixLength, String virtualHost, long time, long unblockTime) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index].set(type, addressHigh, addressLow, prefixLength, virtualHost, time, unblockTime);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 出队，仅能由消费者线程调用
+     * @param into 用于接收事件内容的对象
+     * @return 队列为空返回false
+     */
+    boolean poll(SecurityEvent into) {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return false;
+        }
+        SecurityEvent slot = slots[index];
+        into.copyFrom(slot);
+        slot.clear();
+        sequences.lazySet(index, head + slots.length);
+        head++;
+        return true;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,378 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.log;
+
+import org.slf4j.Logger;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.host.HostNormalizer;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.TimeSource;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.ConfigManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.MessageManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.message.CompiledMessages;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.OffenderTracker;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步安全日志
+ * <p>
+ * 事件线程只把事件放入有界队列，由单独的后台线程写日志。每个统计周期内，
+ * 同类事件的前 detailLimit 条照常逐条输出，超出后不再逐条输出，
+ * 而是在周期结束时合并为一条摘要（次数、来源IP数量和最多的来源）。
+ * 队列已满时直接丢弃事件并计数，不会阻塞事件线程。重新加载时队列容量变化会更换队列，旧队列中的事件照常输出。
+ * 所有事件都会计入攻击来源统计并写入审计日志，是否输出日志由后台线程按配置决定。
+ */
+public class SecurityLogger {
+    // 每个统计周期内每类事件最多精确统计的来源IP数量
+    private static final int MAX_TRACKED_ADDRESSES = 4096;
+    // 摘要中列出的来源数量
+    private static final int TOP_OFFENDERS = 5;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Logger logger;
+    private final ConfigManager configManager;
+    private final MessageManager messageManager;
+    private final OffenderTracker offenders;
+    private final AuditLog audit;
+    // 事件时间和统计周期使用的时间
+    private final TimeSource clock;
+    // 在启动时按配置的容量创建，容量变化时更换
+    private volatile SecurityEventQueue queue;
+    private int queueSize;
+    private final LongAdder dropped = new LongAdder();
+    private final Window[] windows = new Window[SecurityEvent.Type.values().length];
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public SecurityLogger(Logger logger, ConfigManager configManager, MessageManager messageManager,
+                          OffenderTracker offenders, AuditLog audit, TimeSource clock) {
+        this.logger = logger;
+        this.configManager = configManager;
+        this.messageManager = messageManager;
+        this.offenders = offenders;
+        this.audit = audit;
+        this.clock = clock;
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new Window();
+        }
+        configManager.addReloadListener(this::applyConfig);
+    }
+
+    /**
+     * 启动后台写日志线程
+     */
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        queueSize = configManager.getSettings().getLogQueueSize();
+        queue = new SecurityEventQueue(queueSize);
+        running = true;
+        writer = new Thread(this::run, "ForceHosts-SecurityLog");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 队列容量变化时创建新队列，后台线程读完旧队列后转到新队列
+     */
+    private synchronized void applyConfig(ForceHostsSettings settings) {
+        if (writer == null || settings.getLogQueueSize() == queueSize) {
+            return;
+        }
+        queueSize = settings.getLogQueueSize();
+        SecurityEventQueue replacement = new SecurityEventQueue(queueSize);
+        queue.successor = replacement;
+        queue = replacement;
+    }
+
+    /**
+     * 停止后台线程，并输出队列中剩余的事件
+     */
+    public synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * 记录无效主机名的ping请求，地址编码方式见 {@link IpAddresses}
+     */
+    public void logPingBlocked(long addressHigh, long addressLow, String virtualHost) {
+        offer(SecurityEvent.Type.PING_BLOCKED, addressHigh, addressLow, 128, virtualHost, 0);
+    }
+
+    /**
+     * 记录无效主机名的连接
+     */
+    public void logConnectionBlocked(long addressHigh, long addressLow, String virtualHost) {
+        offer(SecurityEvent.Type.CONNECTION_BLOCKED, addressHigh, addressLow, 128, virtualHost, 0);
+    }
+
+    /**
+     * 记录频繁ping
+     * @param virtualHost 触发阻止的请求使用的主机名，只写入审计日志
+     * @param unblockTime 解除阻止的时间（毫秒）
+     */
+    public void logPingSpamBlocked(long addressHigh, long addressLow, String virtualHost, long unblockTime) {
+        offer(SecurityEvent.Type.PING_SPAM_BLOCKED, addressHigh, addressLow, 128, virtualHost, unblockTime);
+    }
+
+    /**
+     * 记录频繁登录
+     * @param virtualHost 触发阻止的请求使用的主机名，只写入审计日志
+     * @param unblockTime 解除阻止的时间（毫秒）
+     */
+    public void logLoginSpamBlocked(long addressHigh, long addressLow, String virtualHost, long unblockTime) {
+        offer(SecurityEvent.Type.LOGIN_SPAM_BLOCKED, addressHigh, addressLow, 128, virtualHost, unblockTime);
+    }
+
+    /**
+     * 记录整个网段被阻止
+     * @param prefixLength 128位空间中的前缀长度
+     * @param unblockTime 解除阻止的时间（毫秒）
+     */
+    public void logSubnetBlocked(long addressHigh, long addressLow, int prefixLength, long unblockTime) {
+        offer(SecurityEvent.Type.SUBNET_BLOCKED, addressHigh, addressLow, prefixLength, null, unblockTime);
+    }
+
+    /**
+     * 记录来自拒绝网段的ping，只写入审计日志
+     */
+    public void logPingDenied(long addressHigh, long addressLow, String virtualHost) {
+        offer(SecurityEvent.Type.PING_DENIED_NETWORK, addressHigh, addressLow, 128, virtualHost, 0);
+    }
+
+    /**
+     * 记录来自拒绝网段的登录，只写入审计日志
+     */
+    public void logLoginDenied(long addressHigh, long addressLow, String virtualHost) {
+        offer(SecurityEvent.Type.LOGIN_DENIED_NETWORK, addressHigh, addressLow, 128, virtualHost, 0);
+    }
+
+    /**
+     * 记录因主机名的登录配额已满而拒绝的登录，只写入审计日志和攻击来源统计
+     */
+    public void logLoginQuotaDenied(long addressHigh, long addressLow, String virtualHost) {
+        offer(SecurityEvent.Type.LOGIN_QUOTA_DENIED, addressHigh, addressLow, 128, virtualHost, 0);
+    }
+
+    private void offer(SecurityEvent.Type type, long addressHigh, long addressLow, int prefixLength, String virtualHost,
+                       long unblockTime) {
+        SecurityEventQueue queue = this.queue;
+        if (queue == null || !queue.offer(type, addressHigh, addressLow, prefixLength, virtualHost, clock.currentTimeMillis(), unblockTime)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * @return 启动以来因队列已满而丢弃的事件数（未输出的部分）
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void run() {
+        SecurityEventQueue queue = this.queue;
+        // 上一个队列，更换前已取得它的事件线程可能稍后才写入，继续读取到下一次更换
+        SecurityEventQueue previous = null;
+        SecurityEvent event = new SecurityEvent();
+        long windowStart = clock.currentTimeMillis();
+        while (true) {
+            boolean drained = false;
+            ForceHostsSettings settings = configManager.getSettings();
+            CompiledMessages messages = messageManager.getCompiled();
+            if (previous != null) {
+                while (previous.poll(event)) {
+                    handle(settings, messages, event);
+                    drained = true;
+                }
+            }
+            while (queue.poll(event)) {
+                handle(settings, messages, event);
+                drained = true;
+            }
+            SecurityEventQueue successor = queue.successor;
+            if (successor != null) {
+                previous = queue;
+                queue = successor;
+                continue;
+            }
+
+            long now = clock.currentTimeMillis();
+            long windowMillis = TimeUnit.SECONDS.toMillis(settings.getLogSummaryInterval());
+            if (now - windowStart >= windowMillis || !running) {
+                flush(settings, messages, now - windowStart);
+                windowStart = now;
+            }
+            audit.flush(settings, now);
+
+            if (!running) {
+                if (!queue.poll(event) && (previous == null || !previous.poll(event))) {
+                    audit.close();
+                    return;
+                }
+                handle(settings, messages, event);
+            } else if (!drained) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void handle(ForceHostsSettings settings, CompiledMessages messages, SecurityEvent event) {
+        String address = event.prefixLength < 128
+                ? IpAddresses.toString(event.addressHigh, event.addressLow, event.prefixLength)
+                : IpAddresses.toString(event.addressHigh, event.addressLow);
+        // 客户端发送的主机名可能含有控制字符，统计和日志只使用规范形式
+        String virtualHost = event.virtualHost != null ? HostNormalizer.canonical(event.virtualHost) : null;
+        audit.append(settings, event, address, virtualHost);
+        switch (event.type) {
+            case PING_BLOCKED:
+            case CONNECTION_BLOCKED:
+            case LOGIN_QUOTA_DENIED:
+                offenders.record(address, virtualHost, event.time);
+                break;
+            case PING_SPAM_BLOCKED:
+            case LOGIN_SPAM_BLOCKED:
+                offenders.record(address, null, event.time);
+                break;
+            default:
+                // 网段阻止事件只在新阻止时产生一次，拒绝网段由管理员配置，都不计入来源统计
+                break;
+        }
+        if (!isLogged(settings, event.type)) {
+            return;
+        }
+
+        Window window = windows[event.type.ordinal()];
+        window.record(address);
+        if (window.count > settings.getLogDetailLimit()) {
+            return;
+        }
+
+        switch (event.type) {
+            case PING_BLOCKED:
+                logger.info(messages.getPingBlocked(), address, virtualHost);
+                break;
+            case CONNECTION_BLOCKED:
+                logger.info(messages.getConnectionBlocked(), address, virtualHost);
+                break;
+            case PING_SPAM_BLOCKED:
+                logger.info(messages.getPingSpamBlocked(), address, remainingSeconds(event));
+                break;
+            case SUBNET_BLOCKED:
+                logger.info(messages.getSubnetBlocked(), address, remainingSeconds(event));
+                break;
+            case LOGIN_SPAM_BLOCKED:
+                logger.info(messages.getLoginSpamBlocked(), address, remainingSeconds(event));
+                break;
+        }
+    }
+
+    private static boolean isLogged(ForceHostsSettings settings, SecurityEvent.Type type) {
+        switch (type) {
+            case PING_BLOCKED:
+                return settings.isLogPing();
+            case CONNECTION_BLOCKED:
+                return settings.isLogConnection();
+            case LOGIN_SPAM_BLOCKED:
+                return settings.isLogLoginBlock();
+            case PING_DENIED_NETWORK:
+            case LOGIN_DENIED_NETWORK:
+            case LOGIN_QUOTA_DENIED:
+                return false;
+            default:
+                return settings.isLogBlock();
+        }
+    }
+
+    private static long remainingSeconds(SecurityEvent event) {
+        return TimeUnit.MILLISECONDS.toSeconds(Math.max(0, event.unblockTime - event.time));
+    }
+
+    private void flush(ForceHostsSettings settings, CompiledMessages messages, long elapsedMillis) {
+        long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(elapsedMillis));
+        for (SecurityEvent.Type type : SecurityEvent.Type.values()) {
+            Window window = windows[type.ordinal()];
+            if (window.count > settings.getLogDetailLimit()) {
+                String template;
+                switch (type) {
+                    case PING_BLOCKED:
+                        template = messages.getPingBlockedSummary();
+                        break;
+                    case CONNECTION_BLOCKED:
+                        template = messages.getConnectionBlockedSummary();
+                        break;
+                    case PING_SPAM_BLOCKED:
+                        template = messages.getPingSpamBlockedSummary();
+                        break;
+                    case SUBNET_BLOCKED:
+                        template = messages.getSubnetBlockedSummary();
+                        break;
+                    default:
+                        template = messages.getLoginSpamBlockedSummary();
+                        break;
+                }
+                logger.info(template, seconds, window.distinctAddresses(), window.count, window.topOffenders());
+            }
+            window.reset();
+        }
+
+        long droppedCount = dropped.sumThenReset();
+        if (droppedCount > 0) {
+            logger.warn(messages.getSecurityLogDropped(), seconds, droppedCount);
+        }
+    }
+
+    /**
+     * 单类事件在一个统计周期内的计数，仅由后台线程访问
+     */
+    private static final class Window {
+        private final Map<String, int[]> counts = new HashMap<>();
+        private long count;
+        private boolean overflow;
+
+        void record(String address) {
+            count++;
+            int[] counter = counts.get(address);
+            if (counter != null) {
+                counter[0]++;
+            } else if (counts.size() < MAX_TRACKED_ADDRESSES) {
+                counts.put(address, new int[]{1});
+            } else {
+                overflow = true;
+            }
+        }
+
+        String distinctAddresses() {
+            return overflow ? counts.size() + "+" : String.valueOf(counts.size());
+        }
+
+        String topOffenders() {
+            List<Map.Entry<String, int[]>> entries = new ArrayList<>(counts.entrySet());
+            entries.sort((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]));
+            StringJoiner joiner = new StringJoiner(", ");
+            for (int i = 0; i < Math.min(TOP_OFFENDERS, entries.size()); i++) {
+                joiner.add(entries.get(i).getKey() + " (" + entries.get(i).getValue()[0] + ")");
+            }
+            return joiner.toString();
+        }
+
+        void reset() {
+            counts.clear();
+            count = 0;
+            overflow = false;
+        }
+    }
+}
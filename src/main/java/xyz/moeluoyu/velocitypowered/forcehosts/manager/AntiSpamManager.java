@@ -1,142 +1,777 @@
 package xyz.moeluoyu.velocitypowered.forcehosts.manager;
 
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
 import org.slf4j.Logger;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.HostPolicy;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.SubnetTier;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.AttackDetector;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.CountMinRateLimiter;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.RateLimiter;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.SlidingWindowRateLimiter;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.TimeSource;
+import xyz.moeluoyu.velocitypowered.forcehosts.log.SecurityLogger;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.BlocklistSnapshot;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.CidrBlocklist;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+import xyz.moeluoyu.velocitypowered.forcehosts.rules.RuleEngine;
+import xyz.moeluoyu.velocitypowered.forcehosts.sync.BlocklistSyncService;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.ArrayList;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class AntiSpamManager {
+    // 单个地址在128位空间中的前缀长度
+    private static final int FULL_PREFIX = 128;
+    private static final String SNAPSHOT_FILE = "blocklist.dat";
+
     private final Logger logger;
-    private final MessageManager messageManager;
     private final ConfigManager configManager;
+    private final SecurityLogger securityLogger;
+    private final ForceHostsMetrics metrics;
+    private final BlocklistSyncService sync;
+    private final TimeSource clock;
+    private final Path snapshotPath;
     
-    // 记录每个IP的ping请求
-    private final Map<String, List<Long>> pingHistory = new ConcurrentHashMap<>();
-    // 记录被阻止的IP及其解除阻止时间
-    private final Map<String, Long> blockedIPs = new ConcurrentHashMap<>();
-    // 记录每个IP最后一次记录ping-spam-blocked日志的时间
-    private final Map<String, Long> lastSpamLogTime = new ConcurrentHashMap<>();
-    
-    // 用于同步pingHistory操作的锁
-    private final Object pingHistoryLock = new Object();
+    // 记录每个IP的ping请求，配置变化时重建；sketch 模式下为固定大小的计数器，只估算次数，
+    // 计数无法按IP清除，阻止或解除阻止后仍保留到超出统计范围（最长 timeWindow × 1.25）
+    private volatile RateLimiter pingLimiter;
+    // 记录每个IP的登录请求，与ping分开计数，始终精确计数
+    private volatile RateLimiter loginLimiter;
+    // 单独设置了次数上限的主机名规则各自的限流器，键为规范化后的规则
+    private volatile Map<String, RateLimiter> hostPingLimiters = Collections.emptyMap();
+    private volatile Map<String, RateLimiter> hostLoginLimiters = Collections.emptyMap();
+    // 记录被阻止的IP和网段及其解除阻止时间，一次查询即可覆盖所有包含该IP的网段；容量变化时原地调整，不替换实例
+    private final CidrBlocklist blocklist;
+    // 每级网段的限流器，未启用网段聚合时为空
+    private volatile SubnetLimiter[] subnetLimiters = new SubnetLimiter[0];
+    private List<SubnetTier> subnetTiers;
+    private long subnetWindowMillis;
+    private long subnetEscalationMillis;
+    private int subnetMaxEntries;
+    private boolean subnetSketch;
+    private int subnetSketchWidth;
+    private int subnetSketchDepth;
+    // 全局ping速率，决定是否使用攻击模式的限制
+    private final AttackDetector attackDetector;
+    // 攻击模式下每个IP的ping记录，未启用攻击模式时为null
+    private volatile RateLimiter attackPingLimiter;
+    // 平时未启用网段聚合时，攻击模式下使用的网段限流器
+    private volatile SubnetLimiter[] attackSubnetLimiters = new SubnetLimiter[0];
+    private List<SubnetTier> attackSubnetTiers;
+    // 被过期或容量上限淘汰的记录数
+    private final LongAdder evictions = new LongAdder();
+    // 接受其他代理同步的阻止记录的范围，随配置更新
+    private volatile SyncLimits syncLimits;
+    // 超出本机范围而被忽略的同步记录数
+    private final LongAdder syncIgnored = new LongAdder();
+
+    // 定时清理任务
+    private Object plugin;
+    private Scheduler scheduler;
+    private ScheduledTask cleanupTask;
+    private int cleanupInterval;
+    private ScheduledTask snapshotTask;
+    private int snapshotInterval;
+    private ScheduledTask attackTask;
+
+    // 上次保存快照时的阻止列表及其修改次数，未变化时跳过保存
+    private final Object snapshotLock = new Object();
+    private CidrBlocklist savedBlocklist;
+    private long savedModifications;
 
-    public AntiSpamManager(Logger logger, MessageManager messageManager, ConfigManager configManager) {
+    public AntiSpamManager(Logger logger, ConfigManager configManager, Path dataDirectory,
+                           SecurityLogger securityLogger, ForceHostsMetrics metrics, BlocklistSyncService sync,
+                           TimeSource clock) {
         this.logger = logger;
-        this.messageManager = messageManager;
         this.configManager = configManager;
+        this.snapshotPath = dataDirectory.resolve(SNAPSHOT_FILE);
+        this.securityLogger = securityLogger;
+        this.metrics = metrics;
+        this.sync = sync;
+        this.clock = clock;
+        this.attackDetector = new AttackDetector(clock.currentTimeMillis());
+        this.blocklist = new CidrBlocklist(configManager.getSettings().getMaxEntries(), evictions);
+        applyConfig(configManager.getSettings());
+        configManager.addReloadListener(this::applyConfig);
+
+        metrics.registerGauge("forcehosts_ping_tracker_entries", "跟踪ping次数的IP数量", () -> pingLimiter.size());
+        metrics.registerGauge("forcehosts_login_tracker_entries", "跟踪登录次数的IP数量", () -> loginLimiter.size());
+        metrics.registerGauge("forcehosts_subnet_tracker_entries", "跟踪的网段记录数量", this::getSubnetEntryCount);
+        metrics.registerGauge("forcehosts_sketch_bytes", "sketch 模式计数器占用的内存（字节）", this::getSketchBytes);
+        metrics.registerGauge("forcehosts_blocklist_entries", "阻止列表中的IP和网段数量", () -> blocklist.size());
+        metrics.registerCounter("forcehosts_evictions_total", "被过期或容量上限淘汰的记录数", evictions::sum);
+        metrics.registerCounter("forcehosts_sync_ignored_total", "前缀过短而被忽略的同步记录数", syncIgnored::sum);
+        metrics.registerGauge("forcehosts_ping_rate", "全局ping速率（次/秒）", attackDetector::getRate);
+        metrics.registerGauge("forcehosts_attack_mode", "是否处于攻击模式（1为是）", () -> attackDetector.isActive() ? 1 : 0);
     }
 
     /**
-     * 检查IP是否被阻止
-     * @param ipAddress IP地址
-     * @return 如果被阻止返回true，否则返回false
+     * 根据配置重建限流器和缓存，参数未变化的部分保持不变
+     * @param settings 配置快照
      */
-    public boolean isIPBlocked(String ipAddress) {
-        if (!configManager.isAntiSpamEnabled()) {
-            return false;
+    private synchronized void applyConfig(ForceHostsSettings settings) {
+        long windowMillis = TimeUnit.SECONDS.toMillis(settings.getTimeWindow());
+        int maxPings = settings.getMaxPings();
+        int maxEntries = settings.getMaxEntries();
+
+        boolean sketch = settings.isSketchMode();
+        pingLimiter = createLimiter(settings, pingLimiter, windowMillis, maxPings, sketch);
+
+        // 登录次数远少于ping，始终精确计数
+        long loginWindowMillis = TimeUnit.SECONDS.toMillis(settings.getLoginTimeWindow());
+        loginLimiter = createLimiter(settings, loginLimiter, loginWindowMillis, settings.getMaxLogins(), false);
+
+        hostPingLimiters = createHostLimiters(settings, hostPingLimiters, windowMillis, false);
+        hostLoginLimiters = createHostLimiters(settings, hostLoginLimiters, loginWindowMillis, true);
+
+        if (blocklist.getMaxEntries() != maxEntries) {
+            // 在阻止列表的锁内调整，调整期间事件线程的阻止直接写入同一个实例
+            blocklist.setMaxEntries(maxEntries);
         }
-        
-        Long unblockTime = blockedIPs.get(ipAddress);
-        if (unblockTime == null) {
-            return false;
+
+        if (settings.isAttackModeEnabled()) {
+            long attackWindowMillis = TimeUnit.SECONDS.toMillis(settings.getAttackTimeWindow());
+            attackPingLimiter = createLimiter(settings, attackPingLimiter, attackWindowMillis, settings.getAttackMaxPings(),
+                    sketch);
+        } else {
+            attackPingLimiter = null;
         }
-        
-        long currentTime = System.currentTimeMillis();
-        if (currentTime >= unblockTime) {
-            // 阻止时间已过，从阻止列表中移除
-            blockedIPs.remove(ipAddress);
+
+        List<SubnetTier> tiers = settings.isSubnetsEnabled() ? settings.getSubnetTiers() : List.of();
+        // 平时已启用网段聚合时攻击模式直接沿用同一组限流器
+        List<SubnetTier> attackTiers = settings.isAttackModeEnabled() && settings.isAttackSubnets()
+                && !settings.isSubnetsEnabled() ? settings.getSubnetTiers() : List.of();
+        long escalationMillis = TimeUnit.SECONDS.toMillis(settings.getSubnetEscalationWindow());
+        boolean subnetChanged = subnetWindowMillis != windowMillis || subnetEscalationMillis != escalationMillis
+                || subnetMaxEntries != maxEntries || subnetSketch != sketch
+                || (sketch && (subnetSketchWidth != settings.getSketchWidth() || subnetSketchDepth != settings.getSketchDepth()));
+        if (subnetChanged || !tiers.equals(subnetTiers)) {
+            subnetLimiters = createSubnetLimiters(settings, tiers, windowMillis, escalationMillis);
+            subnetTiers = tiers;
+        }
+        if (subnetChanged || !attackTiers.equals(attackSubnetTiers)) {
+            attackSubnetLimiters = createSubnetLimiters(settings, attackTiers, windowMillis, escalationMillis);
+            attackSubnetTiers = attackTiers;
+        }
+        syncLimits = new SyncLimits(settings, tiers, attackTiers);
+        subnetWindowMillis = windowMillis;
+        subnetEscalationMillis = escalationMillis;
+        subnetMaxEntries = maxEntries;
+        subnetSketch = sketch;
+        subnetSketchWidth = settings.getSketchWidth();
+        subnetSketchDepth = settings.getSketchDepth();
+
+        if (scheduler != null && cleanupInterval != settings.getCleanupInterval()) {
+            scheduleCleanupTask(settings.getCleanupInterval());
+        }
+        if (scheduler != null && snapshotInterval != settings.getSnapshotInterval()) {
+            scheduleSnapshotTask(settings.getSnapshotInterval());
+        }
+    }
+
+    /**
+     * 创建限流器，参数未变化时沿用原有的限流器
+     * @param sketch true为使用固定大小的 Count-Min Sketch 估算次数，false为按IP精确计数
+     */
+    private RateLimiter createLimiter(ForceHostsSettings settings, RateLimiter previous, long windowMillis, int maxEvents,
+                                      boolean sketch) {
+        if (sketch) {
+            if (previous instanceof CountMinRateLimiter) {
+                CountMinRateLimiter limiter = (CountMinRateLimiter) previous;
+                if (limiter.getWindowMillis() == windowMillis && limiter.getMaxEvents() == maxEvents
+                        && limiter.getWidth() == settings.getSketchWidth() && limiter.getDepth() == settings.getSketchDepth()) {
+                    return limiter;
+                }
+            }
+            return new CountMinRateLimiter(windowMillis, maxEvents, settings.getSketchWidth(), settings.getSketchDepth());
+        }
+        if (previous instanceof SlidingWindowRateLimiter) {
+            SlidingWindowRateLimiter limiter = (SlidingWindowRateLimiter) previous;
+            if (limiter.getWindowMillis() == windowMillis && limiter.getMaxEvents() == maxEvents
+                    && limiter.getMaxEntries() == settings.getMaxEntries()) {
+                return limiter;
+            }
+        }
+        return new SlidingWindowRateLimiter(windowMillis, maxEvents, settings.getMaxEntries(), evictions);
+    }
+
+    /**
+     * 为设置了次数上限的主机名规则创建限流器，参数未变化的沿用原有的限流器
+     * @param logins true为登录次数，false为ping次数
+     */
+    private Map<String, RateLimiter> createHostLimiters(ForceHostsSettings settings, Map<String, RateLimiter> previous,
+                                                        long windowMillis, boolean logins) {
+        Map<String, RateLimiter> limiters = new HashMap<>();
+        settings.getHostPolicies().forEach((rule, policy) -> {
+            int maxEvents = logins ? policy.getMaxLogins() : policy.getMaxPings();
+            if (maxEvents == HostPolicy.INHERIT) {
+                return;
+            }
+            limiters.put(rule, createLimiter(settings, previous.get(rule), windowMillis, maxEvents,
+                    !logins && settings.isSketchMode()));
+        });
+        return limiters.isEmpty() ? Collections.emptyMap() : limiters;
+    }
+
+    /**
+     * @return 主机名规则单独设置的限流器，未设置时返回 defaultLimiter
+     */
+    private static RateLimiter hostLimiter(Map<String, RateLimiter> limiters, String rule, int maxEvents,
+                                           RateLimiter defaultLimiter) {
+        if (maxEvents == HostPolicy.INHERIT) {
+            return defaultLimiter;
+        }
+        // 重载期间限流器可能尚未创建
+        RateLimiter limiter = limiters.get(rule);
+        return limiter != null ? limiter : defaultLimiter;
+    }
+
+    /**
+     * sketch 模式下网段的ping次数同样只做估算，被阻止IP的数量始终精确计数
+     */
+    private SubnetLimiter[] createSubnetLimiters(ForceHostsSettings settings, List<SubnetTier> tiers, long windowMillis,
+                                                 long escalationMillis) {
+        SubnetLimiter[] limiters = new SubnetLimiter[tiers.size()];
+        for (int i = 0; i < limiters.length; i++) {
+            SubnetTier tier = tiers.get(i);
+            RateLimiter pings = tier.getMaxPings() > 0
+                    ? createLimiter(settings, null, windowMillis, tier.getMaxPings(), settings.isSketchMode()) : null;
+            limiters[i] = new SubnetLimiter(tier, pings, escalationMillis, settings.getMaxEntries(), evictions);
+        }
+        return limiters;
+    }
+
+    /**
+     * 启动定时清理任务
+     * @param plugin 插件实例
+     * @param scheduler Velocity调度器
+     */
+    public synchronized void startCleanupTask(Object plugin, Scheduler scheduler) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        scheduleCleanupTask(configManager.getSettings().getCleanupInterval());
+        scheduleSnapshotTask(configManager.getSettings().getSnapshotInterval());
+        attackTask = scheduler.buildTask(plugin, this::updateAttackMode)
+                .delay(1, TimeUnit.SECONDS)
+                .repeat(1, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    /**
+     * 停止定时清理任务
+     */
+    public synchronized void stopCleanupTask() {
+        if (cleanupTask != null) {
+            cleanupTask.cancel();
+            cleanupTask = null;
+        }
+        if (snapshotTask != null) {
+            snapshotTask.cancel();
+            snapshotTask = null;
+        }
+        if (attackTask != null) {
+            attackTask.cancel();
+            attackTask = null;
+        }
+        scheduler = null;
+    }
+
+    private void scheduleCleanupTask(int interval) {
+        if (cleanupTask != null) {
+            cleanupTask.cancel();
+        }
+        cleanupInterval = interval;
+        cleanupTask = scheduler.buildTask(plugin, this::cleanup)
+                .delay(cleanupInterval, TimeUnit.SECONDS)
+                .repeat(cleanupInterval, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    private void scheduleSnapshotTask(int interval) {
+        if (snapshotTask != null) {
+            snapshotTask.cancel();
+            snapshotTask = null;
+        }
+        snapshotInterval = interval;
+        if (interval > 0) {
+            snapshotTask = scheduler.buildTask(plugin, this::saveSnapshot)
+                    .delay(interval, TimeUnit.SECONDS)
+                    .repeat(interval, TimeUnit.SECONDS)
+                    .schedule();
+        }
+    }
+
+    /**
+     * 每秒计算一次全局ping速率，按需进入或退出攻击模式
+     */
+    private void updateAttackMode() {
+        ForceHostsSettings settings = configManager.getSettings();
+        if (!settings.isAntiSpamEnabled() || !settings.isAttackModeEnabled()) {
+            if (attackDetector.reset()) {
+                logger.info("攻击模式已关闭，恢复正常的防频繁刷新限制");
+            }
+            return;
+        }
+        long now = clock.currentTimeMillis();
+        if (!attackDetector.update(now, settings.getAttackEnterRate(), settings.getAttackExitRate(),
+                TimeUnit.SECONDS.toMillis(settings.getAttackExitDelay()))) {
+            return;
+        }
+        if (attackDetector.isActive()) {
+            logger.warn("全局ping速率达到 {} 次/秒，进入攻击模式：每 {} 秒最多 {} 次ping，超出后阻止 {} 秒",
+                    attackDetector.getRate(), settings.getAttackTimeWindow(), settings.getAttackMaxPings(),
+                    settings.getAttackBlockDuration());
+        } else {
+            logger.info("全局ping速率已连续 {} 秒低于 {} 次/秒，退出攻击模式（持续 {} 秒，峰值 {} 次/秒）",
+                    settings.getAttackExitDelay(), settings.getAttackExitRate(),
+                    TimeUnit.MILLISECONDS.toSeconds(now - attackDetector.getActiveSince()), attackDetector.getPeakRate());
+        }
+    }
+
+    /**
+     * @return 全局ping速率检测，用于显示攻击模式状态
+     */
+    public AttackDetector getAttackDetector() {
+        return attackDetector;
+    }
+
+    /**
+     * 从快照恢复仍在有效期内的阻止记录，应在注册事件处理器之前调用
+     */
+    public void loadSnapshot() {
+        if (configManager.getSettings().getSnapshotInterval() <= 0 || !Files.exists(snapshotPath)) {
+            return;
+        }
+        long start = System.nanoTime();
+        long now = clock.currentTimeMillis();
+        CidrBlocklist blocked = blocklist;
+        try {
+            int loaded = BlocklistSnapshot.read(snapshotPath, now, (high, low, prefixLength, unblockTime) ->
+                    blocked.block(high, low, prefixLength, unblockTime, now));
+            synchronized (snapshotLock) {
+                savedBlocklist = blocked;
+                savedModifications = blocked.getModificationCount();
+            }
+            logger.info("已从快照恢复 {} 条阻止记录，耗时 {} 毫秒", loaded,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            logger.warn("读取阻止列表快照失败，将不恢复阻止记录: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 保存阻止列表快照，阻止列表自上次保存后没有变化时跳过
+     */
+    public void saveSnapshot() {
+        if (configManager.getSettings().getSnapshotInterval() <= 0) {
+            return;
+        }
+        synchronized (snapshotLock) {
+            CidrBlocklist blocked = blocklist;
+            long modifications = blocked.getModificationCount();
+            if (blocked == savedBlocklist && modifications == savedModifications) {
+                return;
+            }
+            try {
+                BlocklistSnapshot.write(snapshotPath, blocked, clock.currentTimeMillis());
+                savedBlocklist = blocked;
+                savedModifications = modifications;
+            } catch (IOException e) {
+                logger.warn("保存阻止列表快照失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 检查IP或其所在网段是否被阻止
+     * @param settings 本次事件使用的配置快照
+     * @param high 地址高64位
+     * @param low 地址低64位
+     * @return 如果被阻止返回true，否则返回false
+     */
+    public boolean isIPBlocked(ForceHostsSettings settings, long high, long low) {
+        if (!settings.isAntiSpamEnabled()) {
             return false;
         }
-        
-        return true;
+
+        // 阻止时间已过的记录视为不存在，由定时清理移除
+        return blocklist.blockedUntil(high, low, clock.currentTimeMillis()) != 0;
     }
     
     /**
      * 检查并处理频繁ping
-     * @param ipAddress IP地址
+     * @param settings 本次事件使用的配置快照
+     * @param decision 访问规则的判断结果，受信任的地址不受限制，主机名规则可单独设置次数上限
+     * @param high 地址高64位
+     * @param low 地址低64位
      * @return 如果应该阻止ping返回true，否则返回false
      */
-    public boolean checkAndHandlePingSpam(String ipAddress) {
-        if (!configManager.isAntiSpamEnabled()) {
+    public boolean checkAndHandlePingSpam(ForceHostsSettings settings, RuleEngine.Decision decision, long high, long low) {
+        if (!settings.isAntiSpamEnabled() || decision.isTrusted()) {
             return false;
         }
+        // 只有主机名有效的ping计入全局速率（已被阻止的IP也计入）。主机名无效的ping已被拒绝或返回诱饵响应，
+        // 单纯的主机名扫描不应让正常玩家也受到攻击模式的限制
+        if (decision.isHostAllowed()) {
+            attackDetector.record();
+        }
         
         // 如果IP已经被阻止，直接返回true
-        if (isIPBlocked(ipAddress)) {
+        if (isIPBlocked(settings, high, low)) {
             return true;
         }
         
-        long currentTime = System.currentTimeMillis();
-
-        // 同步块-线程安全
-        synchronized (pingHistoryLock) {
-            List<Long> pings = pingHistory.computeIfAbsent(ipAddress, k -> new ArrayList<>());
-            
-            // 创建新的列表来避免并发修改异常
-            List<Long> newPings = new ArrayList<>(pings);
-            
-            // 添加当前ping时间
-            newPings.add(currentTime);
-            
-            // 清理超出时间窗口的ping记录
-            long windowStart = currentTime - TimeUnit.SECONDS.toMillis(configManager.getTimeWindow());
-            newPings.removeIf(time -> time < windowStart);
-            
-            // 更新pingHistory
-            pingHistory.put(ipAddress, newPings);
-            
-            // 检查是否超过最大ping次数
-            if (newPings.size() > configManager.getMaxPings()) {
-                // 超过限制，阻止该IP
-                long unblockTime = currentTime + TimeUnit.SECONDS.toMillis(configManager.getBlockDuration());
-                blockedIPs.put(ipAddress, unblockTime);
-                
-                // 清理该IP的ping历史
-                pingHistory.remove(ipAddress);
-                
-                return true;
+        long currentTime = clock.currentTimeMillis();
+        RateLimiter limiter = hostLimiter(hostPingLimiters, decision.getRule(), decision.getMaxPings(), pingLimiter);
+        SubnetLimiter[] limiters = subnetLimiters;
+        int blockDuration = settings.getBlockDuration();
+        // 攻击模式下使用更严格的限制和更长的阻止时间
+        RateLimiter attackLimiter = attackPingLimiter;
+        if (attackLimiter != null && attackDetector.isActive()) {
+            limiter = attackLimiter;
+            SubnetLimiter[] attackLimiters = attackSubnetLimiters;
+            if (attackLimiters.length > 0) {
+                limiters = attackLimiters;
             }
+            blockDuration = settings.getAttackBlockDuration();
+        }
+        long minSubnetBlockMillis = TimeUnit.SECONDS.toMillis(blockDuration);
+        boolean ipv4 = IpAddresses.isIPv4(high, low);
+
+        // 检查是否超过最大ping次数
+        if (limiter.tryAcquire(high, low, currentTime)) {
+            // 超过限制，阻止该IP
+            long unblockTime = currentTime + TimeUnit.SECONDS.toMillis(blockDuration);
+            blocklist.block(high, low, FULL_PREFIX, unblockTime, currentTime);
+            sync.publishBlock(high, low, FULL_PREFIX, unblockTime);
+            metrics.increment(ForceHostsMetrics.Counter.BLOCKS_ISSUED);
+
+            // 清理该IP的ping历史；sketch 模式下不做任何操作，阻止期间不再计数，阻止时间长于统计范围时解除后计数已失效
+            limiter.reset(high, low);
+
+            // 同一网段内被阻止的IP过多时，升级为阻止整个网段
+            for (SubnetLimiter subnet : limiters) {
+                if (subnet.escalation != null && subnet.matches(ipv4)) {
+                    long subnetHigh = IpAddresses.maskHigh(high, subnet.prefixLength);
+                    long subnetLow = IpAddresses.maskLow(low, subnet.prefixLength);
+                    if (subnet.escalation.tryAcquire(subnetHigh, subnetLow, currentTime)) {
+                        subnet.escalation.reset(subnetHigh, subnetLow);
+                        blockSubnet(subnet, subnetHigh, subnetLow, currentTime, minSubnetBlockMillis);
+                    }
+                }
+            }
+            return true;
         }
         
+        // 按网段统计ping次数，防止轮换同一网段内的IP绕过单IP限制
+        for (SubnetLimiter subnet : limiters) {
+            if (subnet.pingLimiter != null && subnet.matches(ipv4)) {
+                long subnetHigh = IpAddresses.maskHigh(high, subnet.prefixLength);
+                long subnetLow = IpAddresses.maskLow(low, subnet.prefixLength);
+                if (subnet.pingLimiter.tryAcquire(subnetHigh, subnetLow, currentTime)) {
+                    subnet.pingLimiter.reset(subnetHigh, subnetLow);
+                    blockSubnet(subnet, subnetHigh, subnetLow, currentTime, minSubnetBlockMillis);
+                    return true;
+                }
+            }
+        }
+
         return false;
     }
+
+    /**
+     * 检查并处理频繁登录，已因频繁ping或登录被阻止的IP直接拒绝
+     * @param settings 本次事件使用的配置快照
+     * @param decision 访问规则的判断结果，受信任的地址不受限制，主机名规则可单独设置次数上限
+     * @param high 地址高64位
+     * @param low 地址低64位
+     * @return 如果应该拒绝登录返回true，否则返回false
+     */
+    public boolean checkAndHandleLoginSpam(ForceHostsSettings settings, RuleEngine.Decision decision, long high, long low) {
+        boolean loginLimitEnabled = settings.isLoginLimitEnabled();
+        if ((!loginLimitEnabled && !settings.isAntiSpamEnabled()) || decision.isTrusted()) {
+            return false;
+        }
+
+        // 与ping共用同一个阻止列表
+        long currentTime = clock.currentTimeMillis();
+        if (blocklist.blockedUntil(high, low, currentTime) != 0) {
+            return true;
+        }
+        if (!loginLimitEnabled) {
+            return false;
+        }
+
+        RateLimiter limiter = hostLimiter(hostLoginLimiters, decision.getRule(), decision.getMaxLogins(), loginLimiter);
+        if (limiter.tryAcquire(high, low, currentTime)) {
+            long unblockTime = currentTime + TimeUnit.SECONDS.toMillis(settings.getLoginBlockDuration());
+            blocklist.block(high, low, FULL_PREFIX, unblockTime, currentTime);
+            sync.publishBlock(high, low, FULL_PREFIX, unblockTime);
+            metrics.increment(ForceHostsMetrics.Counter.BLOCKS_ISSUED);
+            limiter.reset(high, low);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * 记录频繁登录，是否输出日志由安全日志线程按配置决定
+     * @param high 地址高64位
+     * @param low 地址低64位
+     * @param virtualHost 客户端发送的主机名
+     */
+    public void logLoginBlock(long high, long low, String virtualHost) {
+        securityLogger.logLoginSpamBlocked(high, low, virtualHost, blocklist.blockedUntil(high, low, clock.currentTimeMillis()));
+    }
+
+    /**
+     * @param minBlockMillis 最短阻止时间，攻击模式下网段的阻止时间不短于单个IP
+     */
+    private void blockSubnet(SubnetLimiter subnet, long high, long low, long now, long minBlockMillis) {
+        long unblockTime = now + Math.max(TimeUnit.SECONDS.toMillis(subnet.tier.getBlockDuration()), minBlockMillis);
+        // 只在网段新被阻止时记录日志
+        if (blocklist.block(high, low, subnet.prefixLength, unblockTime, now)) {
+            sync.publishBlock(high, low, subnet.prefixLength, unblockTime);
+            metrics.increment(ForceHostsMetrics.Counter.SUBNET_BLOCKS_ISSUED);
+            securityLogger.logSubnetBlocked(high, low, subnet.prefixLength, unblockTime);
+        }
+    }
     
     /**
-     * 记录防频繁刷新日志
-     * @param ipAddress IP地址
+     * 记录频繁ping，是否输出日志由安全日志线程按配置决定
+     * @param high 地址高64位
+     * @param low 地址低64位
+     * @param virtualHost 客户端发送的主机名
      */
-    public void logSpamBlock(String ipAddress) {
-        if (!configManager.isLogBlock()) {
-            return; // 如果不记录防频繁刷新日志，则直接返回
+    public void logSpamBlock(long high, long low, String virtualHost) {
+        // 重复日志由安全日志线程合并为摘要
+        securityLogger.logPingSpamBlocked(high, low, virtualHost, blocklist.blockedUntil(high, low, clock.currentTimeMillis()));
+    }
+
+    /**
+     * 合并其他代理同步过来的阻止记录，不会再次发送给其他代理
+     * <p>
+     * 只接受本机按当前配置也可能产生的记录：前缀不短于已启用的网段聚合的前缀（未启用时只接受单个地址），
+     * 解除阻止时间不晚于现在加上配置中最长的阻止时间，防止一条消息阻止所有地址或长期阻止。
+     * @param prefixLength 128位空间中的前缀长度
+     * @param unblockTime 解除阻止的时间（毫秒），0表示解除阻止
+     */
+    public void mergeRemote(long high, long low, int prefixLength, long unblockTime) {
+        SyncLimits limits = syncLimits;
+        if (!limits.accepts(IpAddresses.maskHigh(high, prefixLength), IpAddresses.maskLow(low, prefixLength), prefixLength)) {
+            syncIgnored.increment();
+            return;
         }
-        
-        // 检查是否需要记录日志（1秒冷却防止重复日志刷屏）
-        long currentTime = System.currentTimeMillis();
-        Long lastLogTime = lastSpamLogTime.get(ipAddress);
-        if (lastLogTime == null || currentTime - lastLogTime >= 1000) { // 1000毫秒 = 1秒
-            // 计算剩余阻止时间（秒）
-            Long unblockTime = blockedIPs.get(ipAddress);
-            int remainingSeconds = 0;
-            if (unblockTime != null && unblockTime > currentTime) {
-                remainingSeconds = (int) TimeUnit.MILLISECONDS.toSeconds(unblockTime - currentTime);
-            }
-            
-            logger.info(messageManager.parseColor(messageManager.getMessageOrDefault("ping-spam-blocked", "&c阻止了来自 {} 的频繁ping请求，将在 {} 秒后解除阻止")),
-                    ipAddress, remainingSeconds);
-            
-            // 更新最后日志时间
-            lastSpamLogTime.put(ipAddress, currentTime);
+        if (unblockTime == 0) {
+            blocklist.unblock(high, low, prefixLength);
+            return;
+        }
+        long now = clock.currentTimeMillis();
+        if (unblockTime > now) {
+            blocklist.block(high, low, prefixLength, Math.min(unblockTime, now + limits.maxBlockMillis), now);
         }
     }
+
+    /**
+     * 解除对一个IP或网段的阻止，并通知其他代理
+     * <p>
+     * 不清除ping计数：sketch 模式下计数器无法按IP清除，阻止前的计数在统计范围（最长 timeWindow × 1.25）内仍然有效，
+     * 在此期间手动解除阻止的IP再次ping时可能立即被重新阻止。精确计数在阻止时已清除该IP的记录，不受影响。
+     * @return 存在该阻止记录时返回true
+     */
+    public boolean unblock(Cidr cidr) {
+        boolean removed = blocklist.unblock(cidr.getHigh(), cidr.getLow(), cidr.getPrefixLength());
+        sync.publishUnblock(cidr.getHigh(), cidr.getLow(), cidr.getPrefixLength());
+        return removed;
+    }
     
     /**
      * 清理过期的阻止IP
      */
     public void cleanupExpiredBlocks() {
-        long currentTime = System.currentTimeMillis();
-        blockedIPs.entrySet().removeIf(entry -> currentTime >= entry.getValue());
+        blocklist.sweep(clock.currentTimeMillis());
+    }
+
+    /**
+     * 定时清理：移除过期的ping记录、登录记录和阻止记录
+     */
+    public void cleanup() {
+        long now = clock.currentTimeMillis();
+        pingLimiter.cleanUp(now);
+        loginLimiter.cleanUp(now);
+        for (RateLimiter limiter : hostPingLimiters.values()) {
+            limiter.cleanUp(now);
+        }
+        for (RateLimiter limiter : hostLoginLimiters.values()) {
+            limiter.cleanUp(now);
+        }
+        for (SubnetLimiter subnet : subnetLimiters) {
+            subnet.cleanUp(now);
+        }
+        RateLimiter attackLimiter = attackPingLimiter;
+        if (attackLimiter != null) {
+            attackLimiter.cleanUp(now);
+        }
+        for (SubnetLimiter subnet : attackSubnetLimiters) {
+            subnet.cleanUp(now);
+        }
+        blocklist.sweep(now);
+    }
+
+    /**
+     * @return 当前跟踪的记录总数（ping记录、登录记录、网段记录和阻止记录）
+     */
+    public long getTrackedEntryCount() {
+        RateLimiter attackLimiter = attackPingLimiter;
+        return pingLimiter.size() + loginLimiter.size() + blocklist.size() + getSubnetEntryCount()
+                + getHostEntryCount() + (attackLimiter != null ? attackLimiter.size() : 0);
+    }
+
+    private long getHostEntryCount() {
+        long count = 0;
+        for (RateLimiter limiter : hostPingLimiters.values()) {
+            count += limiter.size();
+        }
+        for (RateLimiter limiter : hostLoginLimiters.values()) {
+            count += limiter.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return sketch 模式下所有计数器占用的内存（字节），精确计数时为0
+     */
+    private long getSketchBytes() {
+        long bytes = sketchBytes(pingLimiter) + sketchBytes(attackPingLimiter);
+        for (RateLimiter limiter : hostPingLimiters.values()) {
+            bytes += sketchBytes(limiter);
+        }
+        for (SubnetLimiter subnet : subnetLimiters) {
+            bytes += sketchBytes(subnet.pingLimiter);
+        }
+        for (SubnetLimiter subnet : attackSubnetLimiters) {
+            bytes += sketchBytes(subnet.pingLimiter);
+        }
+        return bytes;
+    }
+
+    private static long sketchBytes(RateLimiter limiter) {
+        return limiter instanceof CountMinRateLimiter ? ((CountMinRateLimiter) limiter).getMemoryBytes() : 0;
+    }
+
+    private long getSubnetEntryCount() {
+        long count = 0;
+        for (SubnetLimiter subnet : subnetLimiters) {
+            count += subnet.size();
+        }
+        for (SubnetLimiter subnet : attackSubnetLimiters) {
+            count += subnet.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return 启动以来被过期或容量上限淘汰的记录数
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * 合并同步记录时的限制，由配置计算
+     */
+    private static final class SyncLimits {
+        // 128位编码中允许的最短前缀，未启用对应的网段聚合时只接受单个地址
+        private final int minIpv4Prefix;
+        private final int minIpv6Prefix;
+        private final long maxBlockMillis;
+
+        SyncLimits(ForceHostsSettings settings, List<SubnetTier> tiers, List<SubnetTier> attackTiers) {
+            int ipv4 = FULL_PREFIX;
+            int ipv6 = FULL_PREFIX;
+            int maxSeconds = Math.max(settings.getBlockDuration(), settings.getLoginBlockDuration());
+            if (settings.isAttackModeEnabled()) {
+                maxSeconds = Math.max(maxSeconds, settings.getAttackBlockDuration());
+            }
+            for (List<SubnetTier> list : List.of(tiers, attackTiers)) {
+                for (SubnetTier tier : list) {
+                    if (tier.isIpv6()) {
+                        ipv6 = Math.min(ipv6, tier.getEncodedPrefix());
+                    } else {
+                        ipv4 = Math.min(ipv4, tier.getEncodedPrefix());
+                    }
+                    maxSeconds = Math.max(maxSeconds, tier.getBlockDuration());
+                }
+            }
+            this.minIpv4Prefix = ipv4;
+            this.minIpv6Prefix = ipv6;
+            this.maxBlockMillis = TimeUnit.SECONDS.toMillis(maxSeconds);
+        }
+
+        /**
+         * @param high 掩码后的地址高64位
+         * @param low 掩码后的地址低64位
+         */
+        boolean accepts(long high, long low, int prefixLength) {
+            if (prefixLength >= IpAddresses.IPV4_PREFIX_OFFSET && IpAddresses.isIPv4(high, low)) {
+                return prefixLength >= minIpv4Prefix;
+            }
+            // IPv6 网段不能覆盖 IPv4 映射地址，本机的网段聚合不会产生这样的网段
+            if (IpAddresses.maskHigh(0, prefixLength) == high
+                    && IpAddresses.maskLow(IpAddresses.IPV4_MAPPED_PREFIX, prefixLength) == low) {
+                return false;
+            }
+            return prefixLength >= minIpv6Prefix;
+        }
+    }
+
+    /**
+     * 一级网段的限流器，键为掩码后的网段地址
+     */
+    private static final class SubnetLimiter {
+        private final SubnetTier tier;
+        private final int prefixLength;
+        // 网段内的ping次数，maxPings 为0时不限制
+        private final RateLimiter pingLimiter;
+        // 网段内被阻止的IP数量，escalateAfter 为0时不升级
+        private final SlidingWindowRateLimiter escalation;
+
+        SubnetLimiter(SubnetTier tier, RateLimiter pingLimiter, long escalationMillis, int maxEntries, LongAdder evictions) {
+            this.tier = tier;
+            this.prefixLength = tier.getEncodedPrefix();
+            this.pingLimiter = pingLimiter;
+            // 第 escalateAfter 个被阻止的IP触发升级
+            this.escalation = tier.getEscalateAfter() > 0
+                    ? new SlidingWindowRateLimiter(escalationMillis, tier.getEscalateAfter() - 1, maxEntries, evictions) : null;
+        }
+
+        boolean matches(boolean ipv4) {
+            return tier.isIpv6() != ipv4;
+        }
+
+        void cleanUp(long now) {
+            if (pingLimiter != null) {
+                pingLimiter.cleanUp(now);
+            }
+            if (escalation != null) {
+                escalation.cleanUp(now);
+            }
+        }
+
+        long size() {
+            return (pingLimiter != null ? pingLimiter.size() : 0) + (escalation != null ? escalation.size() : 0);
+        }
     }
 }
\ No newline at end of file
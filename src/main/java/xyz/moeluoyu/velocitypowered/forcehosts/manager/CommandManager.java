@@ -2,20 +2,57 @@ package xyz.moeluoyu.velocitypowered.forcehosts.manager;
 
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.AttackDetector;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.TimeSource;
+import xyz.moeluoyu.velocitypowered.forcehosts.log.AuditLog;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.LatencyHistogram;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.OffenderTracker;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.SpaceSaving;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
 
 public class CommandManager implements SimpleCommand {
+    private static final DateTimeFormatter AUDIT_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
     private final ConfigManager configManager;
     private final MessageManager messageManager;
+    private final ForceHostsMetrics metrics;
+    private final AntiSpamManager antiSpamManager;
+    private final LoginQuotaManager loginQuotaManager;
+    private final OffenderTracker offenderTracker;
+    private final AuditLog auditLog;
     private final org.slf4j.Logger logger;
+    // 与攻击模式检测使用同一个时间
+    private final TimeSource clock;
 
-    public CommandManager(ConfigManager configManager, MessageManager messageManager, org.slf4j.Logger logger) {
+    public CommandManager(ConfigManager configManager, MessageManager messageManager, ForceHostsMetrics metrics,
+                          AntiSpamManager antiSpamManager, LoginQuotaManager loginQuotaManager,
+                          OffenderTracker offenderTracker, AuditLog auditLog, org.slf4j.Logger logger,
+                          TimeSource clock) {
         this.configManager = configManager;
         this.messageManager = messageManager;
+        this.metrics = metrics;
+        this.antiSpamManager = antiSpamManager;
+        this.loginQuotaManager = loginQuotaManager;
+        this.offenderTracker = offenderTracker;
+        this.auditLog = auditLog;
         this.logger = logger;
+        this.clock = clock;
     }
 
     @Override
@@ -30,9 +67,15 @@ public class CommandManager implements SimpleCommand {
             }
 
             try {
-                messageManager.loadMessages(); // 先加载消息文件
-                configManager.loadConfig();   // 再加载配置文件
-                source.sendMessage(messageManager.toComponent(messageManager.getMessageOrDefault("reload-success", "&a配置已成功重载！")));
+                boolean messagesLoaded = messageManager.loadMessages(); // 先加载消息文件
+                boolean configLoaded = configManager.loadConfig();   // 再加载配置文件
+                if (messagesLoaded && configLoaded) {
+                    source.sendMessage(messageManager.toComponent(messageManager.getMessageOrDefault("reload-success", "&a配置已成功重载！")));
+                } else {
+                    source.sendMessage(messageManager.toComponent(
+                            messageManager.getMessageOrDefault("reload-failed", "&c重载配置时发生错误: {}")
+                                    .replace("{}", "文件格式错误或有无效的配置项，已继续使用原有配置，详情请查看控制台")));
+                }
             } catch (Exception e) {
                 source.sendMessage(messageManager.toComponent(String.format(
                         messageManager.getMessageOrDefault("reload-failed", "&c重载配置时发生错误: {}"),
@@ -40,15 +83,289 @@ public class CommandManager implements SimpleCommand {
                 )));
                 logger.error("重载配置失败", e);
             }
+        } else if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            if (!source.hasPermission("forcehosts.stats")) {
+                source.sendMessage(messageManager.toComponent("&c你没有权限执行此命令！"));
+                return;
+            }
+            sendStats(source);
+        } else if (args.length >= 1 && args.length <= 3 && args[0].equalsIgnoreCase("top")) {
+            if (!source.hasPermission("forcehosts.top")) {
+                source.sendMessage(messageManager.toComponent("&c你没有权限执行此命令！"));
+                return;
+            }
+            sendTop(source, args);
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("unblock")) {
+            if (!source.hasPermission("forcehosts.unblock")) {
+                source.sendMessage(messageManager.toComponent("&c你没有权限执行此命令！"));
+                return;
+            }
+            unblock(source, args[1]);
+        } else if ((args.length == 2 || args.length == 3) && args[0].equalsIgnoreCase("audit")) {
+            if (!source.hasPermission("forcehosts.audit")) {
+                source.sendMessage(messageManager.toComponent("&c你没有权限执行此命令！"));
+                return;
+            }
+            sendAudit(source, args);
+        } else {
+            source.sendMessage(messageManager.toComponent(messageManager.getMessageOrDefault("command-usage", "&e用法: /forcehosts reload - 重新加载配置 | /forcehosts stats - 查看运行统计 | /forcehosts top [ips|hosts] [数量] - 查看被拒绝最多的来源 | /forcehosts unblock <IP|网段> - 解除阻止 | /forcehosts audit <IP|网段> [数量] - 查询审计日志")));
+        }
+    }
+
+    private void sendStats(CommandSource source) {
+        source.sendMessage(messageManager.toComponent("&6ForceHosts 运行统计"));
+        source.sendMessage(messageManager.toComponent(String.format("&eping: &f允许 %d，主机名无效 %d，频繁ping %d，拒绝的网段 %d",
+                metrics.get(ForceHostsMetrics.Counter.PINGS_ALLOWED),
+                metrics.get(ForceHostsMetrics.Counter.PINGS_DENIED_HOST),
+                metrics.get(ForceHostsMetrics.Counter.PINGS_DENIED_SPAM),
+                metrics.get(ForceHostsMetrics.Counter.PINGS_DENIED_NETWORK))));
+        source.sendMessage(messageManager.toComponent(String.format("&e登录: &f允许 %d，主机名无效 %d，频繁登录 %d，拒绝的网段 %d，配额已满 %d",
+                metrics.get(ForceHostsMetrics.Counter.LOGINS_ALLOWED),
+                metrics.get(ForceHostsMetrics.Counter.LOGINS_DENIED_HOST),
+                metrics.get(ForceHostsMetrics.Counter.LOGINS_DENIED_SPAM),
+                metrics.get(ForceHostsMetrics.Counter.LOGINS_DENIED_NETWORK),
+                metrics.get(ForceHostsMetrics.Counter.LOGINS_DENIED_QUOTA))));
+        sendLoginQuotas(source);
+        source.sendMessage(messageManager.toComponent(String.format("&e阻止: &fIP %d 次，网段 %d 次",
+                metrics.get(ForceHostsMetrics.Counter.BLOCKS_ISSUED),
+                metrics.get(ForceHostsMetrics.Counter.SUBNET_BLOCKS_ISSUED))));
+        sendAttackMode(source);
+        for (ForceHostsMetrics.External counter : metrics.getExternalCounters()) {
+            source.sendMessage(messageManager.toComponent("&e" + counter.getHelp() + ": &f" + counter.getValue()));
+        }
+        for (ForceHostsMetrics.External gauge : metrics.getGauges()) {
+            source.sendMessage(messageManager.toComponent("&e" + gauge.getHelp() + ": &f" + gauge.getValue()));
+        }
+        sendLatency(source, "ping处理耗时", metrics.snapshot(ForceHostsMetrics.Timer.PROXY_PING));
+        sendLatency(source, "登录处理耗时", metrics.snapshot(ForceHostsMetrics.Timer.PRE_LOGIN));
+    }
+
+    private void sendLoginQuotas(CommandSource source) {
+        for (LoginQuotaManager.Usage usage : loginQuotaManager.getUsage()) {
+            source.sendMessage(messageManager.toComponent(String.format(
+                    "&e登录配额 %s: &f正在登录 %d/%s，速率 %d/%s 次/秒，拒绝 %d（人数已满）/%d（速率已满）",
+                    usage.getRule(), usage.getInFlight(), limit(usage.getMaxConcurrentLogins()),
+                    usage.getRate(), limit(usage.getMaxLoginRate()),
+                    usage.getDeniedConcurrent(), usage.getDeniedRate())));
+        }
+    }
+
+    private static String limit(int max) {
+        return max > 0 ? String.valueOf(max) : "不限";
+    }
+
+    private void sendAttackMode(CommandSource source) {
+        ForceHostsSettings settings = configManager.getSettings();
+        AttackDetector detector = antiSpamManager.getAttackDetector();
+        String state;
+        if (!settings.isAntiSpamEnabled() || !settings.isAttackModeEnabled()) {
+            state = "&7未启用";
+        } else if (detector.isActive()) {
+            state = String.format("&c已开启 &f（已持续 %d 秒，峰值 %d 次/秒）",
+                    (clock.currentTimeMillis() - detector.getActiveSince()) / 1000, detector.getPeakRate());
+        } else {
+            state = String.format("&a未开启 &f（进入阈值 %d 次/秒）", settings.getAttackEnterRate());
+        }
+        source.sendMessage(messageManager.toComponent(String.format("&e攻击模式: %s&f，当前ping速率 %d 次/秒",
+                state, detector.getRate())));
+    }
+
+    /**
+     * /forcehosts top [ips|hosts] [数量]
+     */
+    private void sendTop(CommandSource source, String[] args) {
+        boolean hosts = args.length >= 2 && args[1].equalsIgnoreCase("hosts");
+        if (args.length >= 2 && !hosts && !args[1].equalsIgnoreCase("ips")) {
+            source.sendMessage(messageManager.toComponent("&e用法: /forcehosts top [ips|hosts] [数量]"));
+            return;
+        }
+        int limit = 10;
+        if (args.length == 3) {
+            try {
+                limit = Math.max(1, Math.min(100, Integer.parseInt(args[2])));
+            } catch (NumberFormatException e) {
+                source.sendMessage(messageManager.toComponent("&c数量必须是数字"));
+                return;
+            }
+        }
+
+        List<SpaceSaving.Item<String>> items = hosts ? offenderTracker.topHosts(limit) : offenderTracker.topAddresses(limit);
+        source.sendMessage(messageManager.toComponent(String.format("&6被拒绝最多的%s（计数半衰期 %d 秒）",
+                hosts ? "主机名" : "IP", offenderTracker.getHalfLife())));
+        if (items.isEmpty()) {
+            source.sendMessage(messageManager.toComponent("&7暂无数据"));
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            SpaceSaving.Item<String> item = items.get(i);
+            String error = item.getError() >= 1 ? String.format(Locale.ROOT, " &7(误差 ±%.0f)", item.getError()) : "";
+            // IP和主机名来自客户端，作为纯文本插入
+            source.sendMessage(withText(String.format(Locale.ROOT, "&e%d. &f", i + 1), item.getKey(),
+                    String.format(Locale.ROOT, " &7约 %.0f 次%s", item.getCount(), error)));
+        }
+    }
+
+    /**
+     * /forcehosts unblock <IP|网段>，启用同步时同时解除其他代理上的阻止
+     */
+    private void unblock(CommandSource source, String target) {
+        Cidr cidr;
+        try {
+            cidr = Cidr.parse(target);
+        } catch (IllegalArgumentException e) {
+            source.sendMessage(withText("&c无效的IP或网段: ", target, ""));
+            return;
+        }
+        if (antiSpamManager.unblock(cidr)) {
+            source.sendMessage(withText("&a已解除对 ", target, " 的阻止"));
+            logger.info("{} 解除了对 {} 的阻止", source instanceof Player
+                    ? ((Player) source).getUsername() : "控制台", target);
         } else {
-            source.sendMessage(messageManager.toComponent(messageManager.getMessageOrDefault("command-usage", "&e用法: /forcehosts reload - 重新加载配置")));
+            source.sendMessage(withText("&e", target, " 没有被阻止（只能解除与阻止时相同的IP或网段）"));
+        }
+    }
+
+    /**
+     * /forcehosts audit <IP|网段> [数量]，查询审计日志中与该地址有关的记录
+     */
+    private void sendAudit(CommandSource source, String[] args) {
+        Cidr cidr;
+        try {
+            cidr = Cidr.parse(args[1]);
+        } catch (IllegalArgumentException e) {
+            source.sendMessage(withText("&c无效的IP或网段: ", args[1], ""));
+            return;
+        }
+        int limit = 20;
+        if (args.length == 3) {
+            try {
+                limit = Math.max(1, Math.min(200, Integer.parseInt(args[2])));
+            } catch (NumberFormatException e) {
+                source.sendMessage(messageManager.toComponent("&c数量必须是数字"));
+                return;
+            }
+        }
+
+        List<AuditLog.Record> records;
+        try {
+            records = auditLog.lookup(cidr, limit);
+        } catch (IOException e) {
+            source.sendMessage(messageManager.toComponent("&c读取审计日志失败: " + e.getMessage()));
+            logger.error("读取审计日志失败", e);
+            return;
+        }
+        source.sendMessage(withText("&6", args[1], " 的审计记录（从新到旧）"));
+        if (records.isEmpty()) {
+            source.sendMessage(messageManager.toComponent(configManager.getSettings().isAuditEnabled()
+                    ? "&7暂无记录" : "&7暂无记录（审计日志未启用）"));
+            return;
+        }
+        for (AuditLog.Record record : records) {
+            StringBuilder line = new StringBuilder("&e").append(AUDIT_TIME.format(Instant.ofEpochMilli(record.getTime())))
+                    .append(" &f").append(record.getAddress())
+                    .append(' ').append(auditEventName(record.getEvent()))
+                    .append(" &7").append(auditReasonName(record.getReason()));
+            if (record.getExpires() > 0) {
+                line.append(" 至 ").append(AUDIT_TIME.format(Instant.ofEpochMilli(record.getExpires())));
+            }
+            Component message = messageManager.toComponent(line.toString());
+            if (record.getVirtualHost() != null) {
+                // 主机名由客户端发送，作为纯文本附加，不解析其中的颜色代码
+                message = message.append(Component.text(" 主机名 "
+                        + (record.getVirtualHost().isEmpty() ? "(空)" : record.getVirtualHost())));
+            }
+            source.sendMessage(message);
+        }
+    }
+
+    /**
+     * 拼接消息，中间的文本作为纯文本插入，不解析其中的颜色代码
+     * @param before 前面的消息，可使用颜色代码
+     * @param text 来自客户端或命令参数的文本
+     * @param after 后面的消息，可使用颜色代码
+     */
+    private Component withText(String before, String text, String after) {
+        Component message = messageManager.toComponent(before).append(Component.text(text));
+        return after.isEmpty() ? message : message.append(messageManager.toComponent(after));
+    }
+
+    private static String auditEventName(String event) {
+        switch (event) {
+            case "ping":
+                return "ping";
+            case "login":
+                return "登录";
+            case "subnet":
+                return "阻止网段";
+            default:
+                return event;
+        }
+    }
+
+    private static String auditReasonName(String reason) {
+        switch (reason) {
+            case "invalid_host":
+                return "主机名无效";
+            case "spam":
+                return "频繁请求";
+            case "denied_network":
+                return "拒绝的网段";
+            case "login_quota":
+                return "登录配额已满";
+            default:
+                return reason;
         }
     }
 
+    private void sendLatency(CommandSource source, String name, LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.getCount() == 0) {
+            source.sendMessage(messageManager.toComponent("&e" + name + ": &f暂无数据"));
+            return;
+        }
+        source.sendMessage(messageManager.toComponent(String.format(Locale.ROOT,
+                "&e%s: &f平均 %s，p50 %s，p99 %s，p99.9 %s，最大 %s（共 %d 次）", name,
+                formatNanos((long) snapshot.getMean()),
+                formatNanos(snapshot.getValueAtQuantile(0.5)),
+                formatNanos(snapshot.getValueAtQuantile(0.99)),
+                formatNanos(snapshot.getValueAtQuantile(0.999)),
+                formatNanos(snapshot.getMax()),
+                snapshot.getCount())));
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format(Locale.ROOT, "%.1fµs", nanos / 1e3);
+        }
+        return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+    }
+
     @Override
     public List<String> suggest(Invocation invocation) {
-        if (invocation.arguments().length == 0 && invocation.source().hasPermission("forcehosts.reload")) {
-            return Collections.singletonList("reload");
+        if (invocation.arguments().length == 0) {
+            List<String> suggestions = new ArrayList<>();
+            if (invocation.source().hasPermission("forcehosts.reload")) {
+                suggestions.add("reload");
+            }
+            if (invocation.source().hasPermission("forcehosts.stats")) {
+                suggestions.add("stats");
+            }
+            if (invocation.source().hasPermission("forcehosts.top")) {
+                suggestions.add("top");
+            }
+            if (invocation.source().hasPermission("forcehosts.unblock")) {
+                suggestions.add("unblock");
+            }
+            if (invocation.source().hasPermission("forcehosts.audit")) {
+                suggestions.add("audit");
+            }
+            return suggestions;
+        }
+        String[] args = invocation.arguments();
+        if (args.length <= 2 && args[0].equalsIgnoreCase("top") && invocation.source().hasPermission("forcehosts.top")) {
+            return Arrays.asList("ips", "hosts");
         }
         return Collections.emptyList();
     }
@@ -60,6 +377,10 @@ public class CommandManager implements SimpleCommand {
 
     @Override
     public boolean hasPermission(Invocation invocation) {
-        return invocation.source().hasPermission("forcehosts.reload");
+        return invocation.source().hasPermission("forcehosts.reload")
+                || invocation.source().hasPermission("forcehosts.stats")
+                || invocation.source().hasPermission("forcehosts.top")
+                || invocation.source().hasPermission("forcehosts.unblock")
+                || invocation.source().hasPermission("forcehosts.audit");
     }
 }
\ No newline at end of file
@@ -4,34 +4,56 @@ import com.google.common.collect.ImmutableList;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import org.slf4j.Logger;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.HostPolicy;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.PingResponse;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.SubnetTier;
+import xyz.moeluoyu.velocitypowered.forcehosts.host.HostMatcher;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.PatternSyntaxException;
 
 public class ConfigManager {
     private final Logger logger;
     private final Path dataDirectory;
-    private List<String> allowedHosts = Collections.emptyList();
-    private boolean logPing = true; // 默认记录ping日志
-    private boolean logConnection = true; // 默认记录连接日志
-    
-    // 防频繁刷新配置
-    private boolean antiSpamEnabled = true;
-    private int timeWindow = 10; // 时间窗口（秒）
-    private int maxPings = 5; // 最大ping次数
-    private int blockDuration = 60; // 阻止时间（秒）
-    private boolean logBlock = true; // 默认记录防频繁刷新日志
+    // 当前生效的配置快照，重载时整体替换
+    private volatile ForceHostsSettings settings = ForceHostsSettings.defaults();
+    // 上次成功加载的配置文件内容，用于跳过未变化的重载
+    private String loadedContent;
+
+    // 配置重载完成后的回调
+    private final List<Consumer<ForceHostsSettings>> reloadListeners = new CopyOnWriteArrayList<>();
 
     public ConfigManager(Logger logger, @DataDirectory Path dataDirectory) {
         this.logger = logger;
         this.dataDirectory = dataDirectory;
     }
 
-    public void loadConfig() {
+    /**
+     * 加载配置文件
+     * @return 是否成功加载，格式错误或有无效的配置项时返回false并继续使用原有配置
+     */
+    public boolean loadConfig() {
+        return loadConfig(true);
+    }
+
+    /**
+     * 配置文件内容与上次成功加载时不同才重新加载
+     * @return 是否加载了新的配置
+     */
+    public boolean reloadIfChanged() {
+        return loadConfig(false);
+    }
+
+    private synchronized boolean loadConfig(boolean force) {
         try {
             if (!Files.exists(dataDirectory)) {
                 Files.createDirectories(dataDirectory);
@@ -49,106 +71,369 @@ public class ConfigManager {
                 logger.info("已创建默认配置文件 config.yml");
             }
 
-            Yaml yaml = new Yaml();
-            try (Reader reader = Files.newBufferedReader(configPath)) {
-                Map<String, Object> config = yaml.load(reader);
-
-                List<String> hosts = Optional.ofNullable(config)
-                        .map(c -> c.get("hosts"))
-                        .filter(l -> l instanceof List)
-                        .map(l -> (List<?>) l)
-                        .map(list -> {
-                            List<String> result = new ArrayList<>();
-                            for (Object item : list) {
-                                if (item != null) {
-                                    result.add(item.toString().toLowerCase());
-                                }
+            String content = Files.readString(configPath);
+            if (!force && content.equals(loadedContent)) {
+                return false;
+            }
+            Map<String, Object> config = parse(content);
+            if (config == null) {
+                return false;
+            }
+            ForceHostsSettings.Builder builder = ForceHostsSettings.builder();
+            // 无效的配置项，有任何一项时整个文件都不生效
+            List<String> errors = new ArrayList<>();
+
+            List<String> hosts = Optional.ofNullable(config.get("hosts"))
+                    .filter(l -> l instanceof List)
+                    .map(l -> (List<?>) l)
+                    .map(list -> {
+                        List<String> result = new ArrayList<>();
+                        for (Object item : list) {
+                            if (item != null) {
+                                // 正则规则保留原样，其余规则统一转为小写
+                                result.add(HostMatcher.normalizeRule(item.toString()));
                             }
-                            return ImmutableList.copyOf(result);
-                        })
-                        .orElse(ImmutableList.of());
-
-                allowedHosts = hosts;
-                logger.info("已加载 {} 个允许的主机名", hosts.size());
-                
-                // 加载logPing配置
-                logPing = Optional.ofNullable(config)
-                        .map(c -> c.get("logPing"))
-                        .filter(o -> o instanceof Boolean)
-                        .map(o -> (Boolean) o)
-                        .orElse(true); // 默认为true
-                // 加载logConnection配置
-                logConnection = Optional.ofNullable(config)
-                        .map(c -> c.get("logConnection"))
-                        .filter(o -> o instanceof Boolean)
-                        .map(o -> (Boolean) o)
-                        .orElse(true); // 默认为true
-                
-                // 加载防频繁刷新配置
-                Map<String, Object> antiSpamConfig = Optional.ofNullable(config)
-                        .map(c -> c.get("antiSpamRefresh"))
-                        .filter(m -> m instanceof Map)
-                        .map(m -> (Map<String, Object>) m)
-                        .orElse(Collections.emptyMap());
-                
-                antiSpamEnabled = Optional.ofNullable(antiSpamConfig.get("enabled"))
-                        .filter(o -> o instanceof Boolean)
-                        .map(o -> (Boolean) o)
-                        .orElse(true); // 默认启用
-                
-                timeWindow = Optional.ofNullable(antiSpamConfig.get("timeWindow"))
-                        .filter(o -> o instanceof Integer)
-                        .map(o -> (Integer) o)
-                        .orElse(10); // 默认10秒
-                
-                maxPings = Optional.ofNullable(antiSpamConfig.get("maxPings"))
-                        .filter(o -> o instanceof Integer)
-                        .map(o -> (Integer) o)
-                        .orElse(5); // 默认5次
-                
-                blockDuration = Optional.ofNullable(antiSpamConfig.get("blockDuration"))
-                        .filter(o -> o instanceof Integer)
-                        .map(o -> (Integer) o)
-                        .orElse(60); // 默认60秒
-
-                logBlock = Optional.ofNullable(antiSpamConfig.get("logBlock"))
-                        .filter(o -> o instanceof Boolean)
-                        .map(o -> (Boolean) o)
-                        .orElse(true); // 默认记录防频繁刷新日志
+                        }
+                        return ImmutableList.copyOf(result);
+                    })
+                    .orElse(ImmutableList.of());
+
+            ForceHostsSettings previous = settings;
+            boolean hostsChanged = !hosts.equals(previous.getAllowedHosts());
+            if (!hostsChanged) {
+                // 规则未变化时沿用已编译的匹配器
+                builder.allowedHosts(hosts, previous.getHostMatcher());
+            } else {
+                try {
+                    builder.allowedHosts(hosts);
+                } catch (PatternSyntaxException e) {
+                    errors.add("主机名正则规则无效: " + e.getMessage());
+                }
             }
+
+            builder.logPing(getBoolean(config, "logPing", true)) // 默认为true
+                    .logConnection(getBoolean(config, "logConnection", true)); // 默认为true
+            
+            // 加载防频繁刷新配置
+            Map<String, Object> antiSpamConfig = getSection(config, "antiSpamRefresh");
+            builder.antiSpamEnabled(getBoolean(antiSpamConfig, "enabled", true)) // 默认启用
+                    .timeWindow(getInt(antiSpamConfig, "timeWindow", 10)) // 默认10秒
+                    .maxPings(getInt(antiSpamConfig, "maxPings", 5)) // 默认5次
+                    .blockDuration(getInt(antiSpamConfig, "blockDuration", 60)) // 默认60秒
+                    .logBlock(getBoolean(antiSpamConfig, "logBlock", true)) // 默认记录防频繁刷新日志
+                    .maxEntries(getPositiveInt(antiSpamConfig, "maxEntries", 100000)) // 默认最多跟踪100000个IP
+                    .cleanupInterval(getPositiveInt(antiSpamConfig, "cleanupInterval", 30)) // 默认30秒
+                    .snapshotInterval(Math.max(0, getInt(antiSpamConfig, "snapshotInterval", 60))); // 默认60秒
+
+            // 加载计数方式配置
+            String mode = getString(antiSpamConfig, "mode", "exact").trim().toLowerCase(Locale.ROOT);
+            if (!mode.equals("exact") && !mode.equals("sketch")) {
+                errors.add("未知的计数方式 antiSpamRefresh.mode: " + mode);
+            }
+            Map<String, Object> sketchConfig = getSection(antiSpamConfig, "sketch");
+            builder.sketchMode(mode.equals("sketch")) // 默认按IP精确计数
+                    .sketchWidth(getPositiveInt(sketchConfig, "width", 65536)) // 默认每行65536个计数器
+                    .sketchDepth(Math.min(16, getPositiveInt(sketchConfig, "depth", 4))); // 默认4行
+
+            // 加载网段聚合配置
+            Map<String, Object> subnetConfig = getSection(antiSpamConfig, "subnets");
+            int blockDuration = getInt(antiSpamConfig, "blockDuration", 60);
+            List<SubnetTier> subnetTiers = new ArrayList<>();
+            subnetTiers.addAll(getSubnetTiers(subnetConfig, "ipv4", false, blockDuration, errors));
+            subnetTiers.addAll(getSubnetTiers(subnetConfig, "ipv6", true, blockDuration, errors));
+            builder.subnetsEnabled(getBoolean(subnetConfig, "enabled", false)) // 默认不启用
+                    .subnetEscalationWindow(getPositiveInt(subnetConfig, "escalationWindow", 60)) // 默认60秒
+                    .subnetTiers(subnetTiers);
+
+            // 加载攻击模式配置
+            Map<String, Object> attackConfig = getSection(antiSpamConfig, "attackMode");
+            int enterRate = getPositiveInt(attackConfig, "enterRate", 500);
+            builder.attackModeEnabled(getBoolean(attackConfig, "enabled", false)) // 默认不启用
+                    .attackEnterRate(enterRate)
+                    // 退出阈值不能高于进入阈值，否则会反复切换
+                    .attackExitRate(Math.min(enterRate, getPositiveInt(attackConfig, "exitRate", enterRate / 2 + 1)))
+                    .attackExitDelay(getPositiveInt(attackConfig, "exitDelay", 60)) // 默认60秒
+                    .attackTimeWindow(getPositiveInt(attackConfig, "timeWindow", 30)) // 默认30秒
+                    .attackMaxPings(getInt(attackConfig, "maxPings", 3)) // 默认3次
+                    .attackBlockDuration(getPositiveInt(attackConfig, "blockDuration", 600)) // 默认600秒
+                    .attackSubnets(getBoolean(attackConfig, "subnets", true)); // 默认启用网段聚合
+
+            // 加载登录频率限制配置
+            Map<String, Object> loginConfig = getSection(config, "antiSpamLogin");
+            builder.loginLimitEnabled(getBoolean(loginConfig, "enabled", false)) // 默认不启用，升级前的配置文件行为不变
+                    .loginTimeWindow(getPositiveInt(loginConfig, "timeWindow", 10)) // 默认10秒
+                    .maxLogins(getInt(loginConfig, "maxLogins", 5)) // 默认5次
+                    .loginBlockDuration(getInt(loginConfig, "blockDuration", 60)) // 默认60秒
+                    .logLoginBlock(getBoolean(loginConfig, "logBlock", true)); // 默认记录登录频率限制日志
+
+            // 加载安全日志配置
+            Map<String, Object> securityLogConfig = getSection(config, "securityLog");
+            builder.logQueueSize(getPositiveInt(securityLogConfig, "queueSize", 8192)) // 默认8192条
+                    .logSummaryInterval(getPositiveInt(securityLogConfig, "summaryInterval", 5)) // 默认5秒
+                    .logDetailLimit(Math.max(0, getInt(securityLogConfig, "detailLimit", 5))); // 默认5条
+
+            // 加载攻击来源统计配置
+            Map<String, Object> offendersConfig = getSection(config, "offenders");
+            builder.offenderCapacity(getPositiveInt(offendersConfig, "capacity", 1000)) // 默认1000个
+                    .offenderHalfLife(getPositiveInt(offendersConfig, "halfLife", 300)); // 默认300秒
+
+            // 加载审计日志配置
+            Map<String, Object> auditConfig = getSection(config, "audit");
+            builder.auditEnabled(getBoolean(auditConfig, "enabled", true)) // 默认启用
+                    .auditMaxFileSize(getPositiveInt(auditConfig, "maxFileSize", 16)) // 默认16MB
+                    .auditRotateInterval(getPositiveInt(auditConfig, "rotateInterval", 3600)) // 默认1小时
+                    .auditMaxFiles(getPositiveInt(auditConfig, "maxFiles", 168)); // 默认保留168个文件
+
+            // 加载指标配置
+            Map<String, Object> metricsConfig = getSection(config, "metrics");
+            Map<String, Object> prometheusConfig = getSection(metricsConfig, "prometheus");
+            Map<String, Object> fileConfig = getSection(metricsConfig, "file");
+            builder.metricsLatency(getBoolean(metricsConfig, "latency", true)) // 默认统计耗时
+                    .prometheusEnabled(getBoolean(prometheusConfig, "enabled", false)) // 默认不启用
+                    .prometheusBind(getString(prometheusConfig, "bind", "127.0.0.1"))
+                    .prometheusPort(getPositiveInt(prometheusConfig, "port", 9225))
+                    .metricsFileEnabled(getBoolean(fileConfig, "enabled", false)) // 默认不启用
+                    .metricsFilePath(getString(fileConfig, "path", "metrics.prom"))
+                    .metricsFileInterval(getPositiveInt(fileConfig, "interval", 15)); // 默认15秒
+
+            // 加载阻止列表同步配置
+            Map<String, Object> syncConfig = getSection(config, "sync");
+            Map<String, Object> udpConfig = getSection(syncConfig, "udp");
+            Map<String, Object> redisConfig = getSection(syncConfig, "redis");
+            builder.syncType(getString(syncConfig, "type", "none")) // 默认不同步
+                    .syncBatchInterval(getPositiveInt(syncConfig, "batchInterval", 200)) // 默认200毫秒
+                    .syncSecret(getString(syncConfig, "secret", ""))
+                    .syncUdpBind(getString(udpConfig, "bind", "0.0.0.0"))
+                    .syncUdpPort(getPositiveInt(udpConfig, "port", 9226))
+                    .syncUdpPeers(getStringList(udpConfig, "peers"))
+                    .syncUdpGroup(getString(udpConfig, "group", ""))
+                    .syncUdpInterface(getString(udpConfig, "interface", ""))
+                    .syncRedisHost(getString(redisConfig, "host", "127.0.0.1"))
+                    .syncRedisPort(getPositiveInt(redisConfig, "port", 6379))
+                    .syncRedisPassword(getString(redisConfig, "password", ""))
+                    .syncRedisChannel(getString(redisConfig, "channel", "forcehosts:blocklist"));
+
+            // 加载自动重载配置
+            Map<String, Object> autoReloadConfig = getSection(config, "autoReload");
+            builder.autoReload(getBoolean(autoReloadConfig, "enabled", true)) // 默认启用
+                    .autoReloadDelay(getPositiveInt(autoReloadConfig, "delay", 500)); // 默认500毫秒
+
+            // 加载访问规则配置
+            Map<String, Object> rulesConfig = getSection(config, "rules");
+            List<Cidr> trustedNetworks = getNetworks(rulesConfig, "trusted", errors);
+            List<Cidr> deniedNetworks = getNetworks(rulesConfig, "deny", errors);
+            Map<String, HostPolicy> hostPolicies = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : getSection(rulesConfig, "hosts").entrySet()) {
+                if (!(entry.getValue() instanceof Map)) {
+                    continue;
+                }
+                String rule = HostMatcher.normalizeRule(String.valueOf(entry.getKey()));
+                if (!hosts.contains(rule)) {
+                    logger.warn("策略配置的主机名 {} 不在 hosts 中，将不会生效", entry.getKey());
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> section = (Map<String, Object>) entry.getValue();
+                hostPolicies.put(rule, new HostPolicy(
+                        Math.max(HostPolicy.INHERIT, getInt(section, "maxPings", HostPolicy.INHERIT)),
+                        Math.max(HostPolicy.INHERIT, getInt(section, "maxLogins", HostPolicy.INHERIT)),
+                        Math.max(0, getInt(section, "maxConcurrentLogins", 0)), // 默认不限制
+                        Math.max(0, getInt(section, "maxLoginRate", 0)))); // 默认不限制
+            }
+            builder.trustedNetworks(trustedNetworks)
+                    .deniedNetworks(deniedNetworks)
+                    .hostPolicies(hostPolicies);
+            if (!hostsChanged && trustedNetworks.equals(previous.getTrustedNetworks())
+                    && deniedNetworks.equals(previous.getDeniedNetworks())
+                    && hostPolicies.equals(previous.getHostPolicies())) {
+                // 规则未变化时沿用已编译的访问规则
+                builder.rules(previous.getRules());
+            }
+
+            // 加载自定义ping响应配置
+            Map<String, Object> pingConfig = getSection(config, "pingResponses");
+            Map<String, PingResponse> pingResponses = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : getSection(pingConfig, "hosts").entrySet()) {
+                if (!(entry.getValue() instanceof Map)) {
+                    continue;
+                }
+                String rule = HostMatcher.normalizeRule(String.valueOf(entry.getKey()));
+                if (!hosts.contains(rule)) {
+                    logger.warn("ping响应配置的主机名 {} 不在 hosts 中，将不会生效", entry.getKey());
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> section = (Map<String, Object>) entry.getValue();
+                pingResponses.put(rule, getPingResponse(section, null, null, PingResponse.KEEP, PingResponse.KEEP, PingResponse.KEEP));
+            }
+            builder.pingResponses(pingResponses);
+            Map<String, Object> decoyConfig = getSection(pingConfig, "decoy");
+            if (getBoolean(decoyConfig, "enabled", false)) { // 默认不启用
+                // 诱饵响应的每一项都有默认值，不会带出真实的服务器信息
+                builder.decoyResponse(getPingResponse(decoyConfig, "A Minecraft Server", "1.21.4", 769, 20, 0));
+            }
+
+            if (!errors.isEmpty()) {
+                // 只生效一部分可能悄悄去掉拒绝规则等，整个文件都不生效，下次修改后再重新加载
+                errors.forEach(error -> logger.error("配置项无效: {}", error));
+                logger.error("配置文件有 {} 处错误，继续使用原有配置", errors.size());
+                return false;
+            }
+            logger.info("已加载 {} 个允许的主机名", hosts.size());
+
+            // 全部解析完成后一次性发布
+            ForceHostsSettings loaded = builder.build();
+            settings = loaded;
+            loadedContent = content;
+            reloadListeners.forEach(listener -> listener.accept(loaded));
+            return true;
         } catch (IOException e) {
             logger.error("加载配置文件失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * 解析配置文件内容
+     * @return 格式错误时返回null
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parse(String content) {
+        Object root;
+        try {
+            root = new Yaml().load(content);
+        } catch (YAMLException e) {
+            logger.error("配置文件格式错误，继续使用原有配置: {}", e.getMessage());
+            return null;
+        }
+        if (root == null) {
+            return Collections.emptyMap();
+        }
+        if (!(root instanceof Map)) {
+            logger.error("配置文件格式错误，继续使用原有配置: 顶层必须是键值对");
+            return null;
+        }
+        return (Map<String, Object>) root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getSection(Map<String, Object> config, String key) {
+        return Optional.ofNullable(config.get(key))
+                .filter(m -> m instanceof Map)
+                .map(m -> (Map<String, Object>) m)
+                .orElse(Collections.emptyMap());
+    }
+
+    /**
+     * 读取网段聚合配置列表
+     * @param errors 格式无效或前缀长度超出范围的项写入此列表
+     */
+    @SuppressWarnings("unchecked")
+    private static List<SubnetTier> getSubnetTiers(Map<String, Object> config, String key, boolean ipv6,
+                                                   int defaultBlockDuration, List<String> errors) {
+        List<SubnetTier> tiers = new ArrayList<>();
+        Object list = config.get(key);
+        if (!(list instanceof List)) {
+            return tiers;
+        }
+        int maxPrefix = ipv6 ? 128 : 32;
+        for (Object item : (List<?>) list) {
+            if (!(item instanceof Map)) {
+                errors.add("网段聚合配置 subnets." + key + " 的项格式无效: " + item);
+                continue;
+            }
+            Map<String, Object> tier = (Map<String, Object>) item;
+            int prefix = getInt(tier, "prefix", -1);
+            if (prefix < 0 || prefix > maxPrefix) {
+                errors.add("网段聚合配置 subnets." + key + " 的前缀长度无效: " + tier.get("prefix"));
+                continue;
+            }
+            tiers.add(new SubnetTier(ipv6, prefix,
+                    Math.max(0, getInt(tier, "maxPings", 0)),
+                    Math.max(0, getInt(tier, "escalateAfter", 0)),
+                    getPositiveInt(tier, "blockDuration", defaultBlockDuration)));
+        }
+        return tiers;
+    }
+
+    /**
+     * 读取网段列表
+     * @param errors 格式无效的项写入此列表
+     */
+    private static List<Cidr> getNetworks(Map<String, Object> config, String key, List<String> errors) {
+        List<Cidr> networks = new ArrayList<>();
+        for (String item : getStringList(config, key)) {
+            try {
+                networks.add(Cidr.parse(item));
+            } catch (IllegalArgumentException e) {
+                errors.add("无效的网段 rules." + key + ": " + item);
+            }
         }
+        return networks;
     }
 
-    // Getter方法
-    public List<String> getAllowedHosts() {
-        return allowedHosts;
+    private static PingResponse getPingResponse(Map<String, Object> config, String motd, String version,
+                                                int protocol, int maxPlayers, int onlinePlayers) {
+        Object favicon = config.get("favicon");
+        return new PingResponse(
+                getString(config, "motd", motd),
+                getString(config, "version", version),
+                getInt(config, "protocol", protocol),
+                getInt(config, "maxPlayers", maxPlayers),
+                getInt(config, "onlinePlayers", onlinePlayers),
+                favicon != null && !favicon.toString().trim().isEmpty() ? favicon.toString().trim() : null);
     }
 
-    public boolean isLogPing() {
-        return logPing;
+    private static boolean getBoolean(Map<String, Object> config, String key, boolean defaultValue) {
+        return Optional.ofNullable(config.get(key))
+                .filter(o -> o instanceof Boolean)
+                .map(o -> (Boolean) o)
+                .orElse(defaultValue);
     }
 
-    public boolean isLogConnection() {
-        return logConnection;
+    private static String getString(Map<String, Object> config, String key, String defaultValue) {
+        return Optional.ofNullable(config.get(key))
+                .map(Object::toString)
+                .filter(s -> !s.trim().isEmpty())
+                .orElse(defaultValue);
     }
 
-    public boolean isAntiSpamEnabled() { return antiSpamEnabled; }
+    private static List<String> getStringList(Map<String, Object> config, String key) {
+        List<String> result = new ArrayList<>();
+        Object list = config.get(key);
+        if (list instanceof List) {
+            for (Object item : (List<?>) list) {
+                if (item != null && !item.toString().trim().isEmpty()) {
+                    result.add(item.toString().trim());
+                }
+            }
+        }
+        return result;
+    }
 
-    public int getTimeWindow() {
-        return timeWindow;
+    private static int getInt(Map<String, Object> config, String key, int defaultValue) {
+        return Optional.ofNullable(config.get(key))
+                .filter(o -> o instanceof Integer)
+                .map(o -> (Integer) o)
+                .orElse(defaultValue);
     }
 
-    public int getMaxPings() {
-        return maxPings;
+    private static int getPositiveInt(Map<String, Object> config, String key, int defaultValue) {
+        int value = getInt(config, key, defaultValue);
+        return value > 0 ? value : defaultValue;
     }
 
-    public int getBlockDuration() {
-        return blockDuration;
+    /**
+     * 注册配置重载完成后的回调
+     * @param listener 回调，参数为新的配置快照
+     */
+    public void addReloadListener(Consumer<ForceHostsSettings> listener) {
+        reloadListeners.add(listener);
     }
 
-    public boolean isLogBlock() {
-        return logBlock;
+    /**
+     * 获取当前配置快照，同一事件内应只读取一次
+     * @return 配置快照
+     */
+    public ForceHostsSettings getSettings() {
+        return settings;
     }
 }
\ No newline at end of file
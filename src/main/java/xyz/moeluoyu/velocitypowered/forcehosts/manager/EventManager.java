@@ -2,78 +2,177 @@ package xyz.moeluoyu.velocitypowered.forcehosts.manager;
 
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.ResultedEvent;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.LoginEvent;
 import com.velocitypowered.api.event.connection.PreLoginEvent;
 import com.velocitypowered.api.event.proxy.ProxyPingEvent;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.LoginQuota;
+import xyz.moeluoyu.velocitypowered.forcehosts.log.SecurityLogger;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+import xyz.moeluoyu.velocitypowered.forcehosts.ping.CompiledPing;
+import xyz.moeluoyu.velocitypowered.forcehosts.ping.PingResponseCache;
+import xyz.moeluoyu.velocitypowered.forcehosts.rules.RuleEngine;
 
 import java.net.InetSocketAddress;
 
 public class EventManager {
-    private final org.slf4j.Logger logger;
     private final ConfigManager configManager;
     private final MessageManager messageManager;
     private final AntiSpamManager antiSpamManager;
+    private final LoginQuotaManager loginQuotaManager;
+    private final SecurityLogger securityLogger;
+    private final ForceHostsMetrics metrics;
+    private final PingResponseCache pingResponses;
 
-    public EventManager(org.slf4j.Logger logger, ConfigManager configManager, MessageManager messageManager, AntiSpamManager antiSpamManager) {
-        this.logger = logger;
+    public EventManager(ConfigManager configManager, MessageManager messageManager,
+                        AntiSpamManager antiSpamManager, LoginQuotaManager loginQuotaManager,
+                        SecurityLogger securityLogger, ForceHostsMetrics metrics, PingResponseCache pingResponses) {
         this.configManager = configManager;
         this.messageManager = messageManager;
         this.antiSpamManager = antiSpamManager;
+        this.loginQuotaManager = loginQuotaManager;
+        this.securityLogger = securityLogger;
+        this.metrics = metrics;
+        this.pingResponses = pingResponses;
     }
 
     @Subscribe
     public void onProxyPing(ProxyPingEvent event) {
-        String virtualHost = event.getConnection().getVirtualHost()
-                .map(address -> address.getHostString().toLowerCase())
-                .orElse("");
+        ForceHostsSettings settings = configManager.getSettings();
+        if (!settings.isMetricsLatency()) {
+            handleProxyPing(settings, event);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            handleProxyPing(settings, event);
+        } finally {
+            metrics.record(ForceHostsMetrics.Timer.PROXY_PING, System.nanoTime() - start);
+        }
+    }
+
+    private void handleProxyPing(ForceHostsSettings settings, ProxyPingEvent event) {
+        String virtualHost = hostString(event.getConnection().getVirtualHost().orElse(null));
         
-        String ipAddress = getIPAddress(event.getConnection().getRemoteAddress());
+        // 地址编码为两个long，后续处理不构建字符串
+        InetSocketAddress remoteAddress = event.getConnection().getRemoteAddress();
+        long addressHigh = IpAddresses.high(remoteAddress);
+        long addressLow = IpAddresses.low(remoteAddress);
+
+        // 网段和主机名规则一次查出
+        RuleEngine.Decision decision = settings.getRules().evaluate(addressHigh, addressLow, virtualHost);
+        if (decision.isDenied()) {
+            event.setResult(ResultedEvent.GenericResult.denied());
+            metrics.increment(ForceHostsMetrics.Counter.PINGS_DENIED_NETWORK);
+            securityLogger.logPingDenied(addressHigh, addressLow, virtualHost);
+            return;
+        }
 
         // 检查是否因频繁ping而被阻止
-        if (antiSpamManager.checkAndHandlePingSpam(ipAddress)) {
+        if (antiSpamManager.checkAndHandlePingSpam(settings, decision, addressHigh, addressLow)) {
             // 因频繁ping而被阻止
             event.setResult(ResultedEvent.GenericResult.denied());
-            antiSpamManager.logSpamBlock(ipAddress);
+            metrics.increment(ForceHostsMetrics.Counter.PINGS_DENIED_SPAM);
+            antiSpamManager.logSpamBlock(addressHigh, addressLow, virtualHost);
             return;
         }
 
-        if (!configManager.getAllowedHosts().contains(virtualHost)) {
-            // 如果主机名不在允许列表中，直接阻止ping请求
-            event.setResult(ResultedEvent.GenericResult.denied());
-            if (configManager.isLogPing()) {
-                logger.info(messageManager.parseColor(messageManager.getMessageOrDefault("ping-blocked", "&c阻止了来自 {} 的ping请求，使用了无效主机名: {}")),
-                        event.getConnection().getRemoteAddress(), virtualHost);
+        String rule = decision.getRule();
+        if (rule == null) {
+            CompiledPing decoy = pingResponses.getDecoy();
+            if (decoy != null) {
+                // 返回预先生成的诱饵响应，不暴露真实的服务器信息
+                event.setPing(decoy.apply(event.getPing()));
+            } else {
+                // 如果主机名不在允许列表中，直接阻止ping请求
+                event.setResult(ResultedEvent.GenericResult.denied());
             }
+            metrics.increment(ForceHostsMetrics.Counter.PINGS_DENIED_HOST);
+            // 是否输出日志由安全日志线程按配置决定
+            securityLogger.logPingBlocked(addressHigh, addressLow, virtualHost);
+        } else {
+            CompiledPing ping = pingResponses.get(rule);
+            if (ping != null) {
+                event.setPing(ping.apply(event.getPing()));
+            }
+            metrics.increment(ForceHostsMetrics.Counter.PINGS_ALLOWED);
         }
     }
 
+    /**
+     * 客户端发送的主机名原样传给匹配器，末尾的点和 FML 标记等变体在匹配时处理，不另外构建字符串
+     */
+    private static String hostString(InetSocketAddress virtualHost) {
+        return virtualHost != null ? virtualHost.getHostString() : "";
+    }
+
     @Subscribe
     public void onPreLogin(PreLoginEvent event) {
-        String virtualHost = event.getConnection().getVirtualHost()
-                .map(address -> address.getHostString().toLowerCase())
-                .orElse("");
+        ForceHostsSettings settings = configManager.getSettings();
+        if (!settings.isMetricsLatency()) {
+            handlePreLogin(settings, event);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            handlePreLogin(settings, event);
+        } finally {
+            metrics.record(ForceHostsMetrics.Timer.PRE_LOGIN, System.nanoTime() - start);
+        }
+    }
+
+    private void handlePreLogin(ForceHostsSettings settings, PreLoginEvent event) {
+        InetSocketAddress remoteAddress = event.getConnection().getRemoteAddress();
+        long addressHigh = IpAddresses.high(remoteAddress);
+        long addressLow = IpAddresses.low(remoteAddress);
+        String virtualHost = hostString(event.getConnection().getVirtualHost().orElse(null));
 
-        if (!configManager.getAllowedHosts().contains(virtualHost)) {
-            String kickMessage = messageManager.getMessageOrDefault("kick-message", "&c你必须通过正确的主机名连接服务器！");
+        RuleEngine.Decision decision = settings.getRules().evaluate(addressHigh, addressLow, virtualHost);
+        if (decision.isDenied()) {
+            event.setResult(PreLoginEvent.PreLoginComponentResult.denied(messageManager.getCompiled().getDeniedKickMessage()));
+            metrics.increment(ForceHostsMetrics.Counter.LOGINS_DENIED_NETWORK);
+            securityLogger.logLoginDenied(addressHigh, addressLow, virtualHost);
+            return;
+        }
+
+        // 已被阻止或登录过于频繁的IP在其他检查之前直接拒绝
+        if (antiSpamManager.checkAndHandleLoginSpam(settings, decision, addressHigh, addressLow)) {
             event.setResult(PreLoginEvent.PreLoginComponentResult.denied(
-                    messageManager.toComponent(kickMessage)
-            ));
-            // 根据配置决定是否记录连接阻止日志
-            if (configManager.isLogConnection()) {
-                logger.info(messageManager.parseColor(messageManager.getMessageOrDefault("connection-blocked", "&c阻止了来自 {} 的连接，使用了无效主机名: {}")),
-                        event.getConnection().getRemoteAddress(), virtualHost);
-            }
+                    messageManager.getCompiled().getLoginSpamKickMessage(decision.getRule())));
+            metrics.increment(ForceHostsMetrics.Counter.LOGINS_DENIED_SPAM);
+            antiSpamManager.logLoginBlock(addressHigh, addressLow, virtualHost);
+            return;
         }
-    }
 
-    /**
-     * 获取IP地址字符串
-     * @param address InetSocketAddress
-     * @return IP地址字符串
-     */
-    private String getIPAddress(InetSocketAddress address) {
-        if (address == null) {
-            return "unknown";
+        if (!decision.isHostAllowed()) {
+            event.setResult(PreLoginEvent.PreLoginComponentResult.denied(messageManager.getCompiled().getKickMessage(virtualHost)));
+            metrics.increment(ForceHostsMetrics.Counter.LOGINS_DENIED_HOST);
+            // 是否输出日志由安全日志线程按配置决定
+            securityLogger.logConnectionBlocked(addressHigh, addressLow, virtualHost);
+            return;
         }
-        return address.getAddress().getHostAddress();
+
+        // 主机名的登录配额由所有IP共用，放在最后检查，被其他检查拒绝的登录不占用配额
+        if (loginQuotaManager.tryAcquire(decision, remoteAddress) != LoginQuota.Result.ALLOWED) {
+            event.setResult(PreLoginEvent.PreLoginComponentResult.denied(
+                    messageManager.getCompiled().getLoginQuotaKickMessage(decision.getRule())));
+            metrics.increment(ForceHostsMetrics.Counter.LOGINS_DENIED_QUOTA);
+            securityLogger.logLoginQuotaDenied(addressHigh, addressLow, virtualHost);
+            return;
+        }
+        metrics.increment(ForceHostsMetrics.Counter.LOGINS_ALLOWED);
+    }
+
+    @Subscribe
+    public void onLogin(LoginEvent event) {
+        // 登录完成（包括被其他插件拒绝），不再计入正在登录的人数
+        loginQuotaManager.release(event.getPlayer().getRemoteAddress());
+    }
+
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        loginQuotaManager.release(event.getPlayer().getRemoteAddress());
     }
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.manager;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.HostPolicy;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.LoginQuota;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.TimeSource;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+import xyz.moeluoyu.velocitypowered.forcehosts.rules.RuleEngine;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按主机名规则限制同时正在登录的人数和每秒登录次数
+ * <p>
+ * 通过预登录检查的连接计入正在登录的人数，登录完成或断开连接时移除。客户端在验证期间断开、
+ * 或其他插件拒绝了预登录时可能收不到后续事件，超过 {@link #LOGIN_TIMEOUT} 仍未完成的连接不再计入。
+ */
+public class LoginQuotaManager {
+    // 正在登录的连接最多计入的时间
+    static final long LOGIN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+    private final ConfigManager configManager;
+    private final TimeSource clock;
+    // 每个主机名规则的配额，键为规范化后的规则
+    private final Map<String, LoginQuota> quotas = new ConcurrentHashMap<>();
+    // 已通过检查、尚未完成登录的连接
+    private final Map<InetSocketAddress, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+
+    public LoginQuotaManager(ConfigManager configManager, ForceHostsMetrics metrics, TimeSource clock) {
+        this.configManager = configManager;
+        this.clock = clock;
+        configManager.addReloadListener(this::applyConfig);
+
+        metrics.registerGauge("forcehosts_logins_in_progress", "设置了登录配额的主机名正在登录的人数", pending::size);
+    }
+
+    /**
+     * 移除不再设置配额的规则，正在登录的连接仍持有原来的配额，完成时照常释放
+     */
+    private void applyConfig(ForceHostsSettings settings) {
+        quotas.keySet().removeIf(rule -> !hasQuota(settings.getHostPolicies().get(rule)));
+    }
+
+    private static boolean hasQuota(HostPolicy policy) {
+        return policy != null && (policy.getMaxConcurrentLogins() > 0 || policy.getMaxLoginRate() > 0);
+    }
+
+    /**
+     * 检查主机名的登录配额，通过时记录该连接，直到登录完成、断开连接或超时
+     * @param decision 规则判断结果
+     * @param remoteAddress 客户端地址
+     * @return 检查结果，来自信任的网段或未设置配额的主机名总是通过
+     */
+    public LoginQuota.Result tryAcquire(RuleEngine.Decision decision, InetSocketAddress remoteAddress) {
+        if (decision.isTrusted() || !decision.hasLoginQuota() || decision.getRule() == null) {
+            return LoginQuota.Result.ALLOWED;
+        }
+        long now = clock.currentTimeMillis();
+        sweep(now);
+
+        LoginQuota quota = quotas.computeIfAbsent(decision.getRule(), rule -> new LoginQuota());
+        LoginQuota.Result result = quota.tryAcquire(decision.getMaxConcurrentLogins(), decision.getMaxLoginRate(), now);
+        if (result == LoginQuota.Result.ALLOWED) {
+            Pending previous = pending.put(remoteAddress, new Pending(quota, now));
+            if (previous != null) {
+                // 同一地址和端口的上一次登录没有收到完成事件
+                previous.quota.release();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 登录完成或断开连接，不在记录中的连接直接忽略
+     * @param remoteAddress 客户端地址
+     */
+    public void release(InetSocketAddress remoteAddress) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Pending entry = pending.remove(remoteAddress);
+        if (entry != null) {
+            entry.quota.release();
+        }
+    }
+
+    /**
+     * 释放超时的连接，每秒最多执行一次
+     */
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        pending.forEach((address, entry) -> {
+            if (now - entry.since >= LOGIN_TIMEOUT && pending.remove(address, entry)) {
+                entry.quota.release();
+            }
+        });
+    }
+
+    /**
+     * @return 当前配置中设置了登录配额的主机名及其用量，按规则排序
+     */
+    public List<Usage> getUsage() {
+        ForceHostsSettings settings = configManager.getSettings();
+        long now = clock.currentTimeMillis();
+        sweep(now);
+
+        List<Usage> usage = new ArrayList<>();
+        settings.getHostPolicies().forEach((rule, policy) -> {
+            if (hasQuota(policy)) {
+                LoginQuota quota = quotas.get(rule);
+                usage.add(quota != null
+                        ? new Usage(rule, policy, quota.getInFlight(), quota.getRate(now),
+                                quota.getDeniedConcurrent(), quota.getDeniedRate())
+                        : new Usage(rule, policy, 0, 0, 0, 0));
+            }
+        });
+        usage.sort((a, b) -> a.rule.compareTo(b.rule));
+        return usage;
+    }
+
+    private static final class Pending {
+        final LoginQuota quota;
+        final long since;
+
+        Pending(LoginQuota quota, long since) {
+            this.quota = quota;
+            this.since = since;
+        }
+    }
+
+    /**
+     * 某个主机名规则的登录配额用量
+     */
+    public static final class Usage {
+        private final String rule;
+        private final HostPolicy policy;
+        private final int inFlight;
+        private final int rate;
+        private final long deniedConcurrent;
+        private final long deniedRate;
+
+        private Usage(String rule, HostPolicy policy, int inFlight, int rate, long deniedConcurrent, long deniedRate) {
+            this.rule = rule;
+            this.policy = policy;
+            this.inFlight = inFlight;
+            this.rate = rate;
+            this.deniedConcurrent = deniedConcurrent;
+            this.deniedRate = deniedRate;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+
+        /**
+         * @return 同时正在登录的最大人数，0为不限制
+         */
+        public int getMaxConcurrentLogins() {
+            return policy.getMaxConcurrentLogins();
+        }
+
+        /**
+         * @return 每秒最多登录次数，0为不限制
+         */
+        public int getMaxLoginRate() {
+            return policy.getMaxLoginRate();
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public int getRate() {
+            return rate;
+        }
+
+        public long getDeniedConcurrent() {
+            return deniedConcurrent;
+        }
+
+        public long getDeniedRate() {
+            return deniedRate;
+        }
+    }
+}
\ No newline at end of file
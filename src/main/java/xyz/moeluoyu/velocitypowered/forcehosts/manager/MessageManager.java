@@ -4,29 +4,50 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import org.slf4j.Logger;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import xyz.moeluoyu.velocitypowered.forcehosts.message.CompiledMessages;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.regex.PatternSyntaxException;
 
 public class MessageManager {
     private final Logger logger;
     private final Path dataDirectory;
-    private Map<String, String> messages = Collections.emptyMap();
     private final LegacyComponentSerializer componentSerializer = LegacyComponentSerializer.builder()
             .character('&')
             .hexCharacter('#')
             .build();
+    // 预处理后的消息，重载时整体替换，保证事件线程能看到完整的新消息
+    private volatile CompiledMessages compiled = CompiledMessages.compile(Collections.emptyMap(), componentSerializer);
+    // 上次成功加载的消息文件内容，用于跳过未变化的重载
+    private String loadedContent;
 
     public MessageManager(Logger logger, Path dataDirectory) {
         this.logger = logger;
         this.dataDirectory = dataDirectory;
     }
 
-    public void loadMessages() {
+    /**
+     * 加载消息文件
+     * @return 是否成功加载，格式错误时返回false并继续使用原有消息
+     */
+    public boolean loadMessages() {
+        return loadMessages(true);
+    }
+
+    /**
+     * 消息文件内容与上次成功加载时不同才重新加载
+     * @return 是否加载了新的消息
+     */
+    public boolean reloadIfChanged() {
+        return loadMessages(false);
+    }
+
+    private synchronized boolean loadMessages(boolean force) {
         try {
             Path messagesPath = dataDirectory.resolve("messages.yml");
             if (!Files.exists(messagesPath)) {
@@ -51,14 +72,43 @@ public class MessageManager {
                 logger.info("已创建默认消息文件 messages.yml");
             }
 
-            Yaml yaml = new Yaml();
-            try (Reader reader = Files.newBufferedReader(messagesPath)) {
-                Map<String, Object> messageConfig = yaml.load(reader);
-                messages = flattenMap(messageConfig);
+            String content = Files.readString(messagesPath);
+            if (!force && content.equals(loadedContent)) {
+                return false;
+            }
+            Object messageConfig;
+            try {
+                messageConfig = new Yaml().load(content);
+            } catch (YAMLException e) {
+                logger.error("消息文件格式错误，继续使用原有消息: {}", e.getMessage());
+                return false;
+            }
+            if (messageConfig != null && !(messageConfig instanceof Map)) {
+                logger.error("消息文件格式错误，继续使用原有消息: 顶层必须是键值对");
+                return false;
             }
+            @SuppressWarnings("unchecked")
+            Map<String, String> messages = messageConfig == null ? new HashMap<>() : flattenMap((Map<String, Object>) messageConfig);
+            loadedContent = content;
+            if (messages.equals(compiled.getMessages())) {
+                // 只修改了注释或格式时不重新编译
+                return true;
+            }
+            try {
+                compiled = CompiledMessages.compile(messages, componentSerializer);
+            } catch (PatternSyntaxException e) {
+                logger.error("踢出消息的主机名正则规则无效，已忽略按主机名配置的踢出消息: {}", e.getMessage());
+                messages.keySet().removeIf(key -> key.startsWith(CompiledMessages.HOST_KICK_PREFIX));
+                compiled = CompiledMessages.compile(messages, componentSerializer);
+            }
+            return true;
         } catch (IOException e) {
             logger.error(parseColor("&c加载消息文件失败"), e);
-            messages = Collections.singletonMap("kick-message", "&c无法加载消息配置，请联系管理员");
+            if (loadedContent == null) {
+                // 从未成功加载过时使用兜底消息，否则保留原有消息
+                compiled = CompiledMessages.compile(Collections.singletonMap("kick-message", "&c无法加载消息配置，请联系管理员"), componentSerializer);
+            }
+            return false;
         }
     }
 
@@ -92,6 +142,14 @@ public class MessageManager {
     }
 
     public String getMessageOrDefault(String key, String defaultValue) {
-        return messages.getOrDefault(key, defaultValue);
+        return compiled.getMessages().getOrDefault(key, defaultValue);
+    }
+
+    /**
+     * 获取预处理后的消息，同一事件内应只读取一次
+     * @return 预处理后的消息
+     */
+    public CompiledMessages getCompiled() {
+        return compiled;
     }
 }
\ No newline at end of file
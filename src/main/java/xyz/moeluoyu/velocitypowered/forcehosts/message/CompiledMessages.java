@@ -0,0 +1,275 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.message;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import xyz.moeluoyu.velocitypowered.forcehosts.host.HostMatcher;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 每次加载消息文件时预先处理好的消息
+ * 踢出消息已转换为 Component，日志模板已替换颜色代码，事件处理时直接使用
+ */
+public final class CompiledMessages {
+    /**
+     * 按主机名配置踢出消息的键前缀，例如 host-kick-messages.old.example.com
+     */
+    public static final String HOST_KICK_PREFIX = "host-kick-messages.";
+    /**
+     * 按主机名配置频繁登录踢出消息的键前缀，例如 host-login-spam-kick-messages.play.example.com
+     */
+    public static final String HOST_LOGIN_SPAM_KICK_PREFIX = "host-login-spam-kick-messages.";
+    /**
+     * 按主机名配置登录配额已满踢出消息的键前缀，例如 host-login-quota-kick-messages.play.example.com
+     */
+    public static final String HOST_LOGIN_QUOTA_KICK_PREFIX = "host-login-quota-kick-messages.";
+
+    private final Map<String, String> messages;
+    private final Component kickMessage;
+    private final Component loginSpamKickMessage;
+    private final Map<String, Component> hostLoginSpamKickMessages;
+    private final Component loginQuotaKickMessage;
+    private final Map<String, Component> hostLoginQuotaKickMessages;
+    private final Component deniedKickMessage;
+    private final HostMatcher kickMessageHosts;
+    private final Map<String, Component> hostKickMessages;
+    private final String pingBlocked;
+    private final String connectionBlocked;
+    private final String pingSpamBlocked;
+    private final String pingBlockedSummary;
+    private final String connectionBlockedSummary;
+    private final String pingSpamBlockedSummary;
+    private final String subnetBlocked;
+    private final String subnetBlockedSummary;
+    private final String loginSpamBlocked;
+    private final String loginSpamBlockedSummary;
+    private final String securityLogDropped;
+
+    private CompiledMessages(Map<String, String> messages, Component kickMessage, Component loginSpamKickMessage,
+                     Map<String, Component> hostLoginSpamKickMessages, Component loginQuotaKickMessage,
+                     Map<String, Component> hostLoginQuotaKickMessages, Component deniedKickMessage,
+                     HostMatcher kickMessageHosts,
+                     Map<String, Component> hostKickMessages, String pingBlocked, String connectionBlocked,
+                     String pingSpamBlocked, String pingBlockedSummary, String connectionBlockedSummary,
+                     String pingSpamBlockedSummary, String subnetBlocked, String subnetBlockedSummary,
+                     String loginSpamBlocked, String loginSpamBlockedSummary, String securityLogDropped) {
+        this.messages = messages;
+        this.kickMessage = kickMessage;
+        this.loginSpamKickMessage = loginSpamKickMessage;
+        this.hostLoginSpamKickMessages = hostLoginSpamKickMessages;
+        this.loginQuotaKickMessage = loginQuotaKickMessage;
+        this.hostLoginQuotaKickMessages = hostLoginQuotaKickMessages;
+        this.deniedKickMessage = deniedKickMessage;
+        this.kickMessageHosts = kickMessageHosts;
+        this.hostKickMessages = hostKickMessages;
+        this.pingBlocked = pingBlocked;
+        this.connectionBlocked = connectionBlocked;
+        this.pingSpamBlocked = pingSpamBlocked;
+        this.pingBlockedSummary = pingBlockedSummary;
+        this.connectionBlockedSummary = connectionBlockedSummary;
+        this.pingSpamBlockedSummary = pingSpamBlockedSummary;
+        this.subnetBlocked = subnetBlocked;
+        this.subnetBlockedSummary = subnetBlockedSummary;
+        this.loginSpamBlocked = loginSpamBlocked;
+        this.loginSpamBlockedSummary = loginSpamBlockedSummary;
+        this.securityLogDropped = securityLogDropped;
+    }
+
+    /**
+     * 预处理消息表
+     * @param messages 展开嵌套键后的消息表
+     * @param serializer 将消息转换为 Component 的序列化器
+     * @return 预处理后的消息
+     * @throws PatternSyntaxException 按主机名配置的踢出消息中含有无效的正则规则时抛出
+     */
+    public static CompiledMessages compile(Map<String, String> messages, LegacyComponentSerializer serializer) {
+        // 以规范化后的规则为键，与匹配器返回的规则一致
+        Map<String, Component> hostKickMessages = new HashMap<>();
+        Map<String, Component> hostLoginSpamKickMessages = new HashMap<>();
+        Map<String, Component> hostLoginQuotaKickMessages = new HashMap<>();
+        messages.forEach((key, value) -> {
+            if (key.startsWith(HOST_KICK_PREFIX) && key.length() > HOST_KICK_PREFIX.length()) {
+                hostKickMessages.put(HostMatcher.normalizeRule(key.substring(HOST_KICK_PREFIX.length())),
+                        serializer.deserialize(value));
+            } else if (key.startsWith(HOST_LOGIN_SPAM_KICK_PREFIX) && key.length() > HOST_LOGIN_SPAM_KICK_PREFIX.length()) {
+                hostLoginSpamKickMessages.put(HostMatcher.normalizeRule(key.substring(HOST_LOGIN_SPAM_KICK_PREFIX.length())),
+                        serializer.deserialize(value));
+            } else if (key.startsWith(HOST_LOGIN_QUOTA_KICK_PREFIX) && key.length() > HOST_LOGIN_QUOTA_KICK_PREFIX.length()) {
+                hostLoginQuotaKickMessages.put(HostMatcher.normalizeRule(key.substring(HOST_LOGIN_QUOTA_KICK_PREFIX.length())),
+                        serializer.deserialize(value));
+            }
+        });
+
+        return new CompiledMessages(
+                Collections.unmodifiableMap(messages),
+                serializer.deserialize(messages.getOrDefault("kick-message", "&c你必须通过正确的主机名连接服务器！")),
+                serializer.deserialize(messages.getOrDefault("login-spam-kick-message", "&c登录过于频繁，请稍后再试")),
+                hostLoginSpamKickMessages,
+                serializer.deserialize(messages.getOrDefault("login-quota-kick-message", "&c当前登录人数过多，请稍后再试")),
+                hostLoginQuotaKickMessages,
+                serializer.deserialize(messages.getOrDefault("denied-kick-message", "&c你所在的网络已被禁止连接此服务器")),
+                HostMatcher.compile(hostKickMessages.keySet()),
+                hostKickMessages,
+                parseColor(messages.getOrDefault("ping-blocked", "&c阻止了来自 {} 的ping请求，使用了无效主机名: {}")),
+                parseColor(messages.getOrDefault("connection-blocked", "&c阻止了来自 {} 的连接，使用了无效主机名: {}")),
+                parseColor(messages.getOrDefault("ping-spam-blocked", "&c阻止了来自 {} 的频繁ping请求，将在 {} 秒后解除阻止")),
+                parseColor(messages.getOrDefault("ping-blocked-summary", "&c过去 {} 秒内阻止了来自 {} 个IP的 {} 次无效主机名ping请求，最多的来源: {}")),
+                parseColor(messages.getOrDefault("connection-blocked-summary", "&c过去 {} 秒内阻止了来自 {} 个IP的 {} 次无效主机名连接，最多的来源: {}")),
+                parseColor(messages.getOrDefault("ping-spam-blocked-summary", "&c过去 {} 秒内有 {} 个IP的 {} 次频繁ping请求被阻止，最多的来源: {}")),
+                parseColor(messages.getOrDefault("subnet-blocked", "&c网段 {} 的ping请求过于频繁，已阻止整个网段，将在 {} 秒后解除阻止")),
+                parseColor(messages.getOrDefault("subnet-blocked-summary", "&c过去 {} 秒内阻止了 {} 个网段（共 {} 次），最多的来源: {}")),
+                parseColor(messages.getOrDefault("login-spam-blocked", "&c阻止了来自 {} 的频繁登录，将在 {} 秒后解除阻止")),
+                parseColor(messages.getOrDefault("login-spam-blocked-summary", "&c过去 {} 秒内有 {} 个IP的 {} 次频繁登录被阻止，最多的来源: {}")),
+                parseColor(messages.getOrDefault("security-log-dropped", "&e过去 {} 秒内日志队列已满，丢弃了 {} 条日志"))
+        );
+    }
+
+    private static String parseColor(String message) {
+        return message.replace('&', '§');
+    }
+
+    /**
+     * @return 原始消息表（已展开嵌套键）
+     */
+    public Map<String, String> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return 默认踢出消息
+     */
+    public Component getKickMessage() {
+        return kickMessage;
+    }
+
+    /**
+     * @return 频繁登录时的踢出消息
+     */
+    public Component getLoginSpamKickMessage() {
+        return loginSpamKickMessage;
+    }
+
+    /**
+     * 获取通过某个主机名规则频繁登录时的踢出消息
+     * @param rule 命中的主机名规则，可以为null
+     * @return 该规则的踢出消息，未单独配置时返回默认的频繁登录踢出消息
+     */
+    public Component getLoginSpamKickMessage(String rule) {
+        if (rule == null || hostLoginSpamKickMessages.isEmpty()) {
+            return loginSpamKickMessage;
+        }
+        return hostLoginSpamKickMessages.getOrDefault(rule, loginSpamKickMessage);
+    }
+
+    /**
+     * 获取某个主机名规则的登录配额已满时的踢出消息
+     * @param rule 命中的主机名规则，可以为null
+     * @return 该规则的踢出消息，未单独配置时返回默认的登录配额踢出消息
+     */
+    public Component getLoginQuotaKickMessage(String rule) {
+        if (rule == null || hostLoginQuotaKickMessages.isEmpty()) {
+            return loginQuotaKickMessage;
+        }
+        return hostLoginQuotaKickMessages.getOrDefault(rule, loginQuotaKickMessage);
+    }
+
+    /**
+     * @return 来自拒绝的网段时的踢出消息
+     */
+    public Component getDeniedKickMessage() {
+        return deniedKickMessage;
+    }
+
+    /**
+     * 获取某个主机名对应的踢出消息，主机名的匹配规则与 hosts 相同
+     * @param virtualHost 客户端使用的主机名
+     * @return 该主机名的踢出消息，未单独配置时返回默认踢出消息
+     */
+    public Component getKickMessage(CharSequence virtualHost) {
+        if (hostKickMessages.isEmpty()) {
+            return kickMessage;
+        }
+        String rule = kickMessageHosts.match(virtualHost);
+        return rule != null ? hostKickMessages.get(rule) : kickMessage;
+    }
+
+    /**
+     * @return ping阻止日志模板
+     */
+    public String getPingBlocked() {
+        return pingBlocked;
+    }
+
+    /**
+     * @return 连接阻止日志模板
+     */
+    public String getConnectionBlocked() {
+        return connectionBlocked;
+    }
+
+    /**
+     * @return 频繁ping阻止日志模板
+     */
+    public String getPingSpamBlocked() {
+        return pingSpamBlocked;
+    }
+
+    /**
+     * @return ping阻止摘要日志模板（秒数、IP数量、次数、最多的来源）
+     */
+    public String getPingBlockedSummary() {
+        return pingBlockedSummary;
+    }
+
+    /**
+     * @return 连接阻止摘要日志模板（秒数、IP数量、次数、最多的来源）
+     */
+    public String getConnectionBlockedSummary() {
+        return connectionBlockedSummary;
+    }
+
+    /**
+     * @return 频繁ping阻止摘要日志模板（秒数、IP数量、次数、最多的来源）
+     */
+    public String getPingSpamBlockedSummary() {
+        return pingSpamBlockedSummary;
+    }
+
+    /**
+     * @return 网段阻止日志模板（网段、秒数）
+     */
+    public String getSubnetBlocked() {
+        return subnetBlocked;
+    }
+
+    /**
+     * @return 网段阻止摘要日志模板（秒数、网段数量、次数、最多的来源）
+     */
+    public String getSubnetBlockedSummary() {
+        return subnetBlockedSummary;
+    }
+
+    /**
+     * @return 频繁登录阻止日志模板
+     */
+    public String getLoginSpamBlocked() {
+        return loginSpamBlocked;
+    }
+
+    /**
+     * @return 频繁登录阻止摘要日志模板（秒数、IP数量、次数、最多的来源）
+     */
+    public String getLoginSpamBlockedSummary() {
+        return loginSpamBlockedSummary;
+    }
+
+    /**
+     * @return 日志队列溢出提示模板（秒数、丢弃条数）
+     */
+    public String getSecurityLogDropped() {
+        return securityLogDropped;
+    }
+}
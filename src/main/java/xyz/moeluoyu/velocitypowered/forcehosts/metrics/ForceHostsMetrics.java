@@ -0,0 +1,155 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 插件运行指标：计数器、事件处理耗时和各个表的大小
+ * 计数器基于 LongAdder，事件线程上更新时不会互相竞争
+ */
+public final class ForceHostsMetrics {
+    /**
+     * 计数器
+     */
+    public enum Counter {
+        PINGS_ALLOWED("forcehosts_pings_allowed_total", "允许的ping请求"),
+        PINGS_DENIED_HOST("forcehosts_pings_denied_host_total", "因主机名无效被阻止的ping请求"),
+        PINGS_DENIED_SPAM("forcehosts_pings_denied_spam_total", "因频繁ping被阻止的ping请求"),
+        PINGS_DENIED_NETWORK("forcehosts_pings_denied_network_total", "来自拒绝的网段的ping请求"),
+        LOGINS_ALLOWED("forcehosts_logins_allowed_total", "通过检查的登录"),
+        LOGINS_DENIED_HOST("forcehosts_logins_denied_host_total", "因主机名无效被拒绝的登录"),
+        LOGINS_DENIED_SPAM("forcehosts_logins_denied_spam_total", "因频繁登录或已被阻止而被拒绝的登录"),
+        LOGINS_DENIED_NETWORK("forcehosts_logins_denied_network_total", "来自拒绝的网段的登录"),
+        LOGINS_DENIED_QUOTA("forcehosts_logins_denied_quota_total", "因主机名登录配额已满被拒绝的登录"),
+        BLOCKS_ISSUED("forcehosts_blocks_issued_total", "阻止的IP次数"),
+        SUBNET_BLOCKS_ISSUED("forcehosts_subnet_blocks_issued_total", "阻止的网段次数");
+
+        private final String metricName;
+        private final String help;
+
+        Counter(String metricName, String help) {
+            this.metricName = metricName;
+            this.help = help;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+    }
+
+    /**
+     * 计时的事件处理器
+     */
+    public enum Timer {
+        PROXY_PING("forcehosts_ping_handler_seconds", "ProxyPingEvent 处理耗时"),
+        PRE_LOGIN("forcehosts_prelogin_handler_seconds", "PreLoginEvent 处理耗时");
+
+        private final String metricName;
+        private final String help;
+
+        Timer(String metricName, String help) {
+            this.metricName = metricName;
+            this.help = help;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+    }
+
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final LatencyHistogram[] timers = new LatencyHistogram[Timer.values().length];
+    private final List<External> gauges = new CopyOnWriteArrayList<>();
+    private final List<External> externalCounters = new CopyOnWriteArrayList<>();
+
+    public ForceHostsMetrics() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = new LatencyHistogram();
+        }
+    }
+
+    public void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * 记录一次事件处理耗时
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(Timer timer, long nanos) {
+        timers[timer.ordinal()].record(nanos);
+    }
+
+    public LatencyHistogram.Snapshot snapshot(Timer timer) {
+        return timers[timer.ordinal()].snapshot();
+    }
+
+    /**
+     * 注册一个在读取时计算的值，例如表的大小
+     * @param name 指标名
+     * @param help 说明
+     * @param supplier 读取时调用，可能在任意线程上调用
+     */
+    public void registerGauge(String name, String help, LongSupplier supplier) {
+        gauges.add(new External(name, help, supplier));
+    }
+
+    /**
+     * 注册一个由其他组件维护的只增计数器
+     */
+    public void registerCounter(String name, String help, LongSupplier supplier) {
+        externalCounters.add(new External(name, help, supplier));
+    }
+
+    public List<External> getGauges() {
+        return gauges;
+    }
+
+    public List<External> getExternalCounters() {
+        return externalCounters;
+    }
+
+    /**
+     * 由其他组件提供数值的指标
+     */
+    public static final class External {
+        private final String name;
+        private final String help;
+        private final LongSupplier supplier;
+
+        private External(String name, String help, LongSupplier supplier) {
+            this.name = name;
+            this.help = help;
+            this.supplier = supplier;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+
+        public long getValue() {
+            return supplier.getAsLong();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import org.slf4j.Logger;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.ConfigManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以 Prometheus 文本格式导出指标
+ * 可以通过本地 HTTP 接口（/metrics）抓取，也可以定时写入文件供 node_exporter 的 textfile 收集器读取
+ */
+public class MetricsExporter {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Logger logger;
+    private final ConfigManager configManager;
+    private final ForceHostsMetrics metrics;
+    private final Path dataDirectory;
+
+    private Object plugin;
+    private Scheduler scheduler;
+    private HttpServer server;
+    private String serverBind;
+    private int serverPort;
+    private ScheduledTask dumpTask;
+    private Path dumpPath;
+    private int dumpInterval;
+
+    public MetricsExporter(Logger logger, ConfigManager configManager, ForceHostsMetrics metrics, Path dataDirectory) {
+        this.logger = logger;
+        this.configManager = configManager;
+        this.metrics = metrics;
+        this.dataDirectory = dataDirectory;
+        configManager.addReloadListener(this::applyConfig);
+    }
+
+    /**
+     * 按配置启动 HTTP 接口和定时写文件任务
+     * @param plugin 插件实例
+     * @param scheduler Velocity调度器
+     */
+    public synchronized void start(Object plugin, Scheduler scheduler) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        applyConfig(configManager.getSettings());
+    }
+
+    /**
+     * 停止 HTTP 接口和定时写文件任务
+     */
+    public synchronized void stop() {
+        stopServer();
+        stopDumpTask();
+        scheduler = null;
+    }
+
+    private synchronized void applyConfig(ForceHostsSettings settings) {
+        if (scheduler == null) {
+            return;
+        }
+
+        if (!settings.isPrometheusEnabled()) {
+            stopServer();
+        } else if (server == null || !settings.getPrometheusBind().equals(serverBind)
+                || settings.getPrometheusPort() != serverPort) {
+            stopServer();
+            startServer(settings.getPrometheusBind(), settings.getPrometheusPort());
+        }
+
+        Path path = dataDirectory.resolve(settings.getMetricsFilePath());
+        if (!settings.isMetricsFileEnabled()) {
+            stopDumpTask();
+        } else if (dumpTask == null || !path.equals(dumpPath) || settings.getMetricsFileInterval() != dumpInterval) {
+            stopDumpTask();
+            dumpPath = path;
+            dumpInterval = settings.getMetricsFileInterval();
+            dumpTask = scheduler.buildTask(plugin, this::dumpFile)
+                    .delay(dumpInterval, TimeUnit.SECONDS)
+                    .repeat(dumpInterval, TimeUnit.SECONDS)
+                    .schedule();
+        }
+    }
+
+    private void startServer(String bind, int port) {
+        try {
+            HttpServer created = HttpServer.create(new InetSocketAddress(bind, port), 0);
+            created.createContext("/metrics", this::handle);
+            created.start();
+            server = created;
+            serverBind = bind;
+            serverPort = port;
+            logger.info("指标接口已启动: http://{}:{}/metrics", bind, port);
+        } catch (IOException e) {
+            logger.error("启动指标接口失败: {}:{}", bind, port, e);
+        }
+    }
+
+    private void stopServer() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private void stopDumpTask() {
+        if (dumpTask != null) {
+            dumpTask.cancel();
+            dumpTask = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render(metrics).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * 写入临时文件后原子替换，读取方不会读到写了一半的文件
+     */
+    private void dumpFile() {
+        Path path = dumpPath;
+        if (path == null) {
+            return;
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.write(temp, render(metrics).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("写入指标文件失败: {}", path, e);
+        }
+    }
+
+    /**
+     * @return Prometheus 文本格式的全部指标
+     */
+    public static String render(ForceHostsMetrics metrics) {
+        StringBuilder out = new StringBuilder(4096);
+        for (ForceHostsMetrics.Counter counter : ForceHostsMetrics.Counter.values()) {
+            append(out, counter.getMetricName(), counter.getHelp(), "counter", metrics.get(counter));
+        }
+        for (ForceHostsMetrics.External counter : metrics.getExternalCounters()) {
+            append(out, counter.getName(), counter.getHelp(), "counter", counter.getValue());
+        }
+        for (ForceHostsMetrics.External gauge : metrics.getGauges()) {
+            append(out, gauge.getName(), gauge.getHelp(), "gauge", gauge.getValue());
+        }
+        for (ForceHostsMetrics.Timer timer : ForceHostsMetrics.Timer.values()) {
+            LatencyHistogram.Snapshot snapshot = metrics.snapshot(timer);
+            String name = timer.getMetricName();
+            out.append("# HELP ").append(name).append(' ').append(timer.getHelp()).append('\n');
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(snapshot.getValueAtQuantile(quantile))).append('\n');
+            }
+            out.append(name).append("_sum ").append(seconds(snapshot.getSum())).append('\n');
+            out.append(name).append("_count ").append(snapshot.getCount()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void append(StringBuilder out, String name, String help, String type, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
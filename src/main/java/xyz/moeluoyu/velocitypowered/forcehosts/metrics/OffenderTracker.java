@@ -0,0 +1,77 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.metrics;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.host.HostNormalizer;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.TimeSource;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.ConfigManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计被拒绝次数最多的来源IP和主机名
+ * 由安全日志线程写入，命令线程读取，内存上限由 offenders.capacity 决定
+ */
+public class OffenderTracker {
+    // 与事件时间使用同一个时间，计数按此衰减
+    private final TimeSource clock;
+    private SpaceSaving<String> addresses;
+    private SpaceSaving<String> hosts;
+    private int capacity;
+    private int halfLife;
+
+    public OffenderTracker(ConfigManager configManager, TimeSource clock) {
+        this.clock = clock;
+        applyConfig(configManager.getSettings());
+        configManager.addReloadListener(this::applyConfig);
+    }
+
+    /**
+     * 容量或半衰期变化时清空统计
+     */
+    private synchronized void applyConfig(ForceHostsSettings settings) {
+        if (addresses != null && capacity == settings.getOffenderCapacity()
+                && halfLife == settings.getOffenderHalfLife()) {
+            return;
+        }
+        capacity = settings.getOffenderCapacity();
+        halfLife = settings.getOffenderHalfLife();
+        long now = clock.currentTimeMillis();
+        addresses = new SpaceSaving<>(capacity, TimeUnit.SECONDS.toMillis(halfLife), now);
+        hosts = new SpaceSaving<>(capacity, TimeUnit.SECONDS.toMillis(halfLife), now);
+    }
+
+    /**
+     * 记录一次被拒绝的请求
+     * @param address 来源IP（或网段）
+     * @param virtualHost 客户端使用的主机名，没有时为null
+     * @param time 事件时间（毫秒）
+     */
+    public synchronized void record(String address, String virtualHost, long time) {
+        addresses.add(address, time);
+        if (virtualHost != null) {
+            // 按规范形式计数，大小写和末尾标记不同的变体算作同一个主机名
+            hosts.add(HostNormalizer.canonical(virtualHost), time);
+        }
+    }
+
+    /**
+     * @param limit 返回的最大条数
+     * @return 被拒绝次数最多的来源IP
+     */
+    public synchronized List<SpaceSaving.Item<String>> topAddresses(int limit) {
+        return addresses.top(limit, clock.currentTimeMillis());
+    }
+
+    /**
+     * @param limit 返回的最大条数
+     * @return 被拒绝次数最多的主机名
+     */
+    public synchronized List<SpaceSaving.Item<String>> topHosts(int limit) {
+        return hosts.top(limit, clock.currentTimeMillis());
+    }
+
+    public synchronized int getHalfLife() {
+        return halfLife;
+    }
+}
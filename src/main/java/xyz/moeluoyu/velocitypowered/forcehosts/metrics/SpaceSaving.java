@@ -0,0 +1,197 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving 算法的频繁项统计，带指数衰减
+ * <p>
+ * 最多跟踪 capacity 个键，内存与输入规模无关。表满时新键替换计数最小的键，并继承其计数作为误差上界，
+ * 因此真实次数不小于 count - error。计数按半衰期指数衰减（前向衰减：新事件的权重随时间增长，
+ * 读取时再统一换算），使结果反映最近的情况。
+ * 非线程安全，由调用方同步。
+ */
+public final class SpaceSaving<K> {
+    // 权重指数超过此值时重新换算，避免 double 溢出
+    private static final double RESCALE_EXPONENT = 40;
+
+    private final int capacity;
+    private final double lambda;
+    private final Map<K, Entry<K>> entries;
+    // 按计数排列的最小堆
+    private final List<Entry<K>> heap;
+    private long origin;
+
+    /**
+     * @param capacity 最多跟踪的键数量
+     * @param halfLifeMillis 计数的半衰期（毫秒）
+     * @param now 当前时间（毫秒）
+     */
+    public SpaceSaving(int capacity, long halfLifeMillis, long now) {
+        this.capacity = capacity;
+        this.lambda = Math.log(2) / Math.max(1, halfLifeMillis);
+        this.entries = new HashMap<>(capacity * 2);
+        this.heap = new ArrayList<>(capacity);
+        this.origin = now;
+    }
+
+    /**
+     * 记录一次出现
+     * @param now 当前时间（毫秒）
+     */
+    public void add(K key, long now) {
+        double weight = weight(now);
+        Entry<K> entry = entries.get(key);
+        if (entry != null) {
+            entry.count += weight;
+            siftDown(entry.index);
+            return;
+        }
+
+        if (heap.size() < capacity) {
+            entry = new Entry<>(key, weight, 0);
+            entry.index = heap.size();
+            heap.add(entry);
+            entries.put(key, entry);
+            siftUp(entry.index);
+            return;
+        }
+
+        // 替换计数最小的键
+        Entry<K> minimum = heap.get(0);
+        entries.remove(minimum.key);
+        minimum.key = key;
+        minimum.error = minimum.count;
+        minimum.count += weight;
+        entries.put(key, minimum);
+        siftDown(0);
+    }
+
+    /**
+     * @param limit 返回的最大条数
+     * @param now 当前时间（毫秒）
+     * @return 按计数从大到小排列的结果，计数已按当前时间衰减
+     */
+    public List<Item<K>> top(int limit, long now) {
+        double scale = 1 / weight(now);
+        List<Entry<K>> sorted = new ArrayList<>(heap);
+        sorted.sort((a, b) -> Double.compare(b.count, a.count));
+        List<Item<K>> result = new ArrayList<>(Math.min(limit, sorted.size()));
+        for (int i = 0; i < Math.min(limit, sorted.size()); i++) {
+            Entry<K> entry = sorted.get(i);
+            result.add(new Item<>(entry.key, entry.count * scale, entry.error * scale));
+        }
+        return result;
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private double weight(long now) {
+        double exponent = lambda * (now - origin);
+        if (exponent > RESCALE_EXPONENT) {
+            // 所有计数按同一比例缩小，相对大小不变
+            double factor = Math.exp(-exponent);
+            for (Entry<K> entry : heap) {
+                entry.count *= factor;
+                entry.error *= factor;
+            }
+            origin = now;
+            exponent = 0;
+        }
+        return Math.exp(exponent);
+    }
+
+    private void siftUp(int index) {
+        Entry<K> entry = heap.get(index);
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            Entry<K> parentEntry = heap.get(parent);
+            if (parentEntry.count <= entry.count) {
+                break;
+            }
+            place(parentEntry, index);
+            index = parent;
+        }
+        place(entry, index);
+    }
+
+    private void siftDown(int index) {
+        Entry<K> entry = heap.get(index);
+        int size = heap.size();
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap.get(child + 1).count < heap.get(child).count) {
+                child++;
+            }
+            Entry<K> childEntry = heap.get(child);
+            if (entry.count <= childEntry.count) {
+                break;
+            }
+            place(childEntry, index);
+            index = child;
+        }
+        place(entry, index);
+    }
+
+    private void place(Entry<K> entry, int index) {
+        heap.set(index, entry);
+        entry.index = index;
+    }
+
+    private static final class Entry<K> {
+        private K key;
+        private double count;
+        private double error;
+        private int index;
+
+        Entry(K key, double count, double error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 一条统计结果
+     */
+    public static final class Item<K> {
+        private final K key;
+        private final double count;
+        private final double error;
+
+        private Item(K key, double count, double error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return 衰减后的估计次数（可能偏大）
+         */
+        public double getCount() {
+            return count;
+        }
+
+        /**
+         * @return 估计次数的误差上界
+         */
+        public double getError() {
+            return error;
+        }
+    }
+}
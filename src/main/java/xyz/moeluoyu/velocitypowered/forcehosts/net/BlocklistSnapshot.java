@@ -0,0 +1,147 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * 阻止列表的二进制快照
+ * <p>
+ * 文件格式（大端序）：
+ * <pre>
+ * int   魔数 "FHBL"
+ * short 版本
+ * short 保留
+ * long  写入时间（毫秒）
+ * int   记录数 n
+ * n 条记录：long 地址高64位, long 地址低64位, long 解除阻止时间, byte 前缀长度
+ * int   记录部分的 CRC32C
+ * </pre>
+ * 记录按加入阻止列表的顺序排列，恢复后淘汰顺序不变。
+ * 先写入临时文件并刷盘，再原子替换正式文件，崩溃时不会留下写了一半的快照。
+ */
+public final class BlocklistSnapshot {
+    private static final int MAGIC = 0x4648424C; // "FHBL"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 2 + 8 + 4;
+    private static final int ENTRY_SIZE = 8 + 8 + 8 + 1;
+
+    private BlocklistSnapshot() {
+    }
+
+    /**
+     * 写入所有有效的阻止记录
+     * @param path 快照文件
+     * @param now 当前时间（毫秒），已到期的记录不写入
+     * @return 写入的记录数
+     */
+    public static int write(Path path, CidrBlocklist blocklist, long now) throws IOException {
+        // 在阻止列表的锁内只复制到内存，文件写入在锁外进行
+        ByteBuffer[] entries = {ByteBuffer.allocate((blocklist.size() + 16) * ENTRY_SIZE)};
+        int[] count = {0};
+        blocklist.forEach(now, (high, low, prefixLength, unblockTime) -> {
+            ByteBuffer buffer = entries[0];
+            if (buffer.remaining() < ENTRY_SIZE) {
+                ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+                entries[0] = buffer;
+            }
+            buffer.putLong(high).putLong(low).putLong(unblockTime).put((byte) prefixLength);
+            count[0]++;
+        });
+        ByteBuffer body = entries[0].flip();
+
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) 0)
+                .putLong(now)
+                .putInt(count[0])
+                .flip();
+        ByteBuffer trailer = ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = {header, body, trailer};
+            while (trailer.hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count[0];
+    }
+
+    /**
+     * 读取快照中仍然有效的阻止记录
+     * @param path 快照文件
+     * @param now 当前时间（毫秒），已到期的记录会被跳过
+     * @param consumer 按原顺序接收每条记录
+     * @return 读取的有效记录数
+     * @throws IOException 文件无法读取、格式或版本不符、内容损坏时抛出，此时不会调用 consumer
+     */
+    public static int read(Path path, long now, CidrBlocklist.BlockConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + 4 || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("快照文件大小无效: " + fileSize + " 字节");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("不是阻止列表快照文件");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("不支持的快照版本: " + version);
+            }
+            buffer.getShort();
+            buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || fileSize != HEADER_SIZE + (long) count * ENTRY_SIZE + 4) {
+                throw new IOException("快照文件长度与记录数不符");
+            }
+
+            ByteBuffer body = buffer.slice(HEADER_SIZE, count * ENTRY_SIZE);
+            CRC32C crc = new CRC32C();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(HEADER_SIZE + count * ENTRY_SIZE)) {
+                throw new IOException("快照文件校验失败");
+            }
+
+            // 先检查所有记录，快照无效时不恢复其中任何一条
+            for (int i = 0; i < count; i++) {
+                int prefixLength = body.get(i * ENTRY_SIZE + ENTRY_SIZE - 1) & 0xFF;
+                if (prefixLength > 128) {
+                    throw new IOException("快照中的前缀长度无效: " + prefixLength);
+                }
+            }
+
+            int loaded = 0;
+            for (int i = 0; i < count; i++) {
+                long high = body.getLong();
+                long low = body.getLong();
+                long unblockTime = body.getLong();
+                int prefixLength = body.get() & 0xFF;
+                if (unblockTime > now) {
+                    consumer.accept(high, low, prefixLength, unblockTime);
+                    loaded++;
+                }
+            }
+            return loaded;
+        }
+    }
+}
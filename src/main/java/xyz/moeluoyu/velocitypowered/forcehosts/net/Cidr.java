@@ -0,0 +1,85 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+/**
+ * 一个IP地址或网段，编码方式见 {@link IpAddresses}
+ */
+public final class Cidr {
+    private final long high;
+    private final long low;
+    private final int prefixLength;
+
+    /**
+     * @param prefixLength 128位空间中的前缀长度，地址会按此长度掩码
+     */
+    public Cidr(long high, long low, int prefixLength) {
+        this.high = IpAddresses.maskHigh(high, prefixLength);
+        this.low = IpAddresses.maskLow(low, prefixLength);
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * 解析 CIDR 字符串，例如 203.0.113.0/24、2001:db8::/32，不带前缀长度时表示单个地址
+     * @throws IllegalArgumentException 格式无效时抛出
+     */
+    public static Cidr parse(String text) {
+        String trimmed = text.trim();
+        int slash = trimmed.indexOf('/');
+        byte[] raw = IpAddresses.parse(slash < 0 ? trimmed : trimmed.substring(0, slash));
+        int maxLength = raw.length == 4 ? 32 : 128;
+        int length = maxLength;
+        if (slash >= 0) {
+            try {
+                length = Integer.parseInt(trimmed.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的前缀长度: " + trimmed);
+            }
+            if (length < 0 || length > maxLength) {
+                throw new IllegalArgumentException("无效的前缀长度: " + trimmed);
+            }
+        }
+        if (raw.length == 4) {
+            length += IpAddresses.IPV4_PREFIX_OFFSET;
+        }
+        return new Cidr(IpAddresses.high(raw), IpAddresses.low(raw), length);
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @return 128位空间中的前缀长度
+     */
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    /**
+     * @return 是否包含该地址
+     */
+    public boolean contains(long high, long low) {
+        return IpAddresses.maskHigh(high, prefixLength) == this.high && IpAddresses.maskLow(low, prefixLength) == this.low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Cidr)) return false;
+        Cidr that = (Cidr) o;
+        return high == that.high && low == that.low && prefixLength == that.prefixLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high) * 31 * 31 + Long.hashCode(low) * 31 + prefixLength;
+    }
+
+    @Override
+    public String toString() {
+        return prefixLength == 128 ? IpAddresses.toString(high, low) : IpAddresses.toString(high, low, prefixLength);
+    }
+}
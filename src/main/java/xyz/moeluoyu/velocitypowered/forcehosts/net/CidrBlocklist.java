@@ -0,0 +1,248 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 地址和网段的阻止列表
+ * <p>
+ * 使用路径压缩的二叉前缀树（{@link PrefixTrie}）保存被阻止的前缀，地址编码方式见 {@link IpAddresses}，
+ * 单个地址即长度为128的前缀。检查一个地址只需沿树向下走一次，途经的每个节点都是覆盖该地址的前缀，
+ * 因此无论有多少条阻止记录，查询代价只与前缀长度有关。
+ * <p>
+ * 查询不加锁：新节点在构建完成后才通过 volatile 引用挂到树上，删除节点时也只是把父节点的引用指向其子节点，
+ * 正在遍历的线程总能看到一棵完整的树。修改操作（阻止、解除阻止、清理）在对象锁内串行执行。
+ * 记录数达到上限时淘汰最早加入的阻止记录；阻止时间通常相同，因此它也就是最早到期的记录。
+ */
+public final class CidrBlocklist {
+    private final PrefixTrie<Node> trie = new PrefixTrie<>(Node::new);
+    // 由对象锁保护写入，调整时在锁内淘汰多出的记录
+    private volatile int maxEntries;
+    private final LongAdder evictions;
+    // 按加入顺序排列的阻止记录，由对象锁保护
+    private final Node order = new Node(0, 0, 0);
+    private volatile int size;
+    // 阻止或解除阻止的次数，用于判断是否需要重新保存快照
+    private volatile long modifications;
+
+    /**
+     * @param maxEntries 最多保存的阻止记录数
+     * @param evictions 因过期或容量淘汰的记录计数
+     */
+    public CidrBlocklist(int maxEntries, LongAdder evictions) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.evictions = evictions;
+        order.next = order;
+        order.previous = order;
+    }
+
+    /**
+     * 查询地址是否被阻止
+     * @return 覆盖该地址的所有有效阻止记录中最晚的解除阻止时间，未被阻止时返回0
+     */
+    public long blockedUntil(long high, long low, long now) {
+        long until = 0;
+        for (Node node = trie.root(); node != null && node.covers(high, low); node = node.next(high, low)) {
+            long unblockTime = node.unblockTime;
+            if (unblockTime > now && unblockTime > until) {
+                until = unblockTime;
+            }
+        }
+        return until;
+    }
+
+    /**
+     * 阻止一个前缀，已被阻止时延长到较晚的解除时间
+     * @param prefixLength 128位空间中的前缀长度
+     * @param unblockTime 解除阻止的时间（毫秒）
+     * @param now 当前时间（毫秒）
+     * @return 之前没有有效的阻止记录时返回true
+     */
+    public synchronized boolean block(long high, long low, int prefixLength, long unblockTime, long now) {
+        long maskedHigh = IpAddresses.maskHigh(high, prefixLength);
+        long maskedLow = IpAddresses.maskLow(low, prefixLength);
+        Node node = trie.insert(maskedHigh, maskedLow, prefixLength);
+        boolean added = node.unblockTime <= now;
+        if (node.unblockTime == 0) {
+            if (size >= maxEntries) {
+                evictOldest();
+            }
+            link(node);
+            size++;
+        }
+        if (unblockTime > node.unblockTime) {
+            node.unblockTime = unblockTime;
+            modifications++;
+        }
+        return added;
+    }
+
+    /**
+     * 解除对一个前缀的阻止（不影响覆盖它的更短前缀）
+     * @return 是否存在该阻止记录
+     */
+    public synchronized boolean unblock(long high, long low, int prefixLength) {
+        long maskedHigh = IpAddresses.maskHigh(high, prefixLength);
+        long maskedLow = IpAddresses.maskLow(low, prefixLength);
+        Node parent = null;
+        Node node = trie.root();
+        while (node != null && node.covers(maskedHigh, maskedLow) && node.length < prefixLength) {
+            parent = node;
+            node = node.next(maskedHigh, maskedLow);
+        }
+        if (node == null || node.length != prefixLength || node.high != maskedHigh || node.low != maskedLow
+                || node.unblockTime == 0) {
+            return false;
+        }
+        remove(parent, node);
+        modifications++;
+        return true;
+    }
+
+    /**
+     * 移除所有已到期的阻止记录
+     * @return 移除的记录数
+     */
+    public synchronized int sweep(long now) {
+        int removed = sweep(null, trie.root(), now);
+        evictions.add(removed);
+        return removed;
+    }
+
+    private int sweep(Node parent, Node node, long now) {
+        int removed = 0;
+        Node zero = node.zero;
+        Node one = node.one;
+        if (zero != null) {
+            removed += sweep(node, zero, now);
+        }
+        if (one != null) {
+            removed += sweep(node, one, now);
+        }
+        if (node.unblockTime != 0 && node.unblockTime <= now) {
+            remove(parent, node);
+            removed++;
+        } else if (node.unblockTime == 0 && parent != null) {
+            prune(parent, node);
+        }
+        return removed;
+    }
+
+    /**
+     * 遍历所有有效的阻止记录
+     */
+    public synchronized void forEach(long now, BlockConsumer consumer) {
+        for (Node node = order.next; node != order; node = node.next) {
+            if (node.unblockTime > now) {
+                consumer.accept(node.high, node.low, node.length, node.unblockTime);
+            }
+        }
+    }
+
+    /**
+     * 阻止记录遍历回调
+     */
+    public interface BlockConsumer {
+        void accept(long high, long low, int prefixLength, long unblockTime);
+    }
+
+    /**
+     * @return 当前阻止记录数（包括尚未清理的到期记录）
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * 调整记录数上限，超出新上限的最早记录被淘汰；与阻止操作使用同一把锁，调整期间的阻止不会丢失
+     * @param maxEntries 最多保存的阻止记录数
+     */
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        if (size > this.maxEntries) {
+            while (size > this.maxEntries) {
+                evictOldest();
+            }
+            // 快照中也不再包含被淘汰的记录
+            modifications++;
+        }
+    }
+
+    /**
+     * @return 阻止或解除阻止的累计次数，到期清理不计入
+     */
+    public long getModificationCount() {
+        return modifications;
+    }
+
+    private void evictOldest() {
+        Node oldest = order.next;
+        if (oldest == order) {
+            return;
+        }
+        // 需要父节点才能从树上摘除，从根重新查找
+        Node parent = null;
+        Node node = trie.root();
+        while (node != oldest) {
+            parent = node;
+            node = node.next(oldest.high, oldest.low);
+        }
+        remove(parent, oldest);
+        evictions.increment();
+    }
+
+    private void remove(Node parent, Node node) {
+        node.unblockTime = 0;
+        unlink(node);
+        size--;
+        if (parent != null) {
+            prune(parent, node);
+        }
+    }
+
+    /**
+     * 摘除没有阻止记录且最多只有一个子节点的中间节点
+     */
+    private void prune(Node parent, Node node) {
+        if (node.unblockTime != 0 || (node.zero != null && node.one != null)) {
+            return;
+        }
+        Node replacement = node.zero != null ? node.zero : node.one;
+        if (parent.zero == node) {
+            parent.zero = replacement;
+        } else if (parent.one == node) {
+            parent.one = replacement;
+        }
+    }
+
+    private void link(Node node) {
+        node.previous = order.previous;
+        node.next = order;
+        order.previous.next = node;
+        order.previous = node;
+    }
+
+    private static void unlink(Node node) {
+        if (node.next != null) {
+            node.next.previous = node.previous;
+            node.previous.next = node.next;
+            node.next = null;
+            node.previous = null;
+        }
+    }
+
+    private static final class Node extends PrefixTrie.Node<Node> {
+        // 0 表示该节点没有阻止记录
+        volatile long unblockTime;
+        // 按加入顺序排列的双向链表，由对象锁保护；哨兵的 next 为最早的记录，previous 为最新的记录
+        Node previous;
+        Node next;
+
+        Node(long high, long low, int length) {
+            super(high, low, length);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import java.util.Map;
+
+/**
+ * 构建后不可变的网段表，按最长前缀匹配查询，可被多个线程同时使用
+ * <p>
+ * 与 {@link CidrBlocklist} 共用路径压缩的二叉前缀树 {@link PrefixTrie}，地址编码方式见 {@link IpAddresses}。
+ * 查询沿树向下走一次，返回覆盖该地址的最长前缀的值，因此较长的前缀可以覆盖较短前缀的设置。
+ * @param <V> 值类型
+ */
+public final class CidrTable<V> {
+    private static final CidrTable<?> EMPTY = new CidrTable<>(new PrefixTrie<>(Node::new), 0);
+
+    private final PrefixTrie<Node<V>> trie;
+    private final int size;
+
+    private CidrTable(PrefixTrie<Node<V>> trie, int size) {
+        this.trie = trie;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> CidrTable<V> empty() {
+        return (CidrTable<V>) EMPTY;
+    }
+
+    /**
+     * @param entries 网段及其值，相同网段以后出现的为准
+     */
+    public static <V> CidrTable<V> of(Map<Cidr, V> entries) {
+        if (entries.isEmpty()) {
+            return empty();
+        }
+        PrefixTrie<Node<V>> trie = new PrefixTrie<>(Node::new);
+        entries.forEach((cidr, value) -> trie.insert(cidr.getHigh(), cidr.getLow(), cidr.getPrefixLength()).value = value);
+        return new CidrTable<>(trie, entries.size());
+    }
+
+    /**
+     * @return 覆盖该地址的最长前缀的值，没有覆盖该地址的网段时返回null
+     */
+    public V get(long high, long low) {
+        Node<V> node = trie.longestMatch(high, low, Node::hasValue);
+        return node == null ? null : node.value;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Node<V> extends PrefixTrie.Node<Node<V>> {
+        // 构建完成后不再修改，分叉点为null
+        V value;
+
+        Node(long high, long low, int length) {
+            super(high, low, length);
+        }
+
+        boolean hasValue() {
+            return value != null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * IP地址的原始数值编码
+ * <p>
+ * 所有地址统一编码为两个 long 表示的128位数：IPv6 为原始的高64位和低64位；
+ * IPv4 映射为 ::ffff:a.b.c.d，即高位为0，低位为 0x0000ffff_00000000 | 32位地址。
+ * 这样 IPv4 和 IPv6 可以共用同一套键和前缀计算，且不需要构建任何字符串。
+ */
+public final class IpAddresses {
+    /**
+     * IPv4 映射地址低64位的固定前缀
+     */
+    public static final long IPV4_MAPPED_PREFIX = 0x0000ffff00000000L;
+    /**
+     * IPv4 地址在128位空间中的前缀长度偏移量
+     */
+    public static final int IPV4_PREFIX_OFFSET = 96;
+
+    private IpAddresses() {
+    }
+
+    /**
+     * @param raw InetAddress#getAddress() 返回的4字节或16字节地址
+     * @return 编码后的高64位
+     */
+    public static long high(byte[] raw) {
+        if (raw.length == 4) {
+            return 0;
+        }
+        return readLong(raw, 0);
+    }
+
+    /**
+     * @param raw InetAddress#getAddress() 返回的4字节或16字节地址
+     * @return 编码后的低64位
+     */
+    public static long low(byte[] raw) {
+        if (raw.length == 4) {
+            return IPV4_MAPPED_PREFIX | ((raw[0] & 0xffL) << 24) | ((raw[1] & 0xffL) << 16)
+                    | ((raw[2] & 0xffL) << 8) | (raw[3] & 0xffL);
+        }
+        return readLong(raw, 8);
+    }
+
+    private static long readLong(byte[] raw, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (raw[i] & 0xffL);
+        }
+        return value;
+    }
+
+    /**
+     * 连接地址编码后的高64位，远程地址未知时按全零地址处理
+     * <p>
+     * IPv4 地址的高位固定为0。IPv6 地址只能通过 {@link InetAddress#getAddress()} 读取，每次调用会复制一个16字节的数组。
+     */
+    public static long high(InetSocketAddress address) {
+        InetAddress ip = address != null ? address.getAddress() : null;
+        return ip instanceof Inet6Address ? readLong(ip.getAddress(), 0) : 0;
+    }
+
+    /**
+     * 连接地址编码后的低64位，远程地址未知时按全零地址处理
+     * <p>
+     * IPv4 地址直接取 {@link Inet4Address#hashCode()}（即32位地址本身），不复制地址数组。
+     */
+    public static long low(InetSocketAddress address) {
+        InetAddress ip = address != null ? address.getAddress() : null;
+        if (ip instanceof Inet4Address) {
+            return IPV4_MAPPED_PREFIX | (ip.hashCode() & 0xffffffffL);
+        }
+        return ip instanceof Inet6Address ? readLong(ip.getAddress(), 8) : 0;
+    }
+
+    /**
+     * @return 是否为 IPv4（映射）地址
+     */
+    public static boolean isIPv4(long high, long low) {
+        return high == 0 && (low & 0xffffffff00000000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    /**
+     * 保留高 prefixLength 位，清零其余位
+     * @param prefixLength 128位空间中的前缀长度
+     */
+    public static long maskHigh(long high, int prefixLength) {
+        if (prefixLength >= 64) {
+            return high;
+        }
+        return prefixLength <= 0 ? 0 : high & (-1L << (64 - prefixLength));
+    }
+
+    /**
+     * 保留高 prefixLength 位后的低64位
+     * @param prefixLength 128位空间中的前缀长度
+     */
+    public static long maskLow(long low, int prefixLength) {
+        if (prefixLength <= 64) {
+            return 0;
+        }
+        return prefixLength >= 128 ? low : low & (-1L << (128 - prefixLength));
+    }
+
+    /**
+     * 将编码后的地址转换为字符串，只用于日志和命令输出
+     */
+    public static String toString(long high, long low) {
+        if (isIPv4(high, low)) {
+            return ((low >>> 24) & 0xff) + "." + ((low >>> 16) & 0xff) + "." + ((low >>> 8) & 0xff) + "." + (low & 0xff);
+        }
+        byte[] raw = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            raw[i] = (byte) (high >>> (56 - i * 8));
+            raw[8 + i] = (byte) (low >>> (56 - i * 8));
+        }
+        try {
+            return InetAddress.getByAddress(raw).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 将编码后的网段转换为 CIDR 字符串，IPv4 网段的前缀长度按32位显示
+     * @param prefixLength 128位空间中的前缀长度
+     */
+    public static String toString(long high, long low, int prefixLength) {
+        if (isIPv4(high, low) && prefixLength >= IPV4_PREFIX_OFFSET) {
+            return toString(high, low) + "/" + (prefixLength - IPV4_PREFIX_OFFSET);
+        }
+        return toString(high, low) + "/" + prefixLength;
+    }
+
+    /**
+     * 解析IP地址字面量（不进行DNS查询）
+     * @param text IP地址
+     * @return 地址字节
+     * @throws IllegalArgumentException 不是合法的IP地址时抛出
+     */
+    public static byte[] parse(String text) {
+        return InetAddresses.forString(text.trim()).getAddress();
+    }
+}
@@ -0,0 +1,414 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 以编码后的IP地址（两个 long）为键的并发哈希表
+ * <p>
+ * 表被划分为多个段，每段是一个线性探测的开放寻址表，键直接保存在 long 数组中，
+ * 查询既不构建字符串也不装箱。读操作使用段上的乐观读，不加锁；插入、删除和清理只锁对应的段。
+ * <p>
+ * 每个条目带有一个过期时间，过期的条目在读取时视为不存在，并由 {@link #sweep(long)} 定期移除。
+ * 条目数量达到上限时，从新键所在位置附近抽样若干条目，淘汰其中最早过期的一个
+ * （对按访问续期的条目来说即近似的最近最少使用）。
+ * @param <V> 值类型
+ */
+public final class IpTable<V> {
+    /**
+     * 新条目的值工厂
+     */
+    public interface Factory<V> {
+        V create();
+    }
+
+    // 容量满时抽样的条目数
+    private static final int EVICTION_SAMPLES = 8;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int maxPerSegment;
+    private final int maxSegmentCapacity;
+    private final Factory<V> factory;
+    private final LongAdder evictions;
+
+    /**
+     * @param maxEntries 最多保存的条目数
+     * @param factory 值工厂，用于 {@link #getOrCreate(long, long, long, long)}
+     * @param evictions 因过期或容量淘汰的条目计数
+     */
+    public IpTable(long maxEntries, Factory<V> factory, LongAdder evictions) {
+        int bySize = tableSizeFor((int) Math.min(Integer.MAX_VALUE, Math.max(1, maxEntries / MIN_SEGMENT_CAPACITY)));
+        int byCpu = tableSizeFor(Runtime.getRuntime().availableProcessors() * 4);
+        int segmentCount = Math.max(1, Math.min(bySize, byCpu));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment();
+        }
+        this.segmentMask = segmentCount - 1;
+        this.maxPerSegment = (int) Math.max(1, Math.min(Integer.MAX_VALUE / 4, (maxEntries + segmentCount - 1) / segmentCount));
+        this.maxSegmentCapacity = tableSizeFor(maxPerSegment * 2);
+        this.factory = factory;
+        this.evictions = evictions;
+    }
+
+    private static int tableSizeFor(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    static long hash(long high, long low) {
+        long h = high * 0x9e3779b97f4a7c15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 40) & segmentMask];
+    }
+
+    /**
+     * 获取未过期的值
+     * @return 值，不存在或已过期时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long high, long low, long now) {
+        long hash = hash(high, low);
+        Segment segment = segmentFor(hash);
+        StampedLock lock = segment.lock;
+        long stamp = lock.tryOptimisticRead();
+        Storage storage = segment.storage;
+        int index = storage.find(high, low, hash);
+        Object value = index >= 0 ? storage.values[index] : null;
+        long expiresAt = index >= 0 ? storage.expires[index] : 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                storage = segment.storage;
+                index = storage.find(high, low, hash);
+                value = index >= 0 ? storage.values[index] : null;
+                expiresAt = index >= 0 ? storage.expires[index] : 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value != null && now < expiresAt ? (V) value : null;
+    }
+
+    /**
+     * 获取条目的过期时间
+     * @return 过期时间（毫秒），不存在时返回0
+     */
+    public long expiresAt(long high, long low) {
+        long hash = hash(high, low);
+        Segment segment = segmentFor(hash);
+        StampedLock lock = segment.lock;
+        long stamp = lock.tryOptimisticRead();
+        Storage storage = segment.storage;
+        int index = storage.find(high, low, hash);
+        long expiresAt = index >= 0 ? storage.expires[index] : 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                storage = segment.storage;
+                index = storage.find(high, low, hash);
+                expiresAt = index >= 0 ? storage.expires[index] : 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return expiresAt;
+    }
+
+    /**
+     * 获取未过期的值并将过期时间续期为 now + ttl；不存在或已过期时用工厂创建新值
+     * <p>
+     * 已存在的条目只做乐观读和一次数组写入。续期写入与段内的并发删除之间存在良性竞争，
+     * 最坏情况下续期丢失或落到相邻条目上，只会让条目提前或推迟过期。
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrCreate(long high, long low, long now, long ttl) {
+        long hash = hash(high, low);
+        Segment segment = segmentFor(hash);
+        StampedLock lock = segment.lock;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Storage storage = segment.storage;
+            int index = storage.find(high, low, hash);
+            if (index >= 0) {
+                Object value = storage.values[index];
+                long expiresAt = storage.expires[index];
+                if (lock.validate(stamp) && value != null && now < expiresAt) {
+                    storage.expires[index] = now + ttl;
+                    return (V) value;
+                }
+            }
+        }
+
+        stamp = lock.writeLock();
+        try {
+            Storage storage = segment.storage;
+            int index = storage.find(high, low, hash);
+            if (index >= 0) {
+                if (now >= storage.expires[index]) {
+                    storage.values[index] = factory.create();
+                }
+                storage.expires[index] = now + ttl;
+                return (V) storage.values[index];
+            }
+            V value = factory.create();
+            insert(segment, high, low, hash, value, now + ttl, now);
+            return value;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 放入或替换条目
+     * @param expiresAt 过期时间（毫秒）
+     */
+    public void put(long high, long low, V value, long expiresAt, long now) {
+        long hash = hash(high, low);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            Storage storage = segment.storage;
+            int index = storage.find(high, low, hash);
+            if (index >= 0) {
+                storage.values[index] = value;
+                storage.expires[index] = expiresAt;
+            } else {
+                insert(segment, high, low, hash, value, expiresAt, now);
+            }
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 移除条目
+     * @return 是否存在该条目
+     */
+    public boolean remove(long high, long low) {
+        long hash = hash(high, low);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            Storage storage = segment.storage;
+            int index = storage.find(high, low, hash);
+            if (index < 0) {
+                return false;
+            }
+            storage.delete(index);
+            segment.size--;
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    private void insert(Segment segment, long high, long low, long hash, Object value, long expiresAt, long now) {
+        Storage storage = segment.storage;
+        if (segment.size >= maxPerSegment) {
+            storage.delete(storage.sampleEvictionCandidate(hash, now));
+            segment.size--;
+            evictions.increment();
+        } else if ((segment.size + 1) * 2 > storage.values.length && storage.values.length < maxSegmentCapacity) {
+            storage = storage.resize(storage.values.length * 2);
+            segment.storage = storage;
+        }
+        storage.place(high, low, hash, value, expiresAt);
+        segment.size++;
+    }
+
+    /**
+     * 移除所有已过期的条目
+     * @param now 当前时间（毫秒）
+     * @return 移除的条目数
+     */
+    public int sweep(long now) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                Storage storage = segment.storage;
+                int i = 0;
+                while (i < storage.values.length) {
+                    if (storage.values[i] != null && now >= storage.expires[i]) {
+                        // 删除后会有后续条目移到当前位置，需要重新检查
+                        storage.delete(i);
+                        segment.size--;
+                        removed++;
+                    } else {
+                        i++;
+                    }
+                }
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+        evictions.add(removed);
+        return removed;
+    }
+
+    /**
+     * 遍历所有未过期的条目，遍历期间逐段加读锁
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(long now, EntryConsumer<V> consumer) {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                Storage storage = segment.storage;
+                for (int i = 0; i < storage.values.length; i++) {
+                    if (storage.values[i] != null && now < storage.expires[i]) {
+                        consumer.accept(storage.keys[i * 2], storage.keys[i * 2 + 1], (V) storage.values[i], storage.expires[i]);
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * 条目遍历回调
+     */
+    public interface EntryConsumer<V> {
+        void accept(long high, long low, V value, long expiresAt);
+    }
+
+    /**
+     * @return 当前条目数（包括尚未清理的过期条目）
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public long getMaxEntries() {
+        return (long) maxPerSegment * segments.length;
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        volatile Storage storage = new Storage(MIN_SEGMENT_CAPACITY);
+        volatile int size;
+    }
+
+    /**
+     * 段内的存储数组，扩容时整体替换，保证乐观读取到的数组长度一致
+     */
+    private static final class Storage {
+        final long[] keys;
+        final Object[] values;
+        final long[] expires;
+        final int mask;
+
+        Storage(int capacity) {
+            keys = new long[capacity * 2];
+            values = new Object[capacity];
+            expires = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        /**
+         * 查找键所在位置，最多探测整张表，乐观读时数据不一致也不会死循环
+         * @return 位置，不存在时返回-1
+         */
+        int find(long high, long low, long hash) {
+            int index = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                if (values[index] == null) {
+                    return -1;
+                }
+                if (keys[index * 2] == high && keys[index * 2 + 1] == low) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        void place(long high, long low, long hash, Object value, long expiresAt) {
+            int index = (int) hash & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index * 2] = high;
+            keys[index * 2 + 1] = low;
+            expires[index] = expiresAt;
+            values[index] = value;
+        }
+
+        /**
+         * 删除条目，并把同一探测链上的后续条目向前移动（不使用墓碑）
+         */
+        void delete(int index) {
+            int hole = index;
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                if (values[next] == null) {
+                    break;
+                }
+                int home = (int) hash(keys[next * 2], keys[next * 2 + 1]) & mask;
+                boolean reachable = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+                if (reachable) {
+                    continue;
+                }
+                keys[hole * 2] = keys[next * 2];
+                keys[hole * 2 + 1] = keys[next * 2 + 1];
+                expires[hole] = expires[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            values[hole] = null;
+            keys[hole * 2] = 0;
+            keys[hole * 2 + 1] = 0;
+            expires[hole] = 0;
+        }
+
+        /**
+         * 从 hash 对应位置开始抽样，优先返回已过期的条目，否则返回其中最早过期的条目
+         */
+        int sampleEvictionCandidate(long hash, long now) {
+            int index = (int) hash & mask;
+            int candidate = -1;
+            int sampled = 0;
+            for (int probes = 0; probes <= mask && sampled < EVICTION_SAMPLES; probes++) {
+                if (values[index] != null) {
+                    if (now >= expires[index]) {
+                        return index;
+                    }
+                    if (candidate < 0 || expires[index] < expires[candidate]) {
+                        candidate = index;
+                    }
+                    sampled++;
+                }
+                index = (index + 1) & mask;
+            }
+            return candidate;
+        }
+
+        Storage resize(int capacity) {
+            Storage resized = new Storage(capacity);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    long high = keys[i * 2];
+                    long low = keys[i * 2 + 1];
+                    resized.place(high, low, hash(high, low), values[i], expires[i]);
+                }
+            }
+            return resized;
+        }
+    }
+}
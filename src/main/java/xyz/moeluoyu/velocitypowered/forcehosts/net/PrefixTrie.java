@@ -0,0 +1,160 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import java.util.function.Predicate;
+
+/**
+ * 路径压缩的二叉前缀树（radix tree），由 {@link CidrBlocklist} 和 {@link CidrTable} 共用
+ * <p>
+ * 地址编码方式见 {@link IpAddresses}，单个地址即长度为128的前缀。只有插入的前缀和分叉点才有节点，
+ * 检查一个地址只需沿树向下走一次，途经的每个节点都是覆盖该地址的前缀。
+ * <p>
+ * 子节点引用为 volatile，新节点在构建完成后才挂到树上，不加锁的查询线程总能看到一棵完整的树。
+ * 插入和摘除节点由使用方串行执行。
+ * @param <N> 节点类型，由使用方添加各自的数据
+ */
+final class PrefixTrie<N extends PrefixTrie.Node<N>> {
+    /**
+     * 节点工厂，用于插入时创建新节点
+     */
+    interface NodeFactory<N> {
+        N create(long high, long low, int length);
+    }
+
+    private final NodeFactory<N> factory;
+    private final N root;
+
+    PrefixTrie(NodeFactory<N> factory) {
+        this.factory = factory;
+        this.root = factory.create(0, 0, 0);
+    }
+
+    /**
+     * @return 长度为0的根节点，覆盖所有地址
+     */
+    N root() {
+        return root;
+    }
+
+    /**
+     * 查找前缀对应的节点，不存在时插入
+     * @param high 掩码后的地址高64位
+     * @param low 掩码后的地址低64位
+     * @param length 128位空间中的前缀长度
+     */
+    N insert(long high, long low, int length) {
+        N node = root;
+        while (true) {
+            if (node.length == length) {
+                return node;
+            }
+            int direction = bit(high, low, node.length);
+            N child = node.child(direction);
+            if (child == null) {
+                N leaf = factory.create(high, low, length);
+                node.setChild(direction, leaf);
+                return leaf;
+            }
+
+            int common = Math.min(commonPrefix(high, low, child.high, child.low), Math.min(length, child.length));
+            if (common == child.length) {
+                // child 是目标前缀的祖先，继续向下
+                node = child;
+                continue;
+            }
+
+            N branch;
+            if (common == length) {
+                // 目标前缀是 child 的祖先，插入到两者之间
+                branch = factory.create(high, low, length);
+                branch.setChild(bit(child.high, child.low, length), child);
+                node.setChild(direction, branch);
+                return branch;
+            }
+
+            // 在第 common 位分叉
+            branch = factory.create(IpAddresses.maskHigh(high, common), IpAddresses.maskLow(low, common), common);
+            N leaf = factory.create(high, low, length);
+            branch.setChild(bit(child.high, child.low, common), child);
+            branch.setChild(bit(high, low, common), leaf);
+            node.setChild(direction, branch);
+            return leaf;
+        }
+    }
+
+    /**
+     * 最长前缀匹配
+     * @param present 节点是否保存了数据，分叉点等没有数据的节点不算作匹配
+     * @return 覆盖该地址且有数据的最长前缀的节点，没有时返回null
+     */
+    N longestMatch(long high, long low, Predicate<? super N> present) {
+        N match = null;
+        for (N node = root; node != null && node.covers(high, low); node = node.next(high, low)) {
+            if (present.test(node)) {
+                match = node;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * @return 第 index 位（从最高位开始计数）的值
+     */
+    static int bit(long high, long low, int index) {
+        return index < 64 ? (int) (high >>> (63 - index)) & 1 : (int) (low >>> (127 - index)) & 1;
+    }
+
+    static int commonPrefix(long high1, long low1, long high2, long low2) {
+        long diff = high1 ^ high2;
+        if (diff != 0) {
+            return Long.numberOfLeadingZeros(diff);
+        }
+        return 64 + Long.numberOfLeadingZeros(low1 ^ low2);
+    }
+
+    /**
+     * 树上的一个前缀
+     * @param <N> 节点类型本身
+     */
+    abstract static class Node<N extends Node<N>> {
+        final long high;
+        final long low;
+        final int length;
+        volatile N zero;
+        volatile N one;
+
+        Node(long high, long low, int length) {
+            this.high = high;
+            this.low = low;
+            this.length = length;
+        }
+
+        /**
+         * @return 该前缀是否覆盖这个地址
+         */
+        final boolean covers(long high, long low) {
+            return IpAddresses.maskHigh(high, length) == this.high && IpAddresses.maskLow(low, length) == this.low;
+        }
+
+        /**
+         * @return 朝该地址方向的子节点，单个地址的节点返回null；子节点不一定覆盖该地址
+         */
+        final N next(long high, long low) {
+            if (length == 128) {
+                return null;
+            }
+            return bit(high, low, length) == 0 ? zero : one;
+        }
+
+        final N child(int direction) {
+            return direction == 0 ? zero : one;
+        }
+
+        final void setChild(int direction, N child) {
+            if (direction == 0) {
+                zero = child;
+            } else {
+                one = child;
+            }
+        }
+    }
+}
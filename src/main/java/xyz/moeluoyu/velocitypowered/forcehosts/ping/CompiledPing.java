@@ -0,0 +1,86 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.ping;
+
+import com.velocitypowered.api.proxy.server.ServerPing;
+import com.velocitypowered.api.util.Favicon;
+import net.kyori.adventure.text.Component;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.PingResponse;
+
+/**
+ * 预先生成的ping响应
+ * <p>
+ * 描述、版本和图标在配置重载时就已转换好，应用时只把它们设置到响应上。
+ * 所有项都已配置时直接返回同一个 {@link ServerPing} 实例，不再读取代理原有的响应。
+ */
+public final class CompiledPing {
+    private final Component description;
+    private final String versionName;
+    private final ServerPing.Version version;
+    private final int maxPlayers;
+    private final int onlinePlayers;
+    private final Favicon favicon;
+    // 所有项都已配置时的完整响应，否则为null
+    private final ServerPing complete;
+
+    /**
+     * @param description 服务器描述，null为不修改
+     * @param versionName 版本文字，null为不修改
+     * @param protocol 协议版本号，{@link PingResponse#KEEP} 为沿用原有的协议版本号
+     * @param maxPlayers 显示的最大人数，{@link PingResponse#KEEP} 为不修改
+     * @param onlinePlayers 显示的在线人数，{@link PingResponse#KEEP} 为不修改
+     * @param favicon 服务器图标，null为不修改
+     */
+    CompiledPing(Component description, String versionName, int protocol, int maxPlayers, int onlinePlayers,
+                 Favicon favicon) {
+        this.description = description;
+        this.versionName = versionName;
+        this.version = versionName != null && protocol >= 0 ? new ServerPing.Version(protocol, versionName) : null;
+        this.maxPlayers = maxPlayers;
+        this.onlinePlayers = onlinePlayers;
+        this.favicon = favicon;
+
+        if (description != null && version != null && maxPlayers >= 0 && onlinePlayers >= 0) {
+            ServerPing.Builder builder = ServerPing.builder()
+                    .description(description)
+                    .version(version)
+                    .maximumPlayers(maxPlayers)
+                    .onlinePlayers(onlinePlayers);
+            if (favicon != null) {
+                builder.favicon(favicon);
+            }
+            this.complete = builder.build();
+        } else {
+            this.complete = null;
+        }
+    }
+
+    /**
+     * 把自定义的项应用到代理原有的响应上
+     * @param original 代理原有的响应
+     * @return 新的响应
+     */
+    public ServerPing apply(ServerPing original) {
+        if (complete != null) {
+            return complete;
+        }
+        ServerPing.Builder builder = original.asBuilder();
+        if (description != null) {
+            builder.description(description);
+        }
+        if (version != null) {
+            builder.version(version);
+        } else if (versionName != null) {
+            // 沿用原有的协议版本号，客户端不会显示版本不兼容
+            builder.version(new ServerPing.Version(original.getVersion().getProtocol(), versionName));
+        }
+        if (maxPlayers >= 0) {
+            builder.maximumPlayers(maxPlayers);
+        }
+        if (onlinePlayers >= 0) {
+            builder.onlinePlayers(onlinePlayers);
+        }
+        if (favicon != null) {
+            builder.favicon(favicon);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,111 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.ping;
+
+import com.velocitypowered.api.util.Favicon;
+import org.slf4j.Logger;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.PingResponse;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.ConfigManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.MessageManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按主机名规则缓存的自定义ping响应
+ * <p>
+ * 每次配置重载时生成全部响应并整体替换，ping事件只需按命中的主机名规则查一次表。
+ * 图标按文件路径缓存，文件的修改时间和大小不变时重载不会重新解码。
+ */
+public class PingResponseCache {
+    private final Logger logger;
+    private final MessageManager messageManager;
+    private final Path dataDirectory;
+    // 已解码的图标，只在重载时访问
+    private final Map<Path, CachedFavicon> favicons = new HashMap<>();
+
+    private volatile Map<String, CompiledPing> hostPings = Collections.emptyMap();
+    private volatile CompiledPing decoy;
+
+    public PingResponseCache(Logger logger, ConfigManager configManager, MessageManager messageManager,
+                             Path dataDirectory) {
+        this.logger = logger;
+        this.messageManager = messageManager;
+        this.dataDirectory = dataDirectory;
+        rebuild(configManager.getSettings());
+        configManager.addReloadListener(this::rebuild);
+    }
+
+    private synchronized void rebuild(ForceHostsSettings settings) {
+        Map<Path, CachedFavicon> used = new HashMap<>();
+        Map<String, CompiledPing> compiled = new HashMap<>();
+        settings.getPingResponses().forEach((rule, response) -> compiled.put(rule, compile(response, used)));
+        PingResponse decoyResponse = settings.getDecoyResponse();
+        CompiledPing compiledDecoy = decoyResponse != null ? compile(decoyResponse, used) : null;
+
+        // 不再使用的图标不再缓存
+        favicons.keySet().retainAll(used.keySet());
+        hostPings = compiled.isEmpty() ? Collections.emptyMap() : compiled;
+        decoy = compiledDecoy;
+    }
+
+    private CompiledPing compile(PingResponse response, Map<Path, CachedFavicon> used) {
+        return new CompiledPing(
+                response.getMotd() != null ? messageManager.toComponent(response.getMotd()) : null,
+                response.getVersion() != null ? messageManager.parseColor(response.getVersion()) : null,
+                response.getProtocol(),
+                response.getMaxPlayers(),
+                response.getOnlinePlayers(),
+                response.getFavicon() != null ? loadFavicon(dataDirectory.resolve(response.getFavicon()), used) : null);
+    }
+
+    private Favicon loadFavicon(Path path, Map<Path, CachedFavicon> used) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            CachedFavicon cached = favicons.get(path);
+            if (cached == null || cached.lastModified != lastModified || cached.size != attributes.size()) {
+                cached = new CachedFavicon(lastModified, attributes.size(), Favicon.create(path));
+                favicons.put(path, cached);
+            }
+            used.put(path, cached);
+            return cached.favicon;
+        } catch (IOException | IllegalArgumentException e) {
+            // 图片尺寸必须为64x64
+            logger.warn("加载服务器图标 {} 失败，将不修改图标: {}", path.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 获取某条主机名规则的自定义响应
+     * @param rule {@link xyz.moeluoyu.velocitypowered.forcehosts.host.HostMatcher#match(CharSequence)} 返回的规则
+     * @return 未配置时返回null
+     */
+    public CompiledPing get(String rule) {
+        return hostPings.get(rule);
+    }
+
+    /**
+     * @return 对无效主机名返回的诱饵响应，未启用时返回null
+     */
+    public CompiledPing getDecoy() {
+        return decoy;
+    }
+
+    private static final class CachedFavicon {
+        final long lastModified;
+        final long size;
+        final Favicon favicon;
+
+        CachedFavicon(long lastModified, long size, Favicon favicon) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.favicon = favicon;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.rules;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.config.HostPolicy;
+import xyz.moeluoyu.velocitypowered.forcehosts.host.HostMatcher;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.CidrTable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 加载配置时编译好的访问规则：受信任和拒绝的网段、允许的主机名及其策略
+ * <p>
+ * 网段保存在一棵前缀树中，按最长前缀决定地址是受信任还是被拒绝，因此可以在拒绝的网段中单独信任某个地址，反之亦然。
+ * 每种可能的结果都在编译时生成好，{@link #evaluate(long, long, CharSequence)} 只查一次网段树和主机名匹配器，
+ * 不分配对象。构建后不可变，可被多个线程同时使用。
+ */
+public final class RuleEngine {
+    private enum Network { TRUSTED, DENIED }
+
+    private static final HostPolicy NO_POLICY = new HostPolicy(HostPolicy.INHERIT, HostPolicy.INHERIT, 0, 0);
+    private static final Decision DENIED = new Decision(null, false, true, NO_POLICY);
+    private static final Decision UNKNOWN_HOST = new Decision(null, false, false, NO_POLICY);
+    private static final Decision UNKNOWN_HOST_TRUSTED = new Decision(null, true, false, NO_POLICY);
+
+    private final HostMatcher hostMatcher;
+    private final CidrTable<Network> networks;
+    // 以规范化后的规则为键，与匹配器返回的规则一致
+    private final Map<String, Decision> hosts;
+    private final Map<String, Decision> trustedHosts;
+
+    private RuleEngine(HostMatcher hostMatcher, CidrTable<Network> networks, Map<String, Decision> hosts,
+                       Map<String, Decision> trustedHosts) {
+        this.hostMatcher = hostMatcher;
+        this.networks = networks;
+        this.hosts = hosts;
+        this.trustedHosts = trustedHosts;
+    }
+
+    /**
+     * 编译访问规则
+     * @param hostMatcher 由 allowedHosts 编译的匹配器
+     * @param allowedHosts 规范化后的主机名规则
+     * @param trusted 受信任的网段，不受防频繁刷新和登录频率限制
+     * @param denied 拒绝的网段
+     * @param policies 主机名规则的策略，键为规范化后的规则
+     */
+    public static RuleEngine compile(HostMatcher hostMatcher, Collection<String> allowedHosts, Collection<Cidr> trusted,
+                                     Collection<Cidr> denied, Map<String, HostPolicy> policies) {
+        // 同一网段同时出现在两个列表中时以拒绝为准
+        Map<Cidr, Network> networks = new LinkedHashMap<>();
+        trusted.forEach(cidr -> networks.put(cidr, Network.TRUSTED));
+        denied.forEach(cidr -> networks.put(cidr, Network.DENIED));
+
+        Map<String, Decision> hosts = new HashMap<>();
+        Map<String, Decision> trustedHosts = new HashMap<>();
+        for (String rule : allowedHosts) {
+            HostPolicy policy = policies.getOrDefault(rule, NO_POLICY);
+            hosts.put(rule, new Decision(rule, false, false, policy));
+            trustedHosts.put(rule, new Decision(rule, true, false, policy));
+        }
+        return new RuleEngine(hostMatcher, CidrTable.of(networks), hosts, trustedHosts);
+    }
+
+    /**
+     * 只有主机名规则、没有网段和策略的规则
+     */
+    public static RuleEngine of(HostMatcher hostMatcher, Collection<String> allowedHosts) {
+        return compile(hostMatcher, allowedHosts, Collections.emptyList(), Collections.emptyList(), Collections.emptyMap());
+    }
+
+    /**
+     * 判断一次ping或登录应如何处理
+     * @param high 地址高64位
+     * @param low 地址低64位
+     * @param host 客户端使用的主机名
+     * @return 预先生成的结果，不会返回null
+     */
+    public Decision evaluate(long high, long low, CharSequence host) {
+        Network network = networks.isEmpty() ? null : networks.get(high, low);
+        if (network == Network.DENIED) {
+            // 拒绝的网段不需要再匹配主机名
+            return DENIED;
+        }
+        boolean trusted = network == Network.TRUSTED;
+        String rule = hostMatcher.match(host);
+        if (rule == null) {
+            return trusted ? UNKNOWN_HOST_TRUSTED : UNKNOWN_HOST;
+        }
+        Decision decision = (trusted ? trustedHosts : hosts).get(rule);
+        if (decision == null) {
+            // 匹配器与主机名列表不一致时按没有策略处理
+            decision = new Decision(rule, trusted, false, NO_POLICY);
+        }
+        return decision;
+    }
+
+    /**
+     * @return 配置的网段数量
+     */
+    public int getNetworkCount() {
+        return networks.size();
+    }
+
+    /**
+     * 一次 {@link #evaluate(long, long, CharSequence)} 的结果
+     */
+    public static final class Decision {
+        private final String rule;
+        private final boolean trusted;
+        private final boolean denied;
+        private final int maxPings;
+        private final int maxLogins;
+        private final int maxConcurrentLogins;
+        private final int maxLoginRate;
+
+        private Decision(String rule, boolean trusted, boolean denied, HostPolicy policy) {
+            this.rule = rule;
+            this.trusted = trusted;
+            this.denied = denied;
+            this.maxPings = policy.getMaxPings();
+            this.maxLogins = policy.getMaxLogins();
+            this.maxConcurrentLogins = policy.getMaxConcurrentLogins();
+            this.maxLoginRate = policy.getMaxLoginRate();
+        }
+
+        /**
+         * @return 命中的主机名规则，主机名不被允许或地址被拒绝时返回null
+         */
+        public String getRule() {
+            return rule;
+        }
+
+        public boolean isHostAllowed() {
+            return rule != null;
+        }
+
+        /**
+         * @return 地址是否属于受信任的网段
+         */
+        public boolean isTrusted() {
+            return trusted;
+        }
+
+        /**
+         * @return 地址是否属于拒绝的网段
+         */
+        public boolean isDenied() {
+            return denied;
+        }
+
+        /**
+         * @return 该主机名的ping次数上限，{@link HostPolicy#INHERIT} 为沿用全局配置
+         */
+        public int getMaxPings() {
+            return maxPings;
+        }
+
+        /**
+         * @return 该主机名的登录次数上限，{@link HostPolicy#INHERIT} 为沿用全局配置
+         */
+        public int getMaxLogins() {
+            return maxLogins;
+        }
+
+        /**
+         * @return 所有IP通过该主机名同时正在登录的最大人数，0为不限制
+         */
+        public int getMaxConcurrentLogins() {
+            return maxConcurrentLogins;
+        }
+
+        /**
+         * @return 所有IP通过该主机名每秒最多登录次数，0为不限制
+         */
+        public int getMaxLoginRate() {
+            return maxLoginRate;
+        }
+
+        /**
+         * @return 是否设置了该主机名的登录配额
+         */
+        public boolean hasLoginQuota() {
+            return maxConcurrentLogins > 0 || maxLoginRate > 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.sync;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * 阻止列表同步后端，只负责在代理之间传递编码好的消息
+ * <p>
+ * 发送由 {@link BlocklistSyncService} 的后台任务批量调用，接收在实现自己的线程中进行，
+ * 事件线程不会进行任何网络操作。
+ */
+public interface BlocklistSync {
+    /**
+     * 开始接收其他代理的消息
+     * @param receiver 收到消息时的回调，在接收线程中调用，回调返回后缓冲区可能被复用
+     */
+    void start(Consumer<ByteBuffer> receiver) throws IOException;
+
+    /**
+     * 把消息发送给其他代理
+     */
+    void publish(ByteBuffer message) throws IOException;
+
+    /**
+     * @return 单条消息的最大长度（字节）
+     */
+    int getMaxMessageSize();
+
+    /**
+     * 停止接收并释放连接
+     */
+    void close();
+}
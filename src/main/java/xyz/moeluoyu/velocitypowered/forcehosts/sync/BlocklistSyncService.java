@@ -0,0 +1,231 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.sync;
+
+import com.google.common.net.HostAndPort;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import org.slf4j.Logger;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.ConfigManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.CidrBlocklist;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在多个代理之间同步阻止列表
+ * <p>
+ * 本机新增或解除的阻止记录先放入有界队列，由定时任务按 sync.batchInterval 批量编码后交给同步后端发送；
+ * 其他代理的记录在后端的接收线程中直接合并到本机的阻止列表。检查IP是否被阻止始终只查询本机的阻止列表，
+ * 不会等待网络。同步相关的配置修改后需重启生效。
+ */
+public class BlocklistSyncService {
+    private static final int QUEUE_CAPACITY = 65536;
+    // 发送时间与本机时间相差超过此值的消息视为重放并丢弃
+    private static final long MAX_MESSAGE_AGE = TimeUnit.SECONDS.toMillis(60);
+
+    private final Logger logger;
+    private final ConfigManager configManager;
+    private final long nodeId = new SecureRandom().nextLong();
+    private final BlockingQueue<Delta> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean enabled;
+    private BlocklistSync backend;
+    private SyncCodec encoder;
+    private ScheduledTask flushTask;
+    // 发送失败时只记录一次日志，恢复后再记录
+    private boolean failing;
+
+    public BlocklistSyncService(Logger logger, ConfigManager configManager, ForceHostsMetrics metrics) {
+        this.logger = logger;
+        this.configManager = configManager;
+        metrics.registerCounter("forcehosts_sync_sent_total", "发送给其他代理的阻止记录数", sent::sum);
+        metrics.registerCounter("forcehosts_sync_received_total", "从其他代理收到的阻止记录数", received::sum);
+        metrics.registerCounter("forcehosts_sync_rejected_total", "被拒绝的同步消息数", rejected::sum);
+        metrics.registerCounter("forcehosts_sync_dropped_total", "因队列已满未能发送的阻止记录数", dropped::sum);
+    }
+
+    /**
+     * 按配置连接同步后端并开始接收其他代理的阻止记录
+     * @param receiver 收到阻止记录时的回调，解除阻止时解除阻止时间为0
+     */
+    public synchronized void start(Object plugin, Scheduler scheduler, CidrBlocklist.BlockConsumer receiver) {
+        if (backend != null) {
+            return;
+        }
+        ForceHostsSettings settings = configManager.getSettings();
+        String type = settings.getSyncType().toLowerCase(Locale.ROOT);
+        if (type.equals("none")) {
+            return;
+        }
+        if (settings.getSyncSecret().isEmpty()) {
+            // 没有签名时任何能访问同步端口或 Redis 频道的人都可以添加或解除阻止
+            logger.error("启用阻止列表同步必须设置 sync.secret，不启用同步");
+            return;
+        }
+
+        BlocklistSync sync;
+        try {
+            sync = createBackend(type, settings);
+        } catch (IllegalArgumentException e) {
+            logger.error("阻止列表同步配置无效，不启用同步: {}", e.getMessage());
+            return;
+        }
+        SyncCodec decoder = new SyncCodec(nodeId, settings.getSyncSecret());
+        try {
+            sync.start(message -> receive(decoder, message, receiver));
+        } catch (IOException e) {
+            logger.error("启动阻止列表同步失败: {}", e.getMessage());
+            sync.close();
+            return;
+        }
+
+        backend = sync;
+        encoder = new SyncCodec(nodeId, settings.getSyncSecret());
+        enabled = true;
+        flushTask = scheduler.buildTask(plugin, this::flush)
+                .delay(settings.getSyncBatchInterval(), TimeUnit.MILLISECONDS)
+                .repeat(settings.getSyncBatchInterval(), TimeUnit.MILLISECONDS)
+                .schedule();
+        logger.info("已启用阻止列表同步（{}）", type);
+    }
+
+    private BlocklistSync createBackend(String type, ForceHostsSettings settings) {
+        switch (type) {
+            case "udp": {
+                List<InetSocketAddress> peers = new ArrayList<>();
+                for (String peer : settings.getSyncUdpPeers()) {
+                    peers.add(toAddress(peer, settings.getSyncUdpPort()));
+                }
+                if (peers.isEmpty()) {
+                    throw new IllegalArgumentException("sync.udp.peers 为空，只接受来自 peers 中地址的消息");
+                }
+                String group = settings.getSyncUdpGroup();
+                String networkInterface = settings.getSyncUdpInterface();
+                return new UdpGossipSync(logger,
+                        new InetSocketAddress(settings.getSyncUdpBind(), settings.getSyncUdpPort()), peers,
+                        group.isEmpty() ? null : new InetSocketAddress(group, settings.getSyncUdpPort()),
+                        networkInterface.isEmpty() ? null : networkInterface, rejected);
+            }
+            case "redis":
+                return new RedisSync(logger,
+                        new InetSocketAddress(settings.getSyncRedisHost(), settings.getSyncRedisPort()),
+                        settings.getSyncRedisPassword().isEmpty() ? null : settings.getSyncRedisPassword(),
+                        settings.getSyncRedisChannel());
+            default:
+                throw new IllegalArgumentException("未知的同步方式 " + type + "，可选 none、udp、redis");
+        }
+    }
+
+    private static InetSocketAddress toAddress(String text, int defaultPort) {
+        HostAndPort hostAndPort = HostAndPort.fromString(text.trim()).withDefaultPort(defaultPort);
+        InetSocketAddress address = new InetSocketAddress(hostAndPort.getHost(), hostAndPort.getPort());
+        if (address.isUnresolved()) {
+            throw new IllegalArgumentException("无法解析地址 " + text);
+        }
+        return address;
+    }
+
+    /**
+     * 发送剩余的记录并断开同步后端
+     */
+    public synchronized void stop() {
+        if (backend == null) {
+            return;
+        }
+        enabled = false;
+        flushTask.cancel();
+        flushTask = null;
+        flush();
+        backend.close();
+        backend = null;
+    }
+
+    /**
+     * 通知其他代理阻止一个前缀，不会阻塞
+     * @param prefixLength 128位空间中的前缀长度
+     * @param unblockTime 解除阻止的时间（毫秒）
+     */
+    public void publishBlock(long high, long low, int prefixLength, long unblockTime) {
+        if (!enabled) {
+            return;
+        }
+        if (!pending.offer(new Delta(high, low, prefixLength, unblockTime))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 通知其他代理解除对一个前缀的阻止，不会阻塞
+     * @param prefixLength 128位空间中的前缀长度
+     */
+    public void publishUnblock(long high, long low, int prefixLength) {
+        publishBlock(high, low, prefixLength, 0);
+    }
+
+    private synchronized void flush() {
+        if (backend == null || pending.isEmpty()) {
+            return;
+        }
+        List<Delta> batch = new ArrayList<>(Math.min(pending.size(), QUEUE_CAPACITY));
+        pending.drainTo(batch);
+        int perMessage = encoder.maxEntries(backend.getMaxMessageSize());
+        long now = System.currentTimeMillis();
+        try {
+            for (int from = 0; from < batch.size(); from += perMessage) {
+                int to = Math.min(batch.size(), from + perMessage);
+                backend.publish(encoder.encode(batch, from, to, now));
+                sent.add(to - from);
+            }
+            if (failing) {
+                failing = false;
+                logger.info("阻止列表同步已恢复");
+            }
+        } catch (IOException e) {
+            // 失败的批次不重试，记录的阻止时间有限，重试的价值不大
+            if (!failing) {
+                failing = true;
+                logger.warn("发送阻止列表同步消息失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void receive(SyncCodec decoder, ByteBuffer message, CidrBlocklist.BlockConsumer receiver) {
+        try {
+            received.add(decoder.decode(message, System.currentTimeMillis(), MAX_MESSAGE_AGE, receiver));
+        } catch (IOException e) {
+            rejected.increment();
+        }
+    }
+
+    /**
+     * 一条待发送的阻止或解除阻止记录
+     */
+    static final class Delta {
+        final long high;
+        final long low;
+        final int prefixLength;
+        // 0 表示解除阻止
+        final long unblockTime;
+
+        Delta(long high, long low, int prefixLength, long unblockTime) {
+            this.high = high;
+            this.low = low;
+            this.prefixLength = prefixLength;
+            this.unblockTime = unblockTime;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.sync;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于 Redis 发布订阅的阻止列表同步
+ * <p>
+ * 直接使用 RESP 协议，不依赖 Redis 客户端库：一个连接订阅频道并在后台线程中读取消息，
+ * 另一个连接用于发布，连接断开后自动重连。兼容任何实现了 AUTH、SUBSCRIBE 和 PUBLISH 的服务端。
+ */
+public final class RedisSync implements BlocklistSync {
+    private static final int MAX_MESSAGE = 64 * 1024;
+    private static final int TIMEOUT_MILLIS = 5000;
+    private static final long MAX_RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private final Logger logger;
+    private final InetSocketAddress address;
+    private final String password;
+    private final byte[] channel;
+
+    private volatile boolean running;
+    private Thread subscriber;
+    private volatile Socket subscriberSocket;
+    // 发布连接，由对象锁保护
+    private Socket publisherSocket;
+
+    /**
+     * @param password 密码，null为不认证
+     */
+    public RedisSync(Logger logger, InetSocketAddress address, String password, String channel) {
+        this.logger = logger;
+        this.address = address;
+        this.password = password;
+        this.channel = channel.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void start(Consumer<ByteBuffer> callback) {
+        running = true;
+        subscriber = new Thread(() -> subscribe(callback), "ForceHosts-SyncReceiver");
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    private void subscribe(Consumer<ByteBuffer> callback) {
+        long delay = 1000;
+        while (running) {
+            try (Socket socket = connect()) {
+                subscriberSocket = socket;
+                // 订阅连接没有读超时，长时间没有消息是正常的
+                socket.setSoTimeout(0);
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                writeCommand(out, "SUBSCRIBE".getBytes(StandardCharsets.US_ASCII), channel);
+                out.flush();
+                logger.info("已连接到 Redis {}，开始同步阻止列表", address);
+                delay = 1000;
+                while (running) {
+                    Object reply = readReply(in);
+                    if (reply instanceof List && ((List<?>) reply).size() == 3) {
+                        List<?> items = (List<?>) reply;
+                        if (items.get(0) instanceof byte[] && "message".equals(new String((byte[]) items.get(0), StandardCharsets.US_ASCII))
+                                && items.get(2) instanceof byte[]) {
+                            callback.accept(ByteBuffer.wrap((byte[]) items.get(2)));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Redis 订阅连接断开，{} 秒后重连: {}", delay / 1000, e.getMessage());
+            } finally {
+                subscriberSocket = null;
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            delay = Math.min(delay * 2, MAX_RECONNECT_DELAY);
+        }
+    }
+
+    @Override
+    public synchronized void publish(ByteBuffer message) throws IOException {
+        byte[] payload = new byte[message.remaining()];
+        message.duplicate().get(payload);
+        try {
+            if (publisherSocket == null) {
+                publisherSocket = connect();
+            }
+            OutputStream out = new BufferedOutputStream(publisherSocket.getOutputStream());
+            writeCommand(out, "PUBLISH".getBytes(StandardCharsets.US_ASCII), channel, payload);
+            out.flush();
+            readReply(publisherSocket.getInputStream());
+        } catch (IOException e) {
+            closeQuietly(publisherSocket);
+            publisherSocket = null;
+            throw e;
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, TIMEOUT_MILLIS);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            if (password != null) {
+                OutputStream out = socket.getOutputStream();
+                writeCommand(out, "AUTH".getBytes(StandardCharsets.US_ASCII), password.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                readReply(socket.getInputStream());
+            }
+            return socket;
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    private static void writeCommand(OutputStream out, byte[]... args) throws IOException {
+        out.write(('*' + Integer.toString(args.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        for (byte[] arg : args) {
+            out.write(('$' + Integer.toString(arg.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(arg);
+            out.write('\r');
+            out.write('\n');
+        }
+    }
+
+    /**
+     * 读取一个 RESP 回复：简单字符串和整数返回 String，批量字符串返回 byte[]，数组返回 List
+     * @throws IOException 服务端返回错误时抛出
+     */
+    private static Object readReply(InputStream in) throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            throw new EOFException("连接已关闭");
+        }
+        String line = readLine(in);
+        switch (type) {
+            case '+':
+            case ':':
+                return line;
+            case '-':
+                throw new IOException("Redis 返回错误: " + line);
+            case '$': {
+                int length = Integer.parseInt(line);
+                if (length < 0) {
+                    return null;
+                }
+                if (length > MAX_MESSAGE) {
+                    throw new IOException("消息过长: " + length);
+                }
+                byte[] data = in.readNBytes(length);
+                if (data.length != length || in.read() != '\r' || in.read() != '\n') {
+                    throw new EOFException("连接已关闭");
+                }
+                return data;
+            }
+            case '*': {
+                int count = Integer.parseInt(line);
+                List<Object> items = new ArrayList<>(Math.max(0, count));
+                for (int i = 0; i < count; i++) {
+                    items.add(readReply(in));
+                }
+                return items;
+            }
+            default:
+                throw new IOException("无法识别的 RESP 回复类型: " + (char) type);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c < 0) {
+                throw new EOFException("连接已关闭");
+            }
+            line.append((char) c);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("RESP 格式错误");
+        }
+        return line.toString();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public int getMaxMessageSize() {
+        return MAX_MESSAGE;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        closeQuietly(subscriberSocket);
+        synchronized (this) {
+            closeQuietly(publisherSocket);
+            publisherSocket = null;
+        }
+        if (subscriber != null) {
+            subscriber.interrupt();
+            try {
+                subscriber.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            subscriber = null;
+        }
+    }
+}
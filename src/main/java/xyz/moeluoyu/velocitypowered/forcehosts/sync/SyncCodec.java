@@ -0,0 +1,139 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.sync;
+
+import xyz.moeluoyu.velocitypowered.forcehosts.net.CidrBlocklist;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * 阻止列表同步消息的编码
+ * <p>
+ * 消息头为 magic(4) 版本(1) 标志(1) 记录数(2) 节点ID(8) 发送时间(8)，随后每条记录为
+ * 高64位(8) 低64位(8) 解除阻止时间(8) 前缀长度(1)，解除阻止时间为0表示解除阻止。
+ * 设置了共享密钥时末尾附加32字节的 HMAC-SHA256，接收方拒绝没有或校验失败的消息。
+ * 实例不是线程安全的，发送和接收各使用一个实例。
+ */
+final class SyncCodec {
+    private static final int MAGIC = 0x46485359; // "FHSY"
+    private static final byte VERSION = 1;
+    private static final byte FLAG_MAC = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int ENTRY_SIZE = 25;
+    private static final int MAC_SIZE = 32;
+
+    private final long nodeId;
+    private final Mac mac;
+
+    /**
+     * @param nodeId 本节点ID，用于忽略自己发出的消息
+     * @param secret 共享密钥，为空时不附加也不校验 HMAC
+     */
+    SyncCodec(long nodeId, String secret) {
+        this.nodeId = nodeId;
+        if (secret == null || secret.isEmpty()) {
+            this.mac = null;
+            return;
+        }
+        try {
+            this.mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 不可用", e);
+        }
+    }
+
+    /**
+     * @return 长度不超过 maxMessageSize 的消息最多能容纳的记录数
+     */
+    int maxEntries(int maxMessageSize) {
+        int entries = (maxMessageSize - HEADER_SIZE - (mac != null ? MAC_SIZE : 0)) / ENTRY_SIZE;
+        return Math.max(1, Math.min(entries, 0xffff));
+    }
+
+    /**
+     * 编码 deltas 中 [from, to) 范围内的记录
+     */
+    ByteBuffer encode(List<BlocklistSyncService.Delta> deltas, int from, int to, long now) {
+        int count = to - from;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * ENTRY_SIZE + (mac != null ? MAC_SIZE : 0));
+        buffer.putInt(MAGIC)
+                .put(VERSION)
+                .put(mac != null ? FLAG_MAC : 0)
+                .putShort((short) count)
+                .putLong(nodeId)
+                .putLong(now);
+        for (int i = from; i < to; i++) {
+            BlocklistSyncService.Delta delta = deltas.get(i);
+            buffer.putLong(delta.high).putLong(delta.low).putLong(delta.unblockTime).put((byte) delta.prefixLength);
+        }
+        if (mac != null) {
+            mac.update(buffer.array(), 0, buffer.position());
+            buffer.put(mac.doFinal());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 解码消息并逐条回调，解除阻止时回调的解除阻止时间为0
+     * @param maxAgeMillis 发送时间与本机时间允许的最大差值，超出时视为重放的消息
+     * @return 记录数，本节点发出的消息返回0且不回调
+     * @throws IOException 消息格式无效、校验失败或已过期时抛出，此时不会回调
+     */
+    int decode(ByteBuffer message, long now, long maxAgeMillis, CidrBlocklist.BlockConsumer consumer) throws IOException {
+        ByteBuffer buffer = message.slice();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是阻止列表同步消息");
+        }
+        if (buffer.get(4) != VERSION) {
+            throw new IOException("不支持的消息版本: " + buffer.get(4));
+        }
+        boolean signed = (buffer.get(5) & FLAG_MAC) != 0;
+        int count = buffer.getShort(6) & 0xffff;
+        int bodyEnd = HEADER_SIZE + count * ENTRY_SIZE;
+        if (buffer.remaining() != bodyEnd + (signed ? MAC_SIZE : 0)) {
+            throw new IOException("消息长度与记录数不符");
+        }
+        if (mac != null) {
+            if (!signed) {
+                throw new IOException("消息没有签名");
+            }
+            byte[] body = new byte[bodyEnd];
+            byte[] expected = new byte[MAC_SIZE];
+            buffer.get(0, body);
+            buffer.get(bodyEnd, expected);
+            if (!MessageDigest.isEqual(mac.doFinal(body), expected)) {
+                throw new IOException("消息签名校验失败");
+            }
+        }
+        if (buffer.getLong(8) == nodeId) {
+            return 0;
+        }
+        if (Math.abs(now - buffer.getLong(16)) > maxAgeMillis) {
+            throw new IOException("消息已过期");
+        }
+
+        // 先检查所有记录，无效的消息不应用其中任何一条
+        for (int i = 0; i < count; i++) {
+            int prefixLength = buffer.get(HEADER_SIZE + i * ENTRY_SIZE + ENTRY_SIZE - 1) & 0xff;
+            if (prefixLength > 128) {
+                throw new IOException("无效的前缀长度: " + prefixLength);
+            }
+        }
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            long high = buffer.getLong();
+            long low = buffer.getLong();
+            long unblockTime = buffer.getLong();
+            int prefixLength = buffer.get() & 0xff;
+            consumer.accept(high, low, prefixLength, unblockTime);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,182 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.sync;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 基于 UDP 的阻止列表同步
+ * <p>
+ * 每条消息直接发送给配置的所有其他代理（单播），或发送到组播地址由同一网络内的代理接收，
+ * 不经过任何中心节点。消息长度限制在一个不会分片的数据报内，批量较大时由调用方拆分。
+ * <p>
+ * 只接受来源地址在 peers 中的数据报，使用组播时 peers 同样用于限制来源，其他来源的数据报不解码直接丢弃。
+ */
+public final class UdpGossipSync implements BlocklistSync {
+    // 以太网 MTU 减去 IP 和 UDP 头，留出余量避免分片
+    private static final int MAX_DATAGRAM = 1400;
+
+    private final Logger logger;
+    private final InetSocketAddress bindAddress;
+    private final List<InetSocketAddress> peers;
+    private final Set<InetAddress> allowedSources = new HashSet<>();
+    private final InetSocketAddress group;
+    private final String interfaceName;
+    private final LongAdder rejected;
+
+    private volatile DatagramChannel channel;
+    private Thread receiver;
+
+    /**
+     * @param bindAddress 本机监听地址
+     * @param peers 其他代理的地址，只接受来自这些地址的消息
+     * @param group 组播地址，null为不使用组播
+     * @param interfaceName 加入组播使用的网卡名称，null为自动选择
+     * @param rejected 来源不在 peers 中而被丢弃的数据报计数
+     */
+    public UdpGossipSync(Logger logger, InetSocketAddress bindAddress, List<InetSocketAddress> peers,
+                         InetSocketAddress group, String interfaceName, LongAdder rejected) {
+        this.logger = logger;
+        this.bindAddress = bindAddress;
+        this.peers = peers;
+        this.group = group;
+        this.interfaceName = interfaceName;
+        this.rejected = rejected;
+        for (InetSocketAddress peer : peers) {
+            allowedSources.add(peer.getAddress());
+        }
+    }
+
+    @Override
+    public synchronized void start(Consumer<ByteBuffer> callback) throws IOException {
+        if (group != null) {
+            channel = DatagramChannel.open(group.getAddress() instanceof Inet6Address
+                    ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+        } else {
+            channel = DatagramChannel.open();
+        }
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(bindAddress);
+            if (group != null) {
+                NetworkInterface networkInterface = findInterface();
+                channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+                channel.join(group.getAddress(), networkInterface);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        DatagramChannel receiving = channel;
+        receiver = new Thread(() -> receive(receiving, callback), "ForceHosts-SyncReceiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    private NetworkInterface findInterface() throws SocketException {
+        if (interfaceName != null) {
+            NetworkInterface networkInterface = NetworkInterface.getByName(interfaceName);
+            if (networkInterface == null) {
+                throw new SocketException("找不到网卡 " + interfaceName);
+            }
+            return networkInterface;
+        }
+        InetAddress address = bindAddress.getAddress();
+        if (address != null && !address.isAnyLocalAddress()) {
+            NetworkInterface networkInterface = NetworkInterface.getByInetAddress(address);
+            if (networkInterface != null) {
+                return networkInterface;
+            }
+        }
+        for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (networkInterface.isUp() && networkInterface.supportsMulticast() && !networkInterface.isLoopback()) {
+                return networkInterface;
+            }
+        }
+        throw new SocketException("找不到支持组播的网卡，请在 sync.udp.interface 中指定");
+    }
+
+    private void receive(DatagramChannel receiving, Consumer<ByteBuffer> callback) {
+        ByteBuffer buffer = ByteBuffer.allocate(65536);
+        while (true) {
+            buffer.clear();
+            SocketAddress source;
+            try {
+                source = receiving.receive(buffer);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                logger.warn("接收阻止列表同步消息失败: {}", e.getMessage());
+                continue;
+            }
+            // 端口不作比较，其他代理可能经过 NAT 或从其他端口发送
+            if (!(source instanceof InetSocketAddress)
+                    || !allowedSources.contains(((InetSocketAddress) source).getAddress())) {
+                rejected.increment();
+                continue;
+            }
+            buffer.flip();
+            callback.accept(buffer);
+        }
+    }
+
+    @Override
+    public void publish(ByteBuffer message) throws IOException {
+        DatagramChannel sending = channel;
+        if (sending == null) {
+            throw new ClosedChannelException();
+        }
+        // 使用组播时 peers 只用于限制来源，不再逐个单播，避免每条消息重复收到两次
+        if (group != null) {
+            sending.send(message.duplicate(), group);
+            return;
+        }
+        for (InetSocketAddress peer : peers) {
+            sending.send(message.duplicate(), peer);
+        }
+    }
+
+    @Override
+    public int getMaxMessageSize() {
+        return MAX_DATAGRAM;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("关闭阻止列表同步端口失败: {}", e.getMessage());
+        }
+        channel = null;
+        if (receiver != null) {
+            try {
+                receiver.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            receiver = null;
+        }
+    }
+}
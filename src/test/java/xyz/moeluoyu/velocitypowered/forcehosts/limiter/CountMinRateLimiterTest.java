@@ -0,0 +1,100 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.limiter;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用固定种子生成的请求序列同时驱动精确计数和 sketch 计数，检查 sketch 的判断与文档中的保证一致：
+ * 精确计数判定超限的请求 sketch 一定也判定超限；其余请求被误判的比例不超过
+ * (N / (width × (maxEvents + 1 − c)))^depth 的平均值。
+ */
+class CountMinRateLimiterTest {
+    private static final long WINDOW = 10_000;
+    private static final int MAX_EVENTS = 10;
+    // sketch 的统计范围最长为 timeWindow × (1 + 1/4)
+    private static final long SKETCH_RANGE = WINDOW + WINDOW / 4;
+    private static final long DURATION = 120_000;
+    private static final long SEED = 20240601;
+
+    @ParameterizedTest(name = "width {0}, depth {1}")
+    @CsvSource({"256, 1", "256, 2", "1024, 2", "1024, 4"})
+    void sketchNeverUndercountsAndStaysWithinBound(int width, int depth) {
+        long[][] trace = trace();
+        SlidingWindowRateLimiter exact = new SlidingWindowRateLimiter(WINDOW, MAX_EVENTS, 1 << 20, new LongAdder());
+        CountMinRateLimiter sketch = new CountMinRateLimiter(WINDOW, MAX_EVENTS, width, depth);
+
+        // sketch 统计范围内的请求，用于求 N 和每个地址实际的请求次数 c
+        ArrayDeque<long[]> inRange = new ArrayDeque<>();
+        Map<Long, Integer> counts = new HashMap<>();
+        long missed = 0;
+        long falsePositives = 0;
+        long eligible = 0;
+        double bound = 0;
+        for (long[] request : trace) {
+            long time = request[0];
+            long address = request[1];
+            while (!inRange.isEmpty() && inRange.peekFirst()[0] <= time - SKETCH_RANGE) {
+                counts.merge(inRange.pollFirst()[1], -1, Integer::sum);
+            }
+            inRange.addLast(request);
+            int count = counts.merge(address, 1, Integer::sum);
+
+            boolean exactBlocked = exact.tryAcquire(address, ~address, time);
+            boolean sketchBlocked = sketch.tryAcquire(address, ~address, time);
+            if (exactBlocked && !sketchBlocked) {
+                missed++;
+            }
+            // 整个统计范围内都没有超限的请求被判定超限只可能来自哈希冲突
+            if (count <= MAX_EVENTS) {
+                eligible++;
+                bound += Math.min(1, Math.pow((double) inRange.size() / (width * (MAX_EVENTS + 1 - count)), depth));
+                if (sketchBlocked) {
+                    falsePositives++;
+                }
+            }
+        }
+
+        assertEquals(0, missed, "sketch 放过了精确计数判定超限的请求");
+        assertTrue(eligible > 0);
+        double rate = (double) falsePositives / eligible;
+        double limit = bound / eligible;
+        assertTrue(rate <= limit, String.format("误判比例 %.5f 超过上界 %.5f", rate, limit));
+    }
+
+    /**
+     * 3000 个偶尔请求的地址和 20 个持续刷新的地址，按时间排序
+     * @return 每条为 {时间, 地址}
+     */
+    private static long[][] trace() {
+        Random random = new Random(SEED);
+        long[] light = new long[3000];
+        long[] heavy = new long[20];
+        for (int i = 0; i < light.length; i++) {
+            light[i] = random.nextLong();
+        }
+        for (int i = 0; i < heavy.length; i++) {
+            heavy[i] = random.nextLong();
+        }
+        int lightRequests = (int) (DURATION / 1000 * 30);
+        int heavyRequests = (int) (DURATION / 1000 * 40);
+        long[][] trace = new long[lightRequests + heavyRequests][];
+        for (int i = 0; i < lightRequests; i++) {
+            trace[i] = new long[]{random.nextInt((int) DURATION), light[random.nextInt(light.length)]};
+        }
+        for (int i = 0; i < heavyRequests; i++) {
+            trace[lightRequests + i] = new long[]{random.nextInt((int) DURATION), heavy[random.nextInt(heavy.length)]};
+        }
+        Arrays.sort(trace, (a, b) -> Long.compare(a[0], b[0]));
+        return trace;
+    }
+}
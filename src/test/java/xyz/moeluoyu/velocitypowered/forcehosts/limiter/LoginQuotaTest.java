@@ -0,0 +1,80 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LoginQuotaTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void concurrentLimitCountsUntilRelease() {
+        LoginQuota quota = new LoginQuota();
+        assertEquals(LoginQuota.Result.ALLOWED, quota.tryAcquire(2, 0, NOW));
+        assertEquals(LoginQuota.Result.ALLOWED, quota.tryAcquire(2, 0, NOW));
+        assertEquals(LoginQuota.Result.CONCURRENT, quota.tryAcquire(2, 0, NOW));
+        assertEquals(2, quota.getInFlight());
+        assertEquals(1, quota.getDeniedConcurrent());
+
+        quota.release();
+        assertEquals(1, quota.getInFlight());
+        assertEquals(LoginQuota.Result.ALLOWED, quota.tryAcquire(2, 0, NOW));
+        // 不限制时总是通过
+        assertEquals(LoginQuota.Result.ALLOWED, quota.tryAcquire(0, 0, NOW));
+        assertEquals(3, quota.getInFlight());
+    }
+
+    @Test
+    void releaseOnAnotherThreadKeepsTotal() throws InterruptedException {
+        LoginQuota quota = new LoginQuota();
+        // 预登录和登录完成事件可能在不同的线程上处理
+        AtomicReference<LoginQuota.Result> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> result.set(quota.tryAcquire(1, 0, NOW)));
+        thread.start();
+        thread.join();
+        assertEquals(LoginQuota.Result.ALLOWED, result.get());
+        assertEquals(LoginQuota.Result.CONCURRENT, quota.tryAcquire(1, 0, NOW));
+
+        quota.release();
+        assertEquals(0, quota.getInFlight());
+        assertEquals(LoginQuota.Result.ALLOWED, quota.tryAcquire(1, 0, NOW));
+    }
+
+    @Test
+    void rateUsesWeightedPreviousSecond() {
+        LoginQuota quota = new LoginQuota();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(LoginQuota.Result.ALLOWED, quota.tryAcquire(0, 10, NOW + i));
+        }
+        assertEquals(LoginQuota.Result.RATE, quota.tryAcquire(0, 10, NOW + 999));
+        assertEquals(10, quota.getRate(NOW + 999));
+
+        // 下一秒过了一半，上一秒的10次按一半计算
+        long half = NOW + 1500;
+        assertEquals(5, quota.getRate(half));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(LoginQuota.Result.ALLOWED, quota.tryAcquire(0, 10, half));
+        }
+        assertEquals(LoginQuota.Result.RATE, quota.tryAcquire(0, 10, half));
+        assertEquals(2, quota.getDeniedRate());
+        // 被拒绝的登录不计入次数
+        assertEquals(10, quota.getRate(half));
+
+        // 间隔超过一秒后两秒的计数都清零
+        assertEquals(0, quota.getRate(NOW + 3000));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(LoginQuota.Result.ALLOWED, quota.tryAcquire(0, 10, NOW + 3000));
+        }
+    }
+
+    @Test
+    void rateDenialDoesNotCountAsInFlight() {
+        LoginQuota quota = new LoginQuota();
+        assertEquals(LoginQuota.Result.ALLOWED, quota.tryAcquire(5, 1, NOW));
+        assertEquals(LoginQuota.Result.RATE, quota.tryAcquire(5, 1, NOW));
+        assertEquals(1, quota.getInFlight());
+        assertEquals(0, quota.getDeniedConcurrent());
+    }
+}
@@ -0,0 +1,120 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AuditIndexTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * 每个地址一条记录，第 i 条的区间为 [i × 100, i × 100 + 50)
+     */
+    private static AuditIndex index(String... addresses) {
+        AuditIndex.Builder builder = new AuditIndex.Builder();
+        for (int i = 0; i < addresses.length; i++) {
+            add(builder, addresses[i], i * 100, i * 100 + 50);
+        }
+        return builder.build();
+    }
+
+    private static void add(AuditIndex.Builder builder, String address, long offset, long end) {
+        Cidr cidr = Cidr.parse(address);
+        builder.add(cidr.getHigh(), cidr.getLow(), cidr.getPrefixLength(), offset, end);
+    }
+
+    @Test
+    void rangesCoverAddressesInsideTarget() {
+        AuditIndex index = index("203.0.113.7", "198.51.100.1", "203.0.113.200", "203.0.114.1", "2001:db8::1");
+        assertRanges(index.ranges(Cidr.parse("203.0.113.7")), 0, 50);
+        assertRanges(index.ranges(Cidr.parse("203.0.113.0/24")), 0, 50, 200, 250);
+        assertRanges(index.ranges(Cidr.parse("203.0.112.0/22")), 0, 50, 200, 250, 300, 350);
+        assertRanges(index.ranges(Cidr.parse("2001:db8::/32")), 400, 450);
+        assertRanges(index.ranges(Cidr.parse("192.0.2.0/24")));
+    }
+
+    @Test
+    void rangesIncludeCoveringPrefixes() {
+        AuditIndex index = index("203.0.113.0/24", "203.0.0.0/16", "203.0.113.7", "198.51.100.0/24", "::/0");
+        // 包含该地址的 /24、/16 和 ::/0，以及地址本身
+        assertRanges(index.ranges(Cidr.parse("203.0.113.7")), 0, 50, 100, 150, 200, 250, 400, 450);
+        assertRanges(index.ranges(Cidr.parse("203.0.113.8")), 0, 50, 100, 150, 400, 450);
+        assertRanges(index.ranges(Cidr.parse("198.51.100.9")), 300, 350, 400, 450);
+        // 目标网段内更长的前缀和包含它的更短前缀都会返回，不相关的 198.51.100.0/24 不会
+        assertRanges(index.ranges(Cidr.parse("203.0.0.0/8")), 0, 50, 100, 150, 200, 250, 400, 450);
+    }
+
+    @Test
+    void recordsOfOneAddressSpanFirstToLast() {
+        AuditIndex.Builder builder = new AuditIndex.Builder();
+        add(builder, "203.0.113.7", 0, 40);
+        add(builder, "198.51.100.1", 40, 80);
+        add(builder, "203.0.113.7", 80, 120);
+        AuditIndex index = builder.build();
+        assertEquals(2, index.size());
+        assertRanges(index.ranges(Cidr.parse("203.0.113.7")), 0, 120);
+        assertRanges(index.ranges(Cidr.parse("198.51.100.1")), 40, 80);
+        // 重叠的区间合并后只读取一次
+        assertRanges(index.ranges(Cidr.parse("0.0.0.0/0")), 0, 120);
+    }
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        AuditIndex index = index("203.0.113.0/24", "203.0.113.7", "2001:db8::/48", "2001:db8::1", "::/0");
+        Path path = directory.resolve("audit.idx");
+        index.write(path);
+        AuditIndex read = AuditIndex.read(path);
+        assertEquals(index.size(), read.size());
+        for (String target : new String[]{"203.0.113.7", "203.0.113.0/24", "2001:db8::1", "2001:db8::/32", "192.0.2.1"}) {
+            Cidr cidr = Cidr.parse(target);
+            List<long[]> expected = index.ranges(cidr);
+            List<long[]> actual = read.ranges(cidr);
+            assertEquals(expected.size(), actual.size(), target);
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    void readRejectsDamagedFiles() throws IOException {
+        Path path = directory.resolve("audit.idx");
+        index("203.0.113.7", "198.51.100.1").write(path);
+        byte[] data = Files.readAllBytes(path);
+
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        Files.write(path, truncated);
+        assertThrows(IOException.class, () -> AuditIndex.read(path));
+
+        byte[] badMagic = data.clone();
+        badMagic[0] ^= 1;
+        Files.write(path, badMagic);
+        assertThrows(IOException.class, () -> AuditIndex.read(path));
+
+        Files.write(path, new byte[3]);
+        assertThrows(IOException.class, () -> AuditIndex.read(path));
+    }
+
+    /**
+     * @param expected 依次为每个区间的开始和结束
+     */
+    private static void assertRanges(List<long[]> ranges, long... expected) {
+        long[] actual = new long[ranges.size() * 2];
+        for (int i = 0; i < ranges.size(); i++) {
+            actual[i * 2] = ranges.get(i)[0];
+            actual[i * 2 + 1] = ranges.get(i)[1];
+        }
+        assertArrayEquals(expected, actual);
+    }
+}
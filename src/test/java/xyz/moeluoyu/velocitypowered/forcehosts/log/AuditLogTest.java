@@ -0,0 +1,114 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AuditLogTest {
+    private static final long TIME = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parseReadsWrittenFields() {
+        AuditLog.Record record = AuditLog.Record.parse("{\"time\":1700000000000,\"ip\":\"203.0.113.7\","
+                + "\"host\":\"play.example.com\",\"event\":\"ping\",\"reason\":\"spam\",\"expires\":1700000060000}");
+        assertNotNull(record);
+        assertEquals(TIME, record.getTime());
+        assertEquals("203.0.113.7", record.getAddress());
+        assertEquals("play.example.com", record.getVirtualHost());
+        assertEquals("ping", record.getEvent());
+        assertEquals("spam", record.getReason());
+        assertEquals(TIME + 60_000, record.getExpires());
+
+        record = AuditLog.Record.parse("{\"time\":1,\"ip\":\"::1\",\"host\":null,\"event\":\"login\","
+                + "\"reason\":\"invalid_host\",\"expires\":null}");
+        assertNotNull(record);
+        assertNull(record.getVirtualHost());
+        assertEquals(0, record.getExpires());
+    }
+
+    @Test
+    void parseRejectsMalformedLines() {
+        String valid = "{\"time\":1,\"ip\":\"::1\",\"host\":null,\"event\":\"ping\",\"reason\":\"spam\",\"expires\":null}";
+        assertNotNull(AuditLog.Record.parse(valid));
+        assertNull(AuditLog.Record.parse(valid.substring(0, valid.length() - 1)));
+        assertNull(AuditLog.Record.parse(valid + "x"));
+        assertNull(AuditLog.Record.parse(""));
+        assertNull(AuditLog.Record.parse("{\"time\":1,\"ip\":\"::1\",\"event\":\"ping\"}"));
+        // 重复的字段
+        assertNull(AuditLog.Record.parse(
+                "{\"time\":1,\"ip\":\"::1\",\"event\":\"ping\",\"reason\":\"spam\",\"reason\":\"login_quota\"}"));
+        assertNull(AuditLog.Record.parse("{\"time\":1,\"ip\":\"::1\",\"host\":\"a\\"));
+    }
+
+    @Test
+    void hostCannotForgeLaterFields() throws Exception {
+        String forged = "a\",\"event\":\"x\",\"reason\":\"y\",\"expires\":1,\"z\":\"";
+        AuditLog log = new AuditLog(LoggerFactory.getLogger(AuditLogTest.class), directory);
+        Cidr address = Cidr.parse("203.0.113.7");
+        append(log, SecurityEvent.Type.PING_SPAM_BLOCKED, address, forged, TIME, TIME + 60_000);
+        log.close();
+
+        List<AuditLog.Record> records = log.lookup(address, 10);
+        assertEquals(1, records.size());
+        AuditLog.Record record = records.get(0);
+        assertEquals(forged, record.getVirtualHost());
+        assertEquals("ping", record.getEvent());
+        assertEquals("spam", record.getReason());
+        assertEquals(TIME + 60_000, record.getExpires());
+    }
+
+    @Test
+    void lookupFindsAddressesInRangeAndCoveringSubnets() throws Exception {
+        AuditLog log = new AuditLog(LoggerFactory.getLogger(AuditLogTest.class), directory);
+        append(log, SecurityEvent.Type.PING_BLOCKED, Cidr.parse("203.0.113.7"), "scan.example", TIME, 0);
+        append(log, SecurityEvent.Type.SUBNET_BLOCKED, Cidr.parse("203.0.113.0/24"), null, TIME + 1, TIME + 600_000);
+        append(log, SecurityEvent.Type.LOGIN_QUOTA_DENIED, Cidr.parse("198.51.100.1"), "play.example.com", TIME + 2, 0);
+        append(log, SecurityEvent.Type.PING_SPAM_BLOCKED, Cidr.parse("203.0.113.200"), null, TIME + 3, TIME + 60_000);
+
+        // 当前文件尚未关闭时从内存中的索引查询
+        assertEquals(2, log.lookup(Cidr.parse("203.0.113.7"), 10).size());
+        log.close();
+
+        List<AuditLog.Record> records = log.lookup(Cidr.parse("203.0.113.7"), 10);
+        assertEquals(2, records.size());
+        // 从新到旧
+        assertEquals("203.0.113.0/24", records.get(0).getAddress());
+        assertEquals("subnet", records.get(0).getEvent());
+        assertEquals("203.0.113.7", records.get(1).getAddress());
+        assertEquals("invalid_host", records.get(1).getReason());
+
+        records = log.lookup(Cidr.parse("203.0.113.0/25"), 10);
+        assertEquals(2, records.size());
+        records = log.lookup(Cidr.parse("203.0.113.0/24"), 10);
+        assertEquals(3, records.size());
+        assertEquals(1, log.lookup(Cidr.parse("203.0.113.0/24"), 1).size());
+
+        records = log.lookup(Cidr.parse("198.51.100.0/24"), 10);
+        assertEquals(1, records.size());
+        assertEquals("login_quota", records.get(0).getReason());
+        assertEquals(0, log.lookup(Cidr.parse("192.0.2.1"), 10).size());
+    }
+
+    private static void append(AuditLog log, SecurityEvent.Type type, Cidr address, String host, long time,
+                               long unblockTime) {
+        SecurityEvent event = new SecurityEvent();
+        event.set(type, address.getHigh(), address.getLow(), address.getPrefixLength(), host, time, unblockTime);
+        String text = address.getPrefixLength() < 128
+                ? IpAddresses.toString(address.getHigh(), address.getLow(), address.getPrefixLength())
+                : IpAddresses.toString(address.getHigh(), address.getLow());
+        log.append(ForceHostsSettings.defaults(), event, text, host);
+    }
+}
@@ -0,0 +1,108 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.log;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.TimeSource;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.ConfigManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.manager.MessageManager;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.OffenderTracker;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.SpaceSaving;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SecurityLoggerTest {
+    private static final Cidr ADDRESS = Cidr.parse("203.0.113.7");
+    // 固定时间，来源统计不会衰减
+    private static final TimeSource CLOCK = () -> 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    private ConfigManager configManager;
+    private OffenderTracker offenders;
+    private SecurityLogger securityLogger;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Logger logger = LoggerFactory.getLogger(SecurityLoggerTest.class);
+        writeConfig(2);
+        configManager = new ConfigManager(logger, directory);
+        assertTrue(configManager.loadConfig());
+        MessageManager messageManager = new MessageManager(logger, directory);
+        assertTrue(messageManager.loadMessages());
+        offenders = new OffenderTracker(configManager, CLOCK);
+        securityLogger = new SecurityLogger(logger, configManager, messageManager, offenders,
+                new AuditLog(logger, directory), CLOCK);
+        securityLogger.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        securityLogger.stop();
+    }
+
+    private void writeConfig(int queueSize) throws IOException {
+        Files.writeString(directory.resolve("config.yml"), String.join("\n",
+                "hosts:",
+                "  - example.com",
+                "logPing: false",
+                "securityLog:",
+                "  queueSize: " + queueSize,
+                "audit:",
+                "  enabled: false",
+                ""));
+    }
+
+    private void offer(int count) {
+        for (int i = 0; i < count; i++) {
+            securityLogger.logPingBlocked(ADDRESS.getHigh(), ADDRESS.getLow(), "scan.example.net");
+        }
+    }
+
+    /**
+     * @return 后台线程处理的事件数
+     */
+    private long handled() {
+        List<SpaceSaving.Item<String>> top = offenders.topAddresses(1);
+        return top.isEmpty() ? 0 : Math.round(top.get(0).getCount());
+    }
+
+    @Test
+    void reloadAppliesNewQueueSize() throws IOException {
+        writeConfig(1 << 17);
+        assertTrue(configManager.loadConfig());
+        // 新队列能容纳所有事件，不会丢弃
+        offer(100_000);
+        securityLogger.stop();
+        assertEquals(0, securityLogger.getDroppedCount());
+        assertEquals(100_000, handled());
+    }
+
+    @Test
+    void eventsAreNotLostWhileQueueIsReplaced() throws Exception {
+        writeConfig(1 << 17);
+        assertTrue(configManager.loadConfig());
+        Thread producer = new Thread(() -> offer(100_000));
+        producer.start();
+        // 两种容量都能容纳所有事件，更换队列时写入旧队列的事件也必须被处理
+        for (int i = 0; producer.isAlive(); i++) {
+            writeConfig(i % 2 == 0 ? 1 << 18 : 1 << 17);
+            assertTrue(configManager.loadConfig());
+        }
+        producer.join();
+        securityLogger.stop();
+        assertEquals(0, securityLogger.getDroppedCount());
+        assertEquals(100_000, handled());
+    }
+}
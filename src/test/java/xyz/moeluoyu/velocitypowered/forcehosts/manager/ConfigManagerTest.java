@@ -0,0 +1,120 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.manager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+import xyz.moeluoyu.velocitypowered.forcehosts.config.ForceHostsSettings;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigManagerTest {
+    private static final String VALID = String.join("\n",
+            "hosts:",
+            "  - example.com",
+            "  - \"regex:^mc\\\\d+\\\\.example\\\\.net$\"",
+            "antiSpamRefresh:",
+            "  maxPings: 5",
+            "  subnets:",
+            "    ipv4:",
+            "      - prefix: 24",
+            "        maxPings: 50",
+            "rules:",
+            "  deny:",
+            "    - 203.0.113.0/24",
+            "    - 198.51.100.7",
+            "");
+
+    @TempDir
+    Path directory;
+
+    private ConfigManager configManager;
+    private final List<ForceHostsSettings> reloads = new ArrayList<>();
+
+    @BeforeEach
+    void loadValidConfig() throws IOException {
+        configManager = new ConfigManager(LoggerFactory.getLogger(ConfigManagerTest.class), directory);
+        write(VALID);
+        assertTrue(configManager.loadConfig());
+        configManager.addReloadListener(reloads::add);
+    }
+
+    @Test
+    void bundledConfigLoads() throws IOException {
+        Files.delete(directory.resolve("config.yml"));
+        // 没有配置文件时复制插件自带的配置
+        assertTrue(configManager.loadConfig());
+        assertEquals(1, reloads.size());
+    }
+
+    @Test
+    void invalidRegexAndCidrKeepPreviousSnapshot() throws IOException {
+        ForceHostsSettings before = configManager.getSettings();
+        // 同时修改了其他配置，也不应生效
+        write(VALID.replace("maxPings: 5", "maxPings: 9")
+                .replace("  - example.com", "  - example.com\n  - \"regex:play(\"")
+                .replace("198.51.100.7", "198.51.100.777"));
+
+        assertFalse(configManager.loadConfig());
+        assertFalse(configManager.reloadIfChanged());
+        assertSame(before, configManager.getSettings());
+        assertTrue(reloads.isEmpty());
+        assertEquals(5, configManager.getSettings().getMaxPings());
+        assertEquals(2, configManager.getSettings().getAllowedHosts().size());
+        assertEquals(List.of(Cidr.parse("203.0.113.0/24"), Cidr.parse("198.51.100.7")),
+                configManager.getSettings().getDeniedNetworks());
+    }
+
+    @Test
+    void invalidCidrDoesNotDropDenyRule() throws IOException {
+        ForceHostsSettings before = configManager.getSettings();
+        write(VALID.replace("203.0.113.0/24", "203.0.113.0/33"));
+        assertFalse(configManager.reloadIfChanged());
+        assertSame(before, configManager.getSettings());
+        Cidr address = Cidr.parse("203.0.113.9");
+        assertTrue(configManager.getSettings().getRules().evaluate(address.getHigh(), address.getLow(), "example.com")
+                .isDenied());
+        assertTrue(reloads.isEmpty());
+    }
+
+    @Test
+    void invalidSubnetTierKeepsPreviousSnapshot() throws IOException {
+        ForceHostsSettings before = configManager.getSettings();
+        write(VALID.replace("prefix: 24", "prefix: 40"));
+        assertFalse(configManager.reloadIfChanged());
+        write(VALID.replace("      - prefix: 24\n        maxPings: 50", "      - 24"));
+        assertFalse(configManager.reloadIfChanged());
+        write(VALID.replace("maxPings: 5", "maxPings: 5\n  mode: exakt"));
+        assertFalse(configManager.reloadIfChanged());
+        assertSame(before, configManager.getSettings());
+        assertTrue(reloads.isEmpty());
+    }
+
+    @Test
+    void fixedConfigLoadsAfterRejectedEdit() throws IOException {
+        write(VALID.replace("198.51.100.7", "not-an-address"));
+        assertFalse(configManager.reloadIfChanged());
+
+        write(VALID.replace("maxPings: 5", "maxPings: 9"));
+        assertTrue(configManager.reloadIfChanged());
+        assertEquals(1, reloads.size());
+        assertSame(reloads.get(0), configManager.getSettings());
+        assertEquals(9, configManager.getSettings().getMaxPings());
+        // 内容未变化时不重复加载
+        assertFalse(configManager.reloadIfChanged());
+    }
+
+    private void write(String content) throws IOException {
+        Files.writeString(directory.resolve("config.yml"), content);
+    }
+}
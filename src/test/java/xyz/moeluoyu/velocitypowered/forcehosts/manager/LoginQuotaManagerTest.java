@@ -0,0 +1,128 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.manager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+import xyz.moeluoyu.velocitypowered.forcehosts.limiter.LoginQuota;
+import xyz.moeluoyu.velocitypowered.forcehosts.metrics.ForceHostsMetrics;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+import xyz.moeluoyu.velocitypowered.forcehosts.rules.RuleEngine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginQuotaManagerTest {
+    private static final String CONFIG = String.join("\n",
+            "hosts:",
+            "  - play.example.com",
+            "  - free.example.com",
+            "rules:",
+            "  trusted:",
+            "    - 10.0.0.0/8",
+            "  hosts:",
+            "    play.example.com:",
+            "      maxConcurrentLogins: 1",
+            "");
+    private static final InetSocketAddress A = new InetSocketAddress("192.0.2.1", 50001);
+    private static final InetSocketAddress B = new InetSocketAddress("192.0.2.2", 50002);
+    private static final InetSocketAddress C = new InetSocketAddress("192.0.2.3", 50003);
+
+    @TempDir
+    Path directory;
+
+    private ConfigManager configManager;
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private LoginQuotaManager manager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.writeString(directory.resolve("config.yml"), CONFIG);
+        configManager = new ConfigManager(LoggerFactory.getLogger(LoginQuotaManagerTest.class), directory);
+        assertTrue(configManager.loadConfig());
+        manager = new LoginQuotaManager(configManager, new ForceHostsMetrics(), clock::get);
+    }
+
+    private LoginQuota.Result acquire(InetSocketAddress address, String host) {
+        RuleEngine.Decision decision = configManager.getSettings().getRules()
+                .evaluate(IpAddresses.high(address), IpAddresses.low(address), host);
+        return manager.tryAcquire(decision, address);
+    }
+
+    private LoginQuota.Result acquire(InetSocketAddress address) {
+        return acquire(address, "play.example.com");
+    }
+
+    private int inFlight() {
+        List<LoginQuotaManager.Usage> usage = manager.getUsage();
+        assertEquals(1, usage.size());
+        return usage.get(0).getInFlight();
+    }
+
+    @Test
+    void doubleReleaseFreesOnlyOneSlot() {
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(A));
+        assertEquals(LoginQuota.Result.CONCURRENT, acquire(B));
+
+        // 登录完成和断开连接事件都会释放同一个连接
+        manager.release(A);
+        manager.release(A);
+        // 没有记录的连接直接忽略
+        manager.release(C);
+        assertEquals(0, inFlight());
+
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(B));
+        assertEquals(LoginQuota.Result.CONCURRENT, acquire(C));
+        assertEquals(1, inFlight());
+    }
+
+    @Test
+    void sameAddressReplacesPendingLogin() throws IOException {
+        Files.writeString(directory.resolve("config.yml"), CONFIG.replace("maxConcurrentLogins: 1", "maxConcurrentLogins: 2"));
+        assertTrue(configManager.loadConfig());
+
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(A));
+        // 上一次登录没有收到完成事件，同一地址和端口再次通过时释放上一次的名额
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(A));
+        assertEquals(1, inFlight());
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(B));
+        assertEquals(LoginQuota.Result.CONCURRENT, acquire(C));
+
+        manager.release(A);
+        manager.release(B);
+        assertEquals(0, inFlight());
+    }
+
+    @Test
+    void stalledLoginTimesOut() {
+        long start = clock.get();
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(A));
+        clock.set(start + LoginQuotaManager.LOGIN_TIMEOUT - 1);
+        assertEquals(LoginQuota.Result.CONCURRENT, acquire(B));
+
+        // 每秒最多清理一次，超时后的下一次清理释放 A
+        clock.set(start + LoginQuotaManager.LOGIN_TIMEOUT + 1000);
+        assertEquals(0, inFlight());
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(B));
+
+        // 超时后才收到的完成事件不能释放 B 的名额
+        manager.release(A);
+        assertEquals(1, inFlight());
+        assertEquals(LoginQuota.Result.CONCURRENT, acquire(C));
+    }
+
+    @Test
+    void trustedAndUnlimitedHostsBypassQuota() {
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(A));
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(B, "free.example.com"));
+        assertEquals(LoginQuota.Result.ALLOWED, acquire(new InetSocketAddress("10.1.2.3", 50004)));
+        assertEquals(1, inFlight());
+    }
+}
@@ -0,0 +1,145 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlocklistSnapshotTest {
+    // 文件头 20 字节，每条记录 25 字节，末尾 4 字节 CRC
+    private static final int HEADER_SIZE = 20;
+    private static final int ENTRY_SIZE = 25;
+
+    @TempDir
+    Path directory;
+
+    private static void block(CidrBlocklist blocklist, String cidr, long unblockTime) {
+        Cidr parsed = Cidr.parse(cidr);
+        blocklist.block(parsed.getHigh(), parsed.getLow(), parsed.getPrefixLength(), unblockTime, 0);
+    }
+
+    /**
+     * @return 每条记录为 "CIDR@解除阻止时间"
+     */
+    private static List<String> read(Path path, long now) throws IOException {
+        List<String> records = new ArrayList<>();
+        BlocklistSnapshot.read(path, now, (high, low, prefixLength, unblockTime) ->
+                records.add(IpAddresses.toString(high, low, prefixLength) + "@" + unblockTime));
+        return records;
+    }
+
+    private Path snapshot() throws IOException {
+        CidrBlocklist blocklist = new CidrBlocklist(100, new LongAdder());
+        block(blocklist, "203.0.113.7", 500);
+        block(blocklist, "2001:db8::/32", 300);
+        block(blocklist, "198.51.100.0/24", 200);
+        Path path = directory.resolve("blocklist.dat");
+        assertEquals(3, BlocklistSnapshot.write(path, blocklist, 100));
+        return path;
+    }
+
+    @Test
+    void roundTripKeepsOrderAndSkipsExpired() throws IOException {
+        CidrBlocklist blocklist = new CidrBlocklist(100, new LongAdder());
+        block(blocklist, "203.0.113.7", 500);
+        block(blocklist, "192.0.2.1", 50);
+        block(blocklist, "2001:db8::/32", 300);
+        block(blocklist, "198.51.100.0/24", 200);
+        block(blocklist, "::/0", 400);
+        Path path = directory.resolve("blocklist.dat");
+        // 写入时已到期的 192.0.2.1 不写入
+        assertEquals(4, BlocklistSnapshot.write(path, blocklist, 100));
+        assertFalse(Files.exists(directory.resolve("blocklist.dat.tmp")));
+
+        assertEquals(List.of("203.0.113.7/32@500", "2001:db8:0:0:0:0:0:0/32@300", "198.51.100.0/24@200", "0:0:0:0:0:0:0:0/0@400"),
+                read(path, 100));
+        // 读取时到期的记录被跳过，返回值只计有效记录
+        assertEquals(List.of("203.0.113.7/32@500", "0:0:0:0:0:0:0:0/0@400"), read(path, 300));
+        assertEquals(0, BlocklistSnapshot.read(path, 500, (high, low, prefixLength, unblockTime) -> {
+        }));
+
+        // 恢复到新的阻止列表后淘汰顺序不变
+        CidrBlocklist restored = new CidrBlocklist(100, new LongAdder());
+        BlocklistSnapshot.read(path, 100, (high, low, prefixLength, unblockTime) ->
+                restored.block(high, low, prefixLength, unblockTime, 100));
+        restored.setMaxEntries(1);
+        Cidr last = Cidr.parse("::/0");
+        assertEquals(400, restored.blockedUntil(last.getHigh(), last.getLow() ^ 1, 100));
+        assertEquals(1, restored.size());
+    }
+
+    @Test
+    void emptyBlocklistRoundTrips() throws IOException {
+        Path path = directory.resolve("blocklist.dat");
+        assertEquals(0, BlocklistSnapshot.write(path, new CidrBlocklist(100, new LongAdder()), 100));
+        assertTrue(read(path, 100).isEmpty());
+    }
+
+    @Test
+    void corruptedFilesAreRejected() throws IOException {
+        Path path = snapshot();
+        byte[] data = Files.readAllBytes(path);
+
+        byte[] body = data.clone();
+        body[HEADER_SIZE + ENTRY_SIZE + 3] ^= 1;
+        assertRejected(path, body);
+
+        byte[] trailer = data.clone();
+        trailer[trailer.length - 1] ^= 1;
+        assertRejected(path, trailer);
+
+        byte[] badMagic = data.clone();
+        badMagic[0] ^= 1;
+        assertRejected(path, badMagic);
+
+        byte[] badVersion = data.clone();
+        badVersion[5] = 2;
+        assertRejected(path, badVersion);
+
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        assertRejected(path, truncated);
+
+        // 记录数与文件长度不符
+        byte[] badCount = data.clone();
+        badCount[HEADER_SIZE - 1] = 4;
+        assertRejected(path, badCount);
+
+        assertRejected(path, new byte[3]);
+    }
+
+    @Test
+    void invalidPrefixRejectsWholeSnapshot() throws IOException {
+        Path path = snapshot();
+        byte[] data = Files.readAllBytes(path);
+        // 第三条记录的前缀长度无效，CRC 按修改后的内容重新计算
+        data[HEADER_SIZE + ENTRY_SIZE * 3 - 1] = (byte) 129;
+        CRC32C crc = new CRC32C();
+        crc.update(data, HEADER_SIZE, ENTRY_SIZE * 3);
+        ByteBuffer.wrap(data).putInt(data.length - 4, (int) crc.getValue());
+        assertRejected(path, data);
+    }
+
+    /**
+     * 写入损坏的内容后读取必须失败，且不交出任何记录
+     */
+    private static void assertRejected(Path path, byte[] data) throws IOException {
+        Files.write(path, data);
+        List<String> records = new ArrayList<>();
+        assertThrows(IOException.class, () -> BlocklistSnapshot.read(path, 0, (high, low, prefixLength, unblockTime) ->
+                records.add(IpAddresses.toString(high, low, prefixLength))));
+        assertTrue(records.isEmpty(), records.toString());
+    }
+}
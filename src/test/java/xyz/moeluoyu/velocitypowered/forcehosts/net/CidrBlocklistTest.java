@@ -0,0 +1,219 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CidrBlocklistTest {
+    private static void block(CidrBlocklist blocklist, String cidr, long unblockTime, long now) {
+        Cidr parsed = Cidr.parse(cidr);
+        blocklist.block(parsed.getHigh(), parsed.getLow(), parsed.getPrefixLength(), unblockTime, now);
+    }
+
+    private static boolean unblock(CidrBlocklist blocklist, String cidr) {
+        Cidr parsed = Cidr.parse(cidr);
+        return blocklist.unblock(parsed.getHigh(), parsed.getLow(), parsed.getPrefixLength());
+    }
+
+    private static long blockedUntil(CidrBlocklist blocklist, String address, long now) {
+        Cidr parsed = Cidr.parse(address);
+        return blocklist.blockedUntil(parsed.getHigh(), parsed.getLow(), now);
+    }
+
+    @Test
+    void overlappingPrefixesReturnLatestUnblockTime() {
+        CidrBlocklist blocklist = new CidrBlocklist(100, new LongAdder());
+        block(blocklist, "203.0.0.0/16", 100, 0);
+        block(blocklist, "203.0.113.0/24", 300, 0);
+        block(blocklist, "203.0.113.7", 200, 0);
+        block(blocklist, "2001:db8::/32", 400, 0);
+
+        assertEquals(300, blockedUntil(blocklist, "203.0.113.7", 0));
+        assertEquals(300, blockedUntil(blocklist, "203.0.113.8", 0));
+        assertEquals(100, blockedUntil(blocklist, "203.0.114.1", 0));
+        assertEquals(0, blockedUntil(blocklist, "203.1.0.1", 0));
+        assertEquals(400, blockedUntil(blocklist, "2001:db8:1::1", 0));
+        assertEquals(0, blockedUntil(blocklist, "2001:db9::1", 0));
+
+        // 解除一个网段不影响覆盖它的更短前缀和它包含的更长前缀
+        assertTrue(unblock(blocklist, "203.0.113.0/24"));
+        assertFalse(unblock(blocklist, "203.0.113.0/24"));
+        assertFalse(unblock(blocklist, "203.0.113.0/25"));
+        assertEquals(200, blockedUntil(blocklist, "203.0.113.7", 0));
+        assertEquals(100, blockedUntil(blocklist, "203.0.113.8", 0));
+        assertEquals(3, blocklist.size());
+    }
+
+    @Test
+    void blockKeepsLaterUnblockTime() {
+        CidrBlocklist blocklist = new CidrBlocklist(100, new LongAdder());
+        Cidr address = Cidr.parse("198.51.100.1");
+        assertTrue(blocklist.block(address.getHigh(), address.getLow(), 128, 200, 0));
+        assertFalse(blocklist.block(address.getHigh(), address.getLow(), 128, 100, 0));
+        assertEquals(200, blocklist.blockedUntil(address.getHigh(), address.getLow(), 0));
+        assertFalse(blocklist.block(address.getHigh(), address.getLow(), 128, 300, 0));
+        assertEquals(300, blocklist.blockedUntil(address.getHigh(), address.getLow(), 0));
+        assertEquals(1, blocklist.size());
+        // 地址中前缀以外的位不影响记录
+        assertTrue(blocklist.block(address.getHigh(), address.getLow(), 120, 500, 0));
+        assertFalse(blocklist.block(address.getHigh(), address.getLow() ^ 0xff, 120, 500, 0));
+        assertEquals(2, blocklist.size());
+    }
+
+    @Test
+    void expiredBlocksAreIgnoredAndSwept() {
+        LongAdder evictions = new LongAdder();
+        CidrBlocklist blocklist = new CidrBlocklist(100, evictions);
+        block(blocklist, "203.0.113.0/24", 100, 0);
+        block(blocklist, "203.0.113.7", 200, 0);
+        block(blocklist, "203.0.113.9", 100, 0);
+
+        assertEquals(200, blockedUntil(blocklist, "203.0.113.7", 150));
+        assertEquals(0, blockedUntil(blocklist, "203.0.113.9", 150));
+        assertEquals(0, blockedUntil(blocklist, "203.0.113.9", 100));
+        List<String> active = new ArrayList<>();
+        blocklist.forEach(150, (high, low, prefixLength, unblockTime) ->
+                active.add(IpAddresses.toString(high, low, prefixLength)));
+        assertEquals(List.of("203.0.113.7/32"), active);
+
+        assertEquals(2, blocklist.sweep(150));
+        assertEquals(2, evictions.sum());
+        assertEquals(1, blocklist.size());
+        assertEquals(200, blockedUntil(blocklist, "203.0.113.7", 150));
+        // 到期未清理的记录再次阻止时视为新阻止
+        block(blocklist, "198.51.100.1", 100, 0);
+        Cidr address = Cidr.parse("198.51.100.1");
+        assertTrue(blocklist.block(address.getHigh(), address.getLow(), 128, 300, 150));
+        assertEquals(2, blocklist.size());
+    }
+
+    @Test
+    void capacityEvictsOldestBlock() {
+        LongAdder evictions = new LongAdder();
+        CidrBlocklist blocklist = new CidrBlocklist(3, evictions);
+        block(blocklist, "203.0.113.1", 100, 0);
+        block(blocklist, "203.0.113.0/24", 100, 0);
+        block(blocklist, "203.0.113.2", 100, 0);
+        block(blocklist, "203.0.113.3", 100, 0);
+        assertEquals(3, blocklist.size());
+        assertEquals(1, evictions.sum());
+        // 最早的 203.0.113.1 被淘汰，仍被 /24 覆盖
+        assertFalse(unblock(blocklist, "203.0.113.1"));
+        assertEquals(100, blockedUntil(blocklist, "203.0.113.1", 0));
+
+        long modifications = blocklist.getModificationCount();
+        blocklist.setMaxEntries(1);
+        assertEquals(1, blocklist.size());
+        assertEquals(3, evictions.sum());
+        assertTrue(blocklist.getModificationCount() > modifications);
+        assertEquals(0, blockedUntil(blocklist, "203.0.113.1", 0));
+        assertEquals(100, blockedUntil(blocklist, "203.0.113.3", 0));
+    }
+
+    @Test
+    void matchesBruteForceUnderRandomOperations() {
+        Random random = new Random(11);
+        CidrBlocklist blocklist = new CidrBlocklist(1 << 20, new LongAdder());
+        // 键为 "high/low/前缀长度"，值为解除阻止时间
+        Map<List<Long>, Long> expected = new HashMap<>();
+        long now = 0;
+        for (int step = 0; step < 20_000; step++) {
+            now += random.nextInt(3);
+            long high = random.nextInt(4) == 0 ? 0x20010db800000000L | (random.nextLong() & 0xff000000L) : 0;
+            long low = IpAddresses.IPV4_MAPPED_PREFIX | (random.nextInt(1 << 12) << 20) | random.nextInt(4);
+            int prefixLength = high != 0 ? 32 + random.nextInt(97) : 96 + random.nextInt(33);
+            long maskedHigh = IpAddresses.maskHigh(high, prefixLength);
+            long maskedLow = IpAddresses.maskLow(low, prefixLength);
+            List<Long> key = List.of(maskedHigh, maskedLow, (long) prefixLength);
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                long unblockTime = now + 1 + random.nextInt(200);
+                blocklist.block(high, low, prefixLength, unblockTime, now);
+                expected.merge(key, unblockTime, Math::max);
+            } else if (operation < 7) {
+                Long previous = expected.remove(key);
+                assertEquals(previous != null, blocklist.unblock(high, low, prefixLength));
+            } else if (operation < 8) {
+                long sweepTime = now;
+                blocklist.sweep(sweepTime);
+                expected.values().removeIf(unblockTime -> unblockTime <= sweepTime);
+            }
+            long until = 0;
+            for (Map.Entry<List<Long>, Long> entry : expected.entrySet()) {
+                List<Long> prefix = entry.getKey();
+                int length = prefix.get(2).intValue();
+                if (entry.getValue() > now && IpAddresses.maskHigh(high, length) == prefix.get(0)
+                        && IpAddresses.maskLow(low, length) == prefix.get(1)) {
+                    until = Math.max(until, entry.getValue());
+                }
+            }
+            assertEquals(until, blocklist.blockedUntil(high, low, now), "第 " + step + " 步");
+        }
+    }
+
+    @Test
+    void lockFreeReadersAlwaysSeeStableBlocks() throws Exception {
+        CidrBlocklist blocklist = new CidrBlocklist(1 << 16, new LongAdder());
+        // 这些地址始终被阻止，其他前缀在它们周围反复插入和删除
+        String[] stable = {"203.0.113.7", "203.0.113.0/28", "198.51.0.0/16", "2001:db8::1"};
+        Set<Cidr> stableCidrs = new HashSet<>();
+        for (String cidr : stable) {
+            block(blocklist, cidr, Long.MAX_VALUE, 0);
+            stableCidrs.add(Cidr.parse(cidr));
+        }
+        Cidr[] probes = {Cidr.parse("203.0.113.7"), Cidr.parse("203.0.113.9"), Cidr.parse("198.51.7.7"),
+                Cidr.parse("2001:db8::1")};
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            Thread reader = new Thread(() -> {
+                while (running.get() && failure.get() == null) {
+                    for (Cidr probe : probes) {
+                        if (blocklist.blockedUntil(probe.getHigh(), probe.getLow(), 1) != Long.MAX_VALUE) {
+                            failure.set(IpAddresses.toString(probe.getHigh(), probe.getLow()) + " 未被阻止");
+                        }
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        Random random = new Random(3);
+        for (int i = 0; i < 200_000 && failure.get() == null; i++) {
+            Cidr probe = probes[random.nextInt(probes.length)];
+            int prefixLength = probe.getHigh() != 0 ? 16 + random.nextInt(113) : 96 + random.nextInt(33);
+            long low = probe.getLow() ^ random.nextInt(64);
+            if (stableCidrs.contains(new Cidr(probe.getHigh(), low, prefixLength))) {
+                continue;
+            }
+            if (random.nextBoolean()) {
+                blocklist.block(probe.getHigh(), low, prefixLength, 2, 0);
+            } else {
+                blocklist.unblock(probe.getHigh(), low, prefixLength);
+            }
+            if (i % 1000 == 0) {
+                blocklist.sweep(2);
+            }
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+}
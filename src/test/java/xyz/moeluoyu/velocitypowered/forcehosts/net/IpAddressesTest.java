@@ -0,0 +1,51 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpAddressesTest {
+    @ParameterizedTest
+    @ValueSource(strings = {"203.0.113.7", "0.0.0.0", "255.255.255.255", "128.0.0.1", "::ffff:198.51.100.1",
+            "2001:db8::1", "::1", "::", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", "fe80::1:2:3:4"})
+    void socketAddressMatchesRawEncoding(String text) throws Exception {
+        byte[] raw = IpAddresses.parse(text);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getByAddress(raw), 25565);
+        assertEquals(IpAddresses.high(raw), IpAddresses.high(address));
+        assertEquals(IpAddresses.low(raw), IpAddresses.low(address));
+        assertEquals(raw.length == 4, IpAddresses.isIPv4(IpAddresses.high(address), IpAddresses.low(address)));
+        assertEquals(InetAddress.getByAddress(raw).getHostAddress(),
+                IpAddresses.toString(IpAddresses.high(address), IpAddresses.low(address)));
+    }
+
+    @Test
+    void unknownAddressIsAllZero() {
+        assertEquals(0, IpAddresses.high((InetSocketAddress) null));
+        assertEquals(0, IpAddresses.low((InetSocketAddress) null));
+        InetSocketAddress unresolved = InetSocketAddress.createUnresolved("play.example.com", 25565);
+        assertEquals(0, IpAddresses.high(unresolved));
+        assertEquals(0, IpAddresses.low(unresolved));
+    }
+
+    @Test
+    void masksKeepPrefixBits() {
+        Cidr cidr = Cidr.parse("203.0.113.7");
+        assertEquals(IpAddresses.IPV4_MAPPED_PREFIX | 0xcb007100L, IpAddresses.maskLow(cidr.getLow(), 120));
+        assertEquals(0, IpAddresses.maskLow(cidr.getLow(), 64));
+        assertEquals(cidr.getLow(), IpAddresses.maskLow(cidr.getLow(), 128));
+        long high = Cidr.parse("2001:db8:ffff::").getHigh();
+        assertEquals(0x20010db800000000L, IpAddresses.maskHigh(high, 32));
+        assertEquals(0, IpAddresses.maskHigh(high, 0));
+        assertEquals(high, IpAddresses.maskHigh(high, 100));
+        assertEquals("203.0.113.0/24", IpAddresses.toString(cidr.getHigh(), IpAddresses.maskLow(cidr.getLow(), 120), 120));
+        assertTrue(IpAddresses.isIPv4(cidr.getHigh(), cidr.getLow()));
+        assertFalse(IpAddresses.isIPv4(high, 0));
+    }
+}
@@ -0,0 +1,206 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpTableTest {
+    private static final long FAR = Long.MAX_VALUE;
+    // 小于 32 时只有一个段，初始容量为 16
+    private static final int SINGLE_SEGMENT = 31;
+
+    /**
+     * @return count 个在容量为 16 的表中落在同一位置的键（IPv4 映射地址的低64位）
+     */
+    private static long[] colliding(int home, int count) {
+        long[] keys = new long[count];
+        int found = 0;
+        for (long ip = 0; found < count; ip++) {
+            long low = IpAddresses.IPV4_MAPPED_PREFIX | ip;
+            if (((int) IpTable.hash(0, low) & 15) == home) {
+                keys[found++] = low;
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void deleteShiftsLaterEntriesOfTheProbeChain() {
+        // 落在最后一个位置的探测链会绕回表头
+        for (int home : new int[]{3, 15}) {
+            long[] keys = colliding(home, 6);
+            IpTable<String> table = new IpTable<>(SINGLE_SEGMENT, () -> "new", new LongAdder());
+            for (int i = 0; i < keys.length; i++) {
+                table.put(0, keys[i], "v" + i, FAR, 0);
+            }
+            assertTrue(table.remove(0, keys[0]));
+            assertTrue(table.remove(0, keys[3]));
+            assertFalse(table.remove(0, keys[3]));
+            assertEquals(4, table.size());
+            for (int i = 0; i < keys.length; i++) {
+                if (i == 0 || i == 3) {
+                    assertNull(table.get(0, keys[i], 0));
+                } else {
+                    assertEquals("v" + i, table.get(0, keys[i], 0));
+                }
+            }
+            // 删除后的空位可以再次使用
+            table.put(0, keys[0], "again", FAR, 0);
+            assertEquals("again", table.get(0, keys[0], 0));
+            assertEquals("v5", table.get(0, keys[5], 0));
+        }
+    }
+
+    @Test
+    void sweepRemovesExpiredEntriesInsideProbeChain() {
+        long[] keys = colliding(15, 7);
+        LongAdder evictions = new LongAdder();
+        IpTable<String> table = new IpTable<>(SINGLE_SEGMENT, () -> "new", evictions);
+        for (int i = 0; i < keys.length; i++) {
+            // 偶数位置的条目在时间 100 过期
+            table.put(0, keys[i], "v" + i, i % 2 == 0 ? 100 : FAR, 0);
+        }
+        assertEquals(4, table.sweep(100));
+        assertEquals(4, evictions.sum());
+        assertEquals(3, table.size());
+        for (int i = 0; i < keys.length; i++) {
+            if (i % 2 == 0) {
+                assertNull(table.get(0, keys[i], 100));
+                assertEquals(0, table.expiresAt(0, keys[i]));
+            } else {
+                assertEquals("v" + i, table.get(0, keys[i], 100));
+            }
+        }
+    }
+
+    @Test
+    void matchesMapUnderRandomOperations() {
+        Random random = new Random(7);
+        IpTable<Integer> table = new IpTable<>(1 << 12, () -> -1, new LongAdder());
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 200_000; step++) {
+            // 键集中在少量地址上，探测链较长，插入和删除交替发生
+            long low = IpAddresses.IPV4_MAPPED_PREFIX | random.nextInt(2048);
+            long high = random.nextInt(4) == 0 ? 0x20010db800000000L : 0;
+            long key = high ^ low;
+            switch (random.nextInt(3)) {
+                case 0:
+                    table.put(high, low, step, FAR, 0);
+                    expected.put(key, step);
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key) != null, table.remove(high, low));
+                    break;
+                default:
+                    assertEquals(expected.get(key), table.get(high, low, 0));
+                    break;
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        Map<Long, Integer> seen = new HashMap<>();
+        table.forEach(0, (high, low, value, expiresAt) -> seen.put(high ^ low, value));
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void getOrCreateRenewsAndReplacesExpired() {
+        AtomicInteger created = new AtomicInteger();
+        IpTable<Integer> table = new IpTable<>(100, created::incrementAndGet, new LongAdder());
+        assertEquals(1, (int) table.getOrCreate(0, 1, 0, 100));
+        assertEquals(1, (int) table.getOrCreate(0, 1, 50, 100));
+        assertEquals(150, table.expiresAt(0, 1));
+        assertEquals(1, (int) table.getOrCreate(0, 1, 149, 100));
+        // 过期后创建新值，不增加条目数
+        assertEquals(2, (int) table.getOrCreate(0, 1, 249, 100));
+        assertEquals(1, table.size());
+        assertNull(table.get(0, 1, 349));
+    }
+
+    @Test
+    void fullTableEvictsEarliestExpiring() {
+        LongAdder evictions = new LongAdder();
+        // 只有一个段，最多 4 个条目，抽样覆盖全部条目
+        IpTable<String> table = new IpTable<>(4, () -> "new", evictions);
+        assertEquals(4, table.getMaxEntries());
+        for (int i = 0; i < 4; i++) {
+            table.put(0, i, "v" + i, 400 - i * 100, 0);
+        }
+        table.put(0, 4, "v4", 1000, 0);
+        assertEquals(4, table.size());
+        assertEquals(1, evictions.sum());
+        // 最早过期的是 v3
+        assertNull(table.get(0, 3, 0));
+        assertEquals("v0", table.get(0, 0, 0));
+        assertEquals("v4", table.get(0, 4, 0));
+
+        // 已过期的条目优先淘汰：时间 250 时只有 v2 已过期
+        table.put(0, 5, "v5", FAR, 250);
+        assertEquals(0, table.expiresAt(0, 2));
+        assertEquals("v0", table.get(0, 0, 250));
+        assertEquals("v1", table.get(0, 1, 250));
+        assertEquals(2, evictions.sum());
+    }
+
+    @Test
+    void concurrentInsertsStayWithinCapacity() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        LongAdder evictions = new LongAdder();
+        IpTable<long[]> table = new IpTable<>(10_000, () -> new long[1], evictions);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long high = t + 1;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        long[] value = table.getOrCreate(high, i, i, FAR - i);
+                        value[0] = i;
+                        // 刚插入的键要么仍能读到同一个值，要么已被其他线程的插入淘汰
+                        long[] read = table.get(high, i, i);
+                        if (read != null) {
+                            assertSame(value, read);
+                        }
+                        if (i % 7 == 0) {
+                            table.remove(high, i / 2);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(table.size() <= table.getMaxEntries(), "条目数超过上限: " + table.size());
+        AtomicInteger visible = new AtomicInteger();
+        table.forEach(0, (high, low, value, expiresAt) -> {
+            visible.incrementAndGet();
+            assertEquals(low, value[0]);
+        });
+        assertEquals(table.size(), visible.get());
+        assertTrue(evictions.sum() > 0);
+    }
+}
@@ -0,0 +1,154 @@
+package xyz.moeluoyu.velocitypowered.forcehosts.sync;
+
+import org.junit.jupiter.api.Test;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.Cidr;
+import xyz.moeluoyu.velocitypowered.forcehosts.net.IpAddresses;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyncCodecTest {
+    private static final String SECRET = "shared-secret";
+    private static final long MAX_AGE = 30_000;
+    private static final long NOW = 1_700_000_000_000L;
+    private static final List<BlocklistSyncService.Delta> DELTAS = List.of(
+            delta("192.0.2.1", NOW + 1000),
+            delta("203.0.113.7", NOW + 5000),
+            delta("2001:db8::/32", NOW + 9000),
+            delta("198.51.100.0/24", 0));
+
+    private static BlocklistSyncService.Delta delta(String cidr, long unblockTime) {
+        Cidr parsed = Cidr.parse(cidr);
+        return new BlocklistSyncService.Delta(parsed.getHigh(), parsed.getLow(), parsed.getPrefixLength(), unblockTime);
+    }
+
+    /**
+     * @return 每条记录为 "CIDR@解除阻止时间"
+     */
+    private static List<String> decode(SyncCodec codec, ByteBuffer message, long now) throws IOException {
+        List<String> records = new ArrayList<>();
+        int count = codec.decode(message, now, MAX_AGE, (high, low, prefixLength, unblockTime) ->
+                records.add(IpAddresses.toString(high, low, prefixLength) + "@" + unblockTime));
+        assertEquals(count, records.size());
+        return records;
+    }
+
+    @Test
+    void signedMessageRoundTrips() throws IOException {
+        SyncCodec sender = new SyncCodec(1, SECRET);
+        SyncCodec receiver = new SyncCodec(2, SECRET);
+        ByteBuffer message = sender.encode(DELTAS, 1, 4, NOW);
+        assertEquals(24 + 3 * 25 + 32, message.remaining());
+        assertEquals(List.of("203.0.113.7/32@" + (NOW + 5000), "2001:db8:0:0:0:0:0:0/32@" + (NOW + 9000),
+                "198.51.100.0/24@0"), decode(receiver, message, NOW + 100));
+        // 解码不改变传入消息的位置
+        assertEquals(0, message.position());
+    }
+
+    @Test
+    void unsignedMessageRoundTrips() throws IOException {
+        ByteBuffer message = new SyncCodec(1, "").encode(DELTAS, 0, 1, NOW);
+        assertEquals(24 + 25, message.remaining());
+        assertEquals(List.of("192.0.2.1/32@" + (NOW + 1000)), decode(new SyncCodec(2, null), message, NOW));
+    }
+
+    @Test
+    void ownMessagesAreIgnored() throws IOException {
+        SyncCodec codec = new SyncCodec(1, SECRET);
+        assertTrue(decode(codec, codec.encode(DELTAS, 0, 4, NOW), NOW).isEmpty());
+    }
+
+    @Test
+    void badSignatureIsRejected() {
+        SyncCodec receiver = new SyncCodec(2, SECRET);
+        ByteBuffer message = new SyncCodec(1, SECRET).encode(DELTAS, 0, 4, NOW);
+
+        ByteBuffer tampered = copy(message);
+        tampered.put(24 + 25 + 20, (byte) (tampered.get(24 + 25 + 20) ^ 1));
+        assertRejected(receiver, tampered, NOW);
+
+        ByteBuffer badMac = copy(message);
+        badMac.put(badMac.limit() - 1, (byte) (badMac.get(badMac.limit() - 1) ^ 1));
+        assertRejected(receiver, badMac, NOW);
+
+        assertRejected(receiver, new SyncCodec(1, "other-secret").encode(DELTAS, 0, 4, NOW), NOW);
+        // 设置了密钥时不接受未签名的消息
+        assertRejected(receiver, new SyncCodec(1, null).encode(DELTAS, 0, 4, NOW), NOW);
+    }
+
+    @Test
+    void staleOrFutureMessagesAreRejected() throws IOException {
+        SyncCodec receiver = new SyncCodec(2, SECRET);
+        ByteBuffer message = new SyncCodec(1, SECRET).encode(DELTAS, 0, 2, NOW);
+        assertEquals(2, decode(receiver, message, NOW + MAX_AGE).size());
+        assertEquals(2, decode(receiver, message, NOW - MAX_AGE).size());
+        assertRejected(receiver, message, NOW + MAX_AGE + 1);
+        assertRejected(receiver, message, NOW - MAX_AGE - 1);
+    }
+
+    @Test
+    void lengthMismatchIsRejected() {
+        SyncCodec receiver = new SyncCodec(2, SECRET);
+        ByteBuffer message = new SyncCodec(1, SECRET).encode(DELTAS, 0, 2, NOW);
+
+        assertRejected(receiver, copy(message).limit(message.limit() - 1), NOW);
+
+        ByteBuffer longer = ByteBuffer.allocate(message.remaining() + 1).put(copy(message)).put((byte) 0).flip();
+        assertRejected(receiver, longer, NOW);
+
+        ByteBuffer badCount = copy(message);
+        badCount.putShort(6, (short) 3);
+        assertRejected(receiver, badCount, NOW);
+
+        assertRejected(receiver, ByteBuffer.allocate(10), NOW);
+
+        ByteBuffer badMagic = copy(message);
+        badMagic.put(0, (byte) 0);
+        assertRejected(receiver, badMagic, NOW);
+
+        ByteBuffer badVersion = copy(message);
+        badVersion.put(4, (byte) 2);
+        assertRejected(receiver, badVersion, NOW);
+    }
+
+    @Test
+    void invalidPrefixRejectsWholeMessage() {
+        // 第三条记录的前缀长度无效，签名有效
+        List<BlocklistSyncService.Delta> deltas = new ArrayList<>(DELTAS);
+        deltas.set(2, new BlocklistSyncService.Delta(0, 0, 129, NOW + 1000));
+        ByteBuffer message = new SyncCodec(1, SECRET).encode(deltas, 0, 4, NOW);
+        assertRejected(new SyncCodec(2, SECRET), message, NOW);
+    }
+
+    @Test
+    void maxEntriesFitsMessageSize() {
+        SyncCodec signed = new SyncCodec(1, SECRET);
+        SyncCodec unsigned = new SyncCodec(1, null);
+        assertEquals(3, signed.maxEntries(24 + 32 + 3 * 25 + 24));
+        assertEquals(5, unsigned.maxEntries(24 + 32 + 3 * 25 + 24));
+        assertEquals(1, signed.maxEntries(10));
+        assertEquals(0xffff, unsigned.maxEntries(Integer.MAX_VALUE));
+    }
+
+    private static ByteBuffer copy(ByteBuffer message) {
+        ByteBuffer copy = ByteBuffer.allocate(message.remaining());
+        copy.put(message.duplicate()).flip();
+        return copy;
+    }
+
+    /**
+     * 消息必须被拒绝，且不回调任何一条记录
+     */
+    private static void assertRejected(SyncCodec codec, ByteBuffer message, long now) {
+        List<String> records = new ArrayList<>();
+        assertThrows(IOException.class, () -> codec.decode(message, now, MAX_AGE, (high, low, prefixLength, unblockTime) ->
+                records.add(IpAddresses.toString(high, low, prefixLength))));
+        assertTrue(records.isEmpty(), records.toString());
+    }
+}